@@ -0,0 +1,87 @@
+import java.lang.management.ManagementFactory;
+
+/** A class that you cannot instantiate. It measures how many bytes an
+ * operation allocates each time it runs, using the JVM's count of the
+ * bytes each thread has allocated (See com.sun.management.ThreadMXBean).
+ *
+ * An operation is run WARMUP times first, so the JIT has compiled it
+ * and removed whatever allocations it can, and then TRIALS times over
+ * ITERATIONS runs each. I report the trial that allocated the least,
+ * so that one-off work in the middle of a trial, like a class being
+ * loaded, doesn't count against the operation. The count is of bytes
+ * the thread allocated, whether or not they were collected, so an
+ * operation that allocates nothing comes out at exactly 0.
+ * @author John Angeles
+ */
+final class Allocations {
+
+    /** You can't create one of these; use the static methods. */
+    private Allocations() { }
+
+    /** Returns true if this JVM counts the bytes each thread
+     * allocates. */
+    static boolean supported() {
+        return THREADS != null && THREADS.isThreadAllocatedMemorySupported()
+                && THREADS.isThreadAllocatedMemoryEnabled();
+    }
+
+    /** Returns the bytes OPERATION allocates each time it runs, rounded
+     * up, on the calling thread. Rounding up means that an operation
+     * that allocates anything at all, even once in many runs, comes out
+     * above 0. */
+    static long perRun(Runnable operation) {
+        assert supported() : "Can't count allocations on this JVM!";
+        for (int i = 0; i < WARMUP; i += 1) {
+            operation.run();
+        }
+        long id = Thread.currentThread().getId();
+        long least = Long.MAX_VALUE;
+        for (int trial = 0; trial < TRIALS; trial += 1) {
+            long before = THREADS.getThreadAllocatedBytes(id);
+            for (int i = 0; i < ITERATIONS; i += 1) {
+                operation.run();
+            }
+            long after = THREADS.getThreadAllocatedBytes(id);
+            least = Math.min(least, after - before);
+        }
+        return (least + ITERATIONS - 1) / ITERATIONS;
+    }
+
+    /** Returns the bytes THREAD has allocated so far. */
+    static long allocated(Thread thread) {
+        assert supported() : "Can't count allocations on this JVM!";
+        return THREADS.getThreadAllocatedBytes(thread.getId());
+    }
+
+    /** Throws an AssertionError naming OPERATION if it allocates more
+     * than BUDGET bytes each time it runs (See perRun). Does nothing
+     * if allocations can't be counted. */
+    static void check(String operation, long budget, Runnable run) {
+        if (!supported()) {
+            return;
+        }
+        long bytes = perRun(run);
+        if (bytes > budget) {
+            throw new AssertionError(operation + " allocates " + bytes
+                    + " bytes each time, over its budget of " + budget);
+        }
+    }
+
+    /** Runs of an operation before measuring it. */
+    static final int WARMUP = 20_000;
+
+    /** Times an operation is measured. */
+    static final int TRIALS = 5;
+
+    /** Runs of an operation in each trial. */
+    static final int ITERATIONS = 10_000;
+
+    /** The JVM's threads, or null if it doesn't count allocations. */
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (ManagementFactory.getThreadMXBean()
+                    instanceof com.sun.management.ThreadMXBean)
+            ? (com.sun.management.ThreadMXBean)
+                    ManagementFactory.getThreadMXBean()
+            : null;
+
+}
@@ -0,0 +1,200 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/** Set of tests that hold the engine's hot paths to budgets of bytes
+ * allocated each time they run. (See Allocations)
+ *
+ * Paths that run over and over while a game is played have a budget of
+ * nothing at all. If one of these fails, a change has made something
+ * allocate on every roll, build or card, and it will show up as
+ * garbage collection in every game played. Run them without a Flight
+ * Recorder recording of the engine's events, each of which is an
+ * allocation. (See GameEvents)
+ * @author John Angeles
+ */
+public class AllocationsTest {
+
+    /** Most bytes a seeded Board.reset may allocate: its own generator
+     * and its copy of the resources. */
+    private static final long SEEDED_RESET_BUDGET = 256;
+
+    /** Returns the position after a seeded opening where every player
+     * has a few cards of each resource. */
+    private static CompactGame richGame() {
+        CompactGame game = Perft.opening(3);
+        for (int p = 0; p < 4; p += 1) {
+            game.give(p, Hand.pack(2, 2, 2, 3, 2));
+        }
+        return game;
+    }
+
+    @Test
+    public void measureTest() {
+        if (!Allocations.supported()) {
+            return;
+        }
+        assertEquals(0, Allocations.perRun(() -> { }));
+        assertTrue(Allocations.perRun(() -> _kept = new long[16])
+                >= 16 * 8);
+        int[] runs = new int[1];
+        assertTrue(Allocations.perRun(() -> {
+            runs[0] += 1;
+            if (runs[0] % 1000 == 0) {
+                _kept = new long[16];
+            }
+        }) > 0);
+        try {
+            Allocations.check("Making arrays", 0,
+                () -> _kept = new long[16]);
+            fail("Went over its budget!");
+        } catch (AssertionError e) {
+            assertTrue(e.getMessage().startsWith("Making arrays"));
+        }
+    }
+
+    @Test
+    public void rollTest() {
+        CompactGame template = richGame(), game = new CompactGame();
+        Allocations.check("Rolling a compact game", 0, () -> {
+            template.copyInto(game);
+            Perft.apply(game, Perft.ROLL | 8 << 4);
+        });
+        Board.reset(3);
+        Allocations.check("Board.rollDice", 0,
+            () -> Board.rollDice(3, 5));
+    }
+
+    @Test
+    public void validationTest() {
+        CompactGame game = richGame();
+        Perft generator = new Perft();
+        long[] moves = new long[1024];
+        Allocations.check("Generating moves", 0,
+            () -> generator.moves(game, moves));
+        Allocations.check("Checking compact builds", 0, () -> {
+            game.isValidRoad(0, 4, 0);
+            game.isValidSettlement(0, 4, 0);
+        });
+
+        Board.reset(3);
+        Player alice = new Player(Color.red(), "Alice");
+        giveSettlementAndRoad(alice);
+        assertEquals("Alice built a settlement!",
+                alice.placeSettlement(5, 0));
+        Allocations.check("Checking builds on Board", 0, () -> {
+            alice.isValidRoad(5, 0);
+            alice.isValidSettlement(10, 3);
+            alice.hasSettlementOrCityOnHex(5);
+            Board.get(5).adjacentHexes(0);
+        });
+    }
+
+    @Test
+    public void placementTest() {
+        CompactGame template = richGame(), game = new CompactGame();
+        long[] moves = new long[1024];
+        int n = new Perft().moves(template, moves);
+        long[] builds = new long[3];
+        int count = 0;
+        for (int i = 0; i < n && count < builds.length; i += 1) {
+            if ((moves[i] & 15) == Perft.ROAD
+                    || (moves[i] & 15) == Perft.CITY) {
+                builds[count] = moves[i];
+                count += 1;
+            }
+        }
+        assertEquals(builds.length, count);
+        Allocations.check("Building in a compact game", 0, () -> {
+            template.copyInto(game);
+            for (long move : builds) {
+                Perft.apply(game, move);
+            }
+        });
+
+        Board.reset(3);
+        Player alice = new Player(Color.red(), "Alice");
+        Road start = new Road(Color.red());
+        Runnable place = () -> {
+            giveSettlementAndRoad(alice);
+            Board.placeRoad(start, 5, 1);
+            alice.placeSettlement(5, 0);
+            alice.placeRoad(5, 0);
+        };
+        place.run();
+        assertEquals(1, alice.victoryPoints());
+        assertEquals(14, alice.numRoads());
+        Board.clear();
+        assertEquals(0, alice.victoryPoints());
+        assertEquals(15, alice.numRoads());
+        Allocations.check("Placing on Board", 0, () -> {
+            place.run();
+            Board.clear();
+        });
+    }
+
+    @Test
+    public void handTest() {
+        Player alice = new Player(Color.red(), "Alice");
+        Allocations.check("Changing a player's hand", 0, () -> {
+            for (int r = 0; r < Hand.NUM_RESOURCES; r += 1) {
+                alice.giveResource(ResourceCard.make(Resource.get(r)));
+            }
+            alice.packedHand();
+            for (int r = 0; r < Hand.NUM_RESOURCES; r += 1) {
+                alice.takeResource(Resource.get(r));
+            }
+        });
+        CompactGame template = richGame(), game = new CompactGame();
+        long give = Hand.pack(1, 0, 0, 0, 0);
+        long want = Hand.pack(0, 0, 0, 1, 0);
+        Allocations.check("Trading in a compact game", 0, () -> {
+            template.copyInto(game);
+            game.trade(0, 1, give, want);
+            game.give(2, Hand.pack(1, 1, 1, 1, 1));
+        });
+    }
+
+    @Test
+    public void logTest() throws IOException {
+        GameLog log = new GameLog(Files.createTempDirectory("gamelog"), 1);
+        Allocations.check("Logging a turn", 0, () -> {
+            log.roll(3, 4);
+            log.road(0, 4, 1);
+            log.turn(1);
+        });
+        log.close();
+    }
+
+    @Test
+    public void resetTest() {
+        Board.reset(3);
+        Resource[] resources = new Resource[19];
+        int[] numbers = new int[19];
+        for (int i = 0; i < 19; i += 1) {
+            resources[i] = Board.get(i + 1).resource();
+            numbers[i] = Board.get(i + 1).number();
+        }
+        Allocations.check("Laying out a given board", 0,
+            () -> Board.reset(resources, numbers));
+        Allocations.check("Laying out a seeded board", SEEDED_RESET_BUDGET,
+            () -> Board.reset(3));
+    }
+
+    /** Gives PLAYER the cards for a settlement and a road. */
+    private static void giveSettlementAndRoad(Player player) {
+        player.giveResource(ResourceCard.make(Resource.wood()));
+        player.giveResource(ResourceCard.make(Resource.brick()));
+        player.giveResource(ResourceCard.make(Resource.wheat()));
+        player.giveResource(ResourceCard.make(Resource.sheep()));
+        player.giveResource(ResourceCard.make(Resource.wood()));
+        player.giveResource(ResourceCard.make(Resource.brick()));
+    }
+
+    /** Where allocations are kept, so the JIT can't remove them. */
+    private static Object _kept;
+
+}
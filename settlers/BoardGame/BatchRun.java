@@ -0,0 +1,376 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/** A long batch of games that saves its progress as it goes, so that
+ * it can be killed and started again without losing much.
+ *
+ * The seeds FROM up to TO are split into one range for each worker
+ * thread, and each worker plays its range in order with the bots in a
+ * config (See Coordinator). Each worker keeps its own totals: how many
+ * games each seat won, how many nobody did, and a sample of SAMPLE_SIZE
+ * seeds picked uniformly from the games it played, using its own
+ * random number generator.
+ *
+ * Every CHECKPOINTEVERY games a worker copies its state (the next
+ * seed, its totals, its sample and its generator) and hands the copy to
+ * a single writer thread, which saves the latest copy from every worker
+ * to the checkpoint file. The worker never waits for the disk. The file
+ * is written to a temporary file and renamed over the old one, so it
+ * is always a whole checkpoint.
+ *
+ * A run started on an existing checkpoint for the same job picks up
+ * each worker from its saved state. A worker's state only depends on
+ * where it started and how many games it has played, so the totals
+ * come out exactly the same as if the run had never stopped.
+ * @author John Angeles
+ */
+final class BatchRun {
+
+    /** Totals of a run. */
+    static final class Totals {
+
+        /** Games each seat won, followed by games nobody won. */
+        final long[] wins = new long[Coordinator.RESULT_SIZE];
+
+        /** Sampled seeds, SAMPLE_SIZE from each worker in order, or
+         * fewer if a worker played fewer games. */
+        long[] sample = new long[0];
+    }
+
+    /** Creates a run of seeds FROM up to TO with the bots in CONFIG, on
+     * WORKERS threads, checkpointing to CHECKPOINT every
+     * CHECKPOINTEVERY games of each worker. If CHECKPOINT holds a
+     * checkpoint of this same job, carries on from it. */
+    BatchRun(String config, long from, long to, int workers,
+             Path checkpoint, int checkpointEvery) throws IOException {
+        _config = config;
+        _from = from;
+        _to = to;
+        _checkpoint = checkpoint;
+        _checkpointEvery = checkpointEvery;
+        _bots = Coordinator.bots(config);
+        _states = new State[workers];
+        if (checkpoint != null && Files.exists(checkpoint)) {
+            load();
+        } else {
+            long size = (to - from + workers - 1) / workers;
+            for (int w = 0; w < workers; w += 1) {
+                long start = Math.min(to, from + w * size);
+                _states[w] = new State(start, Math.min(to, start + size),
+                        Seeds.mix(from + w));
+            }
+        }
+        _saved = new AtomicReferenceArray<>(workers);
+        for (int w = 0; w < workers; w += 1) {
+            _saved.set(w, _states[w].copy());
+        }
+    }
+
+    /** Plays every game that hasn't been played and returns the
+     * totals, or null if I was stopped (See stopAfter) first. If a
+     * game or a checkpoint fails, stops every worker and throws the
+     * first error, leaving the last checkpoint as it was. */
+    Totals run() throws Exception {
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < _states.length; w += 1) {
+            int worker = w;
+            Thread thread = new Thread(() -> work(worker),
+                    "BatchRun worker " + w);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        _writer.shutdown();
+        _writer.awaitTermination(1, TimeUnit.DAYS);
+        if (_failure != null) {
+            throw _failure;
+        }
+        if (!_stopped) {
+            save();
+        }
+        if (_stopped) {
+            return null;
+        }
+        Totals totals = new Totals();
+        for (State state : _states) {
+            for (int i = 0; i < totals.wins.length; i += 1) {
+                totals.wins[i] += state.wins[i];
+            }
+            int size = (int) Math.min(SAMPLE_SIZE, state.seen);
+            int old = totals.sample.length;
+            totals.sample = Arrays.copyOf(totals.sample, old + size);
+            System.arraycopy(state.sample, 0, totals.sample, old, size);
+        }
+        return totals;
+    }
+
+    /** Makes run stop, as if killed, once GAMES more games have been
+     * started, without saving anything more than it already has. Call
+     * this before run. */
+    void stopAfter(long games) {
+        _budget.set(games);
+        _budgeted = true;
+    }
+
+    /** Returns the bots in each seat, which may be replaced before
+     * run. */
+    Tournament.Bot[] seats() {
+        return _bots;
+    }
+
+    /** Body of worker W. If a game throws, records it (See fail) so
+     * that every worker stops. */
+    private void work(int w) {
+        State state = _states[w];
+        boolean budgeted = _budgeted;
+        while (state.next < state.to && _failure == null) {
+            if (budgeted && _budget.getAndDecrement() <= 0) {
+                _stopped = true;
+                return;
+            }
+            long seed = state.next;
+            int winner;
+            try {
+                winner = Tournament.play(_bots, seed);
+            } catch (RuntimeException e) {
+                fail(e);
+                return;
+            }
+            state.wins[(winner < 0) ? 4 : winner] += 1;
+            state.seen += 1;
+            if (state.seen <= SAMPLE_SIZE) {
+                state.sample[(int) state.seen - 1] = seed;
+            } else {
+                state.random = Seeds.step(state.random);
+                long pick = (state.random >>> 1) % state.seen;
+                if (pick < SAMPLE_SIZE) {
+                    state.sample[(int) pick] = seed;
+                }
+            }
+            state.next += 1;
+            if (state.seen % _checkpointEvery == 0) {
+                publish(w, state);
+            }
+        }
+        if (_failure == null) {
+            publish(w, state);
+        }
+    }
+
+    /** Hands a copy of STATE, worker W's, to the writer. Once
+     * something has failed, the writer no longer saves. */
+    private void publish(int w, State state) {
+        _saved.set(w, state.copy());
+        if (_checkpoint != null && _pending.compareAndSet(false, true)) {
+            _writer.execute(() -> {
+                _pending.set(false);
+                if (_failure != null) {
+                    return;
+                }
+                try {
+                    save();
+                } catch (IOException e) {
+                    fail(e);
+                }
+            });
+        }
+    }
+
+    /** Records ERROR, unless something failed before it, which stops
+     * every worker and makes run throw it without saving again. */
+    private synchronized void fail(Exception error) {
+        if (_failure == null) {
+            _failure = error;
+        }
+    }
+
+    /** Writes the latest copy of every worker's state to the
+     * checkpoint. */
+    private synchronized void save() throws IOException {
+        if (_checkpoint == null) {
+            return;
+        }
+        Path tmp = _checkpoint.resolveSibling(_checkpoint.getFileName()
+                + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeUTF(_config);
+            out.writeLong(_from);
+            out.writeLong(_to);
+            out.writeInt(_states.length);
+            for (int w = 0; w < _states.length; w += 1) {
+                _saved.get(w).write(out);
+            }
+        }
+        Files.move(tmp, _checkpoint, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Reads every worker's state from the checkpoint. */
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(_checkpoint)))) {
+            if (in.readInt() != MAGIC || !in.readUTF().equals(_config)
+                    || in.readLong() != _from || in.readLong() != _to
+                    || in.readInt() != _states.length) {
+                throw new IOException(_checkpoint
+                        + " is a checkpoint of a different job");
+            }
+            for (int w = 0; w < _states.length; w += 1) {
+                _states[w] = State.read(in);
+            }
+        }
+    }
+
+    /** Plays GAMES games with the bots in CONFIG, checkpointing to
+     * CHECKPOINT, and prints the totals. Run it again on the same
+     * checkpoint after killing it to carry on.
+     * Usage: java BatchRun CHECKPOINT GAMES CONFIG [WORKERS] */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: java BatchRun CHECKPOINT GAMES"
+                    + " CONFIG [WORKERS]");
+            System.exit(1);
+        }
+        int workers = (args.length > 3) ? Integer.parseInt(args[3])
+                : Runtime.getRuntime().availableProcessors();
+        BatchRun run = new BatchRun(args[2], 0, Long.parseLong(args[1]),
+                workers, Path.of(args[0]), 1000);
+        Totals totals = run.run();
+        System.out.printf("seats won %s, nobody won %d%nsample %s%n",
+                Arrays.toString(Arrays.copyOf(totals.wins, 4)),
+                totals.wins[4], Arrays.toString(totals.sample));
+    }
+
+    /** What a worker has done. */
+    private static final class State {
+
+        /** A worker that will play seeds NEXT up to TO, whose generator
+         * starts at RANDOM. */
+        State(long next, long to, long random) {
+            this.next = next;
+            this.to = to;
+            this.random = random;
+        }
+
+        /** Returns a copy of me. */
+        State copy() {
+            State copy = new State(next, to, random);
+            copy.seen = seen;
+            System.arraycopy(wins, 0, copy.wins, 0, wins.length);
+            System.arraycopy(sample, 0, copy.sample, 0, sample.length);
+            return copy;
+        }
+
+        /** Writes me to OUT. */
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(next);
+            out.writeLong(to);
+            out.writeLong(random);
+            out.writeLong(seen);
+            for (long count : wins) {
+                out.writeLong(count);
+            }
+            for (long seed : sample) {
+                out.writeLong(seed);
+            }
+        }
+
+        /** Returns a state read from IN. (See write) */
+        static State read(DataInputStream in) throws IOException {
+            State state = new State(in.readLong(), in.readLong(),
+                    in.readLong());
+            state.seen = in.readLong();
+            for (int i = 0; i < state.wins.length; i += 1) {
+                state.wins[i] = in.readLong();
+            }
+            for (int i = 0; i < SAMPLE_SIZE; i += 1) {
+                state.sample[i] = in.readLong();
+            }
+            return state;
+        }
+
+        /** The next seed to play. */
+        long next;
+
+        /** The seed after the last one to play. */
+        final long to;
+
+        /** State of the generator. */
+        long random;
+
+        /** Games played. */
+        long seen;
+
+        /** Games each seat won, then games nobody won. */
+        final long[] wins = new long[Coordinator.RESULT_SIZE];
+
+        /** Sampled seeds. */
+        final long[] sample = new long[SAMPLE_SIZE];
+    }
+
+    /** Seeds each worker samples. */
+    static final int SAMPLE_SIZE = 8;
+
+    /** First number of a checkpoint file. */
+    private static final int MAGIC = 0x43484B31;
+
+    /** The config, as given. */
+    private final String _config;
+
+    /** Range of seeds. */
+    private final long _from, _to;
+
+    /** Where to checkpoint, or null not to. */
+    private final Path _checkpoint;
+
+    /** Games between checkpoints of each worker. */
+    private final int _checkpointEvery;
+
+    /** The bots in each seat. */
+    private final Tournament.Bot[] _bots;
+
+    /** Each worker's state, which only that worker touches while I
+     * run. */
+    private final State[] _states;
+
+    /** The latest copy of each worker's state. */
+    private final AtomicReferenceArray<State> _saved;
+
+    /** True while a save is waiting for the writer. */
+    private final AtomicBoolean _pending = new AtomicBoolean();
+
+    /** Saves checkpoints. */
+    private final ExecutorService _writer =
+            Executors.newSingleThreadExecutor();
+
+    /** Games I may still start, if _budgeted. */
+    private final AtomicLong _budget = new AtomicLong();
+
+    /** True if I was given a budget. (See stopAfter) */
+    private boolean _budgeted;
+
+    /** True if I ran out of budget. */
+    private volatile boolean _stopped;
+
+    /** The first error from playing or saving, if any. */
+    private volatile Exception _failure;
+
+}
@@ -0,0 +1,122 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Set of tests for checkpointing batches of games.
+ * @author John Angeles
+ */
+public class BatchRunTest {
+
+    /** Config played in these tests. */
+    private static final String CONFIG = "greedy,random,greedy,passive";
+
+    @Test
+    public void totalsTest() throws Exception {
+        BatchRun.Totals totals = new BatchRun(CONFIG, 0, 60, 3, null, 5)
+                .run();
+        assertArrayEquals(Coordinator.play(CONFIG, 0, 60), totals.wins);
+        assertEquals(3 * BatchRun.SAMPLE_SIZE, totals.sample.length);
+        for (long seed : totals.sample) {
+            assertTrue(0 <= seed && seed < 60);
+        }
+    }
+
+    @Test
+    public void resumeTest() throws Exception {
+        Path dir = Files.createTempDirectory("batch");
+        Path checkpoint = dir.resolve("checkpoint");
+        try {
+            BatchRun.Totals whole = new BatchRun(CONFIG, 10, 90, 3, null, 4)
+                    .run();
+
+            BatchRun first = new BatchRun(CONFIG, 10, 90, 3, checkpoint, 4);
+            first.stopAfter(30);
+            assertNull(first.run());
+            assertTrue(Files.exists(checkpoint));
+
+            BatchRun second = new BatchRun(CONFIG, 10, 90, 3, checkpoint,
+                    4);
+            second.stopAfter(20);
+            assertNull(second.run());
+
+            BatchRun.Totals resumed = new BatchRun(CONFIG, 10, 90, 3,
+                    checkpoint, 4).run();
+            assertArrayEquals(whole.wins, resumed.wins);
+            assertArrayEquals(whole.sample, resumed.sample);
+
+            BatchRun.Totals again = new BatchRun(CONFIG, 10, 90, 3,
+                    checkpoint, 4).run();
+            assertArrayEquals(whole.sample, again.sample);
+        } finally {
+            Files.deleteIfExists(checkpoint);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void failureTest() throws Exception {
+        Path dir = Files.createTempDirectory("batch");
+        Path checkpoint = dir.resolve("checkpoint");
+        try {
+            BatchRun.Totals whole = new BatchRun(CONFIG, 0, 80, 2, null, 4)
+                    .run();
+
+            BatchRun broken = new BatchRun(CONFIG, 0, 80, 2, checkpoint, 4);
+            AtomicInteger moves = new AtomicInteger();
+            Tournament.Bot random = broken.seats()[1];
+            broken.seats()[1] = (game, list, n, choices) -> {
+                if (moves.incrementAndGet() > 2000) {
+                    throw new IllegalStateException("Broken bot");
+                }
+                return random.choose(game, list, n, choices);
+            };
+            try {
+                broken.run();
+                fail("Expected the broken bot's error");
+            } catch (IllegalStateException e) {
+                assertEquals("Broken bot", e.getMessage());
+            }
+
+            BatchRun.Totals resumed = new BatchRun(CONFIG, 0, 80, 2,
+                    checkpoint, 4).run();
+            assertArrayEquals(whole.wins, resumed.wins);
+            assertArrayEquals(whole.sample, resumed.sample);
+        } finally {
+            Files.deleteIfExists(checkpoint);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void configTest() throws Exception {
+        try {
+            new BatchRun("greedy,greedy", 0, 8, 2, null, 2);
+            fail("Expected a config of two bots to be refused");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("four bots"));
+        }
+    }
+
+    @Test
+    public void otherJobTest() throws Exception {
+        Path dir = Files.createTempDirectory("batch");
+        Path checkpoint = dir.resolve("checkpoint");
+        try {
+            new BatchRun(CONFIG, 0, 8, 2, checkpoint, 2).run();
+            try {
+                new BatchRun(CONFIG, 0, 9, 2, checkpoint, 2);
+                fail("Expected a different job to be refused");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains("different job"));
+            }
+        } finally {
+            Files.deleteIfExists(checkpoint);
+            Files.delete(dir);
+        }
+    }
+
+}
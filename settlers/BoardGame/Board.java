@@ -1,5 +1,9 @@
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
 
 /** The game board that consists of 19 hexes.
  * There is only one board in the game.
@@ -38,14 +42,33 @@ final class Board {
      * adjacent to a hex that has the same number rolled.
      * Returns the sum of the rolls of the dice. */
     static int rollDice() {
-        int die1 = genRandom(1, 6);
-        int die2 = genRandom(1, 6);
+        return rollDice(genRandom(1, 6), genRandom(1, 6));
+    }
+
+    /** Same as rollDice, but the dice have already been rolled and
+     * came up DIE1 and DIE2. */
+    static int rollDice(int die1, int die2) {
+        long start = EngineMetrics.ENABLED ? System.nanoTime() : 0;
+        GameEvents.Roll event = GameEvents.roll();
         int result = die1 + die2;
+        int payouts = 0;
         for (int i = 0; i < 19; i += 1) {
-            if (get(i).number() == result) {
-                ;
+            if (BOARD[i].number() == result) {
+                payouts += 1;
             }
         }
+        if (EngineMetrics.ENABLED) {
+            EngineMetrics.PAYOUTS.add(payouts);
+            EngineMetrics.ROLLS.increment();
+            EngineMetrics.ROLL_TIME.since(start);
+        }
+        if (event != null && event.shouldCommit()) {
+            event.gameId = GameEvents.game();
+            event.die1 = die1;
+            event.die2 = die2;
+            event.payouts = payouts;
+            event.commit();
+        }
         return result;
     }
 
@@ -60,6 +83,17 @@ final class Board {
         settlement.placeOn(BOARD[hex - 1], posn);
     }
 
+    /** Upgrades whatever settlement is on HEX at position POSN to
+     * CITY, on every hex that shares POSN, in one step.
+     *
+     * @param city City that replaces the settlement.
+     * @param hex An integer that denotes which hex the settlement is on.
+     * @param posn Position of the settlement.
+     */
+    static void placeCity(City city, int hex, int posn) {
+        city.placeOver(BOARD[hex - 1], posn);
+    }
+
     /** Places a road on hex at side SIDE. */
     static void placeRoad(Road road, int hex, int side) {
         BOARD[hex - 1].placeRoad(road, side);
@@ -104,171 +138,324 @@ final class Board {
      */
     static void reset() {
         Collections.shuffle(RESOURCES);
+        layOut(RESOURCES, new Random());
+    }
+
+    /** Same as reset, but every random choice comes from SEED, so the
+     * same seed always gives the same board. */
+    static void reset(long seed) {
+        Random random = new Random(seed);
+        layOut(shuffled(random), random);
+    }
+
+    /** Returns the resources of hexes 1 to 19, in order, as reset(SEED)
+     * lays them out, where RANDOM is new Random(SEED). Then
+     * tokenLayout(RESOURCES, RANDOM) gives its tokens. Neither one
+     * touches the board, so a seeded board can be laid out elsewhere,
+     * such as in a CompactGame (See Perft.opening). */
+    static ArrayList<Resource> shuffled(Random random) {
+        ArrayList<Resource> resources = new ArrayList<>(RESOURCES);
+        resources.sort(Comparator.comparingInt(Resource::index));
+        Collections.shuffle(resources, random);
+        return resources;
+    }
+
+    /** Clears the board, puts RESOURCES on the hexes in order, and
+     * distributes the tokens using RANDOM. */
+    private static void layOut(ArrayList<Resource> resources, Random random) {
+        long start = EngineMetrics.ENABLED ? System.nanoTime() : 0;
+        GameEvents.Reset event = GameEvents.reset();
         clear();
         for (int i = 0; i < 19; i += 1) {
-            BOARD[i].setResource(RESOURCES.get(i));
+            BOARD[i].setResource(resources.get(i));
             if (BOARD[i].resource() == DESERT) {
                 BOARD[i].setNumber(0);
             }
         }
-        distributeTokens();
+        distributeTokens(resources, random);
+        if (EngineMetrics.ENABLED) {
+            EngineMetrics.RESETS.increment();
+            EngineMetrics.RESET_TIME.since(start);
+        }
+        commitReset(event, false);
     }
 
+    /** Fills in EVENT, if it isn't null, for the layout now on the
+     * board, which was GIVEN or random, and commits it. */
+    private static void commitReset(GameEvents.Reset event,
+                                    boolean given) {
+        if (event != null && event.shouldCommit()) {
+            event.gameId = GameEvents.game();
+            for (int i = 0; i < 19; i += 1) {
+                if (BOARD[i].resource() == DESERT) {
+                    event.desert = i + 1;
+                }
+            }
+            event.given = given;
+            event.commit();
+        }
+    }
 
-    /** Distributes the tokens in a random fashion
-     * starting from the center of the board. Note that although the
-     * process in which we do so is random, there is a certain
-     * algorithm/mechanism that we always follow when we distribute
-     * the tokens.
-     */
-    private static void distributeTokens() {
-        boolean clockwise = true;
-        int currToken = 17;
 
-        if (coinFlip() == 0) {
-            clockwise = false;
+    /** Clears the board and lays out RESOURCES and NUMBERS exactly as
+     * given, rather than at random. This is how a game that has been
+     * recorded or saved gets its board back.
+     *
+     * @param resources Resource of each hex, indexed from 0 to 18.
+     * @param numbers Number of each hex, indexed from 0 to 18.
+     */
+    static void reset(Resource[] resources, int[] numbers) {
+        long start = EngineMetrics.ENABLED ? System.nanoTime() : 0;
+        GameEvents.Reset event = GameEvents.reset();
+        clear();
+        for (int i = 0; i < 19; i += 1) {
+            BOARD[i].setResource(resources[i]);
+            BOARD[i].setNumber(numbers[i]);
         }
-
-        if (CENTER.resource() != DESERT) {
-            CENTER.setNumber(_tokens[currToken]);
-            currToken -= 1;
+        if (EngineMetrics.ENABLED) {
+            EngineMetrics.RESETS.increment();
+            EngineMetrics.RESET_TIME.since(start);
         }
+        commitReset(event, true);
+    }
 
-        int currMiddle = genRandom(0, 5);
+    /** Removes every piece and the robber from the board without
+     * returning the pieces to their players. Use this instead of clear
+     * when the pieces belong to a game that is being swapped out.
+     */
+    static void wipe() {
+        for (Hex currHex: BOARD) {
+            currHex.wipe();
+        }
+    }
 
+    /** Writes the board into BUF, using SAVED_SIZE bytes:
+     * one byte per hex holding its resource index (6 if unset) times
+     * 16 plus its number, one byte for the robber's hex, and then one
+     * byte for every point and every side of every hex. (See code)
+     */
+    static void save(ByteBuffer buf) {
+        for (Hex hex : BOARD) {
+            int resource = hex.hasResource() ? hex.resource().index() : 6;
+            buf.put((byte) (resource * 16 + hex.number()));
+        }
+        buf.put((byte) robber());
+        for (Hex hex : BOARD) {
+            for (int i = 0; i < 6; i += 1) {
+                Building building = hex.building(i);
+                buf.put((building == null) ? 0 : code(building.color(),
+                        building instanceof City, building.player() != null));
+            }
+        }
+        for (Hex hex : BOARD) {
+            for (int i = 0; i < 6; i += 1) {
+                Road road = hex.getRoad(i);
+                buf.put((road == null) ? 0
+                        : code(road.color(), false, road.player() != null));
+            }
+        }
+    }
 
-        for (int i = 0; i < 6; i += 1) {
-            if (MIDDLE.get(currMiddle).resource() != DESERT) {
-                MIDDLE.get(currMiddle).setNumber(_tokens[currToken]);
-                currToken -= 1;
+    /** Replaces whatever is on the board with the board saved in BUF.
+     * Pieces are taken from the unplaced pieces of the player in
+     * PLAYERS with the same color, and each point and side is filled in
+     * directly rather than by placing pieces one at a time. Any pieces
+     * the players think they have placed are picked up first, so that
+     * the same players can be loaded again later.
+     * Whatever was on the board before is wiped, not returned.
+     */
+    static void load(ByteBuffer buf, Player[] players) {
+        wipe();
+        for (Player player : players) {
+            if (player != null) {
+                player.pickUpPieces();
             }
-            if (clockwise) {
-                currMiddle = (currMiddle + 1) % 6;
-            } else {
-                currMiddle -= 1;
-                if (currMiddle < 0) {
-                    currMiddle += 6;
+        }
+        for (Hex hex : BOARD) {
+            int packed = buf.get();
+            hex.setResource((packed / 16 == 6) ? null
+                    : Resource.get(packed / 16));
+            hex.setNumber(packed % 16);
+        }
+        int robber = buf.get();
+        if (robber != 0) {
+            moveRobber(robber);
+        }
+        for (Hex hex : BOARD) {
+            for (int i = 0; i < 6; i += 1) {
+                int code = buf.get();
+                if (code != 0 && !hex.hasBuilding(i)) {
+                    Color color = Color.get(code & 3);
+                    Player owner = owner(players, color, code);
+                    Building building;
+                    if ((code & 4) != 0) {
+                        building = (owner == null) ? new City(color)
+                                : owner.restoreCity();
+                    } else {
+                        building = (owner == null) ? new Settlement(color)
+                                : owner.restoreSettlement();
+                    }
+                    building.restoreOn(hex, i);
                 }
             }
         }
-
-        Hex outerStarting;
-
-        if (clockwise) {
-            outerStarting
-                    = clockwiseOuter(MIDDLE.get(currMiddle));
-        } else {
-            outerStarting
-                    = counterClockwiseOuter(MIDDLE.get(currMiddle));
+        for (Hex hex : BOARD) {
+            for (int i = 0; i < 6; i += 1) {
+                int code = buf.get();
+                if (code != 0 && !hex.hasRoad(i)) {
+                    Color color = Color.get(code & 3);
+                    Player owner = owner(players, color, code);
+                    hex.placeRoad((owner == null) ? new Road(color)
+                            : owner.restoreRoad(), i);
+                }
+            }
         }
+        for (Player player : players) {
+            if (player != null) {
+                player.recount();
+            }
+        }
+    }
 
-        int currOuter = OUTER.indexOf(outerStarting);
+    /** Returns the byte that save writes for a piece of COLOR, which is
+     * a city if CITY, and belongs to a player if OWNED. */
+    private static byte code(Color color, boolean city, boolean owned) {
+        return (byte) (16 | color.index() | (city ? 4 : 0) | (owned ? 8 : 0));
+    }
 
-        for (int i = 0; i < 12; i += 1) {
-            if (OUTER.get(currOuter).resource() != DESERT) {
-                OUTER.get(currOuter).setNumber(_tokens[currToken]);
-                currToken -= 1;
-            }
-            if (clockwise) {
-                currOuter = (currOuter + 1) % 12;
-            } else {
-                currOuter -= 1;
-                if (currOuter < 0) {
-                    currOuter += 12;
+    /** Returns the player in PLAYERS with COLOR if CODE says that the
+     * piece belongs to a player, or null. */
+    private static Player owner(Player[] players, Color color, int code) {
+        if ((code & 8) != 0) {
+            for (Player player : players) {
+                if (player != null && player.color() == color) {
+                    return player;
                 }
             }
         }
+        return null;
     }
 
-    /** Helper for distribute tokens. Returns the hex that
-     * follows after the middle hex.
-     */
-    private static Hex clockwiseOuter(Hex hex) {
-        assert MIDDLE.contains(hex) : "Invalid hex!";
-
-        if (hex == BOARD[4]) {
-            return BOARD[3];
-        } else if (hex == BOARD[5]) {
-            return BOARD[1];
-        } else if (hex == BOARD[10]) {
-            return BOARD[6];
-        } else if (hex == BOARD[14]) {
-            return BOARD[15];
-        } else if (hex == BOARD[13]) {
-            return BOARD[17];
-        } else {
-            return BOARD[12];
+    /** Number of bytes that save writes. */
+    static final int SAVED_SIZE = 19 + 1 + 19 * 6 * 2;
+
+    /** Moves the robber onto HEX, taking it off of every other hex. */
+    static void moveRobber(int hex) {
+        GameEvents.Robber event = GameEvents.robber();
+        if (event != null) {
+            event.from = robber();
+        }
+        for (int i = 0; i < 19; i += 1) {
+            BOARD[i].setRobber(i == hex - 1);
         }
+        if (event != null && event.shouldCommit()) {
+            event.gameId = GameEvents.game();
+            event.to = hex;
+            event.commit();
+        }
+    }
+
+    /** Returns the hex that the robber is on, or 0 if it isn't on
+     * the board. */
+    static int robber() {
+        for (int i = 0; i < 19; i += 1) {
+            if (BOARD[i].hasRobber()) {
+                return i + 1;
+            }
+        }
+        return 0;
     }
 
-    /** Helper for distribute tokens. Returns the hex that
-     * follows after the middle hex when we go counterclockwise
-     * while setting up the board.
+    /** Distributes the tokens in a random fashion
+     * starting from the center of the board. Note that although the
+     * process in which we do so is random, there is a certain
+     * algorithm/mechanism that we always follow when we distribute
+     * the tokens, so every layout it can give is already worked out
+     * in TokenLayouts. Every random choice comes from RANDOM, and
+     * RESOURCES are the resources on the hexes, in order.
      */
-    private static Hex counterClockwiseOuter(Hex hex) {
-        assert MIDDLE.contains(hex) : "Invalid hex!";
-        if (hex == BOARD[4]) {
-            return BOARD[1];
-        } else if (hex == BOARD[5]) {
-            return BOARD[6];
-        } else if (hex == BOARD[10]) {
-            return BOARD[15];
-        } else if (hex == BOARD[14]) {
-            return BOARD[17];
-        } else if (hex == BOARD[13]) {
-            return BOARD[12];
-        } else {
-            return BOARD[3];
+    private static void distributeTokens(List<Resource> resources,
+                                         Random random) {
+        int layout = tokenLayout(resources, random);
+        for (int i = 0; i < 19; i += 1) {
+            BOARD[i].setNumber(TokenLayouts.number(layout, i));
         }
     }
 
+    /** Returns the token layout (See TokenLayouts) for a board whose
+     * hexes hold RESOURCES, in order, picking which way the spiral
+     * turns and where it starts using RANDOM. */
+    static int tokenLayout(List<Resource> resources, Random random) {
+        boolean clockwise = random.nextInt(2) != 0;
+        int start = random.nextInt(6);
+        return TokenLayouts.index(resources.indexOf(DESERT), clockwise,
+                start);
+    }
+
     /** Returns a string representation of the board. */
     public static String dump() {
+        long start = EngineMetrics.ENABLED ? System.nanoTime() : 0;
+        String[] hexes = new String[19];
+        for (int i = 0; i < 19; i += 1) {
+            hexes[i] = BOARD[i].dump();
+        }
+        String answer = dump(hexes);
+        if (EngineMetrics.ENABLED) {
+            EngineMetrics.DUMPS.increment();
+            EngineMetrics.DUMP_TIME.since(start);
+        }
+        return answer;
+    }
+
+    /** Returns a string representation of a board whose hexes look
+     * like HEXES, where HEXES[i] is what Hex.dump gives for hex i + 1.
+     */
+    static String dump(String[] hexes) {
         String[] hex1, hex2, hex3;
         String sixBlanks = "      ";
         ArrayList<String> lines = new ArrayList<>();
-        hex1 = BOARD[0].dump().split("\\n");
-        hex2 = BOARD[1].dump().split("\\n");
-        hex3 = BOARD[2].dump().split("\\n");
+        hex1 = hexes[0].split("\\n");
+        hex2 = hexes[1].split("\\n");
+        hex3 = hexes[2].split("\\n");
         for (int i = 0; i < 5; i += 1) {
             lines.add(sixBlanks + sixBlanks + hex1[i].substring(0, 12)
                     + hex2[i].substring(0, 12) + hex3[i]);
         }
         String[] hex4, hex5, hex6, hex7;
-        hex4 = BOARD[3].dump().split("\\n");
-        hex5 = BOARD[4].dump().split("\\n");
-        hex6 = BOARD[5].dump().split("\\n");
-        hex7 = BOARD[6].dump().split("\\n");
+        hex4 = hexes[3].split("\\n");
+        hex5 = hexes[4].split("\\n");
+        hex6 = hexes[5].split("\\n");
+        hex7 = hexes[6].split("\\n");
         for (int i = 1; i < 5; i += 1) {
             lines.add(sixBlanks + hex4[i].substring(0, 12)
                     + hex5[i].substring(0, 12) + hex6[i].substring(0, 12)
                     + hex7[i]);
         }
         String[] hex8, hex9, hex10, hex11, hex12;
-        hex8 = BOARD[7].dump().split("\\n");
-        hex9 = BOARD[8].dump().split("\\n");
-        hex10 = BOARD[9].dump().split("\\n");
-        hex11 = BOARD[10].dump().split("\\n");
-        hex12 = BOARD[11].dump().split("\\n");
+        hex8 = hexes[7].split("\\n");
+        hex9 = hexes[8].split("\\n");
+        hex10 = hexes[9].split("\\n");
+        hex11 = hexes[10].split("\\n");
+        hex12 = hexes[11].split("\\n");
         for (int i = 1; i < 5; i += 1) {
             lines.add(hex8[i].substring(0, 12)
                     + hex9[i].substring(0, 12) + hex10[i].substring(0, 12)
                     + hex11[i].substring(0, 12) + hex12[i]);
         }
         String[] hex13, hex14, hex15, hex16;
-        hex13 = BOARD[12].dump().split("\\n");
-        hex14 = BOARD[13].dump().split("\\n");
-        hex15 = BOARD[14].dump().split("\\n");
-        hex16 = BOARD[15].dump().split("\\n");
+        hex13 = hexes[12].split("\\n");
+        hex14 = hexes[13].split("\\n");
+        hex15 = hexes[14].split("\\n");
+        hex16 = hexes[15].split("\\n");
         for (int i = 1; i < 5; i += 1) {
             lines.add(sixBlanks + hex13[i].substring(0, 12)
                     + hex14[i].substring(0, 12) + hex15[i].substring(0, 12)
                     + hex16[i]);
         }
         String[] hex17, hex18, hex19;
-        hex17 = BOARD[16].dump().split("\\n");
-        hex18 = BOARD[17].dump().split("\\n");
-        hex19 = BOARD[18].dump().split("\\n");
+        hex17 = hexes[16].split("\\n");
+        hex18 = hexes[17].split("\\n");
+        hex19 = hexes[18].split("\\n");
         for (int i = 1; i < 7; i += 1) {
             lines.add(sixBlanks + sixBlanks + hex17[i].substring(0, 12)
                     + hex18[i].substring(0, 12) + hex19[i]);
@@ -355,6 +542,7 @@ final class Board {
         }
 
         get(12).setSouthWest(get(16));
+        get(13).setEast(get(14));
         get(13).setSouthEast(get(17));
 
         for (int i = 14; i < 16; i += 1) {
@@ -368,40 +556,6 @@ final class Board {
         get(18).setEast(get(19));
     }
 
-    /** The tokens. There are 18 tokens listed alphabetically
-     * in increasing order. For example, index 0 gives
-     * the token A.
-     * By indexing you return the unique probability number
-     * associated with the token.
-     * In the following list, I have the index to the
-     * very left column, followed by the proper probability
-     * numbers in the very right.
-     *
-     * Credit: https://boardgames.stackexchange.com/questions
-     * /2740/distribution-of-tokens-in-standard-4-player-catan
-     *
-     * 00, A = 5
-     * 01, B = 2
-     * 02, C = 6
-     * 03, D = 3
-     * 04, E = 8
-     * 05, F = 10
-     * 06, G = 9
-     * 07, H = 12
-     * 08, I = 11
-     * 09, J = 4
-     * 10, K = 8
-     * 11, L = 10
-     * 12, M = 9
-     * 13, N = 4
-     * 14, O = 5
-     * 15, P = 6
-     * 16, Q = 3
-     * 17, R = 11. */
-    private static final int[] _tokens
-            = new int[] {5, 2, 6, 3, 8, 10, 9, 12, 11,
-            4, 8, 10, 9, 4, 5, 6, 3, 11};
-
     /** Returns the unique hex by indexing with its axial
      * coordinates.
      * Returns null if the hex doesn't exist.
@@ -413,47 +567,6 @@ final class Board {
                     {BOARD[1], BOARD[5], BOARD[10], BOARD[15], null},
                     {BOARD[2], BOARD[6], BOARD[11], null, null} };
 
-    /** The centermost hex. */
-    private static final Hex CENTER = get(0, 0);
-
-    /** List of hexes one step away from the center, enumerated
-     * clockwise, starting from hex 5. Keep this in order!
-     */
-    private static final ArrayList<Hex> MIDDLE
-            = new ArrayList<>(6);
-
-    /** Sets up MIDDLE. */
-    static {
-        MIDDLE.add(get(0, -1));
-        MIDDLE.add(get(1, -1));
-        MIDDLE.add(get(1, 0));
-        MIDDLE.add(get(0, 1));
-        MIDDLE.add(get(-1, 1));
-        MIDDLE.add(get(-1, 0));
-    }
-
-    /** List of hexes two steps away from the center, enumerated
-     * clockwise, starting from hex 1.
-     */
-    private static final ArrayList<Hex> OUTER
-            = new ArrayList<>(12);
-
-    /** Sets up OUTER. */
-    static {
-        OUTER.add(get(0, -2));
-        OUTER.add(get(1, -2));
-        OUTER.add(get(2, -2));
-        OUTER.add(get(2, -1));
-        OUTER.add(get(2, 0));
-        OUTER.add(get(1, 1));
-        OUTER.add(get(0, 2));
-        OUTER.add(get(-1, 2));
-        OUTER.add(get(-2, 2));
-        OUTER.add(get(-2, 1));
-        OUTER.add(get(-2, 0));
-        OUTER.add(get(-1, -1));
-    }
-
     /** The resource Desert. */
     private static Resource DESERT = Resource.desert();
 
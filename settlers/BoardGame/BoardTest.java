@@ -173,4 +173,28 @@ public class BoardTest {
         Board.placeSettlement(new Settlement(Color.red()), 12, 5);
         System.out.println(Board.dump());
     }
+
+    @Test
+    public void neighborsTest() {
+        assertSame(Board.get(14), Board.get(13).east());
+        assertSame(Board.get(13), Board.get(14).west());
+        for (Hex hex : Board.hexList()) {
+            for (int side = 0; side < 6; side += 1) {
+                Hex adj = hex.adjHex(side);
+                if (adj != null) {
+                    assertSame(hex, adj.adjHex((side + 3) % 6));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void seededResetTest() {
+        Board.reset(42);
+        String first = Board.dump();
+        Board.reset();
+        Board.reset(42);
+        assertEquals(first, Board.dump());
+    }
+
 }
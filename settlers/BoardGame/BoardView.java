@@ -0,0 +1,160 @@
+/** An immutable snapshot of the board at one moment.
+ *
+ * Board, Hex and the pieces on them are not thread-safe, so only the
+ * thread that owns a game may touch them. That thread captures a view
+ * after every action it commits and publishes it (See Game.view).
+ * Any number of other threads, such as spectators, can then render or
+ * study the view without locks, and without ever blocking the game.
+ *
+ * Everything about the board lives in a single array of bytes, so a
+ * view takes up a few hundred bytes. For each hex, there are CELL
+ * bytes, in this order:
+ * 0       resource index (See Resource.index), or NONE if unset
+ * 1       number
+ * 2 - 7   building on each point: 0 if empty, 1 + color index for a
+ *         settlement, or 5 + color index for a city
+ * 8 - 13  road on each side: 0 if empty, or 1 + color index
+ * @author John Angeles
+ */
+final class BoardView {
+
+    /** Returns a view of the board as it is right now, labeled with
+     * VERSION. Only the thread that owns the board may call this.
+     */
+    static BoardView capture(long version) {
+        byte[] cells = new byte[19 * CELL];
+        int robber = 0;
+        Hex[] hexes = Board.hexList();
+        for (int i = 0; i < 19; i += 1) {
+            Hex hex = hexes[i];
+            int base = i * CELL;
+            cells[base] = (byte) (hex.hasResource()
+                    ? hex.resource().index() : NONE);
+            cells[base + 1] = (byte) hex.number();
+            for (int j = 0; j < 6; j += 1) {
+                Building building = hex.building(j);
+                if (building != null) {
+                    int code = 1 + building.color().index();
+                    if (building instanceof City) {
+                        code += 4;
+                    }
+                    cells[base + 2 + j] = (byte) code;
+                }
+                Road road = hex.getRoad(j);
+                if (road != null) {
+                    cells[base + 8 + j] = (byte) (1 + road.color().index());
+                }
+            }
+            if (hex.hasRobber()) {
+                robber = i + 1;
+            }
+        }
+        return new BoardView(version, cells, robber);
+    }
+
+    /** Creates a view labeled VERSION that takes ownership of CELLS.
+     * ROBBER is the hex the robber is on, or 0. */
+    private BoardView(long version, byte[] cells, int robber) {
+        _version = version;
+        _cells = cells;
+        _robber = robber;
+    }
+
+    /** Returns my version. Views published later by the same game
+     * have higher versions. */
+    long version() {
+        return _version;
+    }
+
+    /** Returns the resource of HEX, or null if it had none.
+     * @param hex From 1-19
+     */
+    Resource resource(int hex) {
+        int index = _cells[(hex - 1) * CELL];
+        return (index == NONE) ? null : Resource.get(index);
+    }
+
+    /** Returns the number of HEX. */
+    int number(int hex) {
+        return _cells[(hex - 1) * CELL + 1];
+    }
+
+    /** Returns the hex that the robber was on, or 0 if none. */
+    int robber() {
+        return _robber;
+    }
+
+    /** Returns true iff HEX had a building in POSN. */
+    boolean hasBuilding(int hex, int posn) {
+        return buildingCode(hex, posn) != 0;
+    }
+
+    /** Returns true iff HEX had a city in POSN. */
+    boolean hasCity(int hex, int posn) {
+        return buildingCode(hex, posn) > 4;
+    }
+
+    /** Returns the color of the building on HEX in POSN, or null. */
+    Color buildingColor(int hex, int posn) {
+        int code = buildingCode(hex, posn);
+        return (code == 0) ? null : Color.get((code - 1) % 4);
+    }
+
+    /** Returns the color of the road on HEX at SIDE, or null. */
+    Color roadColor(int hex, int side) {
+        int code = _cells[(hex - 1) * CELL + 8 + side];
+        return (code == 0) ? null : Color.get(code - 1);
+    }
+
+    /** Returns what Board.dump returned when I was captured. */
+    String dump() {
+        long start = EngineMetrics.ENABLED ? System.nanoTime() : 0;
+        String[] hexes = new String[19];
+        String[] buildings = new String[6];
+        String[] roads = new String[6];
+        for (int hex = 1; hex <= 19; hex += 1) {
+            for (int i = 0; i < 6; i += 1) {
+                Color color = buildingColor(hex, i);
+                if (color == null) {
+                    buildings[i] = "   ";
+                } else if (hasCity(hex, i)) {
+                    buildings[i] = "!" + color + "!";
+                } else {
+                    buildings[i] = " " + color + " ";
+                }
+                color = roadColor(hex, i);
+                roads[i] = (color == null) ? " "
+                        : color.toString().toLowerCase();
+            }
+            hexes[hex - 1] = Hex.dump(hex, number(hex), resource(hex),
+                    buildings, roads);
+        }
+        String answer = Board.dump(hexes);
+        if (EngineMetrics.ENABLED) {
+            EngineMetrics.DUMPS.increment();
+            EngineMetrics.DUMP_TIME.since(start);
+        }
+        return answer;
+    }
+
+    /** Returns the code of the building on HEX in POSN. */
+    private int buildingCode(int hex, int posn) {
+        return _cells[(hex - 1) * CELL + 2 + posn];
+    }
+
+    /** Number of bytes for each hex. */
+    private static final int CELL = 14;
+
+    /** Resource index of a hex that has no resource. */
+    private static final int NONE = -1;
+
+    /** My version. */
+    private final long _version;
+
+    /** Everything about the board, CELL bytes per hex. */
+    private final byte[] _cells;
+
+    /** The hex that the robber was on, or 0. */
+    private final int _robber;
+
+}
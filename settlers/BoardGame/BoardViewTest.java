@@ -0,0 +1,49 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Set of tests for board views.
+ * @author John Angeles
+ */
+public class BoardViewTest {
+
+    @Test
+    public void captureTest() {
+        Board.reset();
+        Player alice = new Player(Color.white(), "Alice");
+        Board.placeSettlement(new Settlement(Color.white(), alice), 1, 2);
+        Board.placeRoad(new Road(Color.red()), 9, 0);
+        BoardView view = BoardView.capture(1);
+        assertEquals(Board.dump(), view.dump());
+        assertEquals(Board.get(5).resource(), view.resource(5));
+        assertEquals(Board.get(5).number(), view.number(5));
+        assertEquals(Color.white(), view.buildingColor(5, 0));
+        assertEquals(Color.red(), view.roadColor(5, 3));
+        assertFalse(view.hasCity(1, 2));
+        assertNull(view.buildingColor(1, 3));
+    }
+
+    @Test
+    public void immutableTest() {
+        Board.reset();
+        BoardView view = BoardView.capture(1);
+        String before = view.dump();
+        Board.placeSettlement(new Settlement(Color.black()), 9, 0);
+        assertEquals(before, view.dump());
+        assertFalse(view.hasBuilding(9, 0));
+    }
+
+    @Test
+    public void gameViewTest() {
+        Game game = new Game(1);
+        assertNull(game.view());
+        game.handle("start");
+        BoardView first = game.view();
+        assertEquals(Board.dump(), first.dump());
+        for (String name : new String[] {"A", "B", "C", "D"}) {
+            game.handle(name);
+        }
+        game.handle("roll");
+        assertTrue(game.view().version() > first.version());
+    }
+
+}
@@ -1,4 +1,4 @@
-import java.util.ArrayList;
+import java.util.List;
 
 /** A building can either be a settlement or a city a player owns.
  *
@@ -52,14 +52,42 @@ abstract class Building {
         storeHexes(hex, posn);
     }
 
+    /** Places me on HEX on position POSN in place of the building that
+     * is already there, in one step. I take over the hexes that the old
+     * building was adjacent to.
+     * @param hex Hex to place me on
+     * @param posn Position of the building I replace
+     */
+    void placeOver(Hex hex, int posn) {
+        Building old = hex.building(posn);
+        assert old != null : "Nothing to replace!";
+        hex.replaceBuilding(posn, this);
+        if (old._adjHexes != null) {
+            _adjHexes = old._adjHexes;
+        } else {
+            storeHexes(hex, posn);
+        }
+    }
+
+    /** Places me on HEX on position POSN, which must be empty, and
+     * on the hexes that share POSN, in one step. Used for restoring
+     * a saved board.
+     */
+    void restoreOn(Hex hex, int posn) {
+        assert !hex.hasBuilding(posn) : "Already a building there!";
+        hex.replaceBuilding(posn, this);
+        storeHexes(hex, posn);
+        setPlacedTo(true);
+    }
+
     /** Assumes placeOn has been called. Stores the hex's adjacent hexes
      * on POSN. */
     private void storeHexes(Hex hex, int posn) {
         _adjHexes = hex.adjacentHexes(posn);
     }
 
-    /** Returns an ArrayList of hexes that I am next to. */
-    ArrayList<Hex> adjHexes() {
+    /** Returns an unmodifiable list of hexes that I am next to. */
+    List<Hex> adjHexes() {
         return _adjHexes;
     }
 
@@ -77,7 +105,7 @@ abstract class Building {
     private Player _myOwner;
 
     /** Set of hexes that I am adjacent to. */
-    private ArrayList<Hex> _adjHexes;
+    private List<Hex> _adjHexes;
 
     /** True if I am placed on the board, false otherwise. */
     private boolean _placed;
@@ -1,12 +1,11 @@
 /** A generic card that is either a resource card
  * or a development card.
+ *
+ * A card doesn't know who holds it. Every card of a resource is the
+ * same shared card (See ResourceCard.make), so whose a card is lives
+ * only in the hand of the player holding it.
  * @author John Angeles
  */
 abstract class Card {
 
-    /** The player that owns me, or null if I am not owned by
-     * anyone.
-     */
-    private Player _owner;
-
 }
@@ -36,6 +36,17 @@ class Color {
         return _colors.get(3);
     }
 
+    /** Returns the color with INDEX, where 0 = black, 1 = white,
+     * 2 = orange and 3 = red. */
+    static Color get(int index) {
+        return _colors.get(index);
+    }
+
+    /** Returns my index. (See get) */
+    int index() {
+        return _colors.indexOf(this);
+    }
+
     /** All of the unique colors. */
     private static ArrayList<Color> _colors
             = new ArrayList<>(4);
@@ -0,0 +1,441 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/** A whole game of up to four players, packed into a few small
+ * arrays of numbers instead of Hex, Player and piece objects.
+ *
+ * Points and sides are numbered once each, as vertices and edges (See
+ * Topology), so a piece is a single byte no matter how many hexes it
+ * touches. Hands are packed hands (See Hand), and each player's
+ * unplaced pieces are just counts. A compact game takes about 300
+ * bytes, compared to tens of kilobytes for the same game as objects.
+ *
+ * Unlike Player, I don't check whether a placement follows the rules;
+ * I only check that it is paid for and the spot is empty. Ask
+ * isValidRoad and isValidSettlement first, which give the same answers
+ * as Player's methods of the same names.
+ *
+ * Hexes are indexed from 0 to 18 and players from 0 to 3.
+ * @author John Angeles
+ */
+final class CompactGame {
+
+    /** Creates a game with a blank board where every player has all of
+     * their pieces unplaced. */
+    CompactGame() {
+        Arrays.fill(_hexes, (byte) (6 * 16));
+        for (int p = 0; p < 4; p += 1) {
+            _pools[p * 3] = 15;
+            _pools[p * 3 + 1] = 5;
+            _pools[p * 3 + 2] = 4;
+        }
+        _robber = -1;
+    }
+
+    /** Returns a compact copy of the game on Board, played by PLAYERS
+     * (in turn order) where it is player TURN's turn. Pieces that don't
+     * belong to any of PLAYERS are left out. */
+    static CompactGame capture(Player[] players, int turn) {
+        CompactGame game = new CompactGame();
+        Hex[] hexes = Board.hexList();
+        for (int i = 0; i < 19; i += 1) {
+            Hex hex = hexes[i];
+            int resource = hex.hasResource() ? hex.resource().index() : 6;
+            game._hexes[i] = (byte) (resource * 16 + hex.number());
+            if (hex.hasRobber()) {
+                game._robber = (byte) i;
+            }
+            for (int j = 0; j < 6; j += 1) {
+                Building building = hex.building(j);
+                int owner = indexOf(players,
+                        (building == null) ? null : building.player());
+                int v = Topology.vertex(i, j);
+                if (owner >= 0 && game._vertices[v] == 0) {
+                    boolean city = building instanceof City;
+                    game._vertices[v] = (byte) (1 + owner + (city ? 4 : 0));
+                    game._pools[owner * 3 + (city ? 2 : 1)] -= 1;
+                }
+                Road road = hex.getRoad(j);
+                owner = indexOf(players, (road == null) ? null : road.player());
+                int e = Topology.edge(i, j);
+                if (owner >= 0 && game._edges[e] == 0) {
+                    game._edges[e] = (byte) (1 + owner);
+                    game._pools[owner * 3] -= 1;
+                }
+            }
+        }
+        for (int p = 0; p < 4 && p < players.length; p += 1) {
+            if (players[p] != null) {
+                game._hands[p] = players[p].packedHand();
+            }
+        }
+        game._turn = (byte) turn;
+        return game;
+    }
+
+    /** Returns the index of PLAYER in PLAYERS, or -1. */
+    private static int indexOf(Player[] players, Player player) {
+        for (int i = 0; player != null && i < players.length; i += 1) {
+            if (players[i] == player) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns a copy of me that shares nothing with me. */
+    CompactGame copy() {
+        CompactGame copy = new CompactGame();
+        copyInto(copy);
+        return copy;
+    }
+
+    /** Makes OTHER into a copy of me, without allocating anything. */
+    void copyInto(CompactGame other) {
+        System.arraycopy(_hexes, 0, other._hexes, 0, _hexes.length);
+        System.arraycopy(_vertices, 0, other._vertices, 0, _vertices.length);
+        System.arraycopy(_edges, 0, other._edges, 0, _edges.length);
+        System.arraycopy(_hands, 0, other._hands, 0, _hands.length);
+        System.arraycopy(_pools, 0, other._pools, 0, _pools.length);
+        other._robber = _robber;
+        other._turn = _turn;
+    }
+
+    /** Makes OTHER into a copy of me with my board moved around: what
+     * is on hex h, vertex v and edge e of mine goes onto hex HEXES[h],
+     * vertex VERTICES[v] and edge EDGES[e] of OTHER. Hands, unplaced
+     * pieces and the turn are copied as they are. OTHER must not be
+     * me. (See Symmetry) */
+    void permuteInto(CompactGame other, int[] hexes, int[] vertices,
+                     int[] edges) {
+        assert other != this : "Can't permute in place!";
+        for (int h = 0; h < _hexes.length; h += 1) {
+            other._hexes[hexes[h]] = _hexes[h];
+        }
+        for (int v = 0; v < _vertices.length; v += 1) {
+            other._vertices[vertices[v]] = _vertices[v];
+        }
+        for (int e = 0; e < _edges.length; e += 1) {
+            other._edges[edges[e]] = _edges[e];
+        }
+        System.arraycopy(_hands, 0, other._hands, 0, _hands.length);
+        System.arraycopy(_pools, 0, other._pools, 0, _pools.length);
+        other._robber = (byte) ((_robber < 0) ? -1 : hexes[_robber]);
+        other._turn = _turn;
+    }
+
+    /** Compares my board to OTHER's: first the hexes, then the robber,
+     * then the vertices and then the edges, each as a list of bytes.
+     * Returns a negative number, zero or a positive number as mine
+     * comes before, is the same as, or comes after OTHER's. Hands,
+     * unplaced pieces and the turn are not compared. */
+    int compareBoard(CompactGame other) {
+        int answer = Arrays.compare(_hexes, other._hexes);
+        if (answer == 0) {
+            answer = Integer.compare(_robber, other._robber);
+        }
+        if (answer == 0) {
+            answer = Arrays.compare(_vertices, other._vertices);
+        }
+        if (answer == 0) {
+            answer = Arrays.compare(_edges, other._edges);
+        }
+        return answer;
+    }
+
+    /** Sets HEX to produce RESOURCE (or nothing, if null) on NUMBER. */
+    void setHex(int hex, Resource resource, int number) {
+        int index = (resource == null) ? 6 : resource.index();
+        _hexes[hex] = (byte) (index * 16 + number);
+    }
+
+    /** Returns the resource of HEX, or null if it has none. */
+    Resource resource(int hex) {
+        int index = _hexes[hex] / 16;
+        return (index == 6) ? null : Resource.get(index);
+    }
+
+    /** Returns the number of HEX. */
+    int number(int hex) {
+        return _hexes[hex] % 16;
+    }
+
+    /** Returns the hex the robber is on, or -1. */
+    int robber() {
+        return _robber;
+    }
+
+    /** Moves the robber onto HEX. */
+    void moveRobber(int hex) {
+        _robber = (byte) hex;
+    }
+
+    /** Returns the index of the player whose turn it is. */
+    int turn() {
+        return _turn;
+    }
+
+    /** Passes the turn to the next player. */
+    void endTurn() {
+        _turn = (byte) ((_turn + 1) % 4);
+    }
+
+    /** Returns the player with a building on VERTEX, or -1. */
+    int owner(int vertex) {
+        return (_vertices[vertex] - 1) % 4;
+    }
+
+    /** Returns true iff there is a city on VERTEX. */
+    boolean isCity(int vertex) {
+        return _vertices[vertex] > 4;
+    }
+
+    /** Returns the player with a road on EDGE, or -1. */
+    int roadOwner(int edge) {
+        return _edges[edge] - 1;
+    }
+
+    /** Returns PLAYER's packed hand. (See Hand) */
+    long hand(int player) {
+        return _hands[player];
+    }
+
+    /** Gives PLAYER the cards in the packed hand CARDS. (See Hand.add) */
+    void give(int player, long cards) {
+        _hands[player] = Hand.add(_hands[player], cards);
+    }
+
+    /** Returns the number of roads PLAYER has yet to place. */
+    int roadsLeft(int player) {
+        return _pools[player * 3];
+    }
+
+    /** Returns the number of settlements PLAYER has yet to place. */
+    int settlementsLeft(int player) {
+        return _pools[player * 3 + 1];
+    }
+
+    /** Returns the number of cities PLAYER has yet to place. */
+    int citiesLeft(int player) {
+        return _pools[player * 3 + 2];
+    }
+
+    /** Returns PLAYER's victory points from buildings. */
+    int victoryPoints(int player) {
+        return (5 - settlementsLeft(player)) + 2 * (4 - citiesLeft(player));
+    }
+
+    /** Has PLAYER build a road on EDGE, paying for it. Returns false,
+     * changing nothing, if EDGE is taken or PLAYER can't pay or has no
+     * roads left. */
+    boolean buildRoad(int player, int edge) {
+        if (_edges[edge] != 0 || _pools[player * 3] == 0
+                || !Hand.covers(_hands[player], Hand.ROAD)) {
+            return false;
+        }
+        _hands[player] -= Hand.ROAD;
+        _pools[player * 3] -= 1;
+        _edges[edge] = (byte) (1 + player);
+        return true;
+    }
+
+    /** Has PLAYER build a settlement on VERTEX, paying for it. Returns
+     * false, changing nothing, if VERTEX is taken or PLAYER can't pay
+     * or has no settlements left. */
+    boolean buildSettlement(int player, int vertex) {
+        if (_vertices[vertex] != 0 || _pools[player * 3 + 1] == 0
+                || !Hand.covers(_hands[player], Hand.SETTLEMENT)) {
+            return false;
+        }
+        _hands[player] -= Hand.SETTLEMENT;
+        _pools[player * 3 + 1] -= 1;
+        _vertices[vertex] = (byte) (1 + player);
+        return true;
+    }
+
+    /** Has PLAYER upgrade its settlement on VERTEX to a city, paying
+     * for it. Returns false, changing nothing, if there is no such
+     * settlement or PLAYER can't pay or has no cities left. */
+    boolean buildCity(int player, int vertex) {
+        if (_vertices[vertex] != 1 + player || _pools[player * 3 + 2] == 0
+                || !Hand.covers(_hands[player], Hand.CITY)) {
+            return false;
+        }
+        _hands[player] -= Hand.CITY;
+        _pools[player * 3 + 2] -= 1;
+        _pools[player * 3 + 1] += 1;
+        _vertices[vertex] = (byte) (5 + player);
+        return true;
+    }
+
+    /** Pays out resources for a roll of ROLL: every building next to a
+     * hex with that number, other than the robber's hex, gives its
+     * player one card, or two for a city, up to Hand.MAX_COUNT. */
+    void produce(int roll) {
+        for (int hex = 0; hex < 19; hex += 1) {
+            int packed = _hexes[hex];
+            if (packed % 16 != roll || hex == _robber || packed / 16 > 4) {
+                continue;
+            }
+            long unit = Hand.unit(packed / 16);
+            for (int posn = 0; posn < 6; posn += 1) {
+                int code = _vertices[Topology.VERTEX[hex * 6 + posn]];
+                if (code != 0) {
+                    int player = (code - 1) % 4;
+                    _hands[player] = Hand.add(_hands[player],
+                            (code > 4) ? 2 * unit : unit);
+                }
+            }
+        }
+    }
+
+    /** Has PLAYER give the packed hand GIVE to PARTNER in exchange for
+     * WANT. Returns false, changing nothing, if either of them doesn't
+     * have the cards. */
+    boolean trade(int player, int partner, long give, long want) {
+        if (!Hand.covers(_hands[player], give)
+                || !Hand.covers(_hands[partner], want)) {
+            return false;
+        }
+        _hands[player] = Hand.swap(_hands[player], give, want);
+        _hands[partner] = Hand.swap(_hands[partner], want, give);
+        return true;
+    }
+
+    /** Returns true iff PLAYER may put a road on SIDE of HEX, by the
+     * same rules as Player.isValidRoad, which only looks at HEX. */
+    boolean isValidRoad(int player, int hex, int side) {
+        int base = hex * 6;
+        int left = Topology.EDGE[base + (side + 5) % 6];
+        int right = Topology.EDGE[base + (side + 1) % 6];
+        int leftB = _vertices[Topology.VERTEX[base + side]];
+        int rightB = _vertices[Topology.VERTEX[base + (side + 1) % 6]];
+        boolean hasAdjLRoad = _edges[left] == 1 + player
+                && (leftB == 0 || (leftB - 1) % 4 == player);
+        boolean hasAdjRRoad = _edges[right] == 1 + player
+                && (rightB == 0 || (rightB - 1) % 4 == player);
+        return (hasAdjLRoad || hasAdjRRoad)
+                && _edges[Topology.EDGE[base + side]] == 0;
+    }
+
+    /** Returns true iff PLAYER may put a settlement on POSN of HEX, by
+     * the same rules as Player.isValidSettlement, which only looks at
+     * HEX and the hexes next to it. */
+    boolean isValidSettlement(int player, int hex, int posn) {
+        int base = hex * 6;
+        if (_vertices[Topology.VERTEX[base + posn]] != 0) {
+            return false;
+        }
+        int left = (posn + 5) % 6, right = (posn + 1) % 6;
+        int leftRoad = _edges[Topology.EDGE[base + left]];
+        int posnRoad = _edges[Topology.EDGE[base + posn]];
+
+        if (leftRoad == 0 && posnRoad == 0) {
+            int adjL = Topology.NEIGHBOR[base + left];
+            int adjR = Topology.NEIGHBOR[base + right];
+            if (adjL >= 0) {
+                if (_edges[Topology.EDGE[adjL * 6 + right]] != 1 + player) {
+                    return false;
+                }
+            } else if (Topology.NEIGHBOR[base + posn] >= 0) {
+                if (adjR < 0 || _edges[Topology.EDGE[adjR * 6
+                        + (posn + 4) % 6]] != 1 + player) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        } else if (leftRoad != 0 && leftRoad != 1 + player) {
+            return false;
+        } else if (posnRoad != 0 && posnRoad != 1 + player) {
+            return false;
+        }
+
+        if (_vertices[Topology.VERTEX[base + left]] != 0
+                || _vertices[Topology.VERTEX[base + right]] != 0) {
+            return false;
+        }
+        int adjL = Topology.NEIGHBOR[base + left];
+        int adjR = Topology.NEIGHBOR[base + posn];
+        if (adjL >= 0) {
+            return _vertices[Topology.VERTEX[adjL * 6 + right]] == 0;
+        } else if (adjR >= 0) {
+            return _vertices[Topology.VERTEX[adjR * 6 + left]] == 0;
+        }
+        return true;
+    }
+
+    /** Lays me out on Board, replacing whatever was there, and returns
+     * four new players, in turn order, who own my pieces and hold my
+     * hands. Player i has Color.get(i). This is the reverse of capture.
+     * A game that held Board gets its board back later (See
+     * Game.vacateBoard). Assumes that the caller holds
+     * Game.BOARD_LOCK.
+     */
+    Player[] restore() {
+        Game.vacateBoard();
+        Player[] players = new Player[4];
+        for (int p = 0; p < 4; p += 1) {
+            players[p] = new Player(Color.get(p), "Player " + (p + 1));
+            for (int i = 0; i < Hand.NUM_RESOURCES; i += 1) {
+                for (int n = Hand.count(_hands[p], i); n > 0; n -= 1) {
+                    players[p].giveResource(
+                            ResourceCard.make(Resource.get(i)));
+                }
+            }
+        }
+        ByteBuffer buf = ByteBuffer.allocate(Board.SAVED_SIZE);
+        buf.put(_hexes);
+        buf.put((byte) (_robber + 1));
+        for (int i = 0; i < 19 * 6; i += 1) {
+            int code = _vertices[Topology.VERTEX[i]];
+            buf.put((byte) ((code == 0) ? 0
+                    : 16 | 8 | (code - 1) % 4 | ((code > 4) ? 4 : 0)));
+        }
+        for (int i = 0; i < 19 * 6; i += 1) {
+            int code = _edges[Topology.EDGE[i]];
+            buf.put((byte) ((code == 0) ? 0 : 16 | 8 | (code - 1)));
+        }
+        buf.flip();
+        Board.load(buf, players);
+        return players;
+    }
+
+    /** Returns about how many bytes I take up on a 64-bit JVM with
+     * compressed references: a 12 byte header for me and 16 for each
+     * array, with everything rounded up to 8 bytes. */
+    long footprint() {
+        return align(12 + 5 * 4 + 2) + align(16 + _hexes.length)
+                + align(16 + _vertices.length) + align(16 + _edges.length)
+                + align(16 + 8L * _hands.length) + align(16 + _pools.length);
+    }
+
+    /** Returns SIZE rounded up to a multiple of 8. */
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /** Resource index times 16 plus number, for each hex. */
+    private final byte[] _hexes = new byte[19];
+
+    /** For each vertex: 0 if empty, 1 + player for a settlement, or
+     * 5 + player for a city. */
+    private final byte[] _vertices = new byte[Topology.NUM_VERTICES];
+
+    /** For each edge: 0 if empty, or 1 + player. */
+    private final byte[] _edges = new byte[Topology.NUM_EDGES];
+
+    /** Each player's packed hand. */
+    private final long[] _hands = new long[4];
+
+    /** Unplaced roads, settlements and cities of each player, three
+     * counts per player. */
+    private final byte[] _pools = new byte[12];
+
+    /** Hex the robber is on, or -1. */
+    private byte _robber;
+
+    /** Index of the player whose turn it is. */
+    private byte _turn;
+
+}
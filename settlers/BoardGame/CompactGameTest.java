@@ -0,0 +1,99 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Set of tests for compact games and the topology they use.
+ * @author John Angeles
+ */
+public class CompactGameTest {
+
+    /** Most bytes a compact game may take. If this fails, a change has
+     * made every game in memory bigger. */
+    private static final long BUDGET = 512;
+
+    @Test
+    public void topologyTest() {
+        assertEquals(Topology.vertex(3, 0), Topology.vertex(0, 4));
+        assertEquals(Topology.vertex(0, 2), Topology.vertex(4, 0));
+        assertEquals(Topology.edge(3, 0), Topology.edge(0, 3));
+        assertEquals(3, Topology.VERTEX_HEXES[Topology.vertex(4, 0)].length);
+        assertEquals(1, Topology.VERTEX_HEXES[Topology.vertex(0, 0)].length);
+        for (int e = 0; e < Topology.NUM_EDGES; e += 1) {
+            assertNotEquals(Topology.EDGE_VERTICES[e][0],
+                    Topology.EDGE_VERTICES[e][1]);
+        }
+    }
+
+    @Test
+    public void captureTest() {
+        Board.reset();
+        Player alice = new Player(Color.white(), "Alice");
+        Player bob = new Player(Color.red(), "Bob");
+        for (ResourceCard card : new ResourceCard[] {new WoodCard(),
+            new BrickCard(), new WheatCard(), new SheepCard()}) {
+            alice.giveResource(card);
+        }
+        alice.placeSettlement(5, 0);
+        Board.placeRoad(new Road(Color.red(), bob), 9, 1);
+        bob.giveResource(new OreCard());
+        CompactGame game = CompactGame.capture(
+                new Player[] {alice, bob, null, null}, 1);
+        int v = Topology.vertex(4, 0);
+        assertEquals(0, game.owner(v));
+        assertEquals(0, game.owner(Topology.vertex(0, 2)));
+        assertFalse(game.isCity(v));
+        assertEquals(1, game.roadOwner(Topology.edge(8, 1)));
+        assertEquals(4, game.settlementsLeft(0));
+        assertEquals(14, game.roadsLeft(1));
+        assertEquals(Hand.pack(0, 0, 0, 1, 0), game.hand(1));
+        assertEquals(Board.get(5).resource(), game.resource(4));
+        assertEquals(Board.get(5).number(), game.number(4));
+        assertEquals(1, game.turn());
+        assertEquals(1, game.victoryPoints(0));
+    }
+
+    @Test
+    public void buildAndProduceTest() {
+        CompactGame game = new CompactGame();
+        game.setHex(4, Resource.ore(), 8);
+        int v = Topology.vertex(4, 0);
+        assertFalse(game.buildSettlement(0, v));
+        game.give(0, Hand.SETTLEMENT);
+        assertTrue(game.buildSettlement(0, v));
+        assertEquals(0, game.hand(0));
+        game.produce(8);
+        assertEquals(Hand.pack(0, 0, 0, 1, 0), game.hand(0));
+        game.give(0, Hand.pack(0, 0, 2, 2, 0));
+        assertTrue(game.buildCity(0, v));
+        assertEquals(2, game.victoryPoints(0));
+        game.produce(8);
+        assertEquals(Hand.pack(0, 0, 0, 2, 0), game.hand(0));
+        game.moveRobber(4);
+        game.produce(8);
+        assertEquals(Hand.pack(0, 0, 0, 2, 0), game.hand(0));
+
+        CompactGame copy = game.copy();
+        copy.give(1, Hand.ROAD);
+        assertTrue(copy.buildRoad(1, 0));
+        assertEquals(-1, game.roadOwner(0));
+    }
+
+    @Test
+    public void footprintTest() {
+        CompactGame game = new CompactGame();
+        if (!Allocations.supported()) {
+            assertTrue(game.footprint() <= BUDGET);
+            return;
+        }
+        long measured = Allocations.perRun(() -> _kept = new CompactGame());
+        assertTrue("Compact game is " + measured + " bytes.",
+                measured <= BUDGET);
+        long copied = Allocations.perRun(() -> _kept = game.copy());
+        assertTrue("Copied game is " + copied + " bytes.",
+                copied <= BUDGET);
+        assertTrue(game.footprint() <= BUDGET);
+    }
+
+    /** Where games are kept, so the JIT can't remove them. */
+    private static Object _kept;
+
+}
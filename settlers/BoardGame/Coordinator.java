@@ -0,0 +1,454 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/** Splits a batch of games among worker JVMs on this machine, so that
+ * a study isn't held to what one JVM can do.
+ *
+ * A job is a range of seeds played under each of a few configs, where
+ * a config is four bot names separated by commas (See
+ * Tournament.named), one per seat. The job is cut into shards of a
+ * config and a smaller range of seeds. I start each worker as a
+ * separate java process, running this class with --worker, which
+ * connects back to me over a socket on the loopback address. Each
+ * worker plays one shard at a time and sends back just its totals:
+ * how many games each seat won, and how many nobody did.
+ *
+ * If a worker dies or its connection breaks, the shard it had goes
+ * back on the queue for another worker. If a bot throws while a worker
+ * plays a shard, the worker sends back what it threw instead, and the
+ * job fails with it, since any worker would fail the same way. A
+ * shard's totals only depend on the shard, and I add them up in shard
+ * order once every shard is in, so the answer is the same no matter
+ * which workers played what, or how many died along the way.
+ * @author John Angeles
+ */
+final class Coordinator implements Closeable {
+
+    /** Starts WORKERS worker processes and waits for each to connect. */
+    Coordinator(int workers) throws IOException {
+        _server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        _server.setSoTimeout(CONNECT_TIMEOUT);
+        try {
+            for (int i = 0; i < workers; i += 1) {
+                spawn();
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /** Starts one more worker process, running with the extra command
+     * line OPTIONS, and waits for it to connect. */
+    void spawn(String... options) throws IOException {
+        ArrayList<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator
+                + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("Coordinator");
+        command.add("--worker");
+        command.add(Integer.toString(_server.getLocalPort()));
+        command.addAll(Arrays.asList(options));
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        try {
+            Socket socket = _server.accept();
+            socket.setSoTimeout(SHARD_TIMEOUT);
+            _links.add(new Link(process, socket));
+        } catch (IOException e) {
+            process.destroyForcibly();
+            throw e;
+        }
+    }
+
+    /** Returns the number of workers that haven't died. */
+    int alive() {
+        int count = 0;
+        for (Link link : _links) {
+            count += link.dead ? 0 : 1;
+        }
+        return count;
+    }
+
+    /** Receives the totals of each shard as they come in. */
+    interface Progress {
+        /** Takes RESULT, the totals of the shard of config number
+         * CONFIG over seeds FROM up to TO, laid out like each config's
+         * totals from run. I am called once for each shard, one call at
+         * a time, from the threads that talk to the workers, so I
+         * should be quick, and must not throw. */
+        void shard(int config, long from, long to, long[] result);
+    }
+
+    /** Same as run(CONFIGS, FROM, TO, SHARDSIZE, null). */
+    long[][] run(String[] configs, long from, long to, int shardSize)
+            throws IOException, InterruptedException {
+        return run(configs, from, to, shardSize, null);
+    }
+
+    /** Plays seeds FROM up to TO under each of CONFIGS, in shards of
+     * at most SHARDSIZE seeds, and returns, for each config, how many
+     * games each seat won followed by how many nobody won. Hands each
+     * shard's totals to PROGRESS, unless it is null, as soon as they
+     * come in. Throws an IllegalArgumentException, before any shard is
+     * played, if a config isn't four bot names, an IllegalStateException
+     * saying what was thrown if a bot throws while playing a shard, and
+     * an IOException if every worker dies before the job is done. */
+    long[][] run(String[] configs, long from, long to, int shardSize,
+                 Progress progress)
+            throws IOException, InterruptedException {
+        for (String config : configs) {
+            bots(config);
+        }
+        ArrayList<Shard> shards = new ArrayList<>();
+        for (int c = 0; c < configs.length; c += 1) {
+            for (long start = from; start < to; start += shardSize) {
+                shards.add(new Shard(shards.size(), c, configs[c], start,
+                        Math.min(to, start + shardSize)));
+            }
+        }
+        LinkedBlockingDeque<Shard> queue = new LinkedBlockingDeque<>(shards);
+        long[][] totals = new long[shards.size()][];
+        AtomicInteger remaining = new AtomicInteger(shards.size());
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (Link link : _links) {
+            if (!link.dead) {
+                Thread thread = new Thread(
+                        () -> feed(link, queue, totals, remaining,
+                                failure, progress),
+                        "Coordinator link");
+                threads.add(thread);
+                thread.start();
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException(failure.get());
+        } else if (remaining.get() > 0) {
+            throw new IOException("Every worker died with "
+                    + remaining.get() + " shards left");
+        }
+
+        long[][] answer = new long[configs.length][RESULT_SIZE];
+        for (Shard shard : shards) {
+            for (int i = 0; i < RESULT_SIZE; i += 1) {
+                answer[shard.config][i] += totals[shard.id][i];
+            }
+        }
+        return answer;
+    }
+
+    /** Body of the thread for LINK: hands it shards from QUEUE and
+     * puts what comes back in TOTALS, and hands it to PROGRESS if that
+     * isn't null, until REMAINING reaches 0. If the worker fails, puts
+     * its shard back and stops. If a bot threw while the worker played
+     * a shard, says so in FAILURE, unless it already says why another
+     * shard failed, and sets REMAINING to 0 to stop every thread. */
+    private void feed(Link link, LinkedBlockingDeque<Shard> queue,
+                      long[][] totals, AtomicInteger remaining,
+                      AtomicReference<String> failure, Progress progress) {
+        while (remaining.get() > 0) {
+            Shard shard;
+            try {
+                shard = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (shard == null) {
+                continue;
+            }
+            try {
+                link.out.writeInt(shard.id);
+                link.out.writeUTF(shard.name);
+                link.out.writeLong(shard.from);
+                link.out.writeLong(shard.to);
+                link.out.flush();
+                int id = link.in.readInt();
+                if (id == FAILED) {
+                    failure.compareAndSet(null, "Shard " + shard.id
+                            + " (" + shard.name + ", seeds " + shard.from
+                            + " up to " + shard.to + ") failed: "
+                            + link.in.readUTF());
+                    remaining.set(0);
+                    return;
+                } else if (id != shard.id) {
+                    throw new IOException("Worker sent shard " + id
+                            + " instead of " + shard.id);
+                }
+                long[] result = new long[RESULT_SIZE];
+                for (int i = 0; i < RESULT_SIZE; i += 1) {
+                    result[i] = link.in.readLong();
+                }
+                totals[shard.id] = result;
+                if (progress != null) {
+                    synchronized (progress) {
+                        progress.shard(shard.config, shard.from, shard.to,
+                                result.clone());
+                    }
+                }
+                remaining.decrementAndGet();
+            } catch (IOException e) {
+                queue.addFirst(shard);
+                link.kill();
+                return;
+            }
+        }
+    }
+
+    /** Tells every worker to stop and closes everything. Workers that
+     * don't stop are killed. */
+    @Override
+    public void close() throws IOException {
+        for (Link link : _links) {
+            if (!link.dead) {
+                try {
+                    link.out.writeInt(STOP);
+                    link.out.flush();
+                    link.process.waitFor(STOP_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (IOException | InterruptedException e) {
+                    /* It is killed below either way. */
+                }
+            }
+            link.kill();
+        }
+        _server.close();
+    }
+
+    /** Returns the bots in CONFIG, one for each seat. Throws an
+     * IllegalArgumentException if CONFIG isn't four bot names separated
+     * by commas. (See Tournament.named) */
+    static Tournament.Bot[] bots(String config) {
+        String[] names = config.split(",");
+        if (names.length != 4) {
+            throw new IllegalArgumentException("Config " + config
+                    + " doesn't name four bots");
+        }
+        Tournament.Bot[] bots = new Tournament.Bot[4];
+        for (int s = 0; s < 4; s += 1) {
+            bots[s] = Tournament.named(names[s].trim());
+        }
+        return bots;
+    }
+
+    /** Returns how many games each seat won, followed by how many
+     * nobody won, over seeds FROM up to TO with the bots in CONFIG. */
+    static long[] play(String config, long from, long to) {
+        Tournament.Bot[] bots = bots(config);
+        long[] result = new long[RESULT_SIZE];
+        for (long seed = from; seed < to; seed += 1) {
+            int winner = Tournament.play(bots, seed);
+            result[(winner < 0) ? 4 : winner] += 1;
+        }
+        return result;
+    }
+
+    /** Plays shards for the coordinator listening on PORT until told
+     * to stop. If playing a shard throws, sends back FAILED and what
+     * was thrown instead of its totals. With DIEAFTER at 0 or more,
+     * halts without answering when handed shard number DIEAFTER + 1,
+     * the way a crashed worker would. With FAILAFTER at 0 or more,
+     * throws when handed shard number FAILAFTER + 1, the way a broken
+     * bot would. */
+    private static void work(int port, int dieAfter, int failAfter)
+            throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+                port)) {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+            for (int done = 0; true; done += 1) {
+                int id = in.readInt();
+                if (id == STOP) {
+                    return;
+                }
+                String config = in.readUTF();
+                long from = in.readLong(), to = in.readLong();
+                if (done == dieAfter) {
+                    Runtime.getRuntime().halt(1);
+                }
+                long[] result;
+                try {
+                    if (done == failAfter) {
+                        throw new IllegalStateException("Told to fail");
+                    }
+                    result = play(config, from, to);
+                } catch (RuntimeException e) {
+                    String why = e.toString();
+                    out.writeInt(FAILED);
+                    out.writeUTF(why.substring(0,
+                            Math.min(why.length(), MAX_FAILURE)));
+                    out.flush();
+                    continue;
+                }
+                out.writeInt(id);
+                for (long count : result) {
+                    out.writeLong(count);
+                }
+                out.flush();
+            }
+        }
+    }
+
+    /** Runs a worker, or plays a job on local workers and prints the
+     * totals and how fast they came in.
+     * Usage: java Coordinator WORKERS GAMES [SHARD] CONFIG...
+     *        java Coordinator --worker PORT [--die-after N]
+     *                             [--fail-after N] */
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 2 && args[0].equals("--worker")) {
+            int dieAfter = -1, failAfter = -1;
+            for (int i = 2; i + 1 < args.length; i += 2) {
+                if (args[i].equals("--die-after")) {
+                    dieAfter = Integer.parseInt(args[i + 1]);
+                } else if (args[i].equals("--fail-after")) {
+                    failAfter = Integer.parseInt(args[i + 1]);
+                }
+            }
+            work(Integer.parseInt(args[1]), dieAfter, failAfter);
+            return;
+        }
+        if (args.length < 3) {
+            System.err.println("Usage: java Coordinator WORKERS GAMES"
+                    + " [SHARD] CONFIG...");
+            System.exit(1);
+        }
+        int workers = Integer.parseInt(args[0]);
+        long games = Long.parseLong(args[1]);
+        int first = 2, shardSize = 100;
+        if (args[2].matches("[0-9]+")) {
+            shardSize = Integer.parseInt(args[2]);
+            first = 3;
+        }
+        String[] configs = Arrays.copyOfRange(args, first, args.length);
+        long start = System.nanoTime();
+        try (Coordinator coordinator = new Coordinator(workers)) {
+            long[][] totals = coordinator.run(configs, 0, games, shardSize);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            for (int c = 0; c < configs.length; c += 1) {
+                System.out.printf("%s: seats won %s, nobody won %d%n",
+                        configs[c], Arrays.toString(Arrays.copyOf(
+                                totals[c], 4)), totals[c][4]);
+            }
+            System.out.printf("%d games on %d workers in %.2f s"
+                    + " (%.0f games/s)%n", games * configs.length,
+                    workers, seconds, games * configs.length / seconds);
+        }
+    }
+
+    /** A piece of a job. */
+    private static final class Shard {
+
+        /** A shard numbered ID, of config number CONFIG, called NAME,
+         * for seeds FROM up to TO. */
+        Shard(int id, int config, String name, long from, long to) {
+            this.id = id;
+            this.config = config;
+            this.name = name;
+            this.from = from;
+            this.to = to;
+        }
+
+        /** Number of this shard, and of its config. */
+        final int id, config;
+
+        /** The config. */
+        final String name;
+
+        /** Range of seeds. */
+        final long from, to;
+    }
+
+    /** A worker process and my connection to it. */
+    private static final class Link {
+
+        /** A link to PROCESS, connected through SOCKET. */
+        Link(Process process, Socket socket) throws IOException {
+            this.process = process;
+            this.socket = socket;
+            in = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        /** Closes the connection and kills the process. */
+        void kill() {
+            dead = true;
+            try {
+                socket.close();
+            } catch (IOException e) {
+                /* Already broken. */
+            }
+            process.destroyForcibly();
+        }
+
+        /** The worker process. */
+        final Process process;
+
+        /** The connection to it. */
+        final Socket socket;
+
+        /** Reads what the worker sends. */
+        final DataInputStream in;
+
+        /** Writes to the worker. */
+        final DataOutputStream out;
+
+        /** True once the worker has failed or been stopped. */
+        volatile boolean dead;
+    }
+
+    /** Numbers in each result: wins for each seat, then nobody. */
+    static final int RESULT_SIZE = 5;
+
+    /** Shard id that tells a worker to stop. */
+    private static final int STOP = -1;
+
+    /** Sent by a worker in place of a shard's id when playing it
+     * threw, followed by what was thrown. */
+    private static final int FAILED = -2;
+
+    /** Longest description of a failure a worker sends back. */
+    private static final int MAX_FAILURE = 1000;
+
+    /** Milliseconds to wait for a worker to connect. */
+    private static final int CONNECT_TIMEOUT = 30_000;
+
+    /** Milliseconds to wait for a shard before giving up on a worker. */
+    private static final int SHARD_TIMEOUT = 600_000;
+
+    /** Milliseconds between looks at an empty queue. */
+    private static final long POLL_MILLIS = 50;
+
+    /** Milliseconds to let a worker stop before killing it. */
+    private static final long STOP_MILLIS = 2000;
+
+    /** Where workers connect. */
+    private final ServerSocket _server;
+
+    /** Every worker I have started. */
+    private final ArrayList<Link> _links = new ArrayList<>();
+
+}
@@ -0,0 +1,117 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/** Set of tests for splitting games among worker processes.
+ * @author John Angeles
+ */
+public class CoordinatorTest {
+
+    /** Configs played in these tests. */
+    private static final String[] CONFIGS = {
+        "greedy,passive,greedy,passive", "random,greedy,greedy,random"};
+
+    /** Returns the totals for CONFIGS over seeds FROM up to TO, played
+     * here. */
+    private static long[][] local(long from, long to) {
+        long[][] answer = new long[CONFIGS.length][];
+        for (int c = 0; c < CONFIGS.length; c += 1) {
+            answer[c] = Coordinator.play(CONFIGS[c], from, to);
+        }
+        return answer;
+    }
+
+    @Test
+    public void runTest() throws Exception {
+        try (Coordinator coordinator = new Coordinator(2)) {
+            long[][] streamed = new long[CONFIGS.length][
+                    Coordinator.RESULT_SIZE];
+            ArrayList<String> shards = new ArrayList<>();
+            long[][] totals = coordinator.run(CONFIGS, 0, 30, 7,
+                (config, from, to, result) -> {
+                    for (int i = 0; i < result.length; i += 1) {
+                        streamed[config][i] += result[i];
+                    }
+                    shards.add(config + " " + from + " " + to + " "
+                            + Arrays.toString(result));
+                });
+            long[][] expected = local(0, 30);
+            for (int c = 0; c < CONFIGS.length; c += 1) {
+                assertArrayEquals(expected[c], totals[c]);
+                assertArrayEquals(expected[c], streamed[c]);
+            }
+            assertEquals(2 * 5, shards.size());
+            assertTrue(shards.contains("1 28 30 " + Arrays.toString(
+                    Coordinator.play(CONFIGS[1], 28, 30))));
+            long games = 0;
+            for (long count : totals[0]) {
+                games += count;
+            }
+            assertEquals(30, games);
+            assertEquals(2, coordinator.alive());
+        }
+    }
+
+    @Test
+    public void deadWorkerTest() throws Exception {
+        try (Coordinator coordinator = new Coordinator(1)) {
+            coordinator.spawn("--die-after", "1");
+            long[][] totals = coordinator.run(CONFIGS, 5, 25, 4);
+            long[][] expected = local(5, 25);
+            for (int c = 0; c < CONFIGS.length; c += 1) {
+                assertArrayEquals(expected[c], totals[c]);
+            }
+            assertEquals(1, coordinator.alive());
+        }
+    }
+
+    @Test
+    public void badConfigTest() throws Exception {
+        try (Coordinator coordinator = new Coordinator(0)) {
+            try {
+                coordinator.run(new String[] {CONFIGS[0],
+                    "greedy,nobody,greedy,random"}, 0, 10, 5);
+                fail("Expected an unknown bot to be refused");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("nobody"));
+            }
+            try {
+                coordinator.run(new String[] {"greedy,greedy"}, 0, 10, 5);
+                fail("Expected two bots to be refused");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("four bots"));
+            }
+        }
+    }
+
+    @Test
+    public void failedShardTest() throws Exception {
+        try (Coordinator coordinator = new Coordinator(1)) {
+            coordinator.spawn("--fail-after", "1");
+            try {
+                coordinator.run(CONFIGS, 0, 40, 4);
+                fail("Expected the job to fail");
+            } catch (IllegalStateException e) {
+                assertTrue(e.getMessage().contains("Told to fail"));
+            }
+            assertEquals(2, coordinator.alive());
+            long[][] totals = coordinator.run(CONFIGS, 0, 4, 4);
+            assertArrayEquals(local(0, 4)[0], totals[0]);
+        }
+    }
+
+    @Test
+    public void allDeadTest() throws Exception {
+        try (Coordinator coordinator = new Coordinator(0)) {
+            coordinator.spawn("--die-after", "0");
+            coordinator.run(CONFIGS, 0, 10, 5);
+            fail("Expected every worker to die");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("shards left"));
+        }
+    }
+
+}
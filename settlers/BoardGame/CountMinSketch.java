@@ -0,0 +1,65 @@
+/** Counts how often each key comes up in a stream, in a fixed amount
+ * of memory, never counting too few.
+ *
+ * There are DEPTH rows of WIDTH counters, and each row hashes a key to
+ * one of its counters in its own way. Adding a key adds to its counter
+ * in every row, and a key's count is the smallest of its counters:
+ * other keys that hash to the same counters can only make it too high,
+ * and with high odds by no more than a small fraction of the total.
+ * Two sketches are merged by adding their counters, which gives exactly
+ * the sketch of both streams together.
+ * @author John Angeles
+ */
+final class CountMinSketch {
+
+    /** Adds COUNT more of KEY. */
+    void add(long key, long count) {
+        for (int row = 0; row < DEPTH; row += 1) {
+            _counters[row * WIDTH + slot(key, row)] += count;
+        }
+        _total += count;
+    }
+
+    /** Returns at least how many of KEY have been added, and usually
+     * exactly that. */
+    long estimate(long key) {
+        long answer = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row += 1) {
+            answer = Math.min(answer, _counters[row * WIDTH
+                    + slot(key, row)]);
+        }
+        return answer;
+    }
+
+    /** Adds every count in OTHER to me. */
+    void merge(CountMinSketch other) {
+        for (int i = 0; i < _counters.length; i += 1) {
+            _counters[i] += other._counters[i];
+        }
+        _total += other._total;
+    }
+
+    /** Returns the total of every count added. */
+    long total() {
+        return _total;
+    }
+
+    /** Returns the counter KEY hashes to in ROW. */
+    private static int slot(long key, int row) {
+        long hash = Seeds.mix(key + row * 0x9E3779B97F4A7C15L);
+        return (int) (hash & (WIDTH - 1));
+    }
+
+    /** Number of rows. */
+    static final int DEPTH = 4;
+
+    /** Counters in each row. */
+    static final int WIDTH = 2048;
+
+    /** The counters, row after row. */
+    private final long[] _counters = new long[DEPTH * WIDTH];
+
+    /** Total of every count added. */
+    private long _total;
+
+}
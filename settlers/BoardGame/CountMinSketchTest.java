@@ -0,0 +1,46 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+/** Set of tests for count-min sketches.
+ * @author John Angeles
+ */
+public class CountMinSketchTest {
+
+    @Test
+    public void estimateTest() {
+        CountMinSketch sketch = new CountMinSketch();
+        long[] exact = new long[5000];
+        Random random = new Random(8);
+        for (int i = 0; i < 100000; i += 1) {
+            int key = (int) Math.min(exact.length - 1,
+                    Math.abs(random.nextGaussian()) * 300);
+            exact[key] += 1;
+            sketch.add(key, 1);
+        }
+        int off = 0;
+        for (int key = 0; key < exact.length; key += 1) {
+            long estimate = sketch.estimate(key);
+            assertTrue(estimate >= exact[key]);
+            off += (estimate > exact[key] + 100000 / 500) ? 1 : 0;
+        }
+        assertTrue(off < 50);
+        assertEquals(100000, sketch.total());
+        assertEquals(exact[0], sketch.estimate(0), 200);
+    }
+
+    @Test
+    public void mergeTest() {
+        CountMinSketch one = new CountMinSketch();
+        CountMinSketch two = new CountMinSketch();
+        one.add(42, 3);
+        two.add(42, 4);
+        two.add(7, 1);
+        one.merge(two);
+        assertEquals(7, one.estimate(42));
+        assertEquals(1, one.estimate(7));
+        assertEquals(8, one.total());
+    }
+
+}
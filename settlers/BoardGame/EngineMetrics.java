@@ -0,0 +1,247 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/** A class that you cannot instantiate. It counts and times what the
+ * engine does, and publishes the numbers over JMX as the MBean NAME.
+ *
+ * Counters are LongAdders, which spread their count over a few cells
+ * when many threads add at once, so counting never makes threads wait
+ * on each other. Timers keep a histogram of durations in buckets of
+ * powers of two nanoseconds, each bucket its own LongAdder.
+ *
+ * Everything is off unless the JVM is started with
+ * -Dsettlers.metrics=true. ENABLED is a constant, so the JIT drops every
+ * "if (EngineMetrics.ENABLED)" block from compiled code when it is
+ * false, and the engine pays nothing for the instrumentation.
+ * @author John Angeles
+ */
+final class EngineMetrics {
+
+    /** You can't create metrics; use the static fields instead. */
+    private EngineMetrics() { }
+
+    /** A histogram of durations. */
+    static final class Timer {
+
+        /** Creates an empty histogram. */
+        Timer() {
+            for (int i = 0; i < _buckets.length; i += 1) {
+                _buckets[i] = new LongAdder();
+            }
+        }
+
+        /** Records a duration that started at System.nanoTime()
+         * STARTNANOS and ended now. */
+        void since(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        /** Records a duration of NANOS nanoseconds. */
+        void record(long nanos) {
+            nanos = Math.max(0, nanos);
+            _buckets[64 - Long.numberOfLeadingZeros(nanos)].increment();
+            _count.increment();
+            _total.add(nanos);
+            _max.accumulate(nanos);
+        }
+
+        /** Returns how many durations I have recorded. */
+        long count() {
+            return _count.sum();
+        }
+
+        /** Returns the mean duration in nanoseconds, or 0. */
+        long meanNanos() {
+            long count = _count.sum();
+            return (count == 0) ? 0 : _total.sum() / count;
+        }
+
+        /** Returns the longest duration in nanoseconds. */
+        long maxNanos() {
+            return _max.get();
+        }
+
+        /** Returns a duration in nanoseconds that a fraction Q of the
+         * durations are no longer than, to within a factor of two, or
+         * 0 if I have none. */
+        long quantileNanos(double q) {
+            long[] counts = new long[_buckets.length];
+            long count = 0;
+            for (int i = 0; i < counts.length; i += 1) {
+                counts[i] = _buckets[i].sum();
+                count += counts[i];
+            }
+            long rank = (long) Math.ceil(q * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i += 1) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) {
+                    return Math.min(_max.get(), (i == 0) ? 0 : 1L << i);
+                }
+            }
+            return 0;
+        }
+
+        /** Durations in each bucket: bucket i holds durations of i bits,
+         * from 2^(i-1) up to 2^i - 1 nanoseconds. */
+        private final LongAdder[] _buckets = new LongAdder[65];
+
+        /** Number and total of the durations. */
+        private final LongAdder _count = new LongAdder(),
+                _total = new LongAdder();
+
+        /** Longest duration. */
+        private final LongAccumulator _max =
+                new LongAccumulator(Math::max, 0);
+    }
+
+    /** True if the engine should record anything. */
+    static final boolean ENABLED = Boolean.getBoolean("settlers.metrics");
+
+    /** Rolls of the dice, hexes that paid out on a roll, pieces placed,
+     * placements a player was refused, board resets and board dumps. */
+    static final LongAdder ROLLS = new LongAdder(),
+            PAYOUTS = new LongAdder(), PLACEMENTS = new LongAdder(),
+            REJECTED_MOVES = new LongAdder(), RESETS = new LongAdder(),
+            DUMPS = new LongAdder();
+
+    /** How long rolls, resets and dumps take, and how long each turn
+     * lasts. */
+    static final Timer ROLL_TIME = new Timer(), RESET_TIME = new Timer(),
+            DUMP_TIME = new Timer(), TURN_TIME = new Timer();
+
+    /** Name the MBean is published under. */
+    static final String NAME = "settlers:type=Engine";
+
+    /** Publishes the MBean on the platform MBean server, unless it is
+     * already there. */
+    static synchronized void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new Bean(), name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Can't publish metrics", e);
+        }
+    }
+
+    /** Publishes the MBean if metrics are on. */
+    static {
+        if (ENABLED) {
+            register();
+        }
+    }
+
+    /** The MBean: a read-only long attribute for each counter, and the
+     * count, mean, median, 99th percentile and maximum of each timer,
+     * in nanoseconds. */
+    private static final class Bean implements DynamicMBean {
+
+        /** Sets up every attribute. */
+        Bean() {
+            add("Rolls", ROLLS::sum);
+            add("Payouts", PAYOUTS::sum);
+            add("Placements", PLACEMENTS::sum);
+            add("RejectedMoves", REJECTED_MOVES::sum);
+            add("Resets", RESETS::sum);
+            add("Dumps", DUMPS::sum);
+            add("Roll", ROLL_TIME);
+            add("Reset", RESET_TIME);
+            add("Dump", DUMP_TIME);
+            add("Turn", TURN_TIME);
+        }
+
+        /** Adds the attribute NAME, read from VALUE. */
+        private void add(String name, LongSupplier value) {
+            _names.add(name);
+            _values.add(value);
+        }
+
+        /** Adds the attributes of TIMER, named after NAME. */
+        private void add(String name, Timer timer) {
+            add(name + "Count", timer::count);
+            add(name + "MeanNanos", timer::meanNanos);
+            add(name + "P50Nanos", () -> timer.quantileNanos(0.5));
+            add(name + "P99Nanos", () -> timer.quantileNanos(0.99));
+            add(name + "MaxNanos", timer::maxNanos);
+        }
+
+        @Override
+        public Object getAttribute(String attribute)
+                throws AttributeNotFoundException {
+            int i = _names.indexOf(attribute);
+            if (i >= 0) {
+                return _values.get(i).getAsLong();
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList answer = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    answer.add(new Attribute(attribute,
+                            getAttribute(attribute)));
+                } catch (AttributeNotFoundException e) {
+                    /* Left out, as the interface asks. */
+                }
+            }
+            return answer;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute)
+                throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute.getName()
+                    + " is read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String action, Object[] params,
+                             String[] signature)
+                throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(action));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            MBeanAttributeInfo[] attributes =
+                    new MBeanAttributeInfo[_names.size()];
+            for (int i = 0; i < attributes.length; i += 1) {
+                attributes[i] = new MBeanAttributeInfo(_names.get(i),
+                        "long", _names.get(i), true, false, false);
+            }
+            return new MBeanInfo(EngineMetrics.class.getName(),
+                    "Settlers engine metrics", attributes, null, null,
+                    null);
+        }
+
+        /** Names of the attributes. */
+        private final ArrayList<String> _names = new ArrayList<>();
+
+        /** Where each attribute is read from. */
+        private final ArrayList<LongSupplier> _values = new ArrayList<>();
+    }
+
+}
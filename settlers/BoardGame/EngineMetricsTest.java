@@ -0,0 +1,53 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/** Set of tests for the engine's metrics.
+ * @author John Angeles
+ */
+public class EngineMetricsTest {
+
+    @Test
+    public void timerTest() {
+        EngineMetrics.Timer timer = new EngineMetrics.Timer();
+        assertEquals(0, timer.quantileNanos(0.5));
+        for (int i = 1; i <= 100; i += 1) {
+            timer.record(i * 1000);
+        }
+        assertEquals(100, timer.count());
+        assertEquals(50500, timer.meanNanos());
+        assertEquals(100000, timer.maxNanos());
+        long median = timer.quantileNanos(0.5);
+        assertTrue(50000 <= median && median < 2 * 50000);
+        assertEquals(100000, timer.quantileNanos(1));
+        timer.record(-5);
+        assertEquals(0, timer.quantileNanos(0));
+    }
+
+    @Test
+    public void beanTest() throws Exception {
+        EngineMetrics.register();
+        EngineMetrics.register();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(EngineMetrics.NAME);
+        long rolls = (Long) server.getAttribute(name, "Rolls");
+        EngineMetrics.ROLLS.add(3);
+        assertEquals(rolls + 3, server.getAttribute(name, "Rolls"));
+        EngineMetrics.TURN_TIME.record(1234);
+        assertTrue((Long) server.getAttribute(name, "TurnCount") >= 1);
+        assertTrue((Long) server.getAttribute(name, "TurnMaxNanos")
+                >= 1234);
+        assertEquals(26, server.getMBeanInfo(name).getAttributes().length);
+        try {
+            server.invoke(name, "reset", new Object[0], new String[0]);
+            fail("Expected no operations");
+        } catch (ReflectionException e) {
+            assertTrue(e.getCause() instanceof NoSuchMethodException);
+        }
+    }
+
+}
@@ -0,0 +1,249 @@
+import java.lang.invoke.VarHandle;
+
+/** A ring of events that one game publishes and any number of
+ * consumers, such as a console renderer, a log, metrics or spectators,
+ * read at their own pace.
+ *
+ * Only the thread that owns the game publishes (See Game.publishTo).
+ * It claims the next slot of the ring, fills in the event there, and
+ * publishes it, which makes it visible to every consumer. The events
+ * are made once, when I am, and written over as the ring goes around,
+ * so publishing allocates nothing.
+ *
+ * Each consumer has its own Cursor, the sequence number of the next
+ * event it will read, and nobody else waits on it. The producer never
+ * waits either: once it is a whole ring ahead of a slow consumer, it
+ * writes over events that consumer hasn't read yet. The consumer sees
+ * that it has been lapped, counts the events it missed, and carries on
+ * from the oldest event still in the ring. A consumer gets its own
+ * copy of each event, checked after copying to not have been written
+ * over in the middle, so it never sees half of one event and half of
+ * another.
+ * @author John Angeles
+ */
+final class EventBus {
+
+    /** Something that happened in a game. What each field means depends
+     * on KIND:
+     * RESET   the board was laid out
+     * NAMED   PLAYER was named
+     * ROLLED  PLAYER rolled ROLL
+     * BUILT   PLAYER tried to put PIECE (Game.ROAD, Game.SETTLEMENT or
+     *         Game.CITY) on HEX at POSN, and PLACED says if it did
+     * TURN    it became PLAYER's turn
+     * QUIT    the game was quit
+     */
+    static final class Event {
+
+        /** Makes me a copy of OTHER. */
+        void copyFrom(Event other) {
+            sequence = other.sequence;
+            kind = other.kind;
+            game = other.game;
+            player = other.player;
+            piece = other.piece;
+            hex = other.hex;
+            posn = other.posn;
+            roll = other.roll;
+            placed = other.placed;
+        }
+
+        /** Returns what happened, in words, where NAME is the name of
+         * my player. This is what the game used to print as it went. */
+        String describe(String name) {
+            switch (kind) {
+            case RESET:
+                return "The board was laid out.";
+            case NAMED:
+                return name + " joined as player " + (player + 1) + ".";
+            case ROLLED:
+                return name + " rolled a " + roll + ".";
+            case BUILT:
+                String what = (piece == Game.ROAD) ? "road"
+                        : (piece == Game.SETTLEMENT) ? "settlement" : "city";
+                return placed
+                        ? name + " built a " + what + " on hex " + hex
+                        + " at " + posn + "!"
+                        : name + " couldn't build a " + what + " on hex "
+                        + hex + " at " + posn + ".";
+            case TURN:
+                return name + ", it's your turn!";
+            case QUIT:
+                return "The game was quit.";
+            default:
+                return "Unknown event " + kind + ".";
+            }
+        }
+
+        /** My place in the order of events published. */
+        long sequence;
+
+        /** What happened: RESET, NAMED, ROLLED, BUILT, TURN or QUIT. */
+        int kind;
+
+        /** Id of the game it happened in. */
+        int game;
+
+        /** Index of the player it happened to, from 0 to 3, or -1. */
+        int player;
+
+        /** Game command code of the piece built. */
+        int piece;
+
+        /** Where a piece was built. */
+        int hex, posn;
+
+        /** Sum of the dice. */
+        int roll;
+
+        /** True if a piece was built. */
+        boolean placed;
+    }
+
+    /** Handles events read by a Cursor. */
+    interface Handler {
+        /** Handles EVENT, which belongs to the cursor and is written over
+         * by the next event it reads, so don't keep it. */
+        void handle(Event event);
+    }
+
+    /** One consumer's place in the ring. Only one thread may use a
+     * cursor, but each consumer can have its own thread. */
+    final class Cursor {
+
+        /** A cursor at the next event to be published. */
+        private Cursor() {
+            _next = _published + 1;
+        }
+
+        /** Hands every event published since my last poll, in order, to
+         * HANDLER, skipping any that have been written over. Returns
+         * how many I handed over. Never waits. */
+        int poll(Handler handler) {
+            long available = _published;
+            int handled = 0;
+            while (_next <= available) {
+                _copy.copyFrom(_ring[(int) (_next & _mask)]);
+                VarHandle.acquireFence();
+                long oldest = _claimed - _ring.length + 1;
+                if (_next < oldest) {
+                    _missed += oldest - _next;
+                    _next = oldest;
+                    continue;
+                }
+                _next += 1;
+                handler.handle(_copy);
+                handled += 1;
+            }
+            return handled;
+        }
+
+        /** Returns how many events I was lapped out of. */
+        long missed() {
+            return _missed;
+        }
+
+        /** Returns how many published events I haven't read yet. */
+        long lag() {
+            return _published + 1 - _next;
+        }
+
+        /** Sequence number of the next event I read. */
+        private long _next;
+
+        /** Events I missed. */
+        private long _missed;
+
+        /** My copy of the event being handled. */
+        private final Event _copy = new Event();
+    }
+
+    /** Creates a bus whose ring holds CAPACITY events, which must be a
+     * power of two. */
+    EventBus(int capacity) {
+        assert capacity >= 2 && Integer.bitCount(capacity) == 1
+            : "Capacity must be a power of two!";
+        _ring = new Event[capacity];
+        for (int i = 0; i < capacity; i += 1) {
+            _ring[i] = new Event();
+        }
+        _mask = capacity - 1;
+    }
+
+    /** Creates a bus that holds DEFAULT_CAPACITY events. */
+    EventBus() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /** Returns a new cursor that will read every event published from
+     * now on. Any thread may call this. */
+    Cursor subscribe() {
+        return new Cursor();
+    }
+
+    /** Returns the event in the next slot, for the producer to fill in
+     * and then publish. Only the producer may call this, and it must
+     * publish each event it claims before claiming another. */
+    Event claim() {
+        long sequence = _published + 1;
+        _claimed = sequence;
+        VarHandle.storeStoreFence();
+        Event event = _ring[(int) (sequence & _mask)];
+        event.sequence = sequence;
+        return event;
+    }
+
+    /** Makes the event last claimed visible to every cursor. */
+    void publish() {
+        _published = _claimed;
+    }
+
+    /** Claims, fills in and publishes an event of KIND in GAME, to
+     * PLAYER, with PIECE, HEX, POSN, ROLL and PLACED. (See Event) */
+    void publish(int kind, int game, int player, int piece, int hex,
+                 int posn, int roll, boolean placed) {
+        Event event = claim();
+        event.kind = kind;
+        event.game = game;
+        event.player = player;
+        event.piece = piece;
+        event.hex = hex;
+        event.posn = posn;
+        event.roll = roll;
+        event.placed = placed;
+        publish();
+    }
+
+    /** Returns the sequence number of the last event published, or -1
+     * if there is none. */
+    long published() {
+        return _published;
+    }
+
+    /** Returns how many events my ring holds. */
+    int capacity() {
+        return _ring.length;
+    }
+
+    /** Kinds of events. (See Event) */
+    static final int RESET = 0, NAMED = 1, ROLLED = 2, BUILT = 3,
+            TURN = 4, QUIT = 5;
+
+    /** Events a bus holds unless told otherwise. */
+    static final int DEFAULT_CAPACITY = 1024;
+
+    /** The ring. Event with sequence number s is in slot s & _mask. */
+    private final Event[] _ring;
+
+    /** Capacity minus one. */
+    private final int _mask;
+
+    /** Sequence number of the event the producer is writing or last
+     * wrote. A consumer that has copied an event older than a whole
+     * ring before this may have a torn copy. */
+    private volatile long _claimed = -1;
+
+    /** Sequence number of the last event published. */
+    private volatile long _published = -1;
+
+}
@@ -0,0 +1,151 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+/** Set of tests for the ring of game events.
+ * @author John Angeles
+ */
+public class EventBusTest {
+
+    /** Publishes an event on BUS whose fields all come from N. */
+    private static void publish(EventBus bus, int n) {
+        bus.publish(EventBus.ROLLED, n, n % 4, 0, n, ~n, n * 3, n % 2 == 0);
+    }
+
+    /** Fails unless EVENT was published by publish(bus, n), with n its
+     * sequence number, and wasn't torn. */
+    private static void checkEvent(EventBus.Event event) {
+        int n = event.game;
+        assertEquals(n, (int) event.sequence);
+        assertEquals(n, event.hex);
+        assertEquals(~n, event.posn);
+        assertEquals(n * 3, event.roll);
+        assertEquals(n % 2 == 0, event.placed);
+    }
+
+    @Test
+    public void orderTest() {
+        EventBus bus = new EventBus(8);
+        EventBus.Cursor first = bus.subscribe();
+        publish(bus, 0);
+        publish(bus, 1);
+        EventBus.Cursor second = bus.subscribe();
+        publish(bus, 2);
+        assertEquals(3, first.lag());
+        assertEquals(1, second.lag());
+
+        ArrayList<Long> seen = new ArrayList<>();
+        assertEquals(3, first.poll(event -> {
+            checkEvent(event);
+            seen.add(event.sequence);
+        }));
+        assertEquals("[0, 1, 2]", seen.toString());
+        assertEquals(0, first.poll(event -> fail("Read twice!")));
+        assertEquals(1, second.poll(event -> assertEquals(2,
+                event.sequence)));
+        assertEquals(0, first.missed());
+        assertEquals(2, bus.published());
+    }
+
+    @Test
+    public void lappedTest() {
+        EventBus bus = new EventBus(4);
+        EventBus.Cursor cursor = bus.subscribe();
+        for (int n = 0; n < 10; n += 1) {
+            publish(bus, n);
+        }
+        ArrayList<Long> seen = new ArrayList<>();
+        assertEquals(4, cursor.poll(event -> seen.add(event.sequence)));
+        assertEquals("[6, 7, 8, 9]", seen.toString());
+        assertEquals(6, cursor.missed());
+        assertEquals(0, cursor.lag());
+    }
+
+    @Test
+    public void concurrentTest() throws Exception {
+        EventBus bus = new EventBus(64);
+        int total = 200_000;
+        EventBus.Cursor[] cursors = {bus.subscribe(), bus.subscribe()};
+        long[] handled = new long[cursors.length];
+        Throwable[] failure = new Throwable[1];
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < cursors.length; c += 1) {
+            int consumer = c;
+            Thread thread = new Thread(() -> {
+                long[] last = {-1};
+                try {
+                    while (last[0] < total - 1) {
+                        handled[consumer] += cursors[consumer].poll(
+                            event -> {
+                                checkEvent(event);
+                                assertTrue(event.sequence > last[0]);
+                                last[0] = event.sequence;
+                            });
+                    }
+                } catch (Throwable e) {
+                    failure[0] = e;
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (int n = 0; n < total; n += 1) {
+            publish(bus, n);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure[0] != null) {
+            throw new AssertionError(failure[0]);
+        }
+        for (int c = 0; c < cursors.length; c += 1) {
+            assertEquals(total, handled[c] + cursors[c].missed());
+        }
+    }
+
+    @Test
+    public void gameTest() {
+        EventBus bus = new EventBus();
+        EventBus.Cursor cursor = bus.subscribe();
+        Game game = new Game(9);
+        game.publishTo(bus);
+        game.handle("start");
+        game.handle("Alice");
+        game.handle("Bob");
+        game.handle("Carol");
+        game.handle("Dave");
+        game.handle("road 10 0");
+        game.handle("roll");
+        game.handle("end");
+        game.release();
+
+        ArrayList<String> lines = new ArrayList<>();
+        ArrayList<Integer> kinds = new ArrayList<>();
+        cursor.poll(event -> {
+            assertEquals(9, event.game);
+            kinds.add(event.kind);
+            String name = (event.player < 0) ? null
+                    : game.player(event.player).getName();
+            lines.add(event.describe(name));
+        });
+        assertEquals("[0, 1, 1, 1, 1, 3, 2, 4]", kinds.toString());
+        assertEquals("Bob joined as player 2.", lines.get(2));
+        assertEquals("Alice couldn't build a road on hex 10 at 0.",
+                lines.get(5));
+        assertTrue(lines.get(6).startsWith("Alice rolled a "));
+        assertEquals("Bob, it's your turn!", lines.get(7));
+    }
+
+    @Test
+    public void allocationTest() {
+        EventBus bus = new EventBus(16);
+        EventBus.Cursor cursor = bus.subscribe();
+        EventBus.Handler ignore = event -> { };
+        Allocations.check("Publishing and reading an event", 0, () -> {
+            publish(bus, 1);
+            cursor.poll(ignore);
+        });
+    }
+
+}
@@ -0,0 +1,116 @@
+import java.nio.ByteBuffer;
+
+/** Writes a position as a fixed block of RECORD_SIZE bytes, for
+ * training models on.
+ *
+ * The block is made of planes, each at a fixed offset:
+ *
+ * HEXES: the hexes on a 5 by 5 grid of axial coordinates (See
+ * Board.get(int, int)), the cell for (q, r) being (q + 2) * 5 + r + 2,
+ * with HEX_SIZE bytes per cell: a one-hot of the resource (wood,
+ * brick, wheat, ore, sheep, desert), the number of pips on its number
+ * (how many ways two dice roll it), and 1 if the robber is there.
+ * Cells off of the board are all zeroes.
+ *
+ * VERTICES: for each vertex (See Topology), its owner plus one (0 if
+ * empty), and then 1 for a settlement or 2 for a city.
+ *
+ * EDGES: for each edge, its owner plus one, or 0 if empty.
+ *
+ * HANDS: for each player, the number of cards of each resource.
+ *
+ * TURN: a one-hot of whose turn it is.
+ *
+ * Encoding only writes into the buffer it is given, so it allocates
+ * nothing. Give it a direct buffer, and a FeatureWriter can hand the
+ * same bytes to the disk without copying them.
+ * @author John Angeles
+ */
+final class FeatureEncoder {
+
+    /** You can't create an encoder; use the static methods instead. */
+    private FeatureEncoder() { }
+
+    /** Writes GAME into OUT at its position, and moves the position
+     * past it. OUT needs at least RECORD_SIZE bytes left. */
+    static void encode(CompactGame game, ByteBuffer out) {
+        int base = out.position();
+        for (int i = 0; i < RECORD_SIZE; i += 1) {
+            out.put(base + i, (byte) 0);
+        }
+
+        int robber = game.robber();
+        for (int hex = 0; hex < 19; hex += 1) {
+            int at = base + HEXES + CELL[hex] * HEX_SIZE;
+            Resource resource = game.resource(hex);
+            if (resource != null) {
+                out.put(at + resource.index(), (byte) 1);
+            }
+            out.put(at + 6, (byte) pips(game.number(hex)));
+            out.put(at + 7, (byte) ((hex == robber) ? 1 : 0));
+        }
+
+        for (int v = 0; v < Topology.NUM_VERTICES; v += 1) {
+            int owner = game.owner(v);
+            if (owner >= 0) {
+                out.put(base + VERTICES + 2 * v, (byte) (owner + 1));
+                out.put(base + VERTICES + 2 * v + 1,
+                        (byte) (game.isCity(v) ? 2 : 1));
+            }
+        }
+
+        for (int e = 0; e < Topology.NUM_EDGES; e += 1) {
+            out.put(base + EDGES + e, (byte) (game.roadOwner(e) + 1));
+        }
+
+        for (int p = 0; p < 4; p += 1) {
+            long hand = game.hand(p);
+            for (int r = 0; r < Hand.NUM_RESOURCES; r += 1) {
+                out.put(base + HANDS + p * Hand.NUM_RESOURCES + r,
+                        (byte) Hand.count(hand, r));
+            }
+        }
+
+        out.put(base + TURN + game.turn(), (byte) 1);
+        out.position(base + RECORD_SIZE);
+    }
+
+    /** Returns the number of ways two dice roll NUMBER. */
+    static int pips(int number) {
+        return (number < 2 || number > 12 || number == 7) ? 0
+                : 6 - Math.abs(7 - number);
+    }
+
+    /** Returns the grid cell of HEX, from 0-18, in the HEXES plane. */
+    static int cell(int hex) {
+        return CELL[hex];
+    }
+
+    /** Bytes for each grid cell in HEXES. */
+    static final int HEX_SIZE = 8;
+
+    /** Offsets of each plane in a record. */
+    static final int HEXES = 0, VERTICES = HEXES + 25 * HEX_SIZE,
+            EDGES = VERTICES + 2 * Topology.NUM_VERTICES,
+            HANDS = EDGES + Topology.NUM_EDGES,
+            TURN = HANDS + 4 * Hand.NUM_RESOURCES;
+
+    /** Bytes in each record, rounded up to a multiple of 8. */
+    static final int RECORD_SIZE = (TURN + 4 + 7) & ~7;
+
+    /** Grid cell of each hex. */
+    private static final int[] CELL = new int[19];
+
+    /** Sets up CELL from the axial coordinates on Board. */
+    static {
+        for (int q = -2; q <= 2; q += 1) {
+            for (int r = -2; r <= 2; r += 1) {
+                Hex hex = Board.get(q, r);
+                if (hex != null) {
+                    CELL[hex.id() - 1] = (q + 2) * 5 + r + 2;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+import org.junit.Test;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+/** Set of tests for encoding positions as features.
+ * @author John Angeles
+ */
+public class FeatureEncoderTest {
+
+    @Test
+    public void encodeTest() {
+        CompactGame game = Perft.opening(4);
+        ByteBuffer out = ByteBuffer.allocateDirect(
+                2 * FeatureEncoder.RECORD_SIZE);
+        out.position(FeatureEncoder.RECORD_SIZE);
+        FeatureEncoder.encode(game, out);
+        assertEquals(2 * FeatureEncoder.RECORD_SIZE, out.position());
+        int base = FeatureEncoder.RECORD_SIZE;
+
+        int center = base + FeatureEncoder.HEXES
+                + FeatureEncoder.cell(9) * FeatureEncoder.HEX_SIZE;
+        assertEquals(12, FeatureEncoder.cell(9));
+        int ones = 0;
+        for (int i = 0; i < 6; i += 1) {
+            ones += out.get(center + i);
+        }
+        assertEquals(1, ones);
+        assertEquals(FeatureEncoder.pips(game.number(9)), out.get(center + 6));
+        int robbers = 0;
+        for (int cell = 0; cell < 25; cell += 1) {
+            robbers += out.get(base + FeatureEncoder.HEXES
+                    + cell * FeatureEncoder.HEX_SIZE + 7);
+        }
+        assertEquals(1, robbers);
+
+        int settlements = 0, roads = 0;
+        for (int v = 0; v < Topology.NUM_VERTICES; v += 1) {
+            settlements += out.get(base + FeatureEncoder.VERTICES + 2 * v + 1);
+        }
+        for (int e = 0; e < Topology.NUM_EDGES; e += 1) {
+            roads += (out.get(base + FeatureEncoder.EDGES + e) != 0) ? 1 : 0;
+        }
+        assertEquals(8, settlements);
+        assertEquals(8, roads);
+        assertEquals(Hand.count(game.hand(2), 3), out.get(base
+                + FeatureEncoder.HANDS + 2 * Hand.NUM_RESOURCES + 3));
+        assertEquals(1, out.get(base + FeatureEncoder.TURN));
+        assertEquals(0, out.get(base + FeatureEncoder.TURN + 1));
+        assertEquals(5, FeatureEncoder.pips(8));
+        assertEquals(0, FeatureEncoder.pips(7));
+    }
+
+    @Test
+    public void writerTest() throws IOException {
+        Path file = Files.createTempFile("features", ".bin");
+        CompactGame game = Perft.opening(6);
+        try (FeatureWriter writer = new FeatureWriter(file, 4)) {
+            for (int i = 0; i < 10; i += 1) {
+                writer.write(game);
+                game.endTurn();
+            }
+            assertEquals(10, writer.count());
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        assertEquals(10 * FeatureEncoder.RECORD_SIZE, bytes.length);
+        ByteBuffer expected = ByteBuffer.allocate(FeatureEncoder.RECORD_SIZE);
+        FeatureEncoder.encode(game, expected);
+        for (int i = 0; i < FeatureEncoder.RECORD_SIZE; i += 1) {
+            int at = 9 * FeatureEncoder.RECORD_SIZE + i;
+            if (i >= FeatureEncoder.TURN && i < FeatureEncoder.TURN + 4) {
+                continue;
+            }
+            assertEquals(expected.get(i), bytes[at]);
+        }
+        Files.delete(file);
+    }
+
+}
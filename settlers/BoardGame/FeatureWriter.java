@@ -0,0 +1,118 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/** Streams encoded positions (See FeatureEncoder) into a file, one
+ * record after another with nothing in between.
+ *
+ * Positions are encoded straight into one direct buffer that holds a
+ * batch of them, which goes to the file in a single write when it
+ * fills up. The buffer is reused for every batch, so writing allocates
+ * nothing, and the bytes go from the buffer to the disk without being
+ * copied onto the heap.
+ *
+ * Only one thread may use me.
+ * @author John Angeles
+ */
+final class FeatureWriter implements Closeable {
+
+    /** Opens FILE, replacing it, to hold batches of BATCHSIZE
+     * positions. */
+    FeatureWriter(Path file, int batchSize) throws IOException {
+        _channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        _batch = ByteBuffer.allocateDirect(
+                batchSize * FeatureEncoder.RECORD_SIZE);
+    }
+
+    /** Encodes GAME and adds it to the file. */
+    void write(CompactGame game) throws IOException {
+        if (_batch.remaining() < FeatureEncoder.RECORD_SIZE) {
+            flush();
+        }
+        FeatureEncoder.encode(game, _batch);
+        _count += 1;
+    }
+
+    /** Writes out the positions in the current batch. */
+    void flush() throws IOException {
+        _batch.flip();
+        while (_batch.hasRemaining()) {
+            _channel.write(_batch);
+        }
+        _batch.clear();
+    }
+
+    /** Returns the number of positions I have written. */
+    long count() {
+        return _count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        _channel.close();
+    }
+
+    /** Writes POSITIONS positions to FILE, and prints how many
+     * positions per minute went out. The positions come from one game
+     * at a time: each of the first GAMES seeded openings (See
+     * Perft.opening) in turn is rolled for TURNS turns, writing the
+     * position after every roll, and then the next one starts.
+     * Usage: java FeatureWriter FILE [POSITIONS] */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java FeatureWriter FILE [POSITIONS]");
+            System.exit(1);
+        }
+        long positions = (args.length > 1) ? Long.parseLong(args[1])
+                : 10_000_000;
+        CompactGame[] openings = new CompactGame[GAMES];
+        for (int g = 0; g < GAMES; g += 1) {
+            openings[g] = Perft.opening(g);
+        }
+        CompactGame game = new CompactGame();
+        Random random = new Random(0);
+        long start = System.nanoTime();
+        try (FeatureWriter writer = new FeatureWriter(Path.of(args[0]),
+                BATCH_SIZE)) {
+            for (long n = 0; n < positions; n += 1) {
+                if (n % TURNS == 0) {
+                    openings[(int) (n / TURNS % GAMES)].copyInto(game);
+                }
+                game.endTurn();
+                game.produce(random.nextInt(6) + random.nextInt(6) + 2);
+                writer.write(game);
+            }
+        }
+        double minutes = (System.nanoTime() - start) / 60e9;
+        System.out.printf("%d positions of %d bytes in %.2f s"
+                + " (%.0f positions/minute)%n", positions,
+                FeatureEncoder.RECORD_SIZE, minutes * 60,
+                positions / minutes);
+    }
+
+    /** Openings main cycles through. */
+    private static final int GAMES = 64;
+
+    /** Turns main rolls each opening for. */
+    private static final int TURNS = 50;
+
+    /** Positions per batch in main. */
+    private static final int BATCH_SIZE = 4096;
+
+    /** The file I write to. */
+    private final FileChannel _channel;
+
+    /** Positions encoded since the last write. */
+    private final ByteBuffer _batch;
+
+    /** Number of positions written. */
+    private long _count;
+
+}
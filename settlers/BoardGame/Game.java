@@ -0,0 +1,553 @@
+import java.nio.ByteBuffer;
+
+/** A single game of Settlers that is driven one line of text at a
+ * time, the same way Main drives the console game.
+ *
+ * I understand the same commands as Main: "start" to start the game,
+ * "quit" (followed by "yes" or "no") to leave, and one line for each
+ * player's name. Once all four players are named, the player whose
+ * turn it is may type:
+ *
+ * settlement HEX POSN  -- Player.placeSettlement
+ * city HEX POSN        -- Player.placeCity
+ * road HEX SIDE        -- Player.placeRoad
+ * roll                 -- Board.rollDice
+ * hand                 -- Player.flag
+ * board                -- BoardView.dump, of my latest view
+ * end                  -- pass the turn to the next player
+ *
+ * I am not thread-safe. Whoever owns me (See GameActor) must make sure
+ * that only one command is handled at a time.
+ * @author John Angeles
+ */
+final class Game {
+
+    /** Creates a game that has not been started yet.
+     * @param id A number that identifies me.
+     */
+    Game(int id) {
+        this(id, null);
+    }
+
+    /** Creates a game with ID that records every action it takes
+     * in LOG, if LOG is not null. */
+    Game(int id, GameLog log) {
+        _id = id;
+        _phase = WAITING;
+        _log = log;
+    }
+
+    /** Returns my id. */
+    int id() {
+        return _id;
+    }
+
+    /** Returns the log I record into, or null if I don't keep one. */
+    GameLog log() {
+        return _log;
+    }
+
+    /** Returns true iff somebody has quit me. */
+    boolean over() {
+        return _phase == OVER;
+    }
+
+    /** Returns the player with index I, from 0 to 3, or null if that
+     * player has not been named yet. */
+    Player player(int i) {
+        return _players[i];
+    }
+
+    /** Returns the index of the player whose turn it is. */
+    int turn() {
+        return _turn;
+    }
+
+    /** Returns the greeting that Main prints when it starts. */
+    static String welcome() {
+        return "Welcome! All credit goes to the designers of Settlers of Catan.\n"
+                + "Type in 'start' to start the game!\n"
+                + "Type in 'quit' to exit the program!";
+    }
+
+    /** Handles one line of input, LINE, and returns my response. */
+    String handle(String line) {
+        line = line.trim();
+        if (_confirmingQuit) {
+            return confirmQuit(line);
+        } else if (line.equals("quit") && _phase != OVER) {
+            _confirmingQuit = true;
+            return "Are you sure you want to quit? "
+                    + "Type 'yes' to quit or 'no' to keep playing";
+        }
+
+        switch (_phase) {
+        case WAITING:
+            if (!line.equals("start")) {
+                return "Invalid input!\n"
+                        + "Type in 'start' to start the game!\n"
+                        + "Type in 'quit' to exit the program!";
+            }
+            _phase = NAMING;
+            resetBoard();
+            if (_drawn) {
+                return namePrompt();
+            }
+            return "Starting the game!\n"
+                    + "Initializing the board... \n"
+                    + _view.dump()
+                    + namePrompt();
+        case NAMING:
+            return name(line);
+        case PLAYING:
+            return play(line);
+        default:
+            return "The game is over.";
+        }
+    }
+
+    /** Handles LINE while waiting for a 'yes' or 'no' after 'quit'. */
+    private String confirmQuit(String line) {
+        if (line.equals("yes")) {
+            _confirmingQuit = false;
+            _phase = OVER;
+            announce(EventBus.QUIT, -1, 0, 0, 0, 0, false);
+            return "Goodbye!";
+        } else if (line.equals("no")) {
+            _confirmingQuit = false;
+            return "Let's keep playing!";
+        } else {
+            return "Please type in 'yes' or 'no'.";
+        }
+    }
+
+    /** Names the next player NAME, unless it is longer than
+     * MAX_NAME. */
+    private String name(String name) {
+        if (name.length() > MAX_NAME) {
+            return "Names can be at most " + MAX_NAME + " letters long. "
+                    + namePrompt();
+        }
+        int index = _named;
+        _players[index] = new Player(COLORS[index], name);
+        if (_log != null) {
+            _log.player(index, _players[index]);
+        }
+        announce(EventBus.NAMED, index, 0, 0, 0, 0, false);
+        _named += 1;
+        if (_named < 4) {
+            return namePrompt();
+        }
+        _phase = PLAYING;
+        _turn = 0;
+        if (EngineMetrics.ENABLED) {
+            _turnStarted = System.nanoTime();
+        }
+        startTurnEvent();
+        return _players[0].getName() + ", it's your turn!";
+    }
+
+    /** Begins the event for the turn that is starting, if turns are
+     * being recorded. (See GameEvents) */
+    private void startTurnEvent() {
+        _turnEvent = GameEvents.turn(_id, _players[_turn].color(),
+                _turn);
+    }
+
+    /** Returns the prompt for the next player's name. */
+    private String namePrompt() {
+        return "What will be player " + ORDINALS[_named] + "'s name?";
+    }
+
+    /** Returns true iff I am in the middle of the game and not waiting
+     * for anyone to confirm quitting, so execute may be called. */
+    boolean playing() {
+        return _phase == PLAYING && !_confirmingQuit;
+    }
+
+    /** Returns the command code for WORD, or UNKNOWN. */
+    static int command(String word) {
+        for (int i = 1; i < COMMANDS.length; i += 1) {
+            if (COMMANDS[i].equals(word)) {
+                return i;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /** Handles LINE once every player has been named. */
+    private String play(String line) {
+        String[] words = line.split("\\s+");
+        int hex = (words.length > 1) ? parse(words[1]) : MISSING;
+        int posn = (words.length > 2) ? parse(words[2]) : MISSING;
+        return execute(command(words[0]), hex, posn);
+    }
+
+    /** Returns WORD as a number, or MISSING if it isn't one. */
+    private static int parse(String word) {
+        try {
+            return Integer.parseInt(word);
+        } catch (NumberFormatException e) {
+            return MISSING;
+        }
+    }
+
+    /** Has the player whose turn it is carry out COMMAND, and returns
+     * my response. This is what handle does once the game is playing,
+     * for callers that have already parsed the line themselves.
+     *
+     * @param command One of the command codes, such as ROAD.
+     * @param hex The hex to build on, or MISSING.
+     * @param posn The position on HEX to build on, or MISSING.
+     */
+    String execute(int command, int hex, int posn) {
+        assert playing() : "The game isn't being played!";
+        Player current = _players[_turn];
+        switch (command) {
+        case BOARD:
+            return _view.dump();
+        case HAND:
+            return current.flag();
+        case ROLL:
+            synchronized (BOARD_LOCK) {
+                claimBoard();
+                int die1 = Board.genRandom(1, 6);
+                int die2 = Board.genRandom(1, 6);
+                int roll = Board.rollDice(die1, die2);
+                if (_log != null) {
+                    _log.roll(die1, die2);
+                }
+                announce(EventBus.ROLLED, _turn, 0, 0, 0, roll, false);
+                publish();
+                return current.getName() + " rolled a " + roll + ".";
+            }
+        case END:
+            if (EngineMetrics.ENABLED) {
+                long now = System.nanoTime();
+                EngineMetrics.TURN_TIME.record(now - _turnStarted);
+                _turnStarted = now;
+            }
+            if (_turnEvent != null && _turnEvent.shouldCommit()) {
+                _turnEvent.commit();
+            }
+            _turn = (_turn + 1) % 4;
+            if (_log != null) {
+                _log.turn(_turn);
+            }
+            announce(EventBus.TURN, _turn, 0, 0, 0, 0, false);
+            startTurnEvent();
+            return _players[_turn].getName() + ", it's your turn!";
+        case SETTLEMENT:
+        case CITY:
+        case ROAD:
+            return place(current, command, hex, posn);
+        default:
+            return "Invalid input!";
+        }
+    }
+
+    /** Has CURRENT place the piece for COMMAND on HEX at POSN. */
+    private String place(Player current, int command, int hex, int posn) {
+        if (hex == MISSING || posn == MISSING) {
+            return "Usage: " + COMMANDS[command] + " HEX POSITION";
+        } else if (!(1 <= hex && hex <= 19)) {
+            return "Please pick a number between 1 and 19!";
+        } else if (!(0 <= posn && posn <= 5)) {
+            return "Please pick a position between 0 and 5!";
+        }
+        synchronized (BOARD_LOCK) {
+            claimBoard();
+            String result;
+            boolean placed;
+            if (command == SETTLEMENT) {
+                int before = current.numSettlements();
+                result = current.placeSettlement(hex, posn);
+                placed = current.numSettlements() < before;
+                if (_log != null && placed) {
+                    _log.settlement(_turn, hex, posn);
+                }
+            } else if (command == CITY) {
+                int before = current.numCities();
+                result = current.placeCity(hex, posn);
+                placed = current.numCities() < before;
+                if (_log != null && placed) {
+                    _log.city(_turn, hex, posn);
+                }
+            } else {
+                int before = current.numRoads();
+                result = current.placeRoad(hex, posn);
+                placed = current.numRoads() < before;
+                if (_log != null && placed) {
+                    _log.road(_turn, hex, posn);
+                }
+            }
+            publish();
+            announce(EventBus.BUILT, _turn, command, hex, posn, 0, placed);
+            return result;
+        }
+    }
+
+    /** Writes everything about me, including my board, into BUF.
+     * This takes a few hundred bytes. (See Board.save and Player.save)
+     */
+    void save(ByteBuffer buf) {
+        buf.putInt(_id);
+        buf.put((byte) _phase);
+        buf.put((byte) (_confirmingQuit ? 1 : 0));
+        buf.put((byte) _named);
+        buf.put((byte) _turn);
+        buf.putLong(_version);
+        for (int i = 0; i < _named; i += 1) {
+            _players[i].save(buf);
+        }
+        synchronized (BOARD_LOCK) {
+            if (_onBoard == this) {
+                Board.save(buf);
+            } else if (_stashedBoard != null) {
+                buf.put(_stashedBoard);
+            } else {
+                buf.put(EMPTY_BOARD);
+            }
+        }
+    }
+
+    /** Returns the game saved in BUF, which records into LOG if LOG
+     * isn't null, and puts its board onto Board. */
+    static Game load(ByteBuffer buf, GameLog log) {
+        Game game = new Game(buf.getInt(), log);
+        game._phase = buf.get();
+        game._confirmingQuit = buf.get() != 0;
+        game._named = buf.get();
+        game._turn = buf.get();
+        game._version = buf.getLong();
+        if (EngineMetrics.ENABLED && game._phase == PLAYING) {
+            game._turnStarted = System.nanoTime();
+        }
+        for (int i = 0; i < game._named; i += 1) {
+            game._players[i] = Player.load(buf);
+        }
+        synchronized (BOARD_LOCK) {
+            if (_onBoard != null) {
+                _onBoard.stashBoard();
+            }
+            _onBoard = game;
+            GameEvents.setGame(game._id);
+            Board.load(buf, game._players);
+            if (game._phase != WAITING) {
+                game.publish();
+            }
+        }
+        return game;
+    }
+
+    /** Publishes everything that happens in me from now on to BUS, or
+     * stops publishing if BUS is null. Consumers read it on their own
+     * threads, so rendering and logging from BUS never hold up my game.
+     * Call this from the thread that owns me, which is BUS's only
+     * producer. */
+    void publishTo(EventBus bus) {
+        _bus = bus;
+        _drawn = false;
+    }
+
+    /** Publishes to BUS like publishTo, and leaves drawing the new
+     * board when the game starts to BUS's consumers (See view): my
+     * response to 'start' is then only the first name prompt. */
+    void drawOn(EventBus bus) {
+        publishTo(bus);
+        _drawn = bus != null;
+    }
+
+    /** Publishes an event of KIND, to PLAYER, with PIECE, HEX, POSN,
+     * ROLL and PLACED, on my bus if I have one. (See EventBus.Event) */
+    private void announce(int kind, int player, int piece, int hex,
+                          int posn, int roll, boolean placed) {
+        if (_bus != null) {
+            _bus.publish(kind, _id, player, piece, hex, posn, roll, placed);
+        }
+    }
+
+    /** Returns the view of the board that I published after my last
+     * action, or null if I haven't started. Any thread may call this,
+     * and it never waits on my game. */
+    BoardView view() {
+        return _view;
+    }
+
+    /** Publishes a new view of the board. Assumes that I hold
+     * BOARD_LOCK. */
+    private void publish() {
+        _version += 1;
+        _view = BoardView.capture(_version);
+    }
+
+    /** Lets go of the board if it holds my game, without saving what
+     * is on it. Call this once I have been saved and will not be used
+     * again. */
+    void release() {
+        synchronized (BOARD_LOCK) {
+            if (_onBoard == this) {
+                _onBoard = null;
+                GameEvents.setGame(GameEvents.NO_GAME);
+            }
+        }
+    }
+
+    /** Stashes the board of the game that Board holds, if any, so
+     * that code outside of every game may use Board without taking
+     * that game's layout and pieces with it. The game gets its board
+     * back the next time it claims it. Assumes that the caller holds
+     * BOARD_LOCK. */
+    static void vacateBoard() {
+        if (_onBoard != null) {
+            _onBoard.stashBoard();
+            _onBoard = null;
+            GameEvents.setGame(GameEvents.NO_GAME);
+        }
+    }
+
+    /** Makes sure that Board holds my game. If it holds another
+     * game, that game's board is stashed away first. Assumes that I
+     * hold BOARD_LOCK. */
+    private void claimBoard() {
+        if (_onBoard == this) {
+            return;
+        }
+        if (_onBoard != null) {
+            _onBoard.stashBoard();
+        }
+        _onBoard = this;
+        GameEvents.setGame(_id);
+        if (_stashedBoard != null) {
+            Board.load(ByteBuffer.wrap(_stashedBoard), _players);
+            _stashedBoard = null;
+        } else {
+            Board.wipe();
+        }
+    }
+
+    /** Saves what is on the board into my stash and wipes the board,
+     * because another game is about to use it. Assumes that I hold
+     * BOARD_LOCK and that the board holds my game. */
+    private void stashBoard() {
+        ByteBuffer buf = ByteBuffer.allocate(Board.SAVED_SIZE);
+        Board.save(buf);
+        _stashedBoard = buf.array();
+        Board.wipe();
+    }
+
+    /** Resets the board and publishes a view of it. */
+    private void resetBoard() {
+        synchronized (BOARD_LOCK) {
+            claimBoard();
+            Board.reset();
+            if (_log != null) {
+                _log.layout();
+            }
+            publish();
+            announce(EventBus.RESET, -1, 0, 0, 0, 0, false);
+        }
+    }
+
+    /** Board is a single static board, so every game in this program
+     * shares it. Anything that touches Board holds this lock, and a
+     * game claims the board (See claimBoard) before touching it. */
+    static final Object BOARD_LOCK = new Object();
+
+    /** The game whose pieces are on Board, or null. */
+    private static Game _onBoard;
+
+    /** What save writes for a game that has never touched the board. */
+    private static final byte[] EMPTY_BOARD = new byte[Board.SAVED_SIZE];
+
+    /** Sets up EMPTY_BOARD. Hexes have no resource yet. */
+    static {
+        for (int i = 0; i < 19; i += 1) {
+            EMPTY_BOARD[i] = 6 * 16;
+        }
+    }
+
+    /** Command codes understood by execute. */
+    static final int UNKNOWN = 0, BOARD = 1, HAND = 2, ROLL = 3, END = 4,
+            SETTLEMENT = 5, CITY = 6, ROAD = 7;
+
+    /** The word for each command, indexed by its code. */
+    static final String[] COMMANDS = new String[] {
+        null, "board", "hand", "roll", "end", "settlement", "city", "road"
+    };
+
+    /** Stands for a number that was not given. */
+    static final int MISSING = -1;
+
+    /** Most chars in a player's name, which keeps a saved game small
+     * (See save). */
+    static final int MAX_NAME = 32;
+
+    /** Phase before anyone has typed 'start'. */
+    private static final int WAITING = 0;
+
+    /** Phase where the players are being named. */
+    private static final int NAMING = 1;
+
+    /** Phase where the players take turns. */
+    private static final int PLAYING = 2;
+
+    /** Phase after somebody has quit. */
+    private static final int OVER = 3;
+
+    /** The color of each player, in turn order. */
+    private static final Color[] COLORS = new Color[] {
+        Color.black(), Color.white(), Color.orange(), Color.red()
+    };
+
+    /** Used for prompting each player's name. */
+    private static final String[] ORDINALS
+            = new String[] {"one", "two", "three", "four"};
+
+    /** My id. */
+    private final int _id;
+
+    /** Current phase of the game. */
+    private int _phase;
+
+    /** True iff somebody has typed 'quit' and I am waiting for them
+     * to confirm. */
+    private boolean _confirmingQuit;
+
+    /** Number of players that have been named. */
+    private int _named;
+
+    /** Index of the player whose turn it is. */
+    private int _turn;
+
+    /** When the current turn started, by System.nanoTime(), if metrics
+     * are on. (See EngineMetrics) */
+    private long _turnStarted;
+
+    /** Event for the turn being played, or null if turns aren't being
+     * recorded. (See GameEvents) */
+    private GameEvents.Turn _turnEvent;
+
+    /** My board while another game is using Board, or null if Board
+     * holds my game or I have never used it. (See Board.save) */
+    private byte[] _stashedBoard;
+
+    /** Where I record my actions, or null. */
+    private final GameLog _log;
+
+    /** Where I publish events, or null. */
+    private EventBus _bus;
+
+    /** True iff _bus's consumers draw the board when the game starts. */
+    private boolean _drawn;
+
+    /** Number of views I have published. */
+    private long _version;
+
+    /** The latest view of the board I published. */
+    private volatile BoardView _view;
+
+    /** The players, in turn order. */
+    private Player[] _players = new Player[4];
+
+}
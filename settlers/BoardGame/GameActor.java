@@ -0,0 +1,109 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/** Runs one game as an actor. Commands for my game are put into my
+ * mailbox by any number of threads, and I handle them one at a time
+ * on my own thread, so my game never sees two commands at once.
+ *
+ * Once I have stopped, every message still in my mailbox, and every
+ * message sent to me afterwards, fails with an IllegalStateException,
+ * so nobody waits forever for a response that will never come.
+ *
+ * I am meant to run on a virtual thread (See GameServer), where
+ * waiting on an empty mailbox costs next to nothing.
+ * @author John Angeles
+ */
+final class GameActor implements Runnable {
+
+    /** Creates an actor for GAME. */
+    GameActor(Game game) {
+        _game = game;
+    }
+
+    /** Returns my game. Only touch it from my own thread. */
+    Game game() {
+        return _game;
+    }
+
+    /** Puts LINE into my mailbox. Returns a future that completes
+     * with my game's response once I have handled LINE.
+     */
+    CompletableFuture<String> send(String line) {
+        Message message = new Message(line);
+        _mailbox.add(message);
+        if (_stopped) {
+            drain();
+        }
+        return message.reply;
+    }
+
+    /** Tells me to stop once I am done with the messages before this. */
+    void stop() {
+        _mailbox.add(STOP);
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            Message message;
+            try {
+                message = _mailbox.take();
+            } catch (InterruptedException e) {
+                message = STOP;
+            }
+            if (message == STOP) {
+                _stopped = true;
+                drain();
+                return;
+            }
+            try {
+                message.reply.complete(_game.handle(message.line));
+            } catch (RuntimeException e) {
+                message.reply.completeExceptionally(e);
+            }
+        }
+    }
+
+    /** Fails every message in my mailbox. Only call this once I have
+     * stopped. */
+    private void drain() {
+        Message message;
+        while ((message = _mailbox.poll()) != null) {
+            if (message != STOP) {
+                message.reply.completeExceptionally(
+                        new IllegalStateException("The game has closed."));
+            }
+        }
+    }
+
+    /** A line of input together with where to send the response. */
+    private static final class Message {
+
+        /** Creates a message holding LINE. */
+        Message(String line) {
+            this.line = line;
+        }
+
+        /** The line of input. */
+        final String line;
+
+        /** Completes with the response to LINE. */
+        final CompletableFuture<String> reply = new CompletableFuture<>();
+    }
+
+    /** Message that tells me to stop. */
+    private static final Message STOP = new Message(null);
+
+    /** The game that I own. */
+    private final Game _game;
+
+    /** Messages I have yet to handle. */
+    private final LinkedBlockingQueue<Message> _mailbox
+            = new LinkedBlockingQueue<>();
+
+    /** True once I have stopped handling messages. Set before my
+     * mailbox is drained, so a message added after that drain sees it
+     * and drains the mailbox itself. */
+    private volatile boolean _stopped;
+
+}
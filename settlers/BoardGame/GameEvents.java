@@ -0,0 +1,308 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** A class that you cannot instantiate. It holds the JDK Flight
+ * Recorder events that the engine emits, so that one recording shows
+ * where the engine spends its time: board resets, rolls of the dice,
+ * every attempt to build, trades, moves of the robber and whole turns.
+ *
+ * Every event carries the id of the game on the board (See
+ * Game.claimBoard), or NO_GAME if no Game owns it, along with the
+ * player's color, where on the board it happened and how it came out.
+ *
+ * The events are on by default, and are cheap enough to leave on: none
+ * of them records a stack trace, and the engine asks me for each event
+ * (See roll, build and the rest), which returns null, allocating
+ * nothing, when that event isn't being recorded.
+ * @author John Angeles
+ */
+final class GameEvents {
+
+    /** You can't create these; use the event classes instead. */
+    private GameEvents() { }
+
+    /** The board was cleared and laid out again. */
+    @Name("settlers.Reset")
+    @Label("Board Reset")
+    @Category("Settlers")
+    @StackTrace(false)
+    static final class Reset extends Event {
+        /** Game on the board. */
+        @Label("Game Id")
+        int gameId;
+
+        /** Hex of the desert, from 1 to 19, or 0 if there is none. */
+        @Label("Desert")
+        int desert;
+
+        /** True if the layout was given rather than random. */
+        @Label("Given")
+        boolean given;
+    }
+
+    /** The dice were rolled and paid out. */
+    @Name("settlers.Roll")
+    @Label("Roll")
+    @Category("Settlers")
+    @StackTrace(false)
+    static final class Roll extends Event {
+        /** Game on the board. */
+        @Label("Game Id")
+        int gameId;
+
+        /** The two dice. */
+        @Label("Die 1")
+        int die1;
+
+        @Label("Die 2")
+        int die2;
+
+        /** Hexes that paid out. */
+        @Label("Payouts")
+        int payouts;
+    }
+
+    /** A player tried to place a road, settlement or city. */
+    @Name("settlers.Build")
+    @Label("Build")
+    @Category("Settlers")
+    @StackTrace(false)
+    static final class Build extends Event {
+        /** Game on the board. */
+        @Label("Game Id")
+        int gameId;
+
+        /** Color of the player. */
+        @Label("Color")
+        String color;
+
+        /** "road", "settlement" or "city". */
+        @Label("Piece")
+        String piece;
+
+        /** Where the piece was to go. */
+        @Label("Hex")
+        int hex;
+
+        @Label("Position")
+        @Description("Position of a building, or side of a road")
+        int posn;
+
+        /** True if it was placed. */
+        @Label("Placed")
+        boolean placed;
+
+        /** What the player was told. */
+        @Label("Outcome")
+        String outcome;
+
+        /** Fills in everything I know once the attempt is over, with the
+         * outcome PLACED and MESSAGE, and commits me. */
+        void end(boolean placed, String message) {
+            if (shouldCommit()) {
+                this.placed = placed;
+                outcome = message;
+                commit();
+            }
+        }
+    }
+
+    /** Two players tried to trade. */
+    @Name("settlers.Trade")
+    @Label("Trade")
+    @Category("Settlers")
+    @StackTrace(false)
+    static final class Trade extends Event {
+        /** Game on the board. */
+        @Label("Game Id")
+        int gameId;
+
+        /** Colors of the proposer and of the partner. */
+        @Label("Proposer")
+        String proposer;
+
+        @Label("Partner")
+        String partner;
+
+        /** Packed hands given and received by the proposer. (See
+         * Hand) */
+        @Label("Give")
+        long give;
+
+        @Label("Want")
+        long want;
+
+        /** True if the cards changed hands. */
+        @Label("Resolved")
+        boolean resolved;
+    }
+
+    /** The robber was moved. */
+    @Name("settlers.Robber")
+    @Label("Robber Move")
+    @Category("Settlers")
+    @StackTrace(false)
+    static final class Robber extends Event {
+        /** Game on the board. */
+        @Label("Game Id")
+        int gameId;
+
+        /** Hex the robber was on, and the one it moved to, from 1 to
+         * 19, or 0 for off the board. */
+        @Label("From")
+        int from;
+
+        @Label("To")
+        int to;
+    }
+
+    /** A whole turn, from when it started to when the player ended
+     * it. */
+    @Name("settlers.Turn")
+    @Label("Turn")
+    @Category("Settlers")
+    @StackTrace(false)
+    static final class Turn extends Event {
+        /** Game being played. */
+        @Label("Game Id")
+        int gameId;
+
+        /** Color of the player whose turn it was. */
+        @Label("Color")
+        String color;
+
+        /** Index of that player, from 0 to 3. */
+        @Label("Player")
+        int player;
+    }
+
+    /** Returns a Reset event, already begun, or null if resets aren't
+     * being recorded. */
+    static Reset reset() {
+        if (!recording(RESET)) {
+            return null;
+        }
+        Reset event = new Reset();
+        event.begin();
+        return event;
+    }
+
+    /** Returns a Roll event, already begun, or null if rolls aren't
+     * being recorded. */
+    static Roll roll() {
+        if (!recording(ROLL)) {
+            return null;
+        }
+        Roll event = new Roll();
+        event.begin();
+        return event;
+    }
+
+    /** Returns a Build event, already begun, for the player of COLOR
+     * trying to place PIECE on HEX at POSN, or null if builds aren't
+     * being recorded. */
+    static Build build(Color color, String piece, int hex, int posn) {
+        if (!recording(BUILD)) {
+            return null;
+        }
+        Build event = new Build();
+        event.gameId = _game;
+        event.color = color.toString();
+        event.piece = piece;
+        event.hex = hex;
+        event.posn = posn;
+        event.begin();
+        return event;
+    }
+
+    /** Returns a Trade event, already begun, or null if trades aren't
+     * being recorded. */
+    static Trade trade() {
+        if (!recording(TRADE)) {
+            return null;
+        }
+        Trade event = new Trade();
+        event.begin();
+        return event;
+    }
+
+    /** Returns a Robber event, already begun, or null if the robber
+     * isn't being recorded. */
+    static Robber robber() {
+        if (!recording(ROBBER)) {
+            return null;
+        }
+        Robber event = new Robber();
+        event.begin();
+        return event;
+    }
+
+    /** Returns a Turn event, already begun, for the turn of PLAYER, of
+     * COLOR, in the game with id GAME, or null if turns aren't being
+     * recorded. */
+    static Turn turn(int game, Color color, int player) {
+        if (!recording(TURN)) {
+            return null;
+        }
+        Turn event = new Turn();
+        event.gameId = game;
+        event.color = color.toString();
+        event.player = player;
+        event.begin();
+        return event;
+    }
+
+    /** Returns true if events of TYPE, one of RESET to TURN, are being
+     * recorded. Until something starts the Flight Recorder, this is a
+     * single read of a flag, and no event type is looked up. */
+    private static boolean recording(int type) {
+        if (!FlightRecorder.isInitialized()) {
+            return false;
+        }
+        EventType[] types = _types;
+        if (types == null) {
+            types = new EventType[] {
+                EventType.getEventType(Reset.class),
+                EventType.getEventType(Roll.class),
+                EventType.getEventType(Build.class),
+                EventType.getEventType(Trade.class),
+                EventType.getEventType(Robber.class),
+                EventType.getEventType(Turn.class)
+            };
+            _types = types;
+        }
+        return types[type].isEnabled();
+    }
+
+    /** Returns the id of the game on the board, or NO_GAME. */
+    static int game() {
+        return _game;
+    }
+
+    /** Records that the game with ID is now on the board, or that none
+     * is if ID is NO_GAME. Assumes that the caller holds
+     * Game.BOARD_LOCK. */
+    static void setGame(int id) {
+        _game = id;
+    }
+
+    /** Game id of events on a board that no Game owns. */
+    static final int NO_GAME = -1;
+
+    /** Indices of each event's type in _types. */
+    private static final int RESET = 0, ROLL = 1, BUILD = 2, TRADE = 3,
+            ROBBER = 4, TURN = 5;
+
+    /** The type of each event, once the Flight Recorder has started. */
+    private static volatile EventType[] _types;
+
+    /** Id of the game on the board. */
+    private static volatile int _game = NO_GAME;
+
+}
@@ -0,0 +1,87 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/** Set of tests for the engine's Flight Recorder events.
+ * @author John Angeles
+ */
+public class GameEventsTest {
+
+    @Test
+    public void recordingTest() throws Exception {
+        Path file = Files.createTempFile("events", ".jfr");
+        Game game = new Game(77);
+        try (Recording recording = new Recording()) {
+            for (String name : new String[] {"Reset", "Roll", "Build",
+                "Trade", "Robber", "Turn"}) {
+                recording.enable("settlers." + name);
+            }
+            recording.start();
+            game.handle("start");
+            game.handle("Alice");
+            game.handle("Bob");
+            game.handle("Carol");
+            game.handle("Dave");
+            game.handle("road 10 0");
+            game.handle("roll");
+            game.handle("end");
+            synchronized (Game.BOARD_LOCK) {
+                game.handle("board");
+                Board.moveRobber(5);
+            }
+            new TradeEngine().resolve(new Trade(game.player(0), null,
+                    Hand.pack(new int[] {1, 0, 0, 0, 0}), 0), null);
+            recording.stop();
+            recording.dump(file);
+        } finally {
+            game.release();
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        HashMap<String, RecordedEvent> byName = new HashMap<>();
+        for (RecordedEvent event : events) {
+            byName.put(event.getEventType().getName(), event);
+            assertEquals(77, event.getInt("gameId"));
+        }
+        assertEquals(6, byName.size());
+
+        RecordedEvent build = byName.get("settlers.Build");
+        assertEquals("road", build.getString("piece"));
+        assertEquals(10, build.getInt("hex"));
+        assertEquals(0, build.getInt("posn"));
+        assertFalse(build.getBoolean("placed"));
+        assertEquals("Nope, can't place it there.",
+                build.getString("outcome"));
+        assertEquals(game.player(0).color().toString(),
+                build.getString("color"));
+
+        RecordedEvent roll = byName.get("settlers.Roll");
+        int sum = roll.getInt("die1") + roll.getInt("die2");
+        assertTrue(2 <= sum && sum <= 12);
+
+        RecordedEvent turn = byName.get("settlers.Turn");
+        assertEquals(0, turn.getInt("player"));
+
+        assertEquals(5, byName.get("settlers.Robber").getInt("to"));
+        assertFalse(byName.get("settlers.Reset").getBoolean("given"));
+        assertFalse(byName.get("settlers.Trade").getBoolean("resolved"));
+    }
+
+    @Test
+    public void noGameTest() {
+        Game game = new Game(5);
+        game.handle("start");
+        assertEquals(5, GameEvents.game());
+        game.release();
+        assertEquals(GameEvents.NO_GAME, GameEvents.game());
+    }
+
+}
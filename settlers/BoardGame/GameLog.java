@@ -0,0 +1,274 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/** An append-only record of everything that changes one game.
+ *
+ * Each action is written as a record: one byte saying what kind of
+ * action it was, followed by its numbers as varints (seven bits per
+ * byte, lowest bits first, with the top bit set on every byte but the
+ * last). Records go into memory-mapped segment files of SEGMENT_SIZE
+ * bytes named game-ID.N.log, and a new segment is started when one
+ * fills up. The unused end of a segment is all zeroes, and END is 0.
+ *
+ * Writing a record only copies a few bytes into memory. Segments are
+ * forced to disk every second by a background thread, and a segment
+ * that fills up is handed to that thread to force, so the game thread
+ * never waits on the disk. GameReplayer reads the log back. A log can
+ * be closed, or detached so that FLUSHER forces it for the last time,
+ * and opened again later where it left off (See end), so that a game
+ * that isn't being played doesn't keep a segment mapped.
+ *
+ * Only the thread that owns the game may write to me.
+ * @author John Angeles
+ */
+final class GameLog implements Closeable {
+
+    /** Opens a new log for the game with GAMEID in the directory DIR,
+     * replacing any log that game had before. Every segment of the old
+     * log is deleted, so none of a longer old log is replayed after
+     * the end of mine. */
+    GameLog(Path dir, int gameId) throws IOException {
+        _dir = dir;
+        _gameId = gameId;
+        for (int n = 0; Files.deleteIfExists(segment(dir, gameId, n));
+             n += 1) {
+            /* Segments are numbered without gaps. */
+        }
+        startSegment(true);
+        OPEN.put(this, this);
+    }
+
+    /** Opens the log for the game with GAMEID in the directory DIR
+     * again after it was closed, to carry on after its EVENTS records,
+     * which end at END (See end). */
+    GameLog(Path dir, int gameId, long end, long events)
+            throws IOException {
+        _dir = dir;
+        _gameId = gameId;
+        _segment = (int) (end / SEGMENT_SIZE);
+        _events = events;
+        startSegment(false);
+        _buf.position((int) (end % SEGMENT_SIZE));
+        OPEN.put(this, this);
+    }
+
+    /** Returns the file that holds segment SEGMENT of the game with
+     * GAMEID in DIR. */
+    static Path segment(Path dir, int gameId, int segment) {
+        return dir.resolve("game-" + gameId + "." + segment + ".log");
+    }
+
+    /** Returns the number of records I have written. */
+    long events() {
+        return _events;
+    }
+
+    /** Returns where my next record goes, as the number of my segment
+     * times SEGMENT_SIZE plus where in the segment, so that I can be
+     * opened again after I am closed. */
+    long end() {
+        return (long) (_segment - 1) * SEGMENT_SIZE + _buf.position();
+    }
+
+    /** Records the resources and numbers on the board as it is now. */
+    void layout() {
+        ensure(1 + 19 * 2);
+        _buf.put(LAYOUT);
+        for (Hex hex : Board.hexList()) {
+            _buf.put((byte) (hex.hasResource() ? hex.resource().index() : 6));
+            _buf.put((byte) hex.number());
+        }
+        _events += 1;
+    }
+
+    /** Records that player INDEX, from 0 to 3, joined with PLAYER's
+     * color and name. */
+    void player(int index, Player player) {
+        byte[] name = player.getName().getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(name.length, MAX_NAME);
+        ensure(3 + 5 + length);
+        _buf.put(PLAYER);
+        _buf.put((byte) index);
+        _buf.put((byte) player.color().index());
+        putVarint(length);
+        _buf.put(name, 0, length);
+        _events += 1;
+    }
+
+    /** Records that the dice came up DIE1 and DIE2. */
+    void roll(int die1, int die2) {
+        record(ROLL, die1, die2);
+    }
+
+    /** Records that player INDEX put down a road on HEX at SIDE. */
+    void road(int index, int hex, int side) {
+        record(ROAD, index, hex, side);
+    }
+
+    /** Records that player INDEX put down a settlement on HEX at POSN. */
+    void settlement(int index, int hex, int posn) {
+        record(SETTLEMENT, index, hex, posn);
+    }
+
+    /** Records that player INDEX built a city on HEX at POSN. */
+    void city(int index, int hex, int posn) {
+        record(CITY, index, hex, posn);
+    }
+
+    /** Records that the turn passed to player INDEX. */
+    void turn(int index) {
+        record(TURN, index);
+    }
+
+    /** Forces what I have written so far onto the disk. */
+    void force() {
+        MappedByteBuffer buf = _buf;
+        if (buf != null) {
+            buf.force();
+        }
+    }
+
+    /** Closes me without waiting on the disk. FLUSHER forces what I
+     * have written instead, so that a game thread that is done with me
+     * doesn't wait on the disk either. */
+    void detach() {
+        OPEN.remove(this);
+        MappedByteBuffer buf = _buf;
+        _buf = null;
+        if (buf != null) {
+            FLUSHER.execute(buf::force);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        OPEN.remove(this);
+        force();
+        _buf = null;
+    }
+
+    /** Writes a record of KIND followed by A. There is one of these
+     * for each number of numbers, so that no record makes an array. */
+    private void record(byte kind, int a) {
+        ensure(1 + 5);
+        _buf.put(kind);
+        putVarint(a);
+        _events += 1;
+    }
+
+    /** Writes a record of KIND followed by A and B. */
+    private void record(byte kind, int a, int b) {
+        ensure(1 + 2 * 5);
+        _buf.put(kind);
+        putVarint(a);
+        putVarint(b);
+        _events += 1;
+    }
+
+    /** Writes a record of KIND followed by A, B and C. */
+    private void record(byte kind, int a, int b, int c) {
+        ensure(1 + 3 * 5);
+        _buf.put(kind);
+        putVarint(a);
+        putVarint(b);
+        putVarint(c);
+        _events += 1;
+    }
+
+    /** Writes VALUE, which must not be negative, as a varint. */
+    private void putVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            _buf.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        _buf.put((byte) value);
+    }
+
+    /** Makes sure that there are at least SIZE bytes left in my
+     * segment, starting a new one if not. The last byte of every
+     * segment is kept free so that it always ends with END. */
+    private void ensure(int size) {
+        if (_buf.remaining() <= size) {
+            MappedByteBuffer full = _buf;
+            FLUSHER.execute(full::force);
+            try {
+                startSegment(true);
+            } catch (IOException e) {
+                throw new IllegalStateException("Can't extend the log!", e);
+            }
+        }
+    }
+
+    /** Maps my next segment file, emptying it first if FRESH. */
+    private void startSegment(boolean fresh) throws IOException {
+        Path path = segment(_dir, _gameId, _segment);
+        _segment += 1;
+        try (FileChannel channel = fresh
+                ? FileChannel.open(path, StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)
+                : FileChannel.open(path, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE)) {
+            _buf = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    SEGMENT_SIZE);
+        }
+    }
+
+    /** Record kinds. END marks the end of a segment. */
+    static final byte END = 0, LAYOUT = 1, PLAYER = 2, ROLL = 3, ROAD = 4,
+            SETTLEMENT = 5, CITY = 6, TURN = 7;
+
+    /** Size of each segment file, in bytes. */
+    static final int SEGMENT_SIZE = 1 << 20;
+
+    /** Longest name, in bytes, that I record. */
+    private static final int MAX_NAME = 1024;
+
+    /** Logs that are open, so that FLUSHER can force them. */
+    private static final ConcurrentHashMap<GameLog, GameLog> OPEN
+            = new ConcurrentHashMap<>();
+
+    /** Forces every open log to disk once a second, away from the
+     * game threads. */
+    private static final ScheduledExecutorService FLUSHER
+            = Executors.newSingleThreadScheduledExecutor((task) -> {
+                Thread thread = new Thread(task, "GameLog flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /** Sets up FLUSHER. */
+    static {
+        FLUSHER.scheduleWithFixedDelay(() -> {
+            for (GameLog log : OPEN.keySet()) {
+                log.force();
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /** Directory that my segments live in. */
+    private final Path _dir;
+
+    /** Id of the game that I record. */
+    private final int _gameId;
+
+    /** Number of the next segment I will start. */
+    private int _segment;
+
+    /** The segment I am writing to. */
+    private volatile MappedByteBuffer _buf;
+
+    /** Number of records I have written. */
+    private long _events;
+
+}
@@ -0,0 +1,163 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+/** Set of tests for recording games and replaying them.
+ * @author John Angeles
+ */
+public class GameLogTest {
+
+    @Test
+    public void replayTest() throws IOException {
+        Path dir = Files.createTempDirectory("gamelog");
+        Board.reset();
+        Player alice = new Player(Color.white(), "Alice");
+        Player bob = new Player(Color.red(), "Bob");
+        GameLog log = new GameLog(dir, 7);
+        log.layout();
+        log.player(0, alice);
+        log.player(1, bob);
+
+        log.roll(3, 4);
+        Board.rollDice(3, 4);
+        log.turn(1);
+        log.close();
+        assertEquals(5, log.events());
+
+        String board = Board.dump();
+        GameReplayer replayer = new GameReplayer(dir, 7);
+        assertEquals(5, replayer.replay(Long.MAX_VALUE));
+        assertEquals(board, Board.dump());
+        assertEquals("Alice", replayer.player(0).getName());
+        assertEquals(Color.red(), replayer.player(1).color());
+        assertEquals(1, replayer.turn());
+
+        assertEquals(3, replayer.replay(3));
+        assertNull(replayer.player(2));
+        assertEquals(0, replayer.turn());
+    }
+
+    @Test
+    public void placementReplayTest() throws IOException {
+        Path dir = Files.createTempDirectory("gamelog");
+        Board.reset();
+        Player alice = new Player(Color.white(), "Alice");
+        GameLog log = new GameLog(dir, 8);
+        log.layout();
+        log.player(0, alice);
+
+        Board.placeRoad(alice.restoreRoad(), 4, 0);
+        log.road(0, 4, 0);
+        alice.giveResource(new WoodCard());
+        alice.giveResource(new BrickCard());
+        alice.giveResource(new SheepCard());
+        assertEquals(alice.getName() + " put down a road!",
+                alice.placeRoad(4, 1));
+        log.road(0, 4, 1);
+        alice.giveResource(new WoodCard());
+        alice.giveResource(new BrickCard());
+        alice.giveResource(new WheatCard());
+        assertEquals(alice.getName() + " built a settlement!",
+                alice.placeSettlement(4, 1));
+        log.settlement(0, 4, 1);
+        for (int i = 0; i < 3; i += 1) {
+            alice.giveResource(new OreCard());
+        }
+        alice.giveResource(new WheatCard());
+        alice.giveResource(new WheatCard());
+        assertEquals(alice.getName() + " built a city!",
+                alice.placeCity(4, 1));
+        log.city(0, 4, 1);
+        log.close();
+
+        String board = Board.dump();
+        long hand = alice.packedHand();
+        int production = alice.production(4);
+        GameReplayer replayer = new GameReplayer(dir, 8);
+        assertEquals(6, replayer.replay(Long.MAX_VALUE));
+        assertEquals(board, Board.dump());
+        Player replayed = replayer.player(0);
+        assertEquals(hand, replayed.packedHand());
+        assertEquals(Hand.pack(0, 0, 0, 0, 0), hand);
+        assertEquals(13, replayed.numRoads());
+        assertEquals(5, replayed.numSettlements());
+        assertEquals(3, replayed.numCities());
+        assertEquals(2, replayed.victoryPoints());
+        assertEquals(production, replayed.production(4));
+
+        assertEquals(5, replayer.replay(5));
+        assertFalse(Board.get(4).building(1) instanceof City);
+        assertEquals(1, replayer.player(0).victoryPoints());
+        assertEquals(4, replayer.replay(4));
+        assertFalse(Board.get(4).hasBuilding(1));
+        assertTrue(Board.get(4).hasRoad(1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void takenSpotTest() throws IOException {
+        Path dir = Files.createTempDirectory("gamelog");
+        Board.reset();
+        GameLog log = new GameLog(dir, 9);
+        log.layout();
+        log.player(0, new Player(Color.white(), "Alice"));
+        log.road(0, 4, 0);
+        log.road(0, 4, 0);
+        log.close();
+        new GameReplayer(dir, 9).replay(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void detachTest() throws IOException {
+        Path dir = Files.createTempDirectory("gamelog");
+        GameLog log = new GameLog(dir, 3);
+        log.roll(3, 4);
+        long end = log.end();
+        log.detach();
+        log.detach();
+
+        GameLog reopened = new GameLog(dir, 3, end, log.events());
+        reopened.turn(1);
+        reopened.close();
+        GameReplayer replayer = new GameReplayer(dir, 3);
+        assertEquals(2, replayer.replay(Long.MAX_VALUE));
+        assertEquals(1, replayer.turn());
+    }
+
+    @Test
+    public void segmentTest() throws IOException {
+        Path dir = Files.createTempDirectory("gamelog");
+        GameLog log = new GameLog(dir, 1);
+        int rolls = GameLog.SEGMENT_SIZE;
+        for (int i = 0; i < rolls; i += 1) {
+            log.roll(1 + i % 6, 6);
+        }
+        log.close();
+        assertTrue(Files.exists(GameLog.segment(dir, 1, 1)));
+        assertEquals(rolls, new GameReplayer(dir, 1).replay(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void reopenTest() throws IOException {
+        Path dir = Files.createTempDirectory("gamelog");
+        GameLog log = new GameLog(dir, 2);
+        for (int i = 0; i < GameLog.SEGMENT_SIZE; i += 1) {
+            log.roll(1 + i % 6, 6);
+        }
+        log.close();
+        assertTrue(Files.exists(GameLog.segment(dir, 2, 1)));
+
+        GameLog shorter = new GameLog(dir, 2);
+        shorter.roll(3, 4);
+        shorter.turn(1);
+        shorter.close();
+        assertFalse(Files.exists(GameLog.segment(dir, 2, 1)));
+        GameReplayer replayer = new GameReplayer(dir, 2);
+        assertEquals(2, replayer.replay(Long.MAX_VALUE));
+        assertEquals(1, replayer.turn());
+    }
+
+}
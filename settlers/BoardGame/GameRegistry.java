@@ -0,0 +1,366 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/** Keeps track of every open game, and keeps only the games that were
+ * used most recently alive as objects.
+ *
+ * Live games, kept as Game, Player and piece objects, may take up to
+ * liveBudget bytes of heap, counting LIVE_GAME_BYTES for each. When one
+ * more is needed, the games that have gone unused the longest are
+ * hibernated: each is saved (See Game.save) into a slot of a direct
+ * buffer outside of the heap, or into a file once the off-heap budget
+ * is used up, its objects are dropped and its log is detached (See
+ * GameLog.detach), so the disk is never waited on. The next
+ * command for a hibernated game loads it back and opens its log where
+ * it left off, so callers never notice. This way the heap and the
+ * mapped logs only grow with the number of busy games, not the number
+ * of open ones.
+ *
+ * The direct buffers are slabs of SLAB_SIZE bytes, allocated as they
+ * are needed and never freed, and cut into slots of SLOT_SIZE bytes.
+ * A game that is woken up gives its slot back for the next game to
+ * hibernate, so hibernating doesn't allocate or free direct memory
+ * once the slabs are there. A game that doesn't fit in a slot, which
+ * takes very long names, goes to a file.
+ *
+ * All of my methods are synchronized.
+ * @author John Angeles
+ */
+final class GameRegistry {
+
+    /** Creates a registry whose games don't keep logs. (See the other
+     * constructor) */
+    GameRegistry(long liveBudget, long offHeapBudget, Path spillDir) {
+        this(liveBudget, offHeapBudget, spillDir, null);
+    }
+
+    /** Creates a registry.
+     *
+     * @param liveBudget Most bytes of heap to spend on live games. At
+     *                   least one game is always alive.
+     * @param offHeapBudget Most bytes of slabs to keep outside of the
+     *                      heap before spilling to disk.
+     * @param spillDir Directory for hibernated games that don't fit
+     *                 in OFFHEAPBUDGET.
+     * @param logDir Directory where every game keeps its log (See
+     *               GameLog), or null for games not to keep logs.
+     */
+    GameRegistry(long liveBudget, long offHeapBudget, Path spillDir,
+                 Path logDir) {
+        _liveBudget = liveBudget;
+        _offHeapBudget = offHeapBudget;
+        _spillDir = spillDir;
+        _logDir = logDir;
+    }
+
+    /** Opens a new game and returns its id. */
+    synchronized int create() {
+        _nextId += 1;
+        GameLog log = null;
+        if (_logDir != null) {
+            try {
+                log = new GameLog(_logDir, _nextId);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        makeLive(new Game(_nextId, log));
+        return _nextId;
+    }
+
+    /** Returns true iff the game with ID is open. */
+    synchronized boolean contains(int id) {
+        return _live.containsKey(id) || _hibernated.containsKey(id);
+    }
+
+    /** Handles LINE for the game with ID, waking it up first if it
+     * was hibernated, and returns the game's response. A game that is
+     * over afterwards is closed. */
+    synchronized String handle(int id, String line) {
+        Game game = get(id);
+        String response = game.handle(line);
+        if (game.over()) {
+            close(id);
+        }
+        return response;
+    }
+
+    /** Returns the game with ID as a live object, loading it if it
+     * was hibernated. Throws IllegalArgumentException if no such game
+     * is open. */
+    synchronized Game get(int id) {
+        Game game = _live.get(id);
+        if (game != null) {
+            return game;
+        }
+        Hibernated hibernated = _hibernated.remove(id);
+        if (hibernated == null) {
+            throw new IllegalArgumentException("No game " + id + "!");
+        }
+        ByteBuffer saved;
+        if (hibernated.slot >= 0) {
+            saved = slot(hibernated.slot);
+            saved.limit(saved.position() + hibernated.size);
+        } else {
+            saved = readSpilled(id);
+        }
+        GameLog log = null;
+        if (_logDir != null) {
+            try {
+                log = new GameLog(_logDir, id, hibernated.logEnd,
+                        hibernated.logEvents);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        game = Game.load(saved, log);
+        free(hibernated);
+        makeLive(game);
+        return game;
+    }
+
+    /** Closes the game with ID and forgets everything about it. */
+    synchronized void close(int id) {
+        GameLog log = null;
+        Game game = _live.remove(id);
+        if (game != null) {
+            game.release();
+            log = game.log();
+        }
+        Hibernated hibernated = _hibernated.remove(id);
+        if (hibernated != null) {
+            free(hibernated);
+        }
+        if (log != null) {
+            log.detach();
+        }
+        try {
+            Files.deleteIfExists(spillFile(id));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Returns the number of games that are alive. */
+    synchronized int numLive() {
+        return _live.size();
+    }
+
+    /** Returns the number of games hibernated outside of the heap. */
+    synchronized int numOffHeap() {
+        return _numOffHeap;
+    }
+
+    /** Returns the number of bytes of hibernated games outside of the
+     * heap. */
+    synchronized long offHeapUsed() {
+        return _offHeapUsed;
+    }
+
+    /** Returns the number of bytes of slabs allocated outside of the
+     * heap. */
+    synchronized long offHeapReserved() {
+        return (long) _slabs.size() * SLAB_SIZE;
+    }
+
+    /** Adds GAME as the most recently used live game, hibernating the
+     * least recently used ones while live games go over my budget. A
+     * game stays live until it has been hibernated, so one that fails
+     * to hibernate is kept rather than lost. */
+    private void makeLive(Game game) {
+        _live.put(game.id(), game);
+        while (_live.size() > 1
+                && _live.size() * LIVE_GAME_BYTES > _liveBudget) {
+            Game idle = _live.values().iterator().next();
+            hibernate(idle);
+            _live.remove(idle.id());
+        }
+    }
+
+    /** Saves GAME into a free slot, or to disk if there is no room,
+     * detaches its log and drops it. */
+    private void hibernate(Game game) {
+        _scratch.clear();
+        game.save(_scratch);
+        _scratch.flip();
+        int size = _scratch.remaining();
+        int slot = (size <= SLOT_SIZE) ? allocate() : -1;
+        if (slot >= 0) {
+            slot(slot).put(_scratch);
+            _numOffHeap += 1;
+            _offHeapUsed += size;
+        } else {
+            byte[] bytes = new byte[size];
+            _scratch.get(bytes);
+            try {
+                Files.write(spillFile(game.id()), bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        GameLog log = game.log();
+        long logEnd = 0, logEvents = 0;
+        if (log != null) {
+            logEnd = log.end();
+            logEvents = log.events();
+            log.detach();
+        }
+        _hibernated.put(game.id(),
+                new Hibernated(slot, size, logEnd, logEvents));
+        game.release();
+    }
+
+    /** Returns a free slot, allocating a new slab if there is room for
+     * one, or -1 if there is none. */
+    private int allocate() {
+        if (_numFree == 0) {
+            if (offHeapReserved() + SLAB_SIZE > _offHeapBudget) {
+                return -1;
+            }
+            _slabs.add(ByteBuffer.allocateDirect(SLAB_SIZE));
+            int first = (_slabs.size() - 1) * SLOTS_PER_SLAB;
+            if (_free.length < _numFree + SLOTS_PER_SLAB) {
+                _free = Arrays.copyOf(_free, _numFree + SLOTS_PER_SLAB);
+            }
+            for (int s = first + SLOTS_PER_SLAB - 1; s >= first; s -= 1) {
+                _free[_numFree] = s;
+                _numFree += 1;
+            }
+        }
+        _numFree -= 1;
+        return _free[_numFree];
+    }
+
+    /** Gives back the slot, if any, that HIBERNATED was saved in. */
+    private void free(Hibernated hibernated) {
+        if (hibernated.slot >= 0) {
+            _free[_numFree] = hibernated.slot;
+            _numFree += 1;
+            _numOffHeap -= 1;
+            _offHeapUsed -= hibernated.size;
+        }
+    }
+
+    /** Returns a buffer over SLOT, from its start to the end of its
+     * slab. */
+    private ByteBuffer slot(int slot) {
+        ByteBuffer slab = _slabs.get(slot / SLOTS_PER_SLAB).duplicate();
+        slab.position((slot % SLOTS_PER_SLAB) * SLOT_SIZE);
+        return slab;
+    }
+
+    /** Returns the game with ID that was spilled to disk, and deletes
+     * its file. */
+    private ByteBuffer readSpilled(int id) {
+        Path path = spillFile(id);
+        try {
+            ByteBuffer saved = ByteBuffer.wrap(Files.readAllBytes(path));
+            Files.delete(path);
+            return saved;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Returns the file that the game with ID is spilled to. */
+    private Path spillFile(int id) {
+        return _spillDir.resolve("game-" + id + ".save");
+    }
+
+    /** Where a hibernated game was saved, and where its log left
+     * off. */
+    private static final class Hibernated {
+
+        /** A game saved in SIZE bytes in SLOT, or spilled to disk if
+         * SLOT is -1, whose log holds LOGEVENTS records ending at LOGEND
+         * (See GameLog.end). */
+        Hibernated(int slot, int size, long logEnd, long logEvents) {
+            this.slot = slot;
+            this.size = size;
+            this.logEnd = logEnd;
+            this.logEvents = logEvents;
+        }
+
+        /** Slot the game is in, or -1. */
+        final int slot;
+
+        /** Bytes the game was saved in. */
+        final int size;
+
+        /** Where the game's log left off, if it keeps one. */
+        final long logEnd;
+
+        /** Number of records in the game's log, if it keeps one. */
+        final long logEvents;
+    }
+
+    /** About how many bytes of heap a started game takes as objects:
+     * four players with their pieces and cards, and its stashed board.
+     */
+    static final long LIVE_GAME_BYTES = 8 << 10;
+
+    /** Bytes of each slot. A game whose players' names add up to a
+     * hundred bytes or so fits in one. */
+    static final int SLOT_SIZE = 512;
+
+    /** Bytes of each slab. */
+    static final int SLAB_SIZE = 64 << 10;
+
+    /** Slots in each slab. */
+    private static final int SLOTS_PER_SLAB = SLAB_SIZE / SLOT_SIZE;
+
+    /** Largest number of bytes Game.save can write: the board, the
+     * game's header, and four players with the longest names. (See
+     * Player.MAX_SAVED) */
+    private static final int MAX_SAVED
+            = Board.SAVED_SIZE + 16 + 4 * Player.MAX_SAVED;
+
+    /** Most bytes of heap to spend on live games. */
+    private final long _liveBudget;
+
+    /** Most bytes of slabs to keep outside of the heap. */
+    private final long _offHeapBudget;
+
+    /** Where hibernated games go when they don't fit off of the heap. */
+    private final Path _spillDir;
+
+    /** Where games keep their logs, or null. */
+    private final Path _logDir;
+
+    /** Live games by id, least recently used first. */
+    private final LinkedHashMap<Integer, Game> _live
+            = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Hibernated games, by id. */
+    private final HashMap<Integer, Hibernated> _hibernated
+            = new HashMap<>();
+
+    /** Slabs outside of the heap. Slot S is in slab S / SLOTS_PER_SLAB. */
+    private final ArrayList<ByteBuffer> _slabs = new ArrayList<>();
+
+    /** Slots that are free, the first _numFree of them. */
+    private int[] _free = new int[0];
+
+    /** Number of free slots. */
+    private int _numFree;
+
+    /** Number of games in slots. */
+    private int _numOffHeap;
+
+    /** Number of bytes of games in slots. */
+    private long _offHeapUsed;
+
+    /** Where games are saved before being hibernated. */
+    private final ByteBuffer _scratch = ByteBuffer.allocate(MAX_SAVED);
+
+    /** The id of the last game that was created. */
+    private int _nextId;
+
+}
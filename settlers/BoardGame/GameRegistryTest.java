@@ -0,0 +1,164 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+/** Set of tests for keeping games alive and hibernating them.
+ * @author John Angeles
+ */
+public class GameRegistryTest {
+
+    /** Starts the game with ID in REGISTRY and names its players
+     * after PREFIX. */
+    private void startGame(GameRegistry registry, int id, String prefix) {
+        registry.handle(id, "start");
+        for (int i = 1; i <= 4; i += 1) {
+            registry.handle(id, prefix + i);
+        }
+    }
+
+    @Test
+    public void hibernateTest() throws IOException {
+        Path dir = Files.createTempDirectory("registry");
+        GameRegistry registry = new GameRegistry(
+                2 * GameRegistry.LIVE_GAME_BYTES, 1 << 20, dir);
+        int first = registry.create();
+        startGame(registry, first, "A");
+        registry.handle(first, "end");
+        String firstBoard = registry.handle(first, "board");
+
+        int second = registry.create();
+        startGame(registry, second, "B");
+        int third = registry.create();
+        startGame(registry, third, "C");
+
+        assertEquals(2, registry.numLive());
+        assertEquals(1, registry.numOffHeap());
+        assertTrue(registry.offHeapUsed() > 0);
+
+        assertEquals(firstBoard, registry.handle(first, "board"));
+        assertEquals("A2", registry.get(first).player(registry.get(first).turn()).getName());
+        assertEquals("B2, it's your turn!", registry.handle(second, "end"));
+    }
+
+    @Test
+    public void spillTest() throws IOException {
+        Path dir = Files.createTempDirectory("registry");
+        GameRegistry registry = new GameRegistry(
+                GameRegistry.LIVE_GAME_BYTES, 0, dir);
+        int first = registry.create();
+        startGame(registry, first, "A");
+        String firstBoard = registry.handle(first, "board");
+        int second = registry.create();
+        assertEquals(0, registry.numOffHeap());
+        assertTrue(registry.contains(first));
+        assertTrue(Files.exists(dir.resolve("game-" + first + ".save")));
+        startGame(registry, second, "B");
+        assertEquals(firstBoard, registry.handle(first, "board"));
+        assertEquals(1, registry.numLive());
+    }
+
+    @Test
+    public void slabTest() throws IOException {
+        Path dir = Files.createTempDirectory("registry");
+        GameRegistry registry = new GameRegistry(
+                GameRegistry.LIVE_GAME_BYTES, GameRegistry.SLAB_SIZE, dir);
+        int slots = GameRegistry.SLAB_SIZE / GameRegistry.SLOT_SIZE;
+        int first = registry.create();
+        startGame(registry, first, "A");
+        for (int i = 0; i < slots + 1; i += 1) {
+            registry.create();
+        }
+        assertEquals(1, registry.numLive());
+        assertEquals(slots, registry.numOffHeap());
+        assertEquals(GameRegistry.SLAB_SIZE, registry.offHeapReserved());
+        assertTrue(Files.exists(dir.resolve("game-" + (first + slots)
+                + ".save")));
+
+        assertEquals("A1", registry.get(first).player(0).getName());
+        assertEquals(slots, registry.numOffHeap());
+        assertEquals(GameRegistry.SLAB_SIZE, registry.offHeapReserved());
+        registry.close(first + 1);
+        assertFalse(registry.contains(first + 1));
+        assertEquals(slots - 1, registry.numOffHeap());
+        registry.create();
+        assertEquals(slots, registry.numOffHeap());
+        assertEquals(GameRegistry.SLAB_SIZE, registry.offHeapReserved());
+        assertEquals("A1", registry.get(first).player(0).getName());
+    }
+
+    @Test
+    public void logTest() throws IOException {
+        Path dir = Files.createTempDirectory("registry");
+        GameRegistry registry = new GameRegistry(
+                GameRegistry.LIVE_GAME_BYTES, 1 << 20, dir, dir);
+        int first = registry.create();
+        startGame(registry, first, "A");
+        registry.handle(first, "roll");
+        GameLog log = registry.get(first).log();
+        long events = log.events();
+
+        int second = registry.create();
+        startGame(registry, second, "B");
+        assertEquals(1, registry.numOffHeap());
+        assertEquals(events, log.events());
+        registry.handle(first, "roll");
+        assertEquals(events + 1, registry.get(first).log().events());
+        registry.close(first);
+        assertEquals(events + 1,
+                new GameReplayer(dir, first).replay(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void longNamesTest() throws IOException {
+        Path dir = Files.createTempDirectory("registry");
+        GameRegistry registry = new GameRegistry(
+                GameRegistry.LIVE_GAME_BYTES, 1 << 20, dir);
+        int first = registry.create();
+        String name = "\u20AC".repeat(Game.MAX_NAME);
+        registry.handle(first, "start");
+        for (int i = 0; i < 4; i += 1) {
+            registry.handle(first, name);
+        }
+        String firstBoard = registry.handle(first, "board");
+        registry.create();
+        assertEquals(1, registry.numLive());
+        assertTrue(Files.exists(dir.resolve("game-" + first + ".save")));
+        assertEquals(firstBoard, registry.handle(first, "board"));
+        assertEquals(name, registry.get(first).player(3).getName());
+    }
+
+    @Test
+    public void failedHibernateTest() throws IOException {
+        Path dir = Files.createTempDirectory("registry");
+        GameRegistry registry = new GameRegistry(
+                GameRegistry.LIVE_GAME_BYTES, 0, dir.resolve("missing"));
+        int first = registry.create();
+        startGame(registry, first, "A");
+        String firstBoard = registry.handle(first, "board");
+        try {
+            registry.create();
+            fail("Expected spilling to a missing directory to fail");
+        } catch (UncheckedIOException e) {
+            assertTrue(registry.contains(first));
+        }
+        assertEquals(2, registry.numLive());
+        assertEquals(firstBoard, registry.handle(first, "board"));
+    }
+
+    @Test
+    public void closeTest() throws IOException {
+        Path dir = Files.createTempDirectory("registry");
+        GameRegistry registry = new GameRegistry(
+                GameRegistry.LIVE_GAME_BYTES, 1 << 20, dir);
+        int first = registry.create();
+        registry.handle(first, "quit");
+        assertEquals("Goodbye!", registry.handle(first, "yes"));
+        assertFalse(registry.contains(first));
+    }
+
+}
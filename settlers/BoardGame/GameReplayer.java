@@ -0,0 +1,179 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** Rebuilds a game from the records in its GameLog.
+ *
+ * I stream through the log one record at a time and apply each action
+ * to Board and to my own players. The log only holds pieces that were
+ * paid for, and not the cards that paid for them, so I put pieces down
+ * without charging for them (See Player.restoreRoad). Replaying the
+ * first N records gives the board as it was right after its Nth action.
+ * @author John Angeles
+ */
+final class GameReplayer {
+
+    /** Creates a replayer for the log of the game with GAMEID in DIR. */
+    GameReplayer(Path dir, int gameId) {
+        _dir = dir;
+        _gameId = gameId;
+    }
+
+    /** Clears the board, then replays up to LIMIT records onto it.
+     * Returns the number of records that were replayed, which is less
+     * than LIMIT if the log ran out first. A game that held the board
+     * gets it back later (See Game.vacateBoard).
+     */
+    long replay(long limit) throws IOException {
+        synchronized (Game.BOARD_LOCK) {
+            Game.vacateBoard();
+            Board.clear();
+            _players = new Player[4];
+            _turn = 0;
+            long count = 0;
+            for (int segment = 0; count < limit; segment += 1) {
+                Path path = GameLog.segment(_dir, _gameId, segment);
+                if (!Files.exists(path)) {
+                    break;
+                }
+                try (FileChannel channel = FileChannel.open(path,
+                        StandardOpenOption.READ)) {
+                    MappedByteBuffer buf = channel.map(
+                            FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    while (count < limit && buf.hasRemaining()
+                            && buf.get(buf.position()) != GameLog.END) {
+                        apply(buf);
+                        count += 1;
+                    }
+                }
+            }
+            return count;
+        }
+    }
+
+    /** Returns player INDEX as of the last replay, or null. */
+    Player player(int index) {
+        return _players[index];
+    }
+
+    /** Returns the players as of the last replay. */
+    Player[] players() {
+        return _players;
+    }
+
+    /** Returns the index of the player whose turn it was. */
+    int turn() {
+        return _turn;
+    }
+
+    /** Reads one record from BUF and applies it. */
+    private void apply(ByteBuffer buf) {
+        byte kind = buf.get();
+        switch (kind) {
+        case GameLog.LAYOUT:
+            Resource[] resources = new Resource[19];
+            int[] numbers = new int[19];
+            for (int i = 0; i < 19; i += 1) {
+                int resource = buf.get();
+                resources[i] = (resource == 6) ? null : Resource.get(resource);
+                numbers[i] = buf.get();
+            }
+            Board.reset(resources, numbers);
+            break;
+        case GameLog.PLAYER:
+            int index = buf.get();
+            Color color = Color.get(buf.get());
+            byte[] name = new byte[(int) getVarint(buf)];
+            buf.get(name);
+            _players[index] = new Player(color,
+                    new String(name, StandardCharsets.UTF_8));
+            break;
+        case GameLog.ROLL:
+            Board.rollDice((int) getVarint(buf), (int) getVarint(buf));
+            break;
+        case GameLog.ROAD:
+            restoreRoad(_players[(int) getVarint(buf)],
+                    (int) getVarint(buf), (int) getVarint(buf));
+            break;
+        case GameLog.SETTLEMENT:
+            restoreSettlement(_players[(int) getVarint(buf)],
+                    (int) getVarint(buf), (int) getVarint(buf));
+            break;
+        case GameLog.CITY:
+            restoreCity(_players[(int) getVarint(buf)],
+                    (int) getVarint(buf), (int) getVarint(buf));
+            break;
+        case GameLog.TURN:
+            _turn = (int) getVarint(buf);
+            break;
+        default:
+            throw new IllegalStateException("Corrupt log: record kind "
+                    + kind + " at " + (buf.position() - 1));
+        }
+    }
+
+    /** Puts down one of PLAYER's roads on HEX at SIDE, which the log
+     * says PLAYER already paid for, so nothing is charged. */
+    private static void restoreRoad(Player player, int hex, int side) {
+        if (Board.get(hex).hasRoad(side)) {
+            throw new IllegalStateException("Corrupt log: two roads on hex "
+                    + hex + " at " + side);
+        }
+        Board.placeRoad(player.restoreRoad(), hex, side);
+    }
+
+    /** Same as restoreRoad, but for a settlement at POSN. */
+    private static void restoreSettlement(Player player, int hex, int posn) {
+        if (Board.get(hex).hasBuilding(posn)) {
+            throw new IllegalStateException("Corrupt log: two buildings on"
+                    + " hex " + hex + " at " + posn);
+        }
+        player.restoreSettlement().restoreOn(Board.get(hex), posn);
+        player.recount();
+    }
+
+    /** Same as restoreRoad, but upgrades PLAYER's settlement on HEX at
+     * POSN to a city, and gives the settlement back to PLAYER. */
+    private static void restoreCity(Player player, int hex, int posn) {
+        Building old = Board.get(hex).building(posn);
+        if (old == null || old.player() != player || old instanceof City) {
+            throw new IllegalStateException("Corrupt log: no settlement to"
+                    + " upgrade on hex " + hex + " at " + posn);
+        }
+        City city = player.restoreCity();
+        city.setPlacedTo(true);
+        Board.placeCity(city, hex, posn);
+        old.returnToPlayer();
+        player.recount();
+    }
+
+    /** Reads a varint from BUF. (See GameLog) */
+    private static long getVarint(ByteBuffer buf) {
+        long result = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buf.get();
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+    }
+
+    /** Directory that the log lives in. */
+    private final Path _dir;
+
+    /** Id of the game I replay. */
+    private final int _gameId;
+
+    /** The players, as of the last replay. */
+    private Player[] _players = new Player[4];
+
+    /** Index of the player whose turn it was. */
+    private int _turn;
+
+}
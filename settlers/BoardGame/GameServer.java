@@ -0,0 +1,263 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Hosts many games (lobbies) at once over a simple line protocol.
+ *
+ * Clients connect over TCP or a Unix socket and type the same commands
+ * that Main understands (See Game). Every connection starts in its own
+ * lobby; typing "join NAME" before anything else joins the lobby called
+ * NAME instead, so several connections can share a game. Lobbies that
+ * nobody named are called "#" and a number, and can't be joined. A
+ * lobby is closed once the last connection in it is gone, or once its
+ * game is over, which also hangs up every connection still in it.
+ *
+ * Each lobby is a GameActor, and each actor and each connection runs on
+ * its own virtual thread, so blocking on a read or an empty mailbox
+ * costs next to nothing. On a JDK without virtual threads I fall back to
+ * ordinary threads.
+ *
+ * A line, with its newline, may be at most LINE_LIMIT characters long.
+ * I hang up on a client that sends a longer one.
+ * @author John Angeles
+ */
+public class GameServer {
+
+    /** Starts the server.
+     *
+     * @param args Either a TCP port, such as "4000", or "unix:PATH" to
+     *             listen on the Unix socket PATH.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("Usage: java GameServer (PORT | unix:PATH)");
+            return;
+        }
+        ServerSocketChannel server;
+        if (args[0].startsWith("unix:")) {
+            Path path = Path.of(args[0].substring(5));
+            Files.deleteIfExists(path);
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(path));
+        } else {
+            server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(Integer.parseInt(args[0])));
+        }
+        SocketAddress address = server.getLocalAddress();
+        System.out.println("Serving Settlers on " + address);
+        new GameServer(newExecutor()).serve(server);
+    }
+
+    /** Returns an executor that runs each task on a new virtual thread,
+     * or on a new ordinary thread if this JDK has no virtual threads. */
+    static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /** Creates a server that runs its actors and connections on
+     * EXECUTOR. */
+    GameServer(ExecutorService executor) {
+        _executor = executor;
+    }
+
+    /** Accepts connections from SERVER until it is closed. */
+    void serve(ServerSocketChannel server) throws IOException {
+        try {
+            while (true) {
+                SocketChannel client = server.accept();
+                _executor.execute(() -> session(client));
+            }
+        } finally {
+            _executor.shutdown();
+        }
+    }
+
+    /** Returns the lobby called NAME, creating and starting it if it
+     * doesn't exist yet, and adds CLIENT's session to it. Each call
+     * must be matched by a call to leave. */
+    GameActor join(String name, SocketChannel client) {
+        return _lobbies.compute(name, (key, lobby) -> {
+            if (lobby == null) {
+                lobby = new Lobby(new GameActor(
+                        new Game(_nextId.incrementAndGet())));
+                _executor.execute(lobby.actor);
+            }
+            lobby.clients.add(client);
+            return lobby;
+        }).actor;
+    }
+
+    /** Takes CLIENT's session out of the lobby NAME, if ACTOR still
+     * runs it, and closes the lobby once nobody is left in it. */
+    void leave(String name, GameActor actor, SocketChannel client) {
+        _lobbies.computeIfPresent(name, (key, lobby) -> {
+            if (lobby.actor != actor) {
+                return lobby;
+            }
+            lobby.clients.remove(client);
+            if (!lobby.clients.isEmpty()) {
+                return lobby;
+            }
+            actor.stop();
+            return null;
+        });
+    }
+
+    /** Returns the number of lobbies that are open. */
+    int numLobbies() {
+        return _lobbies.size();
+    }
+
+    /** Talks to CLIENT until it disconnects or its game is over, and
+     * then leaves its lobby. */
+    private void session(SocketChannel client) {
+        String name = null;
+        GameActor actor = null;
+        try (client) {
+            BufferedReader in = new BufferedReader(
+                    Channels.newReader(client, StandardCharsets.UTF_8));
+            Writer out = Channels.newWriter(client, StandardCharsets.UTF_8);
+            send(out, Game.welcome());
+
+            String line;
+            while ((line = readLine(in)) != null) {
+                if (actor == null && line.startsWith("join ")) {
+                    String lobby = line.substring(5).trim();
+                    if (lobby.startsWith("#")) {
+                        send(out, "Lobby names can't start with '#'.");
+                        continue;
+                    }
+                    name = lobby;
+                    actor = join(name, client);
+                    send(out, "Joined lobby " + name + ".");
+                    continue;
+                }
+                if (actor == null) {
+                    name = "#" + _nextPrivate.incrementAndGet();
+                    actor = join(name, client);
+                }
+                send(out, actor.send(line).get(REPLY_SECONDS,
+                        TimeUnit.SECONDS));
+                if (actor.game().over()) {
+                    close(name, actor);
+                    return;
+                }
+            }
+        } catch (IOException | ExecutionException | TimeoutException e) {
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (actor != null) {
+                leave(name, actor, client);
+            }
+        }
+    }
+
+    /** Returns the next line from IN, without its newline, or null if
+     * IN has ended. Throws an IOException if no newline comes within
+     * LINE_LIMIT characters, so that a client can't make me hold on to
+     * a line without end. */
+    private static String readLine(Reader in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) {
+                return (line.length() == 0) ? null : line.toString();
+            } else if (line.length() == LINE_LIMIT - 1) {
+                throw new IOException("That line is too long!");
+            }
+            line.append((char) c);
+        }
+        return line.toString();
+    }
+
+    /** Writes MESSAGE and a newline to OUT. */
+    private static void send(Writer out, String message) throws IOException {
+        out.write(message);
+        out.write('\n');
+        out.flush();
+    }
+
+    /** Stops ACTOR, forgets the lobby NAME and hangs up every
+     * connection still in it. Their sessions then end as if their
+     * clients had disconnected. */
+    private void close(String name, GameActor actor) {
+        Lobby closed = _lobbies.get(name);
+        if (closed == null || closed.actor != actor
+                || !_lobbies.remove(name, closed)) {
+            return;
+        }
+        actor.stop();
+        for (SocketChannel client : closed.clients) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                continue;
+            }
+        }
+    }
+
+    /** A lobby's actor and the connections in it. */
+    private static final class Lobby {
+
+        /** A lobby run by ACTOR, with nobody in it yet. */
+        Lobby(GameActor actor) {
+            this.actor = actor;
+        }
+
+        /** Runs the lobby's game. */
+        final GameActor actor;
+
+        /** Connections that have joined and not yet left. Only changed
+         * while holding the lobby's entry in _lobbies. */
+        final Set<SocketChannel> clients = new HashSet<>();
+    }
+
+    /** The longest line a client may send, with its newline. */
+    static final int LINE_LIMIT = 256;
+
+    /** Most seconds a session waits for its game to respond before
+     * hanging up. */
+    static final int REPLY_SECONDS = 10;
+
+    /** Runs my actors and connections. */
+    private final ExecutorService _executor;
+
+    /** Open lobbies, by name. */
+    private final ConcurrentHashMap<String, Lobby> _lobbies
+            = new ConcurrentHashMap<>();
+
+    /** The id of the last game that was created. */
+    private final AtomicInteger _nextId = new AtomicInteger();
+
+    /** Used to name lobbies that nobody asked to join by name. */
+    private final AtomicInteger _nextPrivate = new AtomicInteger();
+
+}
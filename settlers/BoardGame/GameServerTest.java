@@ -0,0 +1,179 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/** Set of tests for the lobbies of the game server.
+ * @author John Angeles
+ */
+public class GameServerTest {
+
+    /** Connects to SOCKET, sends LINE and waits for the reply REPLY.
+     * Returns the connection. */
+    private static SocketChannel connect(ServerSocketChannel socket,
+                                         String line, String reply)
+            throws Exception {
+        SocketChannel client = SocketChannel.open(socket.getLocalAddress());
+        Writer out = Channels.newWriter(client, StandardCharsets.UTF_8);
+        out.write(line + "\n");
+        out.flush();
+        BufferedReader in = new BufferedReader(Channels.newReader(client,
+                StandardCharsets.UTF_8));
+        String read;
+        while ((read = in.readLine()) != null && !read.equals(reply)) {
+            continue;
+        }
+        assertEquals(reply, read);
+        return client;
+    }
+
+    /** Waits up to a few seconds for SERVER to have LOBBIES open, and
+     * returns how many it has. */
+    private static int awaitLobbies(GameServer server, int lobbies)
+            throws InterruptedException {
+        for (int i = 0; i < 500 && server.numLobbies() != lobbies;
+                i += 1) {
+            Thread.sleep(10);
+        }
+        return server.numLobbies();
+    }
+
+    /** Returns true if SERVER hangs up on CLIENT within a few
+     * seconds, skipping anything it sends first. */
+    private static boolean awaitHangUp(SocketChannel client)
+            throws Exception {
+        client.configureBlocking(false);
+        ByteBuffer buf = ByteBuffer.allocate(1024);
+        for (int i = 0; i < 500; i += 1) {
+            buf.clear();
+            if (client.read(buf) < 0) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+    /** Returns a socket on loopback that SERVER serves on a new
+     * thread, which is put in SERVING. */
+    private static ServerSocketChannel serve(GameServer server,
+                                             Thread[] serving)
+            throws Exception {
+        ServerSocketChannel socket = ServerSocketChannel.open();
+        socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                0));
+        serving[0] = new Thread(() -> {
+            try {
+                server.serve(socket);
+            } catch (Exception e) {
+                return;
+            }
+        });
+        serving[0].start();
+        return socket;
+    }
+
+    @Test
+    public void actorTest() throws Exception {
+        GameActor actor = new GameActor(new Game(1));
+        Thread running = new Thread(actor);
+        running.start();
+        assertTrue(actor.send("start").get().startsWith("Starting"));
+        actor.stop();
+        running.join();
+        try {
+            actor.send("roll").get(1, TimeUnit.SECONDS);
+            fail("A stopped actor answered");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void leaveTest() throws Exception {
+        GameServer server = new GameServer(GameServer.newExecutor());
+        Thread[] serving = new Thread[1];
+        ServerSocketChannel socket = serve(server, serving);
+        try {
+            SocketChannel alone = connect(socket, "start",
+                    "What will be player one's name?");
+            assertEquals(1, server.numLobbies());
+            alone.close();
+            assertEquals(0, awaitLobbies(server, 0));
+
+            SocketChannel first = connect(socket, "join table",
+                    "Joined lobby table.");
+            SocketChannel second = connect(socket, "join table",
+                    "Joined lobby table.");
+            assertEquals(1, server.numLobbies());
+            first.close();
+            Thread.sleep(50);
+            assertEquals(1, server.numLobbies());
+            second.close();
+            assertEquals(0, awaitLobbies(server, 0));
+        } finally {
+            socket.close();
+            serving[0].join();
+        }
+    }
+
+    @Test
+    public void longLineTest() throws Exception {
+        GameServer server = new GameServer(GameServer.newExecutor());
+        Thread[] serving = new Thread[1];
+        ServerSocketChannel socket = serve(server, serving);
+        try {
+            SocketChannel endless = connect(socket, "join table",
+                    "Joined lobby table.");
+            Writer out = Channels.newWriter(endless,
+                    StandardCharsets.UTF_8);
+            out.write("x".repeat(GameServer.LINE_LIMIT));
+            out.flush();
+            assertTrue(awaitHangUp(endless));
+            assertEquals(0, awaitLobbies(server, 0));
+
+            SocketChannel longest = connect(socket,
+                    "x".repeat(GameServer.LINE_LIMIT - 1), "Invalid input!");
+            longest.close();
+        } finally {
+            socket.close();
+            serving[0].join();
+        }
+    }
+
+    @Test
+    public void gameOverTest() throws Exception {
+        GameServer server = new GameServer(GameServer.newExecutor());
+        Thread[] serving = new Thread[1];
+        ServerSocketChannel socket = serve(server, serving);
+        try {
+            connect(socket, "join #1", "Lobby names can't start with '#'.")
+                    .close();
+            SocketChannel watcher = connect(socket, "join table",
+                    "Joined lobby table.");
+            SocketChannel quitter = connect(socket, "join table",
+                    "Joined lobby table.");
+            Writer out = Channels.newWriter(quitter,
+                    StandardCharsets.UTF_8);
+            out.write("quit\nyes\n");
+            out.flush();
+            assertTrue(awaitHangUp(quitter));
+            assertTrue(awaitHangUp(watcher));
+            assertEquals(0, awaitLobbies(server, 0));
+        } finally {
+            socket.close();
+            serving[0].join();
+        }
+    }
+
+}
@@ -0,0 +1,337 @@
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Statistics over many games, kept in a fixed amount of memory no
+ * matter how many games there are.
+ *
+ * I keep sketches instead of every game's numbers: quantile sketches of
+ * how long games last, how many victory points players have as the
+ * game goes on, and how many cards of each resource a player collects
+ * in a game; exact counts of how often each opening vertex won; a
+ * count-min sketch of how often each pair of opening vertices came up;
+ * and a HyperLogLog of how many different layouts were played, with
+ * layouts that are the same board turned around (See Symmetry) counted
+ * once.
+ *
+ * I am not thread safe. Give each thread its own, through a Collector,
+ * and merge them when it is time to report. Every sketch merges
+ * exactly, so the merged statistics are the same as if one thread had
+ * seen every game.
+ * @author John Angeles
+ */
+final class GameStats {
+
+    /** Hands out one GameStats to each thread that asks, and merges
+     * them all on request. */
+    static final class Collector {
+
+        /** Returns the calling thread's statistics. */
+        GameStats local() {
+            return _local.get();
+        }
+
+        /** Returns new statistics holding everything recorded on every
+         * thread so far. Call this once the threads are done, or the
+         * merge may catch a game half recorded. */
+        GameStats merged() {
+            GameStats answer = new GameStats();
+            for (GameStats stats : _all) {
+                answer.merge(stats);
+            }
+            return answer;
+        }
+
+        /** Every thread's statistics. */
+        private final ConcurrentLinkedQueue<GameStats> _all =
+                new ConcurrentLinkedQueue<>();
+
+        /** The calling thread's statistics. */
+        private final ThreadLocal<GameStats> _local =
+                ThreadLocal.withInitial(() -> {
+                    GameStats stats = new GameStats();
+                    _all.add(stats);
+                    return stats;
+                });
+    }
+
+    /** Creates empty statistics. */
+    GameStats() {
+        for (int i = 0; i < VP_STAGES; i += 1) {
+            _victoryPoints[i] = new QuantileSketch();
+        }
+        for (int r = 0; r < Hand.NUM_RESOURCES; r += 1) {
+            _produced[r] = new QuantileSketch();
+        }
+    }
+
+    /** Records a game that lasted TURNS turns. */
+    void gameLength(int turns) {
+        _length.add(turns);
+    }
+
+    /** Records a player with POINTS victory points after TURN turns. */
+    void victoryPoints(int turn, int points) {
+        _victoryPoints[Math.min(turn / VP_STEP, VP_STAGES - 1)]
+                .add(points);
+    }
+
+    /** Records a player who collected CARDS cards of RESOURCE in a
+     * game. */
+    void produced(Resource resource, long cards) {
+        _produced[resource.index()].add(cards);
+    }
+
+    /** Records a player who opened on vertices FIRST and SECOND, and
+     * went on to win if WON. */
+    void opening(int first, int second, boolean won) {
+        _openings[first] += 1;
+        _openings[second] += 1;
+        if (won) {
+            _wins[first] += 1;
+            _wins[second] += 1;
+        }
+        _pairs.add(pairKey(first, second), 1);
+    }
+
+    /** Records a game played on the layout of GAME. */
+    void layout(CompactGame game) {
+        _layouts.add(layoutKey(game));
+    }
+
+    /** Adds everything in OTHER to me. */
+    void merge(GameStats other) {
+        _length.merge(other._length);
+        for (int i = 0; i < VP_STAGES; i += 1) {
+            _victoryPoints[i].merge(other._victoryPoints[i]);
+        }
+        for (int r = 0; r < Hand.NUM_RESOURCES; r += 1) {
+            _produced[r].merge(other._produced[r]);
+        }
+        for (int v = 0; v < Topology.NUM_VERTICES; v += 1) {
+            _openings[v] += other._openings[v];
+            _wins[v] += other._wins[v];
+        }
+        _pairs.merge(other._pairs);
+        _layouts.merge(other._layouts);
+    }
+
+    /** Returns the sketch of game lengths, in turns. */
+    QuantileSketch length() {
+        return _length;
+    }
+
+    /** Returns the sketch of players' victory points after TURN
+     * turns, to the nearest VP_STEP turns before. */
+    QuantileSketch victoryPoints(int turn) {
+        return _victoryPoints[Math.min(turn / VP_STEP, VP_STAGES - 1)];
+    }
+
+    /** Returns the sketch of cards of RESOURCE collected by a player in
+     * a game. */
+    QuantileSketch produced(Resource resource) {
+        return _produced[resource.index()];
+    }
+
+    /** Returns how many players opened on VERTEX. */
+    long openings(int vertex) {
+        return _openings[vertex];
+    }
+
+    /** Returns the share of players who opened on VERTEX and won, or
+     * NaN if nobody opened there. */
+    double winRate(int vertex) {
+        return (_openings[vertex] == 0) ? Double.NaN
+                : (double) _wins[vertex] / _openings[vertex];
+    }
+
+    /** Returns at least how many players opened on FIRST and SECOND,
+     * in either order. */
+    long openingCount(int first, int second) {
+        return _pairs.estimate(pairKey(first, second));
+    }
+
+    /** Returns about how many different layouts were played. */
+    long distinctLayouts() {
+        return _layouts.estimate();
+    }
+
+    /** Returns a key for the opening on FIRST and SECOND, in either
+     * order. */
+    private static long pairKey(int first, int second) {
+        return Math.min(first, second) * Topology.NUM_VERTICES
+                + Math.max(first, second);
+    }
+
+    /** Returns a key for the layout of GAME that is the same for every
+     * way of turning it around. */
+    static long layoutKey(CompactGame game) {
+        CompactGame layout = new CompactGame();
+        for (int hex = 0; hex < 19; hex += 1) {
+            layout.setHex(hex, game.resource(hex), game.number(hex));
+        }
+        layout = Symmetry.canonicalize(layout);
+        long key = 0;
+        for (int hex = 0; hex < 19; hex += 1) {
+            Resource resource = layout.resource(hex);
+            int code = ((resource == null) ? 6 : resource.index()) * 16
+                    + layout.number(hex);
+            key = key * 0x100000001B3L + code;
+        }
+        return key;
+    }
+
+    /** Plays the game from Perft.opening(SEED), where BOTS[i] plays
+     * player i, records it in STATS, and returns the winner, or -1. (See
+     * Tournament.play) */
+    static int play(Tournament.Bot[] bots, long seed, GameStats stats) {
+        CompactGame[] opening = new CompactGame[1];
+        long[][] produced = new long[4][Hand.NUM_RESOURCES];
+        long[] before = new long[4];
+        int[] turns = new int[1];
+        int winner = Tournament.play(bots, seed, new Tournament.Watcher() {
+            @Override
+            public void before(CompactGame game, int mover, long move) {
+                if (opening[0] == null) {
+                    opening[0] = game.copy();
+                }
+                for (int p = 0; p < 4; p += 1) {
+                    before[p] = game.hand(p);
+                }
+            }
+
+            @Override
+            public void after(CompactGame game, int mover, long move) {
+                if ((move & 15) != Perft.ROLL) {
+                    return;
+                }
+                turns[0] += 1;
+                for (int p = 0; p < 4; p += 1) {
+                    for (int r = 0; r < Hand.NUM_RESOURCES; r += 1) {
+                        produced[p][r] += Hand.count(game.hand(p), r)
+                                - Hand.count(before[p], r);
+                    }
+                    stats.victoryPoints(turns[0], game.victoryPoints(p));
+                }
+            }
+        });
+
+        stats.layout(opening[0]);
+        stats.gameLength(turns[0]);
+        for (int p = 0; p < 4; p += 1) {
+            for (int r = 0; r < Hand.NUM_RESOURCES; r += 1) {
+                stats.produced(Resource.get(r), produced[p][r]);
+            }
+            int first = -1, second = -1;
+            for (int v = 0; v < Topology.NUM_VERTICES; v += 1) {
+                if (opening[0].owner(v) == p) {
+                    if (first < 0) {
+                        first = v;
+                    } else {
+                        second = v;
+                    }
+                }
+            }
+            stats.opening(first, second, winner == p);
+        }
+        return winner;
+    }
+
+    /** Returns a few lines summing me up. */
+    String report() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%d games, about %d distinct layouts%n",
+                _length.count(), distinctLayouts()));
+        out.append(String.format("turns: median %.0f, 90%% %.0f,"
+                + " 99%% %.0f, most %.0f%n", _length.quantile(0.5),
+                _length.quantile(0.9), _length.quantile(0.99),
+                _length.max()));
+        for (int i = 0; i < VP_STAGES; i += 1) {
+            if (_victoryPoints[i].count() > 0) {
+                out.append(String.format("VP after %d turns: median %.0f,"
+                        + " 90%% %.0f%n", i * VP_STEP,
+                        _victoryPoints[i].quantile(0.5),
+                        _victoryPoints[i].quantile(0.9)));
+            }
+        }
+        for (int r = 0; r < Hand.NUM_RESOURCES; r += 1) {
+            out.append(String.format("%s per game: median %.0f,"
+                    + " mean %.1f%n", Resource.get(r),
+                    _produced[r].quantile(0.5), _produced[r].mean()));
+        }
+        int best = 0;
+        for (int v = 0; v < Topology.NUM_VERTICES; v += 1) {
+            if (_openings[v] >= MIN_OPENINGS && (_openings[best]
+                    < MIN_OPENINGS || winRate(v) > winRate(best))) {
+                best = v;
+            }
+        }
+        out.append(String.format("best opening vertex: %d, won %.1f%% of"
+                + " %d%n", best, 100 * winRate(best), _openings[best]));
+        return out.toString();
+    }
+
+    /** Plays GAMES games between greedy bots on THREADS threads, each
+     * recording into its own statistics, and prints them merged.
+     * Usage: java GameStats [GAMES [THREADS]] */
+    public static void main(String[] args) throws Exception {
+        int games = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+        int threads = (args.length > 1) ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        Tournament.Bot[] bots = {Tournament.GREEDY, Tournament.GREEDY,
+            Tournament.GREEDY, Tournament.GREEDY};
+        Collector collector = new Collector();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            ArrayList<Future<Integer>> results = new ArrayList<>();
+            for (int g = 0; g < games; g += 1) {
+                long seed = g;
+                results.add(pool.submit(
+                        () -> play(bots, seed, collector.local())));
+            }
+            for (Future<Integer> result : results) {
+                result.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.print(collector.merged().report());
+        System.out.printf("%.0f games/s%n", games / seconds);
+    }
+
+    /** Turns between victory point sketches. */
+    static final int VP_STEP = 10;
+
+    /** Number of victory point sketches; the last one holds every turn
+     * from there on. */
+    static final int VP_STAGES = 20;
+
+    /** Fewest openings on a vertex for report to rank it. */
+    private static final int MIN_OPENINGS = 20;
+
+    /** Game lengths. */
+    private final QuantileSketch _length = new QuantileSketch();
+
+    /** Victory points, every VP_STEP turns. */
+    private final QuantileSketch[] _victoryPoints =
+            new QuantileSketch[VP_STAGES];
+
+    /** Cards of each resource collected by a player in a game. */
+    private final QuantileSketch[] _produced =
+            new QuantileSketch[Hand.NUM_RESOURCES];
+
+    /** Players who opened on each vertex, and who won. */
+    private final long[] _openings = new long[Topology.NUM_VERTICES],
+            _wins = new long[Topology.NUM_VERTICES];
+
+    /** Pairs of opening vertices. */
+    private final CountMinSketch _pairs = new CountMinSketch();
+
+    /** Layouts played. */
+    private final HyperLogLog _layouts = new HyperLogLog();
+
+}
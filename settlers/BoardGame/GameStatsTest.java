@@ -0,0 +1,71 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Set of tests for statistics over many games.
+ * @author John Angeles
+ */
+public class GameStatsTest {
+
+    /** Bots that play in these tests. */
+    private static final Tournament.Bot[] BOTS = {Tournament.GREEDY,
+        Tournament.RANDOM, Tournament.GREEDY, Tournament.PASSIVE};
+
+    @Test
+    public void playTest() {
+        GameStats stats = new GameStats();
+        int winner = GameStats.play(BOTS, 4, stats);
+        assertEquals(Tournament.play(BOTS, 4), winner);
+        assertEquals(1, stats.length().count());
+        assertEquals(1, stats.distinctLayouts());
+        long openings = 0;
+        for (int v = 0; v < Topology.NUM_VERTICES; v += 1) {
+            openings += stats.openings(v);
+        }
+        assertEquals(8, openings);
+        assertEquals(4, stats.produced(Resource.wood()).count());
+    }
+
+    @Test
+    public void collectorTest() throws Exception {
+        GameStats.Collector collector = new GameStats.Collector();
+        GameStats single = new GameStats();
+        Thread[] threads = new Thread[3];
+        for (int t = 0; t < threads.length; t += 1) {
+            int first = t;
+            threads[t] = new Thread(() -> {
+                for (int seed = first; seed < 24; seed += 3) {
+                    GameStats.play(BOTS, seed, collector.local());
+                }
+            });
+            threads[t].start();
+        }
+        for (int seed = 0; seed < 24; seed += 1) {
+            GameStats.play(BOTS, seed, single);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        GameStats merged = collector.merged();
+        assertEquals(24, merged.length().count());
+        assertEquals(single.length().quantile(0.5),
+                merged.length().quantile(0.5), 0);
+        assertEquals(single.distinctLayouts(), merged.distinctLayouts());
+        for (int v = 0; v < Topology.NUM_VERTICES; v += 1) {
+            assertEquals(single.openings(v), merged.openings(v));
+        }
+        assertEquals(single.produced(Resource.ore()).mean(),
+                merged.produced(Resource.ore()).mean(), 1e-9);
+    }
+
+    @Test
+    public void layoutKeyTest() {
+        CompactGame game = Perft.opening(12);
+        long key = GameStats.layoutKey(game);
+        for (int t = 0; t < Symmetry.COUNT; t += 1) {
+            assertEquals(key,
+                    GameStats.layoutKey(Symmetry.apply(t, game)));
+        }
+        assertTrue(key != GameStats.layoutKey(Perft.opening(13)));
+    }
+
+}
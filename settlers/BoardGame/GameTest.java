@@ -0,0 +1,159 @@
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+/** Set of tests for the line-driven game and its actor.
+ * @author John Angeles
+ */
+public class GameTest {
+
+    /** Returns a game where all four players have been named. */
+    private Game namedGame() {
+        Game game = new Game(1);
+        game.handle("start");
+        game.handle("Alice");
+        game.handle("Bob");
+        game.handle("Carol");
+        game.handle("Dave");
+        return game;
+    }
+
+    @Test
+    public void startTest() {
+        Game game = new Game(1);
+        assertTrue(game.handle("begin").startsWith("Invalid input!"));
+        String response = game.handle("start");
+        assertTrue(response.startsWith("Starting the game!"));
+        assertTrue(response.endsWith("What will be player one's name?"));
+        assertEquals("What will be player two's name?", game.handle("Alice"));
+        assertEquals(Color.black(), game.player(0).color());
+    }
+
+    @Test
+    public void drawOnTest() {
+        EventBus bus = new EventBus();
+        EventBus.Cursor cursor = bus.subscribe();
+        Game game = new Game(1);
+        game.drawOn(bus);
+        assertEquals("What will be player one's name?", game.handle("start"));
+        int[] resets = new int[1];
+        cursor.poll(event -> {
+            if (event.kind == EventBus.RESET) {
+                resets[0] += 1;
+            }
+        });
+        assertEquals(1, resets[0]);
+        assertTrue(game.view().dump().length() > 0);
+        game.release();
+    }
+
+    @Test
+    public void longNameTest() {
+        Game game = new Game(1);
+        game.handle("start");
+        String response = game.handle("x".repeat(Game.MAX_NAME + 1));
+        assertTrue(response.endsWith("What will be player one's name?"));
+        assertNull(game.player(0));
+        assertEquals("What will be player two's name?",
+                game.handle("x".repeat(Game.MAX_NAME)));
+    }
+
+    @Test
+    public void quitTest() {
+        Game game = new Game(1);
+        game.handle("quit");
+        assertEquals("Please type in 'yes' or 'no'.", game.handle("maybe"));
+        assertEquals("Let's keep playing!", game.handle("no"));
+        assertFalse(game.over());
+        game.handle("quit");
+        game.handle("yes");
+        assertTrue(game.over());
+    }
+
+    @Test
+    public void turnTest() {
+        Game game = namedGame();
+        assertEquals(0, game.turn());
+        assertEquals("Bob, it's your turn!", game.handle("end"));
+        assertEquals("Nope, can't place it there.", game.handle("road 9 1"));
+        assertEquals("Usage: road HEX POSITION", game.handle("road 9"));
+        assertEquals("Please pick a number between 1 and 19!",
+                game.handle("settlement 20 1"));
+    }
+
+    @Test
+    public void actorTest() throws Exception {
+        GameActor actor = new GameActor(new Game(1));
+        Thread thread = new Thread(actor);
+        thread.start();
+        assertTrue(actor.send("start").get().startsWith("Starting the game!"));
+        assertEquals("What will be player two's name?",
+                actor.send("Alice").get());
+        actor.stop();
+        thread.join();
+    }
+
+    @Test
+    public void sharedBoardTest() throws Exception {
+        Game game = namedGame();
+        Board.placeRoad(new Road(Color.black(), game.player(0)), 4, 0);
+        String board = Board.dump();
+        Tournament.play(new Tournament.Bot[] {Tournament.GREEDY,
+            Tournament.GREEDY, Tournament.GREEDY, Tournament.GREEDY}, 3);
+        Perft.referenceMoves(Perft.opening(2));
+        LegalityFuzzer.check(1);
+        Path dir = Files.createTempDirectory("gamelog");
+        GameLog log = new GameLog(dir, 1);
+        log.roll(3, 4);
+        log.close();
+        new GameReplayer(dir, 1).replay(Long.MAX_VALUE);
+        assertNotEquals(board, Board.dump());
+        game.handle("road 9 1");
+        assertEquals(board, Board.dump());
+    }
+
+    @Test
+    public void saveLoadTest() {
+        Game game = namedGame();
+        Player alice = game.player(0);
+        Board.placeRoad(new Road(Color.black(), alice), 4, 0);
+        for (Card card : new ResourceCard[] {new WoodCard(), new BrickCard(),
+            new WheatCard(), new SheepCard(), new WheatCard(),
+            new WheatCard(), new OreCard(), new OreCard(), new OreCard()}) {
+            alice.giveResource((ResourceCard) card);
+        }
+        game.handle("settlement 4 0");
+        game.handle("city 4 0");
+        Board.placeSettlement(new Settlement(Color.red()), 12, 3);
+        Board.moveRobber(9);
+        game.handle("end");
+        String board = Board.dump();
+
+        ByteBuffer buf = ByteBuffer.allocate(1024);
+        game.save(buf);
+        assertTrue(buf.position() < 400);
+        buf.flip();
+        Board.reset();
+        Game loaded = Game.load(buf, null);
+
+        assertEquals(board, Board.dump());
+        assertEquals(9, Board.robber());
+        assertEquals(1, loaded.turn());
+        assertEquals("Bob", loaded.player(1).getName());
+        Player alice2 = loaded.player(0);
+        assertEquals(alice.packedHand(), alice2.packedHand());
+        assertEquals(2, alice2.victoryPoints());
+        assertEquals(2, alice2.production(4));
+        assertEquals(14, alice2.numRoads());
+        assertEquals(5, alice2.numSettlements());
+        assertEquals(3, alice2.numCities());
+        assertSame(alice2, Board.get(4).building(0).player());
+        assertSame(Board.get(4).building(0), Board.get(1).building(4));
+        assertEquals(board, loaded.view().dump());
+    }
+
+}
@@ -0,0 +1,146 @@
+/** A class that you cannot instantiate. It contains static
+ * functions for packed hands.
+ *
+ * A packed hand is a long that holds one 8-bit count per resource,
+ * in the order wood, brick, wheat, ore and sheep (See Resource.index).
+ * Wood lives in the lowest byte. This way, checking whether a hand
+ * can pay for something, or adding two hands together, takes a few
+ * arithmetic operations instead of walking five stacks of cards.
+ *
+ * There are only 19 cards of each resource in the game, but the fast
+ * engines don't keep a bank, so a player who never spends can pile up
+ * far more. Counts are kept to at most MAX_COUNT (See add), so a count
+ * never reaches the top bit of its byte. We use that bit as a guard
+ * when subtracting hands.
+ * @author John Angeles
+ */
+final class Hand {
+
+    /** You can't create a hand; use the static functions instead. */
+    private Hand() { }
+
+    /** Returns a packed hand with the given number of each resource. */
+    static long pack(int wood, int brick, int wheat, int ore, int sheep) {
+        return (long) wood | ((long) brick << 8) | ((long) wheat << 16)
+                | ((long) ore << 24) | ((long) sheep << 32);
+    }
+
+    /** Returns COUNTS packed into a hand.
+     * @param counts Five counts, indexed like Resource.index.
+     */
+    static long pack(int[] counts) {
+        assert counts.length == NUM_RESOURCES : "Need five counts!";
+        return pack(counts[0], counts[1], counts[2], counts[3], counts[4]);
+    }
+
+    /** Returns the number of cards of resource INDEX in HAND. */
+    static int count(long hand, int index) {
+        return (int) (hand >>> (8 * index)) & 0xFF;
+    }
+
+    /** Returns a hand holding a single card of resource INDEX. */
+    static long unit(int index) {
+        return 1L << (8 * index);
+    }
+
+    /** Returns the total number of cards in HAND. Each count may be
+     * up to 0xFF, so I add them up in an int rather than in a byte of
+     * the hand. */
+    static int size(long hand) {
+        int total = 0;
+        for (int i = 0; i < NUM_RESOURCES; i += 1) {
+            total += count(hand, i);
+        }
+        return total;
+    }
+
+    /** Returns true iff HAND has at least as many of every resource
+     * as COST.
+     */
+    static boolean covers(long hand, long cost) {
+        return (((hand | GUARDS) - cost) & GUARDS) == GUARDS;
+    }
+
+    /** Returns HAND with the cards in CARDS added, where any count that
+     * would go past MAX_COUNT stays at MAX_COUNT instead of carrying
+     * into the next resource. No count in either may be over
+     * MAX_COUNT.
+     */
+    static long add(long hand, long cards) {
+        long sum = hand + cards;
+        long over = (sum & GUARDS) >>> 7;
+        return (sum & ~(over * 0xFF)) | (over * MAX_COUNT);
+    }
+
+    /** Returns HAND without the cards in CARDS. HAND must cover
+     * CARDS, so no count goes below zero and borrows from the next
+     * resource. */
+    static long subtract(long hand, long cards) {
+        assert covers(hand, cards) : "Hand doesn't hold those cards!";
+        return hand - cards;
+    }
+
+    /** Returns HAND after giving away GIVE and getting WANT, with the
+     * counts of WANT held at MAX_COUNT (See add). HAND must cover
+     * GIVE. */
+    static long swap(long hand, long give, long want) {
+        return add(subtract(hand, give), want);
+    }
+
+    /** Returns the number of cards HAND is missing to pay for COST. */
+    static int shortfall(long hand, long cost) {
+        long diff = (cost | GUARDS) - hand;
+        long keep = ((diff & GUARDS) >>> 7) * 0x7F;
+        return size(diff & ~GUARDS & keep);
+    }
+
+    /** Returns how far HAND is from being able to build things.
+     * This is the sum of the shortfalls for a road, a settlement,
+     * a city and a development card, so a lower number is better.
+     */
+    static int need(long hand) {
+        return shortfall(hand, ROAD) + shortfall(hand, SETTLEMENT)
+                + shortfall(hand, CITY) + shortfall(hand, DEVELOPMENT_CARD);
+    }
+
+    /** Returns a string such as "[1 wood, 2 ore]" for HAND. */
+    static String toString(long hand) {
+        String result = "";
+        for (int i = 0; i < NUM_RESOURCES; i += 1) {
+            int count = count(hand, i);
+            if (count > 0) {
+                if (!result.isEmpty()) {
+                    result = result.concat(", ");
+                }
+                result = result.concat(count + " " + NAMES[i]);
+            }
+        }
+        return "[" + result + "]";
+    }
+
+    /** Number of resources that can be in a hand. */
+    static final int NUM_RESOURCES = 5;
+
+    /** Most cards of one resource a hand holds. */
+    static final int MAX_COUNT = 0x7F;
+
+    /** What a road costs: one wood and one brick. */
+    static final long ROAD = pack(1, 1, 0, 0, 0);
+
+    /** What a settlement costs: one wood, brick, wheat and sheep. */
+    static final long SETTLEMENT = pack(1, 1, 1, 0, 1);
+
+    /** What a city costs: two wheat and three ore. */
+    static final long CITY = pack(0, 0, 2, 3, 0);
+
+    /** What a development card costs: one wheat, ore and sheep. */
+    static final long DEVELOPMENT_CARD = pack(0, 0, 1, 1, 1);
+
+    /** The top bit of every resource's byte. */
+    private static final long GUARDS = 0x8080808080L;
+
+    /** Names of the resources, indexed like Resource.index. */
+    private static final String[] NAMES
+            = new String[] {"wood", "brick", "wheat", "ore", "sheep"};
+
+}
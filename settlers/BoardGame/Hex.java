@@ -1,4 +1,5 @@
 import java.util.ArrayList;
+import java.util.List;
 
 /** Represents a hex.  Each hex contains six edges and six points
  * where each edge can contain a road, and each point can contain a settlement.
@@ -60,6 +61,11 @@ final class Hex {
         return _resource;
     }
 
+    /** Returns true iff I have a resource set. */
+    boolean hasResource() {
+        return _resource != null;
+    }
+
     /** Sets my number to be NUMBER. */
     void setNumber(int number) {
         _number = number;
@@ -70,6 +76,16 @@ final class Hex {
         return _number;
     }
 
+    /** Returns true if I have the robber on me. */
+    boolean hasRobber() {
+        return _hasRobber;
+    }
+
+    /** Puts the robber on me if ROBBER, or takes it off otherwise. */
+    void setRobber(boolean robber) {
+        _hasRobber = robber;
+    }
+
     /**
 
     /** ===== Set of functions that return hexes adjacent to me. =====
@@ -124,6 +140,7 @@ final class Hex {
      */
     void setNorthEast(Hex hex) {
         _adjHexes[0] = hex;
+        _adjacent = null;
         if (hex.southWest() != this) {
             hex.setSouthWest(this);
         }
@@ -131,6 +148,7 @@ final class Hex {
 
     void setEast(Hex hex) {
         _adjHexes[1] = hex;
+        _adjacent = null;
         if (hex.west() != this) {
             hex.setWest(this);
         }
@@ -138,6 +156,7 @@ final class Hex {
 
     void setSouthEast(Hex hex) {
         _adjHexes[2] = hex;
+        _adjacent = null;
         if (hex.northWest() != this) {
             hex.setNorthWest(this);
         }
@@ -145,6 +164,7 @@ final class Hex {
 
     void setSouthWest(Hex hex) {
         _adjHexes[3] = hex;
+        _adjacent = null;
         if (hex.northEast() != this) {
             hex.setNorthEast(this);
         }
@@ -152,6 +172,7 @@ final class Hex {
 
     void setWest(Hex hex) {
         _adjHexes[4] = hex;
+        _adjacent = null;
         if (hex.east() != this) {
             hex.setEast(this);
         }
@@ -159,6 +180,7 @@ final class Hex {
 
     void setNorthWest(Hex hex) {
         _adjHexes[5] = hex;
+        _adjacent = null;
         if (hex.southEast() != this) {
             hex.setSouthEast(this);
         }
@@ -215,6 +237,29 @@ final class Hex {
         }
     }
 
+    /** Replaces whatever building is on POSN with BUILDING, both on me
+     * and on the (at most two) hexes that share POSN with me.
+     * Unlike addBuilding, this touches each hex exactly once, so it
+     * is the way to swap one piece for another, such as when a
+     * settlement is upgraded to a city.
+     *
+     * @param posn (See hasBuilding)
+     * @param building Building to be placed on POSN
+     */
+    void replaceBuilding(int posn, Building building) {
+        _adjBuildings[posn] = building;
+
+        int[] adjHexes = ADJACENT_HEXES[posn];
+        int[] adjPoint = POINTS_ON_OTHER_ADJ_HEXES[posn];
+
+        for (int i = 0; i < 2; i += 1) {
+            Hex currHex = _adjHexes[adjHexes[i]];
+            if (currHex != null) {
+                currHex._adjBuildings[adjPoint[i]] = building;
+            }
+        }
+    }
+
     /** Returns the building on POSN, or null if there isn't. */
     Building building(int posn) {
         return _adjBuildings[posn];
@@ -233,8 +278,24 @@ final class Hex {
         return answer;
     }
 
-    /** Returns an ArrayList of hexes adjacent to POSN, including me. */
-    ArrayList<Hex> adjacentHexes(int posn) {
+    /** Returns an unmodifiable list of hexes adjacent to POSN,
+     * including me. The list is made once and shared by every caller
+     * until my adjacent hexes change.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    List<Hex> adjacentHexes(int posn) {
+        if (_adjacent == null) {
+            _adjacent = new List[6];
+        }
+        if (_adjacent[posn] == null) {
+            _adjacent[posn] = findAdjacentHexes(posn);
+        }
+        return _adjacent[posn];
+    }
+
+    /** Returns a new unmodifiable list of hexes adjacent to POSN,
+     * including me. */
+    private List<Hex> findAdjacentHexes(int posn) {
         ArrayList<Hex> answer = new ArrayList<>();
         answer.add(this);
         int[] adj = ADJACENT_HEXES[posn];
@@ -246,7 +307,7 @@ final class Hex {
         if (_adjHexes[hex2] != null) {
             answer.add(_adjHexes[hex2]);
         }
-        return answer;
+        return List.copyOf(answer);
     }
 
     /** Returns true if I have a road on SIDE.
@@ -309,6 +370,18 @@ final class Hex {
         }
     }
 
+    /** Removes all pieces from me without returning them to their
+     * players, because they belong to a game that is being swapped
+     * off of the board.
+     */
+    void wipe() {
+        for (int i = 0; i < 6; i += 1) {
+            _adjBuildings[i] = null;
+            _roads[i] = null;
+        }
+        _hasRobber = false;
+    }
+
     /** Useful if you would like to see the hex printed out
      * for testing or sanity purposes.
      *
@@ -327,25 +400,34 @@ final class Hex {
                     ? _roads[i].toString() : " ";
         }
 
-        String id = String.valueOf(_id);
-        if (_id < 10) {
-            id = "0" + _id;
+        return dump(_id, _number, _resource, buildings, roads);
+    }
+
+    /** Returns a visual representation of a hex with ID, NUMBER and
+     * RESOURCE, where BUILDINGS and ROADS hold what to draw on each
+     * point and side. RESOURCE may be null.
+     */
+    static String dump(int hexId, int hexNumber, Resource resource,
+                       String[] buildings, String[] roads) {
+        String id = String.valueOf(hexId);
+        if (hexId < 10) {
+            id = "0" + hexId;
         }
 
-        String number = "0" + String.valueOf(_number);
-        if (_number < 10) {
-            number = "00" + String.valueOf(_number);
+        String number = "0" + String.valueOf(hexNumber);
+        if (hexNumber < 10) {
+            number = "00" + String.valueOf(hexNumber);
         }
 
-        String resource = " N/A ";
-        if (_resource != null) {
-            resource = _resource.toString();
+        String name = " N/A ";
+        if (resource != null) {
+            name = resource.toString();
         }
 
         return    "      *" + buildings[0] + "*      \n"
                 + "     " + roads[5] + "     " + roads[0] + "     \n"
                 + "*" + buildings[5] + "* |" + number + "| *" + buildings[1] + "*\n"
-                + "  " + roads[4] + "   " + resource + "   " + roads[1] + "  \n"
+                + "  " + roads[4] + "   " + name + "   " + roads[1] + "  \n"
                 + "*" + buildings[4] + "* Hex" + id + " *" + buildings[2] + "*\n"
                 + "     " + roads[3] + "     " + roads[2] + "     \n"
                 + "      *" + buildings[3] + "*      ";
@@ -408,6 +490,11 @@ final class Hex {
      */
     private Hex[] _adjHexes = new Hex[6];
 
+    /** Hexes adjacent to each point, including me, as adjacentHexes
+     * returns them, or null where they haven't been asked for since my
+     * adjacent hexes last changed. */
+    private List<Hex>[] _adjacent;
+
     /** Buildings adjacent to me.
      * Index 0 = north point
      * Index 1 = northeast point
@@ -1,6 +1,6 @@
 import org.junit.Test;
 
-import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -137,10 +137,17 @@ public class HexTest {
     public void adjacentHexesTest() {
         Hex hex1 = new Hex(1, 10);
         Hex hex2 = new Hex(2, 10);
-        ArrayList<Hex> adj = hex1.adjacentHexes(0);
+        List<Hex> adj = hex1.adjacentHexes(0);
         assertEquals("[Hex 1]", adj.toString());
+        assertSame(adj, hex1.adjacentHexes(0));
+        try {
+            adj.clear();
+            fail("Expected the shared list to be unmodifiable");
+        } catch (UnsupportedOperationException e) {
+            assertEquals("[Hex 1]", adj.toString());
+        }
         hex1.setNorthEast(hex2);
-        ArrayList<Hex> adj2 = hex1.adjacentHexes(0);
+        List<Hex> adj2 = hex1.adjacentHexes(0);
         assertEquals("[Hex 1, Hex 2]", adj2.toString());
     }
 
@@ -0,0 +1,59 @@
+/** Counts about how many different keys are in a stream, in a fixed
+ * REGISTERS bytes, to within about 1.6%.
+ *
+ * Each key is hashed, the top bits of the hash pick a register, and
+ * the register keeps the most leading zeroes seen in the rest of the
+ * hash. Seeing many different keys makes long runs of zeroes likely,
+ * so the registers together say how many there were. Adding a key
+ * twice changes nothing. Two sketches are merged by keeping the larger
+ * of each pair of registers, which gives exactly the sketch of both
+ * streams together.
+ * @author John Angeles
+ */
+final class HyperLogLog {
+
+    /** Adds KEY to the stream. */
+    void add(long key) {
+        long hash = Seeds.mix(key);
+        int register = (int) (hash >>> (64 - BITS));
+        int rank = Long.numberOfLeadingZeros((hash << BITS)
+                | (1L << (BITS - 1))) + 1;
+        if (rank > _registers[register]) {
+            _registers[register] = (byte) rank;
+        }
+    }
+
+    /** Adds every key in OTHER to me. */
+    void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i += 1) {
+            _registers[i] = (byte) Math.max(_registers[i],
+                    other._registers[i]);
+        }
+    }
+
+    /** Returns about how many different keys I have seen. */
+    long estimate() {
+        double sum = 0;
+        int zeroes = 0;
+        for (byte register : _registers) {
+            sum += Math.scalb(1.0, -register);
+            zeroes += (register == 0) ? 1 : 0;
+        }
+        double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+        double estimate = alpha * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeroes > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeroes);
+        }
+        return Math.round(estimate);
+    }
+
+    /** Bits of the hash that pick a register. */
+    static final int BITS = 12;
+
+    /** Number of registers. */
+    static final int REGISTERS = 1 << BITS;
+
+    /** The most leading zeroes, plus one, seen by each register. */
+    private final byte[] _registers = new byte[REGISTERS];
+
+}
@@ -0,0 +1,35 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Set of tests for HyperLogLog.
+ * @author John Angeles
+ */
+public class HyperLogLogTest {
+
+    @Test
+    public void estimateTest() {
+        for (int n : new int[] {10, 1000, 100000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (int i = 0; i < n; i += 1) {
+                sketch.add(i * 7919L);
+                sketch.add(i * 7919L);
+            }
+            assertEquals(n, sketch.estimate(), n * 0.05 + 1);
+        }
+    }
+
+    @Test
+    public void mergeTest() {
+        HyperLogLog whole = new HyperLogLog();
+        HyperLogLog low = new HyperLogLog();
+        HyperLogLog high = new HyperLogLog();
+        for (long i = 0; i < 20000; i += 1) {
+            whole.add(i);
+            ((i < 12000) ? low : high).add(i);
+        }
+        high.add(5);
+        low.merge(high);
+        assertEquals(whole.estimate(), low.estimate());
+    }
+
+}
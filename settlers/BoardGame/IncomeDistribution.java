@@ -0,0 +1,213 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/** The exact chances of each player collecting each number of cards
+ * over the next few turns.
+ *
+ * For each player and resource I keep how many cards each sum of the
+ * dice pays out, worked out from every hex's number and resource and
+ * the player's production on it (See Player.production). Over K turns
+ * the income is the sum of K independent rolls, so its distribution is
+ * the per-roll distribution convolved with itself K times.
+ *
+ * Distributions are exact: they count dice outcomes out of 36^K, which
+ * fits in a long for up to MAX_TURNS turns. Tables for K = 0 to
+ * MAX_TURNS are worked out once per per-roll payout and shared by every
+ * distribution with the same payout, since most payouts repeat, so
+ * distribution only ever hands out copies of them.
+ *
+ * When a building is placed or upgraded, or the robber moves, tell me
+ * so with placed or robberMoved, and I only redo the hexes involved.
+ * I am not thread safe.
+ * @author John Angeles
+ */
+final class IncomeDistribution {
+
+    /** Creates a distribution for PLAYERS as the game stands on Board.
+     * A null player collects nothing. */
+    IncomeDistribution(Player[] players) {
+        _players = players;
+        _perRoll = new int[players.length][Hand.NUM_RESOURCES + 1][13];
+        _counted = new int[players.length][19];
+        refresh();
+    }
+
+    /** Works everything out again from Board. */
+    void refresh() {
+        _robber = Board.robber();
+        for (int hex = 1; hex <= 19; hex += 1) {
+            update(hex);
+        }
+    }
+
+    /** Tells me that a building was placed or upgraded on HEX (1-19)
+     * at POSN. */
+    void placed(int hex, int posn) {
+        for (int other : Topology.VERTEX_HEXES[Topology.vertex(hex - 1,
+                posn)]) {
+            update(other + 1);
+        }
+    }
+
+    /** Tells me that the robber moved onto HEX (1-19). */
+    void robberMoved(int hex) {
+        int old = _robber;
+        _robber = hex;
+        if (old != 0) {
+            update(old);
+        }
+        update(hex);
+    }
+
+    /** Returns how many of the 36^TURNS ways the dice can come up over
+     * the next TURNS rolls give PLAYER (an index into my players)
+     * exactly i cards of RESOURCE, at index i. If RESOURCE is null,
+     * counts cards of every resource together. The array is a copy,
+     * so the caller may change it. */
+    long[] distribution(int player, Resource resource, int turns) {
+        return table(player, resource, turns).clone();
+    }
+
+    /** Same as distribution, but returns the shared table itself, which
+     * must not be changed. */
+    private long[] table(int player, Resource resource, int turns) {
+        assert 0 <= turns && turns <= MAX_TURNS : "Too many turns!";
+        int[] perRoll = _perRoll[player][(resource == null)
+                ? Hand.NUM_RESOURCES : resource.index()];
+        return tables(perRoll)[turns];
+    }
+
+    /** Returns the chance that PLAYER collects exactly CARDS cards of
+     * RESOURCE, or of every resource if null, over the next TURNS
+     * rolls. */
+    double probability(int player, Resource resource, int turns,
+                       int cards) {
+        long[] counts = table(player, resource, turns);
+        if (cards < 0 || cards >= counts.length) {
+            return 0;
+        }
+        return counts[cards] / (double) outcomes(turns);
+    }
+
+    /** Returns the number of cards of RESOURCE, or of every resource if
+     * null, that PLAYER collects on average each roll. */
+    double expected(int player, Resource resource) {
+        int[] perRoll = _perRoll[player][(resource == null)
+                ? Hand.NUM_RESOURCES : resource.index()];
+        double total = 0;
+        for (int sum = 2; sum <= 12; sum += 1) {
+            total += WAYS[sum] * perRoll[sum];
+        }
+        return total / 36;
+    }
+
+    /** Returns 36^TURNS, the number of ways the dice can come up over
+     * TURNS rolls. */
+    static long outcomes(int turns) {
+        long answer = 1;
+        for (int i = 0; i < turns; i += 1) {
+            answer *= 36;
+        }
+        return answer;
+    }
+
+    /** Recounts what every player collects from HEX (1-19). */
+    private void update(int hex) {
+        Hex curr = Board.get(hex);
+        boolean pays = curr.hasResource() && curr.number() >= 2
+                && curr.resource().index() < Hand.NUM_RESOURCES
+                && hex != _robber;
+        int number = pays ? curr.number() : 0;
+        int resource = pays ? curr.resource().index() : 0;
+        for (int p = 0; p < _players.length; p += 1) {
+            int[][] perRoll = _perRoll[p];
+            int old = _counted[p][hex - 1];
+            perRoll[_resources[hex - 1]][_numbers[hex - 1]] -= old;
+            perRoll[Hand.NUM_RESOURCES][_numbers[hex - 1]] -= old;
+            int amount = (pays && _players[p] != null)
+                    ? _players[p].production(hex) : 0;
+            perRoll[resource][number] += amount;
+            perRoll[Hand.NUM_RESOURCES][number] += amount;
+            _counted[p][hex - 1] = amount;
+        }
+        _numbers[hex - 1] = number;
+        _resources[hex - 1] = resource;
+    }
+
+    /** Returns the tables for PERROLL, working them out if no
+     * distribution has needed them before. */
+    private static long[][] tables(int[] perRoll) {
+        long key = 0;
+        for (int sum = 2; sum <= 12; sum += 1) {
+            assert perRoll[sum] < 32 : "Too many cards for one roll!";
+            key = key << 5 | perRoll[sum];
+        }
+        long[][] tables = TABLES.get(key);
+        if (tables == null) {
+            if (TABLES.size() >= MAX_TABLES) {
+                TABLES.clear();
+            }
+            tables = convolve(perRoll);
+            TABLES.put(key, tables);
+        }
+        return tables;
+    }
+
+    /** Returns, for each number of turns K from 0 to MAX_TURNS, how
+     * many ways the dice can come up K times to pay out each total,
+     * where one roll of each sum pays out PERROLL[sum]. */
+    private static long[][] convolve(int[] perRoll) {
+        int most = 0;
+        for (int sum = 2; sum <= 12; sum += 1) {
+            most = Math.max(most, perRoll[sum]);
+        }
+        long[][] tables = new long[MAX_TURNS + 1][];
+        tables[0] = new long[] {1};
+        for (int k = 1; k <= MAX_TURNS; k += 1) {
+            long[] last = tables[k - 1];
+            long[] next = new long[last.length + most];
+            for (int total = 0; total < last.length; total += 1) {
+                if (last[total] == 0) {
+                    continue;
+                }
+                for (int sum = 2; sum <= 12; sum += 1) {
+                    next[total + perRoll[sum]] += last[total] * WAYS[sum];
+                }
+            }
+            tables[k] = next;
+        }
+        return tables;
+    }
+
+    /** Most turns I can look ahead, since 36^MAX_TURNS must fit in a
+     * long. */
+    static final int MAX_TURNS = 12;
+
+    /** Number of ways two dice can add up to each sum. */
+    static final int[] WAYS = {0, 0, 1, 2, 3, 4, 5, 6, 5, 4, 3, 2, 1};
+
+    /** Most tables to keep before starting over. */
+    private static final int MAX_TABLES = 4096;
+
+    /** Tables for each per-roll payout that has been needed, keyed by
+     * the payouts for sums 2 to 12, five bits each. */
+    private static final ConcurrentHashMap<Long, long[][]> TABLES
+            = new ConcurrentHashMap<>();
+
+    /** The players, in order. */
+    private final Player[] _players;
+
+    /** Cards each player collects for each roll: indexed by player,
+     * then resource (or Hand.NUM_RESOURCES for all of them together),
+     * then the sum of the dice. */
+    private final int[][][] _perRoll;
+
+    /** What each player's _perRoll counts from each hex. */
+    private final int[][] _counted;
+
+    /** The number and resource index each hex had when last counted. */
+    private final int[] _numbers = new int[19], _resources = new int[19];
+
+    /** Hex the robber was on when last counted, or 0. */
+    private int _robber;
+
+}
@@ -0,0 +1,98 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Set of tests for income distributions.
+ * @author John Angeles
+ */
+public class IncomeDistributionTest {
+
+    /** Lays out a board where hex 5 is wheat on 8, hex 1 is ore on 6,
+     * and every other hex is desert. */
+    private static void layOut() {
+        Resource[] resources = new Resource[19];
+        int[] numbers = new int[19];
+        for (int i = 0; i < 19; i += 1) {
+            resources[i] = Resource.desert();
+        }
+        resources[4] = Resource.wheat();
+        numbers[4] = 8;
+        resources[0] = Resource.ore();
+        numbers[0] = 6;
+        Board.reset(resources, numbers);
+    }
+
+    @Test
+    public void settlementTest() {
+        layOut();
+        Player alice = new Player(Color.white(), "Alice");
+        Player bob = new Player(Color.red(), "Bob");
+        IncomeDistribution income = new IncomeDistribution(
+                new Player[] {alice, bob});
+        assertArrayEquals(new long[] {36}, income.distribution(0, null, 1));
+
+        for (ResourceCard card : new ResourceCard[] {new WoodCard(),
+            new BrickCard(), new WheatCard(), new SheepCard()}) {
+            alice.giveResource(card);
+        }
+        alice.placeSettlement(5, 0);
+        income.placed(5, 0);
+        assertArrayEquals(new long[] {31, 5},
+                income.distribution(0, Resource.wheat(), 1));
+        assertArrayEquals(new long[] {31 * 31, 2 * 31 * 5, 25},
+                income.distribution(0, Resource.wheat(), 2));
+        assertEquals(10.0 / 36, income.probability(0, null, 1, 1), 1e-12);
+        assertEquals(10.0 / 36, income.expected(0, null), 1e-12);
+        assertArrayEquals(new long[] {36}, income.distribution(1, null, 1));
+
+        long total = 0;
+        for (long count : income.distribution(0, null,
+                IncomeDistribution.MAX_TURNS)) {
+            total += count;
+        }
+        assertEquals(IncomeDistribution.outcomes(
+                IncomeDistribution.MAX_TURNS), total);
+
+        long[] changed = income.distribution(0, Resource.wheat(), 1);
+        changed[0] = 0;
+        IncomeDistribution other = new IncomeDistribution(
+                new Player[] {alice});
+        assertArrayEquals(new long[] {31, 5},
+                other.distribution(0, Resource.wheat(), 1));
+        assertEquals(31.0 / 36,
+                income.probability(0, Resource.wheat(), 1, 0), 1e-12);
+    }
+
+    @Test
+    public void cityAndRobberTest() {
+        layOut();
+        Player alice = new Player(Color.white(), "Alice");
+        IncomeDistribution income = new IncomeDistribution(
+                new Player[] {alice});
+        for (ResourceCard card : new ResourceCard[] {new WoodCard(),
+            new BrickCard(), new WheatCard(), new SheepCard(),
+            new WheatCard(), new WheatCard(), new OreCard(), new OreCard(),
+            new OreCard()}) {
+            alice.giveResource(card);
+        }
+        alice.placeSettlement(5, 0);
+        income.placed(5, 0);
+        alice.placeCity(5, 0);
+        income.placed(5, 0);
+        assertArrayEquals(new long[] {31, 0, 5},
+                income.distribution(0, Resource.wheat(), 1));
+
+        Board.moveRobber(5);
+        income.robberMoved(5);
+        assertArrayEquals(new long[] {36},
+                income.distribution(0, Resource.wheat(), 1));
+        assertArrayEquals(new long[] {31, 0, 5},
+                income.distribution(0, Resource.ore(), 1));
+        IncomeDistribution fresh = new IncomeDistribution(
+                new Player[] {alice});
+        for (int k = 0; k <= 4; k += 1) {
+            assertArrayEquals(fresh.distribution(0, null, k),
+                    income.distribution(0, null, k));
+        }
+    }
+
+}
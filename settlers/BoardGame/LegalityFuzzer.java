@@ -0,0 +1,309 @@
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/** Checks that CompactGame.isValidRoad and isValidSettlement always
+ * give the same answers as Player.isValidRoad and isValidSettlement.
+ *
+ * I make random positions: a random layout, then random roads,
+ * settlements and cities of random players dropped anywhere, without
+ * following the rules, so that odd corners get tried too. For each
+ * position I ask both sides about every player, hex and position. When
+ * they disagree, I shrink the position by taking pieces away for as
+ * long as they still disagree, which leaves a small reproducer.
+ *
+ * Positions are made and answered by the fast side on every thread.
+ * The reference answers need Board, so only one thread at a time can
+ * get them (See Game.BOARD_LOCK).
+ * @author John Angeles
+ */
+final class LegalityFuzzer {
+
+    /** A position and a question that the two sides answer
+     * differently. */
+    static final class Mismatch {
+
+        /** A mismatch where PLAYER asked about a road if ROAD, or
+         * else a settlement, on HEX (from 0-18) at POSN, in LAYOUT with
+         * PIECES added (See build), and the fast side said FAST. */
+        Mismatch(CompactGame layout, int[] pieces, int player,
+                 boolean road, int hex, int posn, boolean fast) {
+            _layout = layout;
+            _pieces = pieces;
+            _player = player;
+            _road = road;
+            _hex = hex;
+            _posn = posn;
+            _fast = fast;
+        }
+
+        /** Returns the pieces in my position. */
+        int[] pieces() {
+            return _pieces;
+        }
+
+        /** Returns my position. */
+        CompactGame game() {
+            return build(_layout, _pieces);
+        }
+
+        /** Returns true iff the two sides still disagree about my
+         * question with only PIECES on the board. */
+        boolean holds(int[] pieces) {
+            CompactGame game = build(_layout, pieces);
+            boolean fast = fast(game, _road, _player, _hex, _posn);
+            return fast != reference(game, _road, _player, _hex, _posn);
+        }
+
+        /** Returns a copy of me with only the pieces that are needed
+         * for the two sides to disagree. */
+        Mismatch shrink() {
+            int[] pieces = LegalityFuzzer.shrink(_pieces, this::holds);
+            return new Mismatch(_layout, pieces, _player, _road, _hex,
+                    _posn, _fast);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder answer = new StringBuilder();
+            answer.append(String.format("Player %d, %s on hex %d at %d:"
+                    + " fast says %b, Player says %b%n", _player,
+                    _road ? "road" : "settlement", _hex + 1, _posn,
+                    _fast, !_fast));
+            for (int piece : _pieces) {
+                answer.append("  ").append(describe(piece))
+                        .append(System.lineSeparator());
+            }
+            return answer.toString();
+        }
+
+        /** The layout my pieces go on. */
+        private final CompactGame _layout;
+
+        /** The pieces on the board. */
+        private final int[] _pieces;
+
+        /** The player who asked. */
+        private final int _player;
+
+        /** True if the question was about a road. */
+        private final boolean _road;
+
+        /** Hex and position of the question. */
+        private final int _hex, _posn;
+
+        /** What the fast side answered. */
+        private final boolean _fast;
+    }
+
+    /** You can't create a fuzzer; use the static methods instead. */
+    private LegalityFuzzer() { }
+
+    /** Tries POSITIONS random positions, starting from SEED, on THREADS
+     * threads. Returns the first mismatch found, shrunk, or null if
+     * there was none. The same seed tries the same positions. */
+    static Mismatch run(long seed, long positions, int threads)
+            throws Exception {
+        AtomicLong next = new AtomicLong();
+        AtomicReference<Mismatch> found = new AtomicReference<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            ArrayList<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i += 1) {
+                workers.add(pool.submit(() -> {
+                    for (long n = next.getAndIncrement();
+                         n < positions && found.get() == null;
+                         n = next.getAndIncrement()) {
+                        Mismatch mismatch = check(seed + n);
+                        if (mismatch != null) {
+                            found.compareAndSet(null, mismatch);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        Mismatch mismatch = found.get();
+        return (mismatch == null) ? null : mismatch.shrink();
+    }
+
+    /** Makes the random position for SEED and asks both sides every
+     * question about it. Returns the first disagreement, or null. */
+    static Mismatch check(long seed) {
+        Random random = new Random(seed);
+        CompactGame layout = randomLayout(random);
+        int[] pieces = randomPieces(random);
+        CompactGame game = build(layout, pieces);
+
+        boolean[] fast = new boolean[2 * 4 * 19 * 6];
+        for (int i = 0; i < fast.length; i += 1) {
+            fast[i] = fast(game, i % 2 == 0, i / 2 % 4, i / 8 / 6, i / 8 % 6);
+        }
+        boolean[] slow = new boolean[fast.length];
+        synchronized (Game.BOARD_LOCK) {
+            Player[] players = game.restore();
+            for (int i = 0; i < slow.length; i += 1) {
+                Player player = players[i / 2 % 4];
+                int hex = i / 8 / 6 + 1, posn = i / 8 % 6;
+                slow[i] = (i % 2 == 0) ? player.isValidRoad(hex, posn)
+                        : player.isValidSettlement(hex, posn);
+            }
+        }
+        for (int i = 0; i < fast.length; i += 1) {
+            if (fast[i] != slow[i]) {
+                return new Mismatch(layout, pieces, i / 2 % 4, i % 2 == 0,
+                        i / 8 / 6, i / 8 % 6, fast[i]);
+            }
+        }
+        return null;
+    }
+
+    /** Returns the fast answer to whether PLAYER may build a road if
+     * ROAD, or else a settlement, on HEX (from 0-18) at POSN in GAME. */
+    static boolean fast(CompactGame game, boolean road, int player,
+                        int hex, int posn) {
+        return road ? game.isValidRoad(player, hex, posn)
+                : game.isValidSettlement(player, hex, posn);
+    }
+
+    /** Same as fast, but asks Player. */
+    static boolean reference(CompactGame game, boolean road, int player,
+                             int hex, int posn) {
+        synchronized (Game.BOARD_LOCK) {
+            Player[] players = game.restore();
+            return road ? players[player].isValidRoad(hex + 1, posn)
+                    : players[player].isValidSettlement(hex + 1, posn);
+        }
+    }
+
+    /** Returns a blank game with a random layout from RANDOM. */
+    static CompactGame randomLayout(Random random) {
+        CompactGame layout = new CompactGame();
+        for (int hex = 0; hex < 19; hex += 1) {
+            int resource = random.nextInt(6);
+            layout.setHex(hex, Resource.get(resource),
+                    (resource == 5) ? 0 : 2 + random.nextInt(11));
+        }
+        return layout;
+    }
+
+    /** Returns random pieces from RANDOM, half of them roads.
+     * (See build) */
+    static int[] randomPieces(Random random) {
+        int[] pieces = new int[random.nextInt(MAX_PIECES + 1)];
+        for (int i = 0; i < pieces.length; i += 1) {
+            int roll = random.nextInt(4);
+            int kind = (roll < 2) ? ROAD : roll - 1;
+            int owner = random.nextInt(4);
+            int at = (kind == ROAD) ? random.nextInt(Topology.NUM_EDGES)
+                    : random.nextInt(Topology.NUM_VERTICES);
+            pieces[i] = piece(kind, owner, at);
+        }
+        return pieces;
+    }
+
+    /** Returns a copy of LAYOUT with PIECES built on it, in order. A
+     * piece that can't go where it says, because the spot is taken or
+     * its player is out of them, is skipped. Pieces are made by
+     * piece. */
+    static CompactGame build(CompactGame layout, int[] pieces) {
+        CompactGame game = layout.copy();
+        for (int piece : pieces) {
+            int kind = piece >>> 16, owner = (piece >>> 8) & 255;
+            int at = piece & 255;
+            if (kind == ROAD) {
+                game.give(owner, Hand.ROAD);
+                game.buildRoad(owner, at);
+            } else {
+                game.give(owner, Hand.SETTLEMENT);
+                game.buildSettlement(owner, at);
+                if (kind == CITY) {
+                    game.give(owner, Hand.CITY);
+                    game.buildCity(owner, at);
+                }
+            }
+        }
+        return game;
+    }
+
+    /** Returns a piece of KIND, which is ROAD, SETTLEMENT or CITY,
+     * belonging to OWNER on edge or vertex AT. */
+    static int piece(int kind, int owner, int at) {
+        return kind << 16 | owner << 8 | at;
+    }
+
+    /** Returns PIECE as words. */
+    static String describe(int piece) {
+        int kind = piece >>> 16;
+        String what = (kind == ROAD) ? "road on edge "
+                : (kind == SETTLEMENT) ? "settlement on vertex "
+                : "city on vertex ";
+        return "player " + ((piece >>> 8) & 255) + " " + what + (piece & 255);
+    }
+
+    /** Returns the smallest part of PIECES I can find, keeping their
+     * order, that FAILS still holds for. FAILS must hold for PIECES.
+     * I first try taking away large chunks, then smaller ones, down to
+     * single pieces, until no single piece can be taken away. */
+    static int[] shrink(int[] pieces, Predicate<int[]> fails) {
+        assert fails.test(pieces) : "Nothing to shrink!";
+        int chunk = Math.max(1, pieces.length / 2);
+        while (true) {
+            boolean shrunk = false;
+            for (int start = 0; start < pieces.length; ) {
+                int end = Math.min(pieces.length, start + chunk);
+                int[] smaller = new int[pieces.length - (end - start)];
+                System.arraycopy(pieces, 0, smaller, 0, start);
+                System.arraycopy(pieces, end, smaller, start,
+                        pieces.length - end);
+                if (fails.test(smaller)) {
+                    pieces = smaller;
+                    shrunk = true;
+                } else {
+                    start = end;
+                }
+            }
+            if (chunk == 1 && !shrunk) {
+                return pieces;
+            }
+            chunk = Math.max(1, chunk / 2);
+        }
+    }
+
+    /** Runs the fuzzer and prints how fast it went and what it found.
+     * Usage: java LegalityFuzzer [SEED [POSITIONS [THREADS]]]
+     * Exits with 1 if the two sides ever disagree. */
+    public static void main(String[] args) throws Exception {
+        long seed = (args.length > 0) ? Long.parseLong(args[0]) : 0;
+        long positions = (args.length > 1) ? Long.parseLong(args[1])
+                : 1_000_000;
+        int threads = (args.length > 2) ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+        long start = System.nanoTime();
+        Mismatch mismatch = run(seed, positions, threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (mismatch != null) {
+            System.out.print(mismatch);
+            System.exit(1);
+        }
+        System.out.printf("%d positions, %d questions each, in %.1f s"
+                + " (%.0f positions/s): no mismatches%n", positions,
+                2 * 4 * 19 * 6, seconds, positions / seconds);
+    }
+
+    /** Piece kinds. */
+    static final int ROAD = 0, SETTLEMENT = 1, CITY = 2;
+
+    /** Most pieces in a random position. */
+    private static final int MAX_PIECES = 60;
+
+}
@@ -0,0 +1,45 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Set of tests for the legality fuzzer.
+ * @author John Angeles
+ */
+public class LegalityFuzzerTest {
+
+    @Test
+    public void agreeTest() throws Exception {
+        assertNull(LegalityFuzzer.run(1, 2000, 2));
+    }
+
+    @Test
+    public void shrinkTest() {
+        int[] pieces = new int[40];
+        for (int i = 0; i < pieces.length; i += 1) {
+            pieces[i] = LegalityFuzzer.piece(LegalityFuzzer.ROAD, i % 4, i);
+        }
+        int[] shrunk = LegalityFuzzer.shrink(pieces,
+            (p) -> contains(p, pieces[7]) && contains(p, pieces[31]));
+        assertArrayEquals(new int[] {pieces[7], pieces[31]}, shrunk);
+    }
+
+    /** Returns true iff PIECES contains PIECE. */
+    private static boolean contains(int[] pieces, int piece) {
+        for (int p : pieces) {
+            if (p == piece) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void buildTest() {
+        int v = Topology.vertex(4, 0);
+        CompactGame game = LegalityFuzzer.build(new CompactGame(),
+            new int[] {LegalityFuzzer.piece(LegalityFuzzer.CITY, 2, v),
+                LegalityFuzzer.piece(LegalityFuzzer.SETTLEMENT, 1, v)});
+        assertEquals(2, game.owner(v));
+        assertTrue(game.isCity(v));
+    }
+
+}
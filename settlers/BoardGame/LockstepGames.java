@@ -0,0 +1,349 @@
+/** Many games, advanced one roll at a time, all together.
+ *
+ * Instead of one object per game, each field of every game lives in one
+ * flat array, with the games side by side: the value for game G at
+ * slot I (a hex, a vertex, a player's resource, ...) is at I * size +
+ * G. A step is then a few tight loops straight down those arrays, one
+ * pass per field, which the JIT can unroll and vectorize, rather than
+ * a walk through each game's objects.
+ *
+ * Hands are packed hands (See Hand), so a player holds at most
+ * Hand.MAX_COUNT of each resource, and a payout past that is dropped,
+ * as in CompactGame. Payouts are kept ready: for each game, sum of the
+ * dice and player, I keep the packed hand that roll pays, and fix it
+ * up whenever a building goes up or the robber moves. Paying out a
+ * roll is then one saturating addition per player (See Hand.add), and
+ * checking what a player can afford is a few bit operations (See
+ * Hand.covers). A game's payouts
+ * are kept together, so each game's roll reads one small piece of
+ * memory.
+ *
+ * Each game rolls its own dice, from its own seed, so a game always
+ * plays out the same no matter how many others it is stepped with.
+ * Players and hexes are indexed from 0, as in CompactGame.
+ * @author John Angeles
+ */
+final class LockstepGames {
+
+    /** Creates SIZE blank games, where game G rolls from seed SEED + G. */
+    LockstepGames(int size, long seed) {
+        _size = size;
+        _numbers = new byte[19 * size];
+        _resources = new byte[19 * size];
+        _robber = new byte[size];
+        _vertices = new byte[Topology.NUM_VERTICES * size];
+        _hands = new long[4 * size];
+        _payout = new long[size * 64];
+        _affordable = new byte[4 * size];
+        _seeds = new long[size];
+        _dice = new byte[size];
+        _turn = new byte[size];
+        for (int g = 0; g < size; g += 1) {
+            _seeds[g] = Seeds.mix(seed + g);
+            _robber[g] = -1;
+        }
+    }
+
+    /** Returns the number of games. */
+    int size() {
+        return _size;
+    }
+
+    /** Makes game G a copy of the board, hands, robber and turn of
+     * GAME. Unplaced pieces are not kept. */
+    void load(int g, CompactGame game) {
+        for (int i = 0; i < 64; i += 1) {
+            _payout[g * 64 + i] = 0;
+        }
+        for (int hex = 0; hex < 19; hex += 1) {
+            Resource resource = game.resource(hex);
+            _resources[hex * _size + g] = (byte) ((resource == null) ? 6
+                    : resource.index());
+            _numbers[hex * _size + g] = (byte) game.number(hex);
+        }
+        _robber[g] = (byte) game.robber();
+        for (int v = 0; v < Topology.NUM_VERTICES; v += 1) {
+            int owner = game.owner(v);
+            _vertices[v * _size + g] = (byte) ((owner < 0) ? 0
+                    : 1 + owner + (game.isCity(v) ? 4 : 0));
+            if (owner >= 0) {
+                addVertexPayout(g, v, owner, game.isCity(v) ? 2 : 1);
+            }
+        }
+        for (int p = 0; p < 4; p += 1) {
+            _hands[p * _size + g] = game.hand(p);
+        }
+        _turn[g] = (byte) game.turn();
+    }
+
+    /** Advances every game by one turn: the turn passes to the next
+     * player, who rolls the dice, and every game pays out its roll.
+     * Then works out what each player can afford. (See affordable) */
+    void step() {
+        step(0, _size);
+    }
+
+    /** Same as calling step() TURNS times, but faster when there are
+     * many games. Games don't affect each other, so I play BLOCK games
+     * at a time through every turn, and those games' arrays stay in the
+     * cache, instead of streaming through all of memory on every turn.
+     */
+    void step(int turns) {
+        for (int from = 0; from < _size; from += BLOCK) {
+            int to = Math.min(_size, from + BLOCK);
+            for (int t = 0; t < turns; t += 1) {
+                step(from, to);
+            }
+        }
+    }
+
+    /** Advances games FROM up to TO by one turn. (See step()) */
+    private void step(int from, int to) {
+        int size = _size;
+        byte[] turn = _turn, dice = _dice;
+        long[] seeds = _seeds;
+        for (int g = from; g < to; g += 1) {
+            turn[g] = (byte) ((turn[g] + 1) & 3);
+            long seed = Seeds.step(seeds[g]);
+            int die1 = die(seed);
+            seed = Seeds.step(seed);
+            int die2 = die(seed);
+            seeds[g] = seed;
+            dice[g] = (byte) (die1 + die2 + 2);
+        }
+
+        long[] hands = _hands, payout = _payout;
+        for (int g = from; g < to; g += 1) {
+            int base = g * 64 + dice[g] * 4;
+            hands[g] = Hand.add(hands[g], payout[base]);
+            hands[size + g] = Hand.add(hands[size + g], payout[base + 1]);
+            hands[2 * size + g] = Hand.add(hands[2 * size + g],
+                    payout[base + 2]);
+            hands[3 * size + g] = Hand.add(hands[3 * size + g],
+                    payout[base + 3]);
+        }
+
+        byte[] affordable = _affordable;
+        for (int p = 0; p < 4; p += 1) {
+            for (int i = p * size + from; i < p * size + to; i += 1) {
+                long hand = hands[i];
+                int road = Hand.covers(hand, Hand.ROAD) ? ROAD : 0;
+                int settlement = Hand.covers(hand, Hand.SETTLEMENT)
+                        ? SETTLEMENT : 0;
+                int city = Hand.covers(hand, Hand.CITY) ? CITY : 0;
+                int card = Hand.covers(hand, Hand.DEVELOPMENT_CARD)
+                        ? DEVELOPMENT_CARD : 0;
+                affordable[i] = (byte) (road | settlement | city | card);
+            }
+        }
+    }
+
+    /** Returns the die, from 0 to 5, that a generator in STATE rolls
+     * (See Seeds.step). */
+    static int die(long state) {
+        return (int) (((state >>> 32) * 6) >>> 32);
+    }
+
+    /** Returns what PLAYER of game G could afford after the last step,
+     * as ROAD, SETTLEMENT, CITY and DEVELOPMENT_CARD or'ed together. */
+    int affordable(int g, int player) {
+        return _affordable[player * _size + g];
+    }
+
+    /** Returns the sum of the dice that game G rolled last. */
+    int dice(int g) {
+        return _dice[g];
+    }
+
+    /** Returns whose turn it is in game G. */
+    int turn(int g) {
+        return _turn[g];
+    }
+
+    /** Returns PLAYER's hand in game G as a packed hand. (See Hand) */
+    long hand(int g, int player) {
+        return _hands[player * _size + g];
+    }
+
+    /** Gives PLAYER of game G the cards in the packed hand CARDS. (See
+     * Hand.add) */
+    void give(int g, int player, long cards) {
+        _hands[player * _size + g] = Hand.add(_hands[player * _size + g],
+                cards);
+    }
+
+    /** Has PLAYER of game G build a settlement on VERTEX, paying for it.
+     * Returns false, changing nothing, if VERTEX is taken or PLAYER
+     * can't pay. The rules are not checked. (See CompactGame) */
+    boolean buildSettlement(int g, int player, int vertex) {
+        if (_vertices[vertex * _size + g] != 0
+                || !pay(g, player, Hand.SETTLEMENT)) {
+            return false;
+        }
+        _vertices[vertex * _size + g] = (byte) (1 + player);
+        addVertexPayout(g, vertex, player, 1);
+        return true;
+    }
+
+    /** Has PLAYER of game G upgrade its settlement on VERTEX to a city,
+     * paying for it. Returns false, changing nothing, if there is no
+     * such settlement or PLAYER can't pay. */
+    boolean buildCity(int g, int player, int vertex) {
+        if (_vertices[vertex * _size + g] != 1 + player
+                || !pay(g, player, Hand.CITY)) {
+            return false;
+        }
+        _vertices[vertex * _size + g] = (byte) (5 + player);
+        addVertexPayout(g, vertex, player, 1);
+        return true;
+    }
+
+    /** Moves the robber of game G onto HEX. */
+    void moveRobber(int g, int hex) {
+        int old = _robber[g];
+        _robber[g] = -1;
+        if (old >= 0) {
+            addHexPayout(g, old, 1);
+        }
+        addHexPayout(g, hex, -1);
+        _robber[g] = (byte) hex;
+    }
+
+    /** Takes the packed hand COST from PLAYER of game G. Returns false,
+     * changing nothing, if PLAYER doesn't have it. */
+    private boolean pay(int g, int player, long cost) {
+        if (!Hand.covers(_hands[player * _size + g], cost)) {
+            return false;
+        }
+        _hands[player * _size + g] -= cost;
+        return true;
+    }
+
+    /** Adds AMOUNT cards for PLAYER to the payouts of game G from every
+     * hex that VERTEX touches. */
+    private void addVertexPayout(int g, int vertex, int player,
+                                 int amount) {
+        for (int hex : Topology.VERTEX_HEXES[vertex]) {
+            if (hex != _robber[g]) {
+                addPayout(g, hex, player, amount);
+            }
+        }
+    }
+
+    /** Adds AMOUNT cards for PLAYER to the payout of HEX in game G, if
+     * it pays anything. */
+    private void addPayout(int g, int hex, int player, int amount) {
+        int number = _numbers[hex * _size + g];
+        int resource = _resources[hex * _size + g];
+        if (number >= 2 && resource < Hand.NUM_RESOURCES) {
+            _payout[g * 64 + number * 4 + player]
+                    += amount * Hand.unit(resource);
+        }
+    }
+
+    /** Adds SIGN times what every building on HEX collects to the
+     * payouts of game G. */
+    private void addHexPayout(int g, int hex, int sign) {
+        for (int posn = 0; posn < 6; posn += 1) {
+            int code = _vertices[Topology.vertex(hex, posn) * _size + g];
+            if (code != 0) {
+                addPayout(g, hex, (code - 1) % 4,
+                        sign * ((code > 4) ? 2 : 1));
+            }
+        }
+    }
+
+    /** Plays GAMES games from the seeded openings (See Perft.opening)
+     * for TURNS turns, both in lockstep and one game at a time with
+     * CompactGame, rolling the same dice, and prints how many turns per
+     * second each managed. Throws IllegalStateException if the two
+     * ever end up with different hands.
+     * Usage: java LockstepGames [GAMES [TURNS]] */
+    public static void main(String[] args) {
+        int games = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+        int turns = (args.length > 1) ? Integer.parseInt(args[1]) : 200;
+        CompactGame[] openings = new CompactGame[games];
+        for (int g = 0; g < games; g += 1) {
+            openings[g] = Perft.opening(g);
+        }
+        for (int round = 0; round < 3; round += 1) {
+            LockstepGames lockstep = new LockstepGames(games, 0);
+            for (int g = 0; g < games; g += 1) {
+                lockstep.load(g, openings[g]);
+            }
+            long start = System.nanoTime();
+            lockstep.step(turns);
+            long lockstepNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            CompactGame[] played = new CompactGame[games];
+            for (int g = 0; g < games; g += 1) {
+                CompactGame game = openings[g].copy();
+                long seed = Seeds.mix(g);
+                for (int t = 0; t < turns; t += 1) {
+                    game.endTurn();
+                    seed = Seeds.step(seed);
+                    int die1 = die(seed);
+                    seed = Seeds.step(seed);
+                    game.produce(die1 + die(seed) + 2);
+                }
+                played[g] = game;
+            }
+            long singleNanos = System.nanoTime() - start;
+            for (int g = 0; g < games; g += 1) {
+                for (int p = 0; p < 4; p += 1) {
+                    if (played[g].hand(p) != lockstep.hand(g, p)) {
+                        throw new IllegalStateException("Game " + g
+                                + " played out differently one at a time");
+                    }
+                }
+            }
+
+            double total = (double) games * turns;
+            System.out.printf("lockstep: %.0f turns/s, one at a time:"
+                    + " %.0f turns/s (%.1fx)%n",
+                    total * 1e9 / lockstepNanos, total * 1e9 / singleNanos,
+                    (double) singleNanos / lockstepNanos);
+        }
+    }
+
+    /** Bits of affordable. */
+    static final int ROAD = 1, SETTLEMENT = 2, CITY = 4,
+            DEVELOPMENT_CARD = 8;
+
+    /** Number of games that step(int) plays at a time. */
+    private static final int BLOCK = 512;
+
+    /** Number of games. */
+    private final int _size;
+
+    /** Number and resource index (6 if none) of each hex. */
+    private final byte[] _numbers, _resources;
+
+    /** Hex the robber is on in each game, or -1. */
+    private final byte[] _robber;
+
+    /** For each vertex: 0 if empty, 1 + player for a settlement, or
+     * 5 + player for a city. */
+    private final byte[] _vertices;
+
+    /** Each player's packed hand. */
+    private final long[] _hands;
+
+    /** The packed hand paid to each player for each sum of the dice,
+     * at game * 64 + sum * 4 + player. */
+    private final long[] _payout;
+
+    /** What each player can afford. (See affordable) */
+    private final byte[] _affordable;
+
+    /** State of each game's dice. */
+    private final long[] _seeds;
+
+    /** The last roll of each game. */
+    private final byte[] _dice;
+
+    /** Whose turn it is in each game. */
+    private final byte[] _turn;
+
+}
@@ -0,0 +1,121 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Set of tests for games played in lockstep.
+ * @author John Angeles
+ */
+public class LockstepGamesTest {
+
+    /** Checks that every game in GAMES matches the same game in
+     * COMPACT. */
+    private static void assertSameGames(CompactGame[] compact,
+                                        LockstepGames games) {
+        for (int g = 0; g < games.size(); g += 1) {
+            assertEquals(compact[g].turn(), games.turn(g));
+            for (int p = 0; p < 4; p += 1) {
+                long hand = compact[g].hand(p);
+                assertEquals(hand, games.hand(g, p));
+                assertEquals(Hand.covers(hand, Hand.CITY),
+                        (games.affordable(g, p) & LockstepGames.CITY) != 0);
+                assertEquals(Hand.covers(hand, Hand.ROAD),
+                        (games.affordable(g, p) & LockstepGames.ROAD) != 0);
+            }
+        }
+    }
+
+    /** Plays one turn of each of COMPACT with the dice GAMES rolled. */
+    private static void follow(CompactGame[] compact, LockstepGames games) {
+        for (int g = 0; g < compact.length; g += 1) {
+            compact[g].endTurn();
+            compact[g].produce(games.dice(g));
+        }
+    }
+
+    @Test
+    public void stepTest() {
+        LockstepGames games = new LockstepGames(5, 11);
+        CompactGame[] compact = new CompactGame[5];
+        for (int g = 0; g < 5; g += 1) {
+            compact[g] = Perft.opening(g);
+            games.load(g, compact[g]);
+        }
+        for (int t = 0; t < 40; t += 1) {
+            games.step();
+            assertTrue(2 <= games.dice(0) && games.dice(0) <= 12);
+            follow(compact, games);
+            assertSameGames(compact, games);
+        }
+
+        int v = -1;
+        for (int i = 0; v < 0; i += 1) {
+            if (compact[2].owner(i) == 1) {
+                v = i;
+            }
+        }
+        compact[2].give(1, Hand.CITY);
+        games.give(2, 1, Hand.CITY);
+        assertTrue(games.buildCity(2, 1, v));
+        assertTrue(compact[2].buildCity(1, v));
+        games.moveRobber(2, Topology.VERTEX_HEXES[v][0]);
+        compact[2].moveRobber(Topology.VERTEX_HEXES[v][0]);
+        games.moveRobber(3, 9);
+        compact[3].moveRobber(9);
+        for (int t = 0; t < 40; t += 1) {
+            games.step();
+            follow(compact, games);
+        }
+        assertSameGames(compact, games);
+    }
+
+    @Test
+    public void longRunTest() {
+        int size = 300;
+        LockstepGames games = new LockstepGames(size, 3);
+        CompactGame[] compact = new CompactGame[size];
+        for (int g = 0; g < size; g += 1) {
+            compact[g] = Perft.opening(g);
+            games.load(g, compact[g]);
+        }
+        int full = 0;
+        for (int t = 0; t < 1000; t += 1) {
+            games.step();
+            follow(compact, games);
+        }
+        assertSameGames(compact, games);
+        for (int g = 0; g < size; g += 1) {
+            for (int p = 0; p < 4; p += 1) {
+                long hand = games.hand(g, p);
+                for (int i = 0; i < Hand.NUM_RESOURCES; i += 1) {
+                    assertTrue(Hand.count(hand, i) <= Hand.MAX_COUNT);
+                    full += (Hand.count(hand, i) == Hand.MAX_COUNT) ? 1 : 0;
+                }
+                assertEquals(0, hand >>> (8 * Hand.NUM_RESOURCES));
+            }
+        }
+        assertTrue(full > 0);
+    }
+
+    @Test
+    public void blockTest() {
+        int size = 1500;
+        LockstepGames one = new LockstepGames(size, 5);
+        LockstepGames all = new LockstepGames(size, 5);
+        CompactGame opening = Perft.opening(1);
+        for (int g = 0; g < size; g += 1) {
+            one.load(g, opening);
+            all.load(g, opening);
+        }
+        for (int t = 0; t < 30; t += 1) {
+            one.step();
+        }
+        all.step(30);
+        for (int g = 0; g < size; g += 1) {
+            assertEquals(one.dice(g), all.dice(g));
+            for (int p = 0; p < 4; p += 1) {
+                assertEquals(one.hand(g, p), all.hand(g, p));
+                assertEquals(one.affordable(g, p), all.affordable(g, p));
+            }
+        }
+    }
+
+}
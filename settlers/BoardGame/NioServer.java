@@ -0,0 +1,502 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/** Serves many games over the same line protocol as GameServer, but
+ * from a single thread with a selector instead of one thread per
+ * connection.
+ *
+ * Each connection reads into its own direct buffer. While a game is
+ * being played, commands such as "road 9 1" are matched and their
+ * numbers parsed straight out of that buffer, and handed to
+ * Game.execute without making a String for the line. Lines that only
+ * come up outside of play (start, quit, names) are decoded as usual.
+ *
+ * Responses are queued as buffers and sent with gathering writes, so
+ * a long response such as Board.dump and the newline after it go out
+ * in one system call without being copied together.
+ *
+ * Games are kept in a GameRegistry, so games that sit idle are
+ * hibernated and woken up again when their next line arrives. A game
+ * is closed, and its lobby forgotten, once it is over or the last
+ * connection playing it is gone. When a game is over, every other
+ * connection playing it is told so and hung up, as GameServer does.
+ *
+ * A line longer than LINE_LIMIT is refused as a whole: everything up
+ * to its newline is thrown away. Once OUT_LIMIT bytes are waiting to
+ * be sent on a connection, I stop reading from it until its client
+ * has taken enough of them, so a client that never reads can't make
+ * me queue responses without end.
+ * @author John Angeles
+ */
+public class NioServer {
+
+    /** Starts the server.
+     *
+     * @param args Either a TCP port, such as "4000", or "unix:PATH" to
+     *             listen on the Unix socket PATH.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("Usage: java NioServer (PORT | unix:PATH)");
+            return;
+        }
+        ServerSocketChannel server;
+        if (args[0].startsWith("unix:")) {
+            Path path = Path.of(args[0].substring(5));
+            Files.deleteIfExists(path);
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(path));
+        } else {
+            server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(Integer.parseInt(args[0])));
+        }
+        System.out.println("Serving Settlers on " + server.getLocalAddress());
+        Path spill = Files.createTempDirectory("settlers");
+        new NioServer(server, new GameRegistry(LIVE_BUDGET, OFF_HEAP_BUDGET,
+                spill)).run();
+    }
+
+    /** Creates a server that accepts connections from SERVER and keeps
+     * its games in GAMES. */
+    NioServer(ServerSocketChannel server, GameRegistry games)
+            throws IOException {
+        _games = games;
+        _selector = Selector.open();
+        server.configureBlocking(false);
+        server.register(_selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /** Serves connections until my thread is interrupted. */
+    void run() throws IOException {
+        while (!Thread.currentThread().isInterrupted()) {
+            _selector.select();
+            Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                try {
+                    if (!key.isValid()) {
+                        continue;
+                    } else if (key.isAcceptable()) {
+                        accept((ServerSocketChannel) key.channel());
+                    } else {
+                        if (key.isReadable()) {
+                            read(key);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            flush(key);
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    close(key);
+                }
+            }
+        }
+    }
+
+    /** Accepts a connection from SERVER, if there is one. */
+    private void accept(ServerSocketChannel server) throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        Connection conn = new Connection();
+        SelectionKey key = channel.register(_selector,
+                SelectionKey.OP_READ, conn);
+        enqueue(conn, WELCOME.duplicate());
+        flush(key);
+    }
+
+    /** Reads what has arrived on KEY's channel and handles every
+     * complete line. */
+    private void read(SelectionKey key) throws IOException {
+        Connection conn = (Connection) key.attachment();
+        if (((SocketChannel) key.channel()).read(conn.in) < 0) {
+            close(key);
+            return;
+        }
+        handleLines(key);
+    }
+
+    /** Handles every complete line that KEY's connection has read, up
+     * until OUT_LIMIT bytes are waiting to be sent on it. Lines left
+     * over then wait in its buffer until flush has sent enough. */
+    private void handleLines(SelectionKey key) throws IOException {
+        Connection conn = (Connection) key.attachment();
+        ByteBuffer in = conn.in;
+        in.flip();
+        int start = in.position();
+        for (int i = start; i < in.limit() && !conn.closing; i += 1) {
+            if (in.get(i) == '\n') {
+                if (conn.pending >= OUT_LIMIT) {
+                    conn.paused = true;
+                    break;
+                } else if (conn.discarding) {
+                    conn.discarding = false;
+                } else {
+                    handle(key, in, start, i);
+                }
+                start = i + 1;
+            }
+        }
+        in.position(start);
+        if (!in.hasRemaining()) {
+            in.clear();
+        } else if (!conn.paused && start == 0
+                   && in.limit() == in.capacity()) {
+            in.clear();
+            if (!conn.discarding) {
+                conn.discarding = true;
+                respond(conn, "That line is too long!");
+            }
+        } else {
+            in.compact();
+        }
+        flush(key);
+    }
+
+    /** Handles the line in BUF from START up to END, exclusive, sent
+     * on KEY's connection. */
+    private void handle(SelectionKey key, ByteBuffer buf, int start,
+                        int end) {
+        Connection conn = (Connection) key.attachment();
+        while (start < end && isSpace(buf.get(start))) {
+            start += 1;
+        }
+        while (end > start && isSpace(buf.get(end - 1))) {
+            end -= 1;
+        }
+
+        if (conn.gameId == 0) {
+            if (startsWith(buf, start, end, JOIN)) {
+                String name = decode(buf, start + JOIN.length, end).trim();
+                Integer id = _lobbies.get(name);
+                if (id == null || !_games.contains(id)) {
+                    id = _games.create();
+                    _lobbies.put(name, id);
+                }
+                attach(key, id);
+                conn.lobby = name;
+                respond(conn, "Joined lobby " + name + ".");
+                return;
+            }
+            attach(key, _games.create());
+        }
+
+        Game game = _games.get(conn.gameId);
+        int command = Game.UNKNOWN;
+        if (game.playing()) {
+            int wordEnd = start;
+            while (wordEnd < end && !isSpace(buf.get(wordEnd))) {
+                wordEnd += 1;
+            }
+            command = command(buf, start, wordEnd);
+            if (command != Game.UNKNOWN) {
+                int[] args = conn.args;
+                parseNumbers(buf, wordEnd, end, args);
+                respond(conn, game.execute(command, args[0], args[1]));
+            }
+        }
+        if (command == Game.UNKNOWN) {
+            respond(conn, game.handle(decode(buf, start, end)));
+        }
+        if (game.over()) {
+            conn.closing = true;
+            end(conn.gameId, conn.lobby);
+        }
+    }
+
+    /** Has KEY's connection play the game with ID, as one more
+     * connection playing that game. */
+    private void attach(SelectionKey key, int id) {
+        ((Connection) key.attachment()).gameId = id;
+        _connections.computeIfAbsent(id, k -> new ArrayList<>()).add(key);
+    }
+
+    /** Takes KEY's connection out of the game it plays, if it has one,
+     * and closes the game once nobody is left playing it. */
+    private void detach(SelectionKey key) {
+        Connection conn = (Connection) key.attachment();
+        if (conn.gameId == 0) {
+            return;
+        }
+        ArrayList<SelectionKey> keys = _connections.get(conn.gameId);
+        if (keys != null) {
+            keys.remove(key);
+        }
+        if (keys == null || keys.isEmpty()) {
+            release(conn.gameId, conn.lobby);
+        }
+        conn.gameId = 0;
+    }
+
+    /** Closes the game with ID, which is over and may have been joined
+     * as the lobby LOBBY, and hangs up every connection still playing
+     * it once it has been told that the game is over. */
+    private void end(int id, String lobby) {
+        ArrayList<SelectionKey> keys = _connections.get(id);
+        release(id, lobby);
+        if (keys == null) {
+            return;
+        }
+        for (SelectionKey key : keys) {
+            Connection conn = (Connection) key.attachment();
+            conn.gameId = 0;
+            if (!conn.closing) {
+                conn.closing = true;
+                respond(conn, "The game is over.");
+                try {
+                    flush(key);
+                } catch (IOException | RuntimeException e) {
+                    close(key);
+                }
+            }
+        }
+    }
+
+    /** Closes the game with ID, which may have been joined as the
+     * lobby LOBBY, and forgets it. */
+    private void release(int id, String lobby) {
+        if (lobby != null) {
+            _lobbies.remove(lobby, id);
+        }
+        _connections.remove(id);
+        _games.close(id);
+    }
+
+    /** Returns the command code for the word in BUF from START up to
+     * END, or Game.UNKNOWN. */
+    private static int command(ByteBuffer buf, int start, int end) {
+        for (int i = 1; i < COMMAND_BYTES.length; i += 1) {
+            byte[] word = COMMAND_BYTES[i];
+            if (word.length == end - start
+                    && startsWith(buf, start, end, word)) {
+                return i;
+            }
+        }
+        return Game.UNKNOWN;
+    }
+
+    /** Parses up to two numbers separated by spaces in BUF from START
+     * up to END into RESULT. A number that is missing or malformed
+     * becomes Game.MISSING. */
+    private static void parseNumbers(ByteBuffer buf, int start, int end,
+                                     int[] result) {
+        int i = start;
+        for (int n = 0; n < 2; n += 1) {
+            while (i < end && isSpace(buf.get(i))) {
+                i += 1;
+            }
+            int value = 0, digits = 0;
+            boolean valid = true;
+            while (i < end && !isSpace(buf.get(i))) {
+                byte b = buf.get(i);
+                if (b < '0' || b > '9' || digits >= 6) {
+                    valid = false;
+                } else {
+                    value = value * 10 + (b - '0');
+                }
+                digits += 1;
+                i += 1;
+            }
+            result[n] = (valid && digits > 0) ? value : Game.MISSING;
+        }
+    }
+
+    /** Returns true iff the bytes in BUF from START up to END begin
+     * with PREFIX. */
+    private static boolean startsWith(ByteBuffer buf, int start, int end,
+                                      byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i += 1) {
+            if (buf.get(start + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns true iff B is a space, tab or carriage return. */
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    /** Returns the bytes in BUF from START up to END as a string. */
+    private static String decode(ByteBuffer buf, int start, int end) {
+        ByteBuffer line = buf.duplicate();
+        line.limit(end).position(start);
+        return StandardCharsets.UTF_8.decode(line).toString();
+    }
+
+    /** Queues MESSAGE, followed by a newline, to be sent on CONN. */
+    private static void respond(Connection conn, String message) {
+        enqueue(conn, ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)));
+        enqueue(conn, NEWLINE.duplicate());
+    }
+
+    /** Queues BUF to be sent on CONN. */
+    private static void enqueue(Connection conn, ByteBuffer buf) {
+        if (conn.numOut == conn.out.length) {
+            ByteBuffer[] bigger = new ByteBuffer[conn.out.length * 2];
+            System.arraycopy(conn.out, 0, bigger, 0, conn.numOut);
+            conn.out = bigger;
+        }
+        conn.out[conn.numOut] = buf;
+        conn.numOut += 1;
+        conn.pending += buf.remaining();
+    }
+
+    /** Sends as much of KEY's queued output as its channel will take
+     * in one gathering write, and only asks to hear about writability
+     * while something is left over. While OUT_LIMIT bytes or more are
+     * left over, I don't ask to hear about readability either, and
+     * once fewer are, I go back to the lines that were left waiting. */
+    private void flush(SelectionKey key) throws IOException {
+        Connection conn = (Connection) key.attachment();
+        if (conn.numOut > 0) {
+            conn.pending -= ((SocketChannel) key.channel()).write(conn.out,
+                    0, conn.numOut);
+            int done = 0;
+            while (done < conn.numOut && !conn.out[done].hasRemaining()) {
+                done += 1;
+            }
+            System.arraycopy(conn.out, done, conn.out, 0, conn.numOut - done);
+            for (int i = conn.numOut - done; i < conn.numOut; i += 1) {
+                conn.out[i] = null;
+            }
+            conn.numOut -= done;
+        }
+        if (conn.paused && conn.pending < OUT_LIMIT) {
+            conn.paused = false;
+            handleLines(key);
+        } else if (conn.pending >= OUT_LIMIT) {
+            key.interestOps(SelectionKey.OP_WRITE);
+        } else if (conn.numOut > 0) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } else if (conn.closing) {
+            close(key);
+        } else {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    /** Closes KEY's channel, and its game if nobody else is playing
+     * it. */
+    private void close(SelectionKey key) {
+        if (key.attachment() instanceof Connection) {
+            detach(key);
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            return;
+        }
+    }
+
+    /** Everything I keep for one connection. */
+    private static final class Connection {
+
+        /** Bytes read but not handled yet. */
+        final ByteBuffer in = ByteBuffer.allocateDirect(LINE_LIMIT);
+
+        /** Buffers waiting to be sent, in order. */
+        ByteBuffer[] out = new ByteBuffer[8];
+
+        /** Number of buffers in OUT. */
+        int numOut;
+
+        /** Number of bytes in OUT that are still to be sent. */
+        long pending;
+
+        /** True while lines that have been read wait for OUT to drain
+         * below OUT_LIMIT before they are handled. */
+        boolean paused;
+
+        /** Where parseNumbers puts its numbers. */
+        final int[] args = new int[2];
+
+        /** Id of the game this connection plays, or 0 before the first
+         * line. */
+        int gameId;
+
+        /** The lobby this connection joined, or null if it has its
+         * own game. */
+        String lobby;
+
+        /** True once the game is over; I close the connection once
+         * everything queued has been sent. */
+        boolean closing;
+
+        /** True while the rest of a line that was too long is thrown
+         * away. */
+        boolean discarding;
+    }
+
+    /** The longest line a client may send. (See GameServer) */
+    private static final int LINE_LIMIT = GameServer.LINE_LIMIT;
+
+    /** Most bytes waiting to be sent on a connection before I stop
+     * reading from it. A response is queued whole, so a connection can
+     * go over this by at most one response. */
+    static final int OUT_LIMIT = 64 << 10;
+
+    /** Lines starting with this join a lobby. */
+    private static final byte[] JOIN = "join ".getBytes(StandardCharsets.US_ASCII);
+
+    /** Game.COMMANDS as bytes. */
+    private static final byte[][] COMMAND_BYTES
+            = new byte[Game.COMMANDS.length][];
+
+    /** Sets up COMMAND_BYTES. */
+    static {
+        for (int i = 1; i < Game.COMMANDS.length; i += 1) {
+            COMMAND_BYTES[i] = Game.COMMANDS[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    /** A newline, shared by every response. */
+    private static final ByteBuffer NEWLINE
+            = ByteBuffer.wrap(new byte[] {'\n'}).asReadOnlyBuffer();
+
+    /** The greeting, shared by every connection. */
+    private static final ByteBuffer WELCOME = ByteBuffer.wrap(
+            (Game.welcome() + "\n").getBytes(StandardCharsets.UTF_8))
+            .asReadOnlyBuffer();
+
+    /** Waits for my connections to be ready. */
+    private final Selector _selector;
+
+    /** Most bytes of heap main spends on live games. */
+    private static final long LIVE_BUDGET = 80L << 20;
+
+    /** Most bytes of hibernated games main keeps off of the heap. */
+    private static final long OFF_HEAP_BUDGET = 64 << 20;
+
+    /** All of the games. */
+    private final GameRegistry _games;
+
+    /** Ids of games that have been joined by name. */
+    private final HashMap<String, Integer> _lobbies = new HashMap<>();
+
+    /** Keys of the connections playing each game, by id. */
+    private final HashMap<Integer, ArrayList<SelectionKey>> _connections
+            = new HashMap<>();
+
+}
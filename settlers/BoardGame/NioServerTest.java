@@ -0,0 +1,301 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/** Set of tests for the single-threaded game server.
+ * @author John Angeles
+ */
+public class NioServerTest {
+
+    /** One client of the server. */
+    private static final class Client {
+
+        /** Connects to SOCKET and reads past the welcome. */
+        Client(ServerSocketChannel socket) throws Exception {
+            channel = SocketChannel.open(socket.getLocalAddress());
+            in = new BufferedReader(Channels.newReader(channel,
+                    StandardCharsets.UTF_8));
+            out = Channels.newWriter(channel, StandardCharsets.UTF_8);
+            assertEquals("Type in 'quit' to exit the program!", skip(2));
+        }
+
+        /** Sends LINE and returns the first line of the response. */
+        String send(String line) throws Exception {
+            out.write(line + "\n");
+            out.flush();
+            return in.readLine();
+        }
+
+        /** Reads up to and including the line LINE, and returns it, or
+         * null if the server hung up first. */
+        String until(String line) throws Exception {
+            String read;
+            while ((read = in.readLine()) != null && !read.equals(line)) {
+                continue;
+            }
+            return read;
+        }
+
+        /** Skips N lines and returns the one after them. */
+        String skip(int n) throws Exception {
+            for (int i = 0; i < n; i += 1) {
+                in.readLine();
+            }
+            return in.readLine();
+        }
+
+        /** The connection. */
+        final SocketChannel channel;
+
+        /** What the server sends. */
+        final BufferedReader in;
+
+        /** What I send. */
+        final Writer out;
+    }
+
+    /** Waits up to a few seconds for GAMES to hold no games, and
+     * returns true if it does. */
+    private static boolean awaitEmpty(GameRegistry games)
+            throws InterruptedException {
+        for (int i = 0; i < 500; i += 1) {
+            if (games.numLive() == 0 && games.numOffHeap() == 0) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+    /** Waits up to a few seconds for SERVING to spend a tenth of a
+     * second allocating at least NioServer.OUT_LIMIT bytes if BUSY, or
+     * fewer if not, and returns true if it does, or if allocations
+     * can't be counted. */
+    private static boolean awaitWork(Thread serving, boolean busy)
+            throws InterruptedException {
+        if (!Allocations.supported()) {
+            return true;
+        }
+        for (int i = 0; i < 50; i += 1) {
+            long before = Allocations.allocated(serving);
+            Thread.sleep(100);
+            long after = Allocations.allocated(serving);
+            if ((after - before >= NioServer.OUT_LIMIT) == busy) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Starts a server on loopback with GAMES, running it on SERVING,
+     * and returns its socket. */
+    private static ServerSocketChannel serve(GameRegistry games,
+                                             Thread[] serving)
+            throws Exception {
+        ServerSocketChannel socket = ServerSocketChannel.open();
+        socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                0));
+        NioServer server = new NioServer(socket, games);
+        serving[0] = new Thread(() -> {
+            try {
+                server.run();
+            } catch (Exception e) {
+                return;
+            }
+        });
+        serving[0].start();
+        return socket;
+    }
+
+    /** Returns a registry for a test's games. */
+    private static GameRegistry registry() throws Exception {
+        return new GameRegistry(1 << 20, 1 << 20,
+                Files.createTempDirectory("nioserver"));
+    }
+
+    @Test
+    public void commandTest() throws Exception {
+        Thread[] serving = new Thread[1];
+        ServerSocketChannel socket = serve(registry(), serving);
+        try {
+            Client client = new Client(socket);
+            assertEquals("Starting the game!", client.send("start"));
+            assertEquals("What will be player one's name?",
+                    client.until("What will be player one's name?"));
+            client.send("Alice");
+            client.send("Bob");
+            client.send("Carol");
+            assertEquals("Alice, it's your turn!", client.send("Dave"));
+            assertEquals("Usage: road HEX POSITION", client.send("road 9"));
+            assertEquals("Please pick a number between 1 and 19!",
+                    client.send("  road 25 1\r"));
+            assertEquals("Usage: city HEX POSITION",
+                    client.send("city 9 x"));
+        } finally {
+            serving[0].interrupt();
+            serving[0].join();
+            socket.close();
+        }
+    }
+
+    @Test
+    public void joinTest() throws Exception {
+        Thread[] serving = new Thread[1];
+        ServerSocketChannel socket = serve(registry(), serving);
+        try {
+            Client first = new Client(socket);
+            Client second = new Client(socket);
+            assertEquals("Joined lobby table.", first.send("join table"));
+            assertEquals("Joined lobby table.", second.send("join table"));
+            assertEquals("Starting the game!", first.send("start"));
+            assertEquals("What will be player two's name?",
+                    second.send("Alice"));
+        } finally {
+            serving[0].interrupt();
+            serving[0].join();
+            socket.close();
+        }
+    }
+
+    @Test
+    public void longLineTest() throws Exception {
+        Thread[] serving = new Thread[1];
+        ServerSocketChannel socket = serve(registry(), serving);
+        try {
+            Client client = new Client(socket);
+            assertEquals("That line is too long!",
+                    client.send("x".repeat(1000)));
+            assertEquals("Starting the game!", client.send("start"));
+        } finally {
+            serving[0].interrupt();
+            serving[0].join();
+            socket.close();
+        }
+    }
+
+    @Test
+    public void backPressureTest() throws Exception {
+        Thread[] serving = new Thread[1];
+        ServerSocketChannel socket = serve(registry(), serving);
+        try {
+            Client client = new Client(socket);
+            client.send("start");
+            client.until("What will be player one's name?");
+            client.send("Alice");
+            client.send("Bob");
+            client.send("Carol");
+            client.send("Dave");
+            client.channel.configureBlocking(false);
+            ByteBuffer boards = ByteBuffer.wrap(
+                    "board\n".repeat(1000).getBytes(StandardCharsets.UTF_8));
+            boolean stalled = false;
+            for (long sent = 0; !stalled && sent < (64L << 20); ) {
+                if (!boards.hasRemaining()) {
+                    boards.rewind();
+                }
+                int wrote = client.channel.write(boards);
+                if (wrote == 0) {
+                    Thread.sleep(200);
+                    stalled = client.channel.write(boards) == 0;
+                }
+                sent += wrote;
+            }
+            assertTrue(stalled);
+            assertTrue(awaitWork(serving[0], false));
+
+            client.channel.configureBlocking(true);
+            Thread reading = new Thread(() -> {
+                ByteBuffer junk = ByteBuffer.allocate(1 << 16);
+                try {
+                    while (client.channel.read(junk.clear()) >= 0) {
+                        continue;
+                    }
+                } catch (java.io.IOException e) {
+                    return;
+                }
+            });
+            reading.start();
+            assertTrue(awaitWork(serving[0], true));
+            client.channel.close();
+            reading.join();
+
+            Client other = new Client(socket);
+            assertEquals("Starting the game!", other.send("start"));
+        } finally {
+            serving[0].interrupt();
+            serving[0].join();
+            socket.close();
+        }
+    }
+
+    @Test
+    public void gameOverTest() throws Exception {
+        GameRegistry games = registry();
+        Thread[] serving = new Thread[1];
+        ServerSocketChannel socket = serve(games, serving);
+        try {
+            Client first = new Client(socket);
+            Client second = new Client(socket);
+            first.send("join table");
+            second.send("join table");
+            first.send("quit");
+            assertEquals("Goodbye!", first.send("yes"));
+            assertNull(first.in.readLine());
+            assertEquals("The game is over.", second.in.readLine());
+            assertNull(second.in.readLine());
+            assertTrue(awaitEmpty(games));
+
+            Client again = new Client(socket);
+            assertEquals("Joined lobby table.", again.send("join table"));
+            assertEquals("Starting the game!", again.send("start"));
+        } finally {
+            serving[0].interrupt();
+            serving[0].join();
+            socket.close();
+        }
+    }
+
+    @Test
+    public void disconnectTest() throws Exception {
+        GameRegistry games = registry();
+        Thread[] serving = new Thread[1];
+        ServerSocketChannel socket = serve(games, serving);
+        try {
+            Client alone = new Client(socket);
+            alone.send("start");
+            assertEquals(1, games.numLive());
+            alone.channel.close();
+            assertTrue(awaitEmpty(games));
+
+            Client first = new Client(socket);
+            Client second = new Client(socket);
+            first.send("join table");
+            second.send("join table");
+            assertEquals("Starting the game!", first.send("start"));
+            first.channel.close();
+            Thread.sleep(50);
+            assertEquals(1, games.numLive());
+            second.channel.close();
+            assertTrue(awaitEmpty(games));
+
+            Client again = new Client(socket);
+            again.send("join table");
+            assertEquals("Starting the game!", again.send("start"));
+        } finally {
+            serving[0].interrupt();
+            serving[0].join();
+            socket.close();
+        }
+    }
+
+}
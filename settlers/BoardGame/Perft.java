@@ -0,0 +1,520 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Counts every sequence of moves from a position, to a given depth,
+ * the way chess programs test their move generators ("perft").
+ *
+ * A move is one of: building a road, settlement or city that the
+ * player whose turn it is can afford and is allowed to build; a swap
+ * with another player that helps both of them (See
+ * TradeEngine.improvingSwaps); or ending the turn, after which the next
+ * player rolls. The roll is a chance node, so ending the turn counts as
+ * eleven moves, one for each sum of the dice.
+ *
+ * A road or settlement is allowed if Player would allow it from any of
+ * the hexes that it touches. The fast move generator works on a
+ * CompactGame. The reference generator lays the game out on Board and
+ * asks Player, which is slow, but is the definition of the rules, so
+ * the two must always agree.
+ *
+ * Moves are longs: the kind in the lowest four bits, then either the
+ * vertex or edge, the sum of the dice, or for a swap, the partner and
+ * the cards given and wanted, three bits per resource.
+ * @author John Angeles
+ */
+final class Perft {
+
+    /** Creates a counter with its own scratch space. Each thread needs
+     * its own counter. */
+    Perft() {
+        for (int i = 0; i <= MAX_DEPTH; i += 1) {
+            _moves[i] = new long[MAX_MOVES];
+            _games[i] = new CompactGame();
+        }
+    }
+
+    /** Returns the position after a seeded opening: the layout that
+     * Board.reset(SEED) gives, the robber on the desert, and then each
+     * player placing two settlements with a road each, in the usual
+     * snake order, at spots picked using SEED. Each player gets one
+     * card from each hex next to their second settlement, and player 0
+     * is to move. The layout is worked out without touching Board, so
+     * any number of threads may call this at once. */
+    static CompactGame opening(long seed) {
+        CompactGame game = new CompactGame();
+        Random shuffle = new Random(seed);
+        ArrayList<Resource> resources = Board.shuffled(shuffle);
+        int layout = Board.tokenLayout(resources, shuffle);
+        for (int hex = 0; hex < 19; hex += 1) {
+            game.setHex(hex, resources.get(hex),
+                    TokenLayouts.number(layout, hex));
+            if (resources.get(hex) == Resource.desert()) {
+                game.moveRobber(hex);
+            }
+        }
+        Random random = new Random(seed);
+        int[] order = {0, 1, 2, 3, 3, 2, 1, 0};
+        for (int i = 0; i < order.length; i += 1) {
+            int player = order[i];
+            int vertex = openSpot(game, random);
+            game.give(player, Hand.SETTLEMENT);
+            game.buildSettlement(player, vertex);
+            int[] edges = Topology.VERTEX_EDGES[vertex];
+            game.give(player, Hand.ROAD);
+            game.buildRoad(player, edges[random.nextInt(edges.length)]);
+            if (i >= 4) {
+                for (int hex : Topology.VERTEX_HEXES[vertex]) {
+                    Resource resource = game.resource(hex);
+                    if (resource != null && resource != Resource.desert()) {
+                        game.give(player, Hand.unit(resource.index()));
+                    }
+                }
+            }
+        }
+        return game;
+    }
+
+    /** Returns a random empty vertex of GAME with no building next to
+     * it and no road touching it, picked using RANDOM. */
+    private static int openSpot(CompactGame game, Random random) {
+        while (true) {
+            int vertex = random.nextInt(Topology.NUM_VERTICES);
+            boolean open = game.owner(vertex) < 0;
+            for (int other : Topology.VERTEX_NEIGHBORS[vertex]) {
+                open = open && game.owner(other) < 0;
+            }
+            for (int edge : Topology.VERTEX_EDGES[vertex]) {
+                open = open && game.roadOwner(edge) < 0;
+            }
+            if (open) {
+                return vertex;
+            }
+        }
+    }
+
+    /** Returns the number of move sequences of length DEPTH from GAME,
+     * which I don't modify. */
+    long count(CompactGame game, int depth) {
+        assert depth <= MAX_DEPTH : "Too deep!";
+        if (depth == 0) {
+            return 1;
+        }
+        long[] moves = _moves[depth];
+        int n = moves(game, moves);
+        if (depth == 1) {
+            return n;
+        }
+        CompactGame child = _games[depth];
+        long total = 0;
+        for (int i = 0; i < n; i += 1) {
+            game.copyInto(child);
+            apply(child, moves[i]);
+            total += count(child, depth - 1);
+        }
+        return total;
+    }
+
+    /** Same as count, but splits the moves from GAME among THREADS
+     * threads, each counting whole subtrees. */
+    static long count(CompactGame game, int depth, int threads)
+            throws Exception {
+        if (depth <= 1 || threads <= 1) {
+            return new Perft().count(game, depth);
+        }
+        long[] moves = new long[MAX_MOVES];
+        int n = new Perft().moves(game, moves);
+        ThreadLocal<Perft> perfts = ThreadLocal.withInitial(Perft::new);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            ArrayList<Future<Long>> subtrees = new ArrayList<>(n);
+            for (int i = 0; i < n; i += 1) {
+                CompactGame child = game.copy();
+                apply(child, moves[i]);
+                subtrees.add(pool.submit(
+                        () -> perfts.get().count(child, depth - 1)));
+            }
+            long total = 0;
+            for (Future<Long> subtree : subtrees) {
+                total += subtree.get();
+            }
+            return total;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Same as count, but using the reference move generator. */
+    static long referenceCount(CompactGame game, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        long[] moves = referenceMoves(game);
+        if (depth == 1) {
+            return moves.length;
+        }
+        long total = 0;
+        for (long move : moves) {
+            CompactGame child = game.copy();
+            apply(child, move);
+            total += referenceCount(child, depth - 1);
+        }
+        return total;
+    }
+
+    /** Walks every position up to DEPTH moves from GAME and compares
+     * the two move generators. Returns null if they always agree, or
+     * else a description of the first position where they don't. */
+    static String verify(CompactGame game, int depth) {
+        return new Perft().verify(game, depth, 0);
+    }
+
+    /** Does verify for GAME at DEPTH, using my move lists from
+     * LEVEL on. */
+    private String verify(CompactGame game, int depth, int level) {
+        long[] fast = sortedMoves(game, level);
+        long[] slow = referenceMoves(game);
+        Arrays.sort(slow);
+        if (!Arrays.equals(fast, slow)) {
+            return "Turn " + game.turn() + ", hand "
+                    + Hand.toString(game.hand(game.turn()))
+                    + ": fast " + describe(fast)
+                    + " but reference " + describe(slow);
+        }
+        for (int i = 0; depth > 1 && i < fast.length; i += 1) {
+            CompactGame child = game.copy();
+            apply(child, fast[i]);
+            String mismatch = verify(child, depth - 1, level + 1);
+            if (mismatch != null) {
+                return describe(fast[i]) + " / " + mismatch;
+            }
+        }
+        return null;
+    }
+
+    /** Returns the fast moves from GAME, sorted, using my move list
+     * for LEVEL as scratch. */
+    private long[] sortedMoves(CompactGame game, int level) {
+        int n = moves(game, _moves[level]);
+        long[] moves = Arrays.copyOf(_moves[level], n);
+        Arrays.sort(moves);
+        return moves;
+    }
+
+    /** Puts the moves from GAME into MOVES, and returns how many there
+     * are. This is the fast move generator. */
+    int moves(CompactGame game, long[] moves) {
+        int player = game.turn();
+        long hand = game.hand(player);
+        int n = 0;
+        if (game.roadsLeft(player) > 0 && Hand.covers(hand, Hand.ROAD)) {
+            for (int e = 0; e < Topology.NUM_EDGES; e += 1) {
+                int[] slots = EDGE_SLOTS[e];
+                for (int k = 0; k < slots.length; k += 1) {
+                    if (game.isValidRoad(player, slots[k] / 6,
+                            slots[k] % 6)) {
+                        moves[n] = ROAD | e << 4;
+                        n += 1;
+                        break;
+                    }
+                }
+            }
+        }
+        if (game.settlementsLeft(player) > 0
+                && Hand.covers(hand, Hand.SETTLEMENT)) {
+            for (int v = 0; v < Topology.NUM_VERTICES; v += 1) {
+                int[] slots = VERTEX_SLOTS[v];
+                for (int k = 0; k < slots.length; k += 1) {
+                    if (game.isValidSettlement(player, slots[k] / 6,
+                            slots[k] % 6)) {
+                        moves[n] = SETTLEMENT | v << 4;
+                        n += 1;
+                        break;
+                    }
+                }
+            }
+        }
+        if (game.citiesLeft(player) > 0 && Hand.covers(hand, Hand.CITY)) {
+            for (int v = 0; v < Topology.NUM_VERTICES; v += 1) {
+                if (game.owner(v) == player && !game.isCity(v)) {
+                    moves[n] = CITY | v << 4;
+                    n += 1;
+                }
+            }
+        }
+        _out = moves;
+        _n = n;
+        for (int partner = 0; partner < 4; partner += 1) {
+            if (partner != player) {
+                _partner = partner;
+                TradeEngine.improvingSwaps(hand, game.hand(partner),
+                        _visitor);
+            }
+        }
+        n = _n;
+        for (int sum = 2; sum <= 12; sum += 1) {
+            moves[n] = ROLL | sum << 4;
+            n += 1;
+        }
+        return n;
+    }
+
+    /** Returns the moves from GAME, in no particular order, found by
+     * laying GAME out on Board and asking Player. This is the
+     * reference move generator. */
+    static long[] referenceMoves(CompactGame game) {
+        ArrayList<Long> moves = new ArrayList<>();
+        synchronized (Game.BOARD_LOCK) {
+            Player[] players = game.restore();
+            int turn = game.turn();
+            Player player = players[turn];
+            boolean canRoad = player.numRoads() > 0
+                    && player.numResource(Resource.wood()) > 0
+                    && player.numResource(Resource.brick()) > 0;
+            boolean canSettle = player.numSettlements() > 0
+                    && player.numResource(Resource.wood()) > 0
+                    && player.numResource(Resource.brick()) > 0
+                    && player.numResource(Resource.wheat()) > 0
+                    && player.numResource(Resource.sheep()) > 0;
+            boolean canCity = player.numCities() > 0
+                    && player.numResource(Resource.wheat()) >= 2
+                    && player.numResource(Resource.ore()) >= 3;
+            boolean[] roads = new boolean[Topology.NUM_EDGES];
+            boolean[] settlements = new boolean[Topology.NUM_VERTICES];
+            boolean[] cities = new boolean[Topology.NUM_VERTICES];
+            for (int hex = 1; hex <= 19; hex += 1) {
+                for (int posn = 0; posn < 6; posn += 1) {
+                    int slot = (hex - 1) * 6 + posn;
+                    Building building = Board.get(hex).building(posn);
+                    roads[Topology.EDGE[slot]] |= canRoad
+                            && player.isValidRoad(hex, posn);
+                    settlements[Topology.VERTEX[slot]] |= canSettle
+                            && player.isValidSettlement(hex, posn);
+                    cities[Topology.VERTEX[slot]] |= canCity
+                            && building != null
+                            && building.player() == player
+                            && !(building instanceof City);
+                }
+            }
+            for (int e = 0; e < Topology.NUM_EDGES; e += 1) {
+                if (roads[e]) {
+                    moves.add((long) (ROAD | e << 4));
+                }
+            }
+            for (int v = 0; v < Topology.NUM_VERTICES; v += 1) {
+                if (settlements[v]) {
+                    moves.add((long) (SETTLEMENT | v << 4));
+                }
+                if (cities[v]) {
+                    moves.add((long) (CITY | v << 4));
+                }
+            }
+            for (int partner = 0; partner < 4; partner += 1) {
+                if (partner == turn) {
+                    continue;
+                }
+                for (Trade trade : TradeEngine.improvingSwaps(player,
+                        players[partner])) {
+                    if (trade.proposer() == player) {
+                        moves.add(swap(partner, trade.give(), trade.want()));
+                    } else {
+                        moves.add(swap(partner, trade.want(), trade.give()));
+                    }
+                }
+            }
+        }
+        for (int sum = 2; sum <= 12; sum += 1) {
+            moves.add((long) (ROLL | sum << 4));
+        }
+        long[] answer = new long[moves.size()];
+        for (int i = 0; i < answer.length; i += 1) {
+            answer[i] = moves.get(i);
+        }
+        return answer;
+    }
+
+    /** Makes MOVE in GAME. */
+    static void apply(CompactGame game, long move) {
+        int player = game.turn();
+        int at = (int) (move >>> 4);
+        switch ((int) (move & 15)) {
+        case ROAD:
+            game.buildRoad(player, at);
+            break;
+        case SETTLEMENT:
+            game.buildSettlement(player, at);
+            break;
+        case CITY:
+            game.buildCity(player, at);
+            break;
+        case TRADE:
+            game.trade(player, at & 3, unpack(move >>> 6),
+                    unpack(move >>> 6 + 15));
+            break;
+        default:
+            game.endTurn();
+            game.produce(at);
+            break;
+        }
+    }
+
+    /** Returns the move where the player to move gives the packed hand
+     * GIVE to PARTNER for WANT. */
+    static long swap(int partner, long give, long want) {
+        return TRADE | partner << 4 | squeeze(give) << 6
+                | squeeze(want) << 6 + 15;
+    }
+
+    /** Returns HAND, which has at most 7 of each resource, with three
+     * bits per resource. */
+    private static long squeeze(long hand) {
+        long result = 0;
+        for (int i = 0; i < Hand.NUM_RESOURCES; i += 1) {
+            result |= (long) Hand.count(hand, i) << 3 * i;
+        }
+        return result;
+    }
+
+    /** Returns the packed hand in the lowest 15 bits of BITS, three
+     * bits per resource. (The reverse of squeeze) */
+    private static long unpack(long bits) {
+        long hand = 0;
+        for (int i = 0; i < Hand.NUM_RESOURCES; i += 1) {
+            hand += ((bits >>> 3 * i) & 7) * Hand.unit(i);
+        }
+        return hand;
+    }
+
+    /** Returns MOVE as words. */
+    static String describe(long move) {
+        int at = (int) (move >>> 4);
+        switch ((int) (move & 15)) {
+        case ROAD:
+            return "road " + at;
+        case SETTLEMENT:
+            return "settlement " + at;
+        case CITY:
+            return "city " + at;
+        case TRADE:
+            return "swap " + Hand.toString(unpack(move >>> 6)) + " for "
+                    + Hand.toString(unpack(move >>> 6 + 15))
+                    + " with " + (at & 3);
+        default:
+            return "roll " + at;
+        }
+    }
+
+    /** Returns MOVES as words. */
+    private static String describe(long[] moves) {
+        StringBuilder answer = new StringBuilder("[");
+        for (int i = 0; i < moves.length; i += 1) {
+            answer.append((i == 0) ? "" : ", ").append(describe(moves[i]));
+        }
+        return answer.append("]").toString();
+    }
+
+    /** Runs perft from the opening for SEED up to DEPTH, and prints the
+     * number of move sequences and how many positions per second were
+     * counted at each depth.
+     * Usage: java Perft SEED DEPTH [THREADS] [--verify]
+     * With --verify, also checks the fast move generator against the
+     * reference at every depth. */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println(
+                    "Usage: java Perft SEED DEPTH [THREADS] [--verify]");
+            System.exit(1);
+        }
+        long seed = Long.parseLong(args[0]);
+        int depth = Integer.parseInt(args[1]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean verify = false;
+        for (int i = 2; i < args.length; i += 1) {
+            if (args[i].equals("--verify")) {
+                verify = true;
+            } else {
+                threads = Integer.parseInt(args[i]);
+            }
+        }
+        CompactGame game = opening(seed);
+        for (int d = 1; d <= depth; d += 1) {
+            long start = System.nanoTime();
+            long nodes = count(game, d, threads);
+            long nanos = Math.max(1, System.nanoTime() - start);
+            System.out.printf("depth %d: %d in %.3f s (%.0f nodes/s)%n",
+                    d, nodes, nanos / 1e9, nodes * 1e9 / nanos);
+            if (verify) {
+                long reference = referenceCount(game, d);
+                String mismatch = verify(game, d);
+                System.out.printf("  reference: %d%s%n", reference,
+                        (mismatch == null) ? "" : ", differs at "
+                                + mismatch);
+                if (reference != nodes || mismatch != null) {
+                    System.exit(1);
+                }
+            }
+        }
+    }
+
+    /** Move kinds. */
+    static final int ROLL = 0, ROAD = 1, SETTLEMENT = 2, CITY = 3,
+            TRADE = 4;
+
+    /** Deepest count I can do. */
+    static final int MAX_DEPTH = 32;
+
+    /** Most moves there can be from one position. */
+    private static final int MAX_MOVES = 1024;
+
+    /** The hex * 6 + side of each edge, for every hex it touches. */
+    private static final int[][] EDGE_SLOTS = new int[Topology.NUM_EDGES][];
+
+    /** The hex * 6 + posn of each vertex, for every hex it touches. */
+    private static final int[][] VERTEX_SLOTS
+            = new int[Topology.NUM_VERTICES][];
+
+    /** Sets up EDGE_SLOTS and VERTEX_SLOTS. */
+    static {
+        for (int i = 0; i < 19 * 6; i += 1) {
+            EDGE_SLOTS[Topology.EDGE[i]] = append(
+                    EDGE_SLOTS[Topology.EDGE[i]], i);
+            VERTEX_SLOTS[Topology.VERTEX[i]] = append(
+                    VERTEX_SLOTS[Topology.VERTEX[i]], i);
+        }
+    }
+
+    /** Returns ARRAY, which may be null, with X added to the end. */
+    private static int[] append(int[] array, int x) {
+        int[] answer = (array == null) ? new int[1]
+                : Arrays.copyOf(array, array.length + 1);
+        answer[answer.length - 1] = x;
+        return answer;
+    }
+
+    /** Move lists for each depth, so that counting allocates nothing. */
+    private final long[][] _moves = new long[MAX_DEPTH + 1][];
+
+    /** Scratch games for each depth. */
+    private final CompactGame[] _games = new CompactGame[MAX_DEPTH + 1];
+
+    /** Where _visitor puts moves. */
+    private long[] _out;
+
+    /** Number of moves in _out. */
+    private int _n;
+
+    /** Partner of the swaps that _visitor is visiting. */
+    private int _partner;
+
+    /** Adds each swap it visits to _out, from _partner. */
+    private final TradeEngine.SwapVisitor _visitor =
+        (firstGives, give, want) -> {
+            _out[_n] = firstGives ? swap(_partner, give, want)
+                    : swap(_partner, want, give);
+            _n += 1;
+        };
+
+}
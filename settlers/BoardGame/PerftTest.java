@@ -0,0 +1,66 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Set of tests for perft and the two move generators it compares.
+ * @author John Angeles
+ */
+public class PerftTest {
+
+    @Test
+    public void openingTest() {
+        CompactGame game = Perft.opening(7);
+        for (int p = 0; p < 4; p += 1) {
+            assertEquals(3, game.settlementsLeft(p));
+            assertEquals(13, game.roadsLeft(p));
+        }
+        assertEquals(0, game.turn());
+        assertTrue(game.robber() >= 0);
+        assertEquals(Perft.opening(7).hand(3), game.hand(3));
+    }
+
+    @Test
+    public void openingLayoutTest() {
+        Board.reset(7);
+        CompactGame reset = CompactGame.capture(new Player[0], 0);
+        Board.reset(3);
+        String board = Board.dump();
+        CompactGame game = Perft.opening(7);
+        assertEquals(board, Board.dump());
+        for (int hex = 0; hex < 19; hex += 1) {
+            assertEquals(reset.resource(hex), game.resource(hex));
+            assertEquals(reset.number(hex), game.number(hex));
+        }
+    }
+
+    @Test
+    public void referenceTest() {
+        CompactGame game = Perft.opening(2);
+        assertEquals(Perft.referenceCount(game, 4),
+                new Perft().count(game, 4));
+        assertNull(Perft.verify(game, 3));
+    }
+
+    @Test
+    public void buildTest() {
+        CompactGame game = Perft.opening(5);
+        game.give(0, Hand.pack(4, 0, 2, 3, 1));
+        game.give(1, Hand.pack(0, 2, 0, 0, 0));
+        assertNull(Perft.verify(game, 2));
+        long[] moves = new long[1024];
+        int n = new Perft().moves(game, moves);
+        int cities = 0, swaps = 0;
+        for (int i = 0; i < n; i += 1) {
+            cities += (moves[i] & 15) == Perft.CITY ? 1 : 0;
+            swaps += (moves[i] & 15) == Perft.TRADE ? 1 : 0;
+        }
+        assertEquals(2, cities);
+        assertTrue(swaps > 0);
+    }
+
+    @Test
+    public void threadsTest() throws Exception {
+        CompactGame game = Perft.opening(3);
+        assertEquals(new Perft().count(game, 4), Perft.count(game, 4, 4));
+    }
+
+}
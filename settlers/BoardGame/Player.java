@@ -1,6 +1,6 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Stack;
-import java.util.LinkedList;
-import java.util.ArrayList;
 
 /** A player.  There can be up to four players.
  * Each player has 15 roads, 5 settlements and
@@ -30,6 +30,8 @@ public class Player {
     Player(Color color, String name) {
         _color = color;
         _name = name;
+        _built = new String[] {name + " put down a road!",
+            name + " built a settlement!", name + " built a city!"};
 
         for (int i = 0; i < 15; i += 1) {
             _roads.push(new Road(_color, this));
@@ -51,11 +53,9 @@ public class Player {
      */
     boolean hasSettlementOrCityOnHex(int hex) {
         Hex currHex = Board.get(hex);
-        ArrayList<Building> buildings = currHex.buildings();
-        for (Building curr: buildings) {
-            if (curr == null) {
-                continue;
-            } else if (curr.player() == this) {
+        for (int i = 0; i < 6; i += 1) {
+            Building curr = currHex.building(i);
+            if (curr != null && curr.player() == this) {
                 return true;
             }
         }
@@ -69,11 +69,26 @@ public class Player {
         return _name;
     }
 
+    /** Returns my color. */
+    Color color() {
+        return _color;
+    }
+
     /** Returns the number of roads I have yet to place. */
     int numRoads() {
         return _roads.size();
     }
 
+    /** Returns the number of settlements I have yet to place. */
+    int numSettlements() {
+        return _settlements.size();
+    }
+
+    /** Returns the number of cities I have yet to place. */
+    int numCities() {
+        return _cities.size();
+    }
+
     /** Gives me a resource card. */
     void giveResource(ResourceCard card) {
         if (card.resource() == Resource.wood()) {
@@ -89,6 +104,149 @@ public class Player {
         }
     }
 
+    /** Takes one card of RESOURCE out of my hand and returns it.
+     * Assumes that I have at least one.
+     */
+    ResourceCard takeResource(Resource resource) {
+        return (ResourceCard) cardsOf(resource).pop();
+    }
+
+    /** Returns the number of RESOURCE cards I have. */
+    int numResource(Resource resource) {
+        return cardsOf(resource).size();
+    }
+
+    /** Returns my hand packed into a long. (See Hand) A count over
+     * Hand.MAX_COUNT is packed as Hand.MAX_COUNT, so that it doesn't
+     * set its guard bit or carry into the next resource. */
+    long packedHand() {
+        return Hand.pack(packed(_wood), packed(_bricks), packed(_wheat),
+                packed(_ore), packed(_sheep));
+    }
+
+    /** Returns the number of CARDS, held to at most Hand.MAX_COUNT. */
+    private static int packed(Stack<Card> cards) {
+        return Math.min(cards.size(), Hand.MAX_COUNT);
+    }
+
+    /** Returns the stack that holds my cards of RESOURCE. */
+    private Stack<Card> cardsOf(Resource resource) {
+        if (resource == Resource.wood()) {
+            return _wood;
+        } else if (resource == Resource.brick()) {
+            return _bricks;
+        } else if (resource == Resource.wheat()) {
+            return _wheat;
+        } else if (resource == Resource.ore()) {
+            return _ore;
+        } else {
+            assert resource == Resource.sheep() : "Invalid resource!";
+            return _sheep;
+        }
+    }
+
+    /** Moves one of my unplaced roads to my placed roads and returns
+     * it, without charging me anything. Used when restoring a saved
+     * board (See Board.load). */
+    Road restoreRoad() {
+        Road road = _roads.pop();
+        _placedRoads.push(road);
+        return road;
+    }
+
+    /** Same as restoreRoad, but for a settlement. */
+    Settlement restoreSettlement() {
+        Settlement settlement = _settlements.pop();
+        _placedSettlements.add(settlement);
+        return settlement;
+    }
+
+    /** Same as restoreRoad, but for a city. */
+    City restoreCity() {
+        City city = _cities.pop();
+        _placedCities.add(city);
+        return city;
+    }
+
+    /** Puts every piece I have placed back with my unplaced pieces,
+     * without touching the board. Used before restoring a saved board
+     * onto me again (See Board.load). */
+    void pickUpPieces() {
+        while (!_placedRoads.isEmpty()) {
+            _roads.push(_placedRoads.pop());
+        }
+        while (!_placedSettlements.isEmpty()) {
+            Settlement settlement = _placedSettlements.pop();
+            settlement.setPlacedTo(false);
+            _settlements.push(settlement);
+        }
+        while (!_placedCities.isEmpty()) {
+            City city = _placedCities.pop();
+            city.setPlacedTo(false);
+            _cities.push(city);
+        }
+    }
+
+    /** Works out my victory points and production from scratch, from
+     * the settlements and cities I have placed. */
+    void recount() {
+        _victoryPoints = 0;
+        _production = new int[19];
+        for (Settlement settlement : _placedSettlements) {
+            _victoryPoints += settlement.victoryPoints();
+            addProduction(settlement, 1);
+        }
+        for (City city : _placedCities) {
+            _victoryPoints += city.victoryPoints();
+            addProduction(city, 2);
+        }
+    }
+
+    /** Writes my color, my name and my hand into BUF. Where my pieces
+     * are is saved with the board (See Board.save). Each count in my
+     * hand takes a short, held to at most Short.MAX_VALUE, so that a
+     * hand bigger than a byte can count comes back whole. */
+    void save(ByteBuffer buf) {
+        byte[] name = _name.getBytes(StandardCharsets.UTF_8);
+        buf.put((byte) _color.index());
+        buf.putShort((short) name.length);
+        buf.put(name);
+        saveCount(buf, _wood);
+        saveCount(buf, _bricks);
+        saveCount(buf, _wheat);
+        saveCount(buf, _ore);
+        saveCount(buf, _sheep);
+    }
+
+    /** Most bytes save writes for a player whose name is at most
+     * Game.MAX_NAME chars long: my color, the length of my name, my
+     * name at up to three bytes of UTF-8 for each char, and a short for
+     * each count in my hand. */
+    static final int MAX_SAVED = 1 + 2 + 3 * Game.MAX_NAME
+        + 2 * Hand.NUM_RESOURCES;
+
+    /** Writes the number of CARDS into BUF. (See save) */
+    private static void saveCount(ByteBuffer buf, Stack<Card> cards) {
+        buf.putShort((short) Math.min(cards.size(), Short.MAX_VALUE));
+    }
+
+    /** Returns a new player as saved in BUF, with none of its pieces
+     * placed. */
+    static Player load(ByteBuffer buf) {
+        Color color = Color.get(buf.get());
+        byte[] name = new byte[buf.getShort()];
+        buf.get(name);
+        Player player = new Player(color,
+                new String(name, StandardCharsets.UTF_8));
+        for (int i = 0; i < Hand.NUM_RESOURCES; i += 1) {
+            Resource resource = Resource.get(i);
+            for (int n = buf.getShort(); n > 0; n -= 1) {
+                player.giveResource(ResourceCard.make(resource));
+            }
+        }
+        return player;
+    }
+
     /** Returns a message saying how many of each resource I have. */
     String flag() {
         return "Resources owned by " + _name + ":\n"
@@ -147,19 +305,21 @@ public class Player {
      * successfully placed my road or not.
      */
     String placeRoad(int hex, int side) {
+        GameEvents.Build event = GameEvents.build(_color, "road", hex,
+                side);
         if (!isValidRoad(hex, side)) {
-            return "Nope, can't place it there.";
+            return rejected(event, "Nope, can't place it there.");
         } else if (_wood.isEmpty() || _bricks.isEmpty()) {
-            return "Gonna need more trees and bricks.";
+            return rejected(event, "Gonna need more trees and bricks.");
         } else if (_roads.isEmpty()) {
-            return "Out of roads!";
+            return rejected(event, "Out of roads!");
         } else {
             _wood.pop();
             _bricks.pop();
             Road newRoad = _roads.pop();
             _placedRoads.push(newRoad);
             Board.placeRoad(newRoad, hex, side);
-            return _name + " put down a road!";
+            return placed(event, _built[0]);
         }
     }
 
@@ -260,6 +420,9 @@ public class Player {
             if (curr == settlement) {
                 _settlements.add(curr);
                 _placedSettlements.remove(i);
+                curr.setPlacedTo(false);
+                _victoryPoints -= curr.victoryPoints();
+                addProduction(curr, -1);
                 return;
             }
         }
@@ -275,6 +438,9 @@ public class Player {
             if (curr == city) {
                 _cities.add(curr);
                 _placedCities.remove(i);
+                curr.setPlacedTo(false);
+                _victoryPoints -= curr.victoryPoints();
+                addProduction(curr, -2);
                 return;
             }
         }
@@ -288,8 +454,10 @@ public class Player {
      * Returns a string message saying what happened.
      */
     String placeSettlement(int hex, int posn) {
+        GameEvents.Build event = GameEvents.build(_color, "settlement",
+                hex, posn);
         if (_settlements.isEmpty()) {
-            return "No more settlements!";
+            return rejected(event, "No more settlements!");
         }
         else if (!_wood.isEmpty() && !_bricks.isEmpty()
                 && !_wheat.isEmpty() && !_sheep.isEmpty()) {
@@ -301,9 +469,101 @@ public class Player {
             _placedSettlements.add(toPlace);
             toPlace.setPlacedTo(true);
             Board.placeSettlement(toPlace, hex, posn);
-            return _name + " built a settlement!";
+            _victoryPoints += toPlace.victoryPoints();
+            addProduction(toPlace, 1);
+            return placed(event, _built[1]);
         } else {
-            return "Shucks, not enough resources!";
+            return rejected(event, "Shucks, not enough resources!");
+        }
+    }
+
+    /** Upgrades my settlement on HEX in POSN to a city at the cost of
+     * expending two wheat and three ore. The city takes the settlement's
+     * place on every hex in one step, and the settlement goes back
+     * to my unplaced settlements.
+     * Returns a string message saying what happened.
+     */
+    String placeCity(int hex, int posn) {
+        GameEvents.Build event = GameEvents.build(_color, "city", hex,
+                posn);
+        Building old = Board.get(hex).building(posn);
+        if (old == null || old.player() != this || old instanceof City) {
+            return rejected(event,
+                    "You need one of your settlements there.");
+        } else if (_cities.isEmpty()) {
+            return rejected(event, "No more cities!");
+        } else if (_wheat.size() < 2 || _ore.size() < 3) {
+            return rejected(event,
+                    "A city needs two wheat and three ore.");
+        } else {
+            for (int i = 0; i < 2; i += 1) {
+                _wheat.pop();
+            }
+            for (int i = 0; i < 3; i += 1) {
+                _ore.pop();
+            }
+            Settlement settlement = (Settlement) old;
+            City toPlace = _cities.pop();
+            _placedCities.add(toPlace);
+            toPlace.setPlacedTo(true);
+            Board.placeCity(toPlace, hex, posn);
+
+            _placedSettlements.remove(settlement);
+            _settlements.push(settlement);
+            settlement.setPlacedTo(false);
+
+            _victoryPoints += toPlace.victoryPoints()
+                    - settlement.victoryPoints();
+            addProduction(toPlace, 1);
+            return placed(event, _built[2]);
+        }
+    }
+
+    /** Returns MESSAGE, counting a piece placed and ending EVENT, if
+     * it isn't null. (See EngineMetrics and GameEvents) */
+    private static String placed(GameEvents.Build event, String message) {
+        if (EngineMetrics.ENABLED) {
+            EngineMetrics.PLACEMENTS.increment();
+        }
+        if (event != null) {
+            event.end(true, message);
+        }
+        return message;
+    }
+
+    /** Returns MESSAGE, counting a placement refused and ending
+     * EVENT, if it isn't null. */
+    private static String rejected(GameEvents.Build event,
+                                   String message) {
+        if (EngineMetrics.ENABLED) {
+            EngineMetrics.REJECTED_MOVES.increment();
+        }
+        if (event != null) {
+            event.end(false, message);
+        }
+        return message;
+    }
+
+    /** Returns my current victory points from buildings. */
+    int victoryPoints() {
+        return _victoryPoints;
+    }
+
+    /** Returns how many resource cards I collect when the number on
+     * HEX is rolled, assuming the robber is not on it.
+     * @param hex From 1-19
+     */
+    int production(int hex) {
+        return _production[hex - 1];
+    }
+
+    /** Adds AMOUNT to my production on every hex BUILDING is next to. */
+    private void addProduction(Building building, int amount) {
+        if (building.adjHexes() == null) {
+            return;
+        }
+        for (Hex curr : building.adjHexes()) {
+            _production[curr.id() - 1] += amount;
         }
     }
 
@@ -324,6 +584,11 @@ public class Player {
     /** Current victory points that I have. */
     private int _victoryPoints;
 
+    /** Number of resource cards I collect from each hex, indexed
+     * from 0 to 18. A settlement adds one to each of its hexes, and
+     * a city adds two. */
+    private int[] _production = new int[19];
+
     /** Roads that I haven't placed yet. */
     private Stack<Road> _roads = new Stack<>();
 
@@ -334,14 +599,13 @@ public class Player {
     private Stack<City> _cities = new Stack<>();
 
     /** Roads that I have placed. */
-    private LinkedList<Road> _placedRoads = new LinkedList<>();
+    private Stack<Road> _placedRoads = new Stack<>();
 
     /** Settlements that I have placed. */
-    private LinkedList<Settlement> _placedSettlements
-            = new LinkedList<>();
+    private Stack<Settlement> _placedSettlements = new Stack<>();
 
     /** Cities that I have placed. */
-    private LinkedList<City> _placedCities = new LinkedList<>();
+    private Stack<City> _placedCities = new Stack<>();
 
     /** Wood that I own. */
     private Stack<Card> _wood = new Stack<>();
@@ -364,4 +628,8 @@ public class Player {
     /** My name. */
     private String _name;
 
+    /** What I say when I put down a road, a settlement and a city,
+     * made once so that placing a piece doesn't build a string. */
+    private final String[] _built;
+
 }
@@ -1,6 +1,8 @@
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
+
 /** Set of tests for the player class.
  * @author John Angeles
  */
@@ -11,6 +13,28 @@ public class PlayerTest {
         System.out.println(Board.dump());
     }
 
+    @Test
+    public void bigHandSaveTest() {
+        Player alice = new Player(Color.white(), "Alice");
+        for (int i = 0; i < 300; i += 1) {
+            alice.giveResource(new WoodCard());
+        }
+        for (int i = 0; i < 128; i += 1) {
+            alice.giveResource(new SheepCard());
+        }
+        alice.giveResource(new OreCard());
+        ByteBuffer buf = ByteBuffer.allocate(64);
+        alice.save(buf);
+        buf.flip();
+        Player loaded = Player.load(buf);
+        assertFalse(buf.hasRemaining());
+        assertEquals(300, loaded.numResource(Resource.wood()));
+        assertEquals(0, loaded.numResource(Resource.brick()));
+        assertEquals(1, loaded.numResource(Resource.ore()));
+        assertEquals(128, loaded.numResource(Resource.sheep()));
+        assertEquals("Alice", loaded.getName());
+    }
+
     @Test
     public void clearTest() {
         Board.reset();
@@ -240,4 +264,38 @@ public class PlayerTest {
         assertTrue(alice.hasSettlementOrCityOnHex(5));
     }
 
+    /** Alice upgrades her settlement to a city, and the city shows up
+     * on all three hexes at once. */
+    @Test
+    public void placeCityTest() {
+        Board.reset();
+        Player alice = aliceSettlement();
+        alice.placeSettlement(1, 2);
+        assertEquals(1, alice.victoryPoints());
+        assertEquals(1, alice.production(5));
+        assertEquals("A city needs two wheat and three ore.",
+                alice.placeCity(1, 2));
+        alice.giveResource(new WheatCard());
+        alice.giveResource(new WheatCard());
+        for (int i = 0; i < 3; i += 1) {
+            alice.giveResource(new OreCard());
+        }
+        assertEquals("You need one of your settlements there.",
+                alice.placeCity(1, 3));
+        assertEquals("Alice built a city!", alice.placeCity(1, 2));
+        assertTrue(Board.get(1).building(2) instanceof City);
+        assertSame(Board.get(1).building(2), Board.get(2).building(4));
+        assertSame(Board.get(1).building(2), Board.get(5).building(0));
+        assertEquals(2, alice.victoryPoints());
+        assertEquals(2, alice.production(1));
+        assertEquals(2, alice.production(2));
+        assertEquals(2, alice.production(5));
+        assertEquals(0, alice.packedHand());
+        assertEquals("You need one of your settlements there.",
+                alice.placeCity(1, 2));
+        Board.reset();
+        assertEquals(0, alice.victoryPoints());
+        assertEquals(0, alice.production(5));
+    }
+
 }
@@ -0,0 +1,135 @@
+/** A summary of a stream of numbers, in a fixed amount of memory, that
+ * can answer quantiles (the median, the 99th percentile, ...) to
+ * within about ERROR of the true value.
+ *
+ * Numbers go into buckets that grow by a factor of (1 + ERROR) / (1 -
+ * ERROR) each, so every number in a bucket is within ERROR of the
+ * bucket's middle. Only the count in each bucket is kept. Two sketches
+ * are merged by adding their counts, which gives exactly the sketch of
+ * both streams together, so sketches kept apart on different threads
+ * can be merged at the end without losing anything.
+ *
+ * Numbers must be 0 or more. Numbers between 0 and 1 count as 1, and
+ * numbers past the last bucket count as the last bucket; the count,
+ * smallest, largest and mean are exact all the same.
+ * @author John Angeles
+ */
+final class QuantileSketch {
+
+    /** Adds VALUE to the stream. */
+    void add(double value) {
+        assert value >= 0 : "Negative value!";
+        if (value == 0) {
+            _zeroes += 1;
+        } else {
+            _counts[bucket(value)] += 1;
+        }
+        if (_count == 0 || value < _min) {
+            _min = value;
+        }
+        if (_count == 0 || value > _max) {
+            _max = value;
+        }
+        _count += 1;
+        _sum += value;
+    }
+
+    /** Adds everything in OTHER to me. */
+    void merge(QuantileSketch other) {
+        for (int i = 0; i < BUCKETS; i += 1) {
+            _counts[i] += other._counts[i];
+        }
+        _zeroes += other._zeroes;
+        if (other._count > 0) {
+            _min = (_count == 0) ? other._min : Math.min(_min, other._min);
+            _max = (_count == 0) ? other._max : Math.max(_max, other._max);
+        }
+        _count += other._count;
+        _sum += other._sum;
+    }
+
+    /** Returns about the number that a fraction Q of the stream is at
+     * or below, or NaN if the stream is empty. The smallest and largest
+     * are exact. */
+    double quantile(double q) {
+        if (_count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (q * (_count - 1));
+        if (rank == 0) {
+            return _min;
+        } else if (rank >= _count - 1) {
+            return _max;
+        }
+        long seen = _zeroes;
+        if (rank < seen) {
+            return 0;
+        }
+        for (int i = 0; i < BUCKETS; i += 1) {
+            seen += _counts[i];
+            if (rank < seen) {
+                double middle = 2 * Math.pow(GAMMA, i) / (GAMMA + 1);
+                return Math.min(_max, Math.max(_min, middle));
+            }
+        }
+        return _max;
+    }
+
+    /** Returns how many numbers I have seen. */
+    long count() {
+        return _count;
+    }
+
+    /** Returns the mean of the stream, or NaN if it is empty. */
+    double mean() {
+        return (_count == 0) ? Double.NaN : _sum / _count;
+    }
+
+    /** Returns the smallest number in the stream. */
+    double min() {
+        return _min;
+    }
+
+    /** Returns the largest number in the stream. */
+    double max() {
+        return _max;
+    }
+
+    /** Returns the bucket of VALUE, which is more than 0. */
+    private static int bucket(double value) {
+        if (value <= 1) {
+            return 0;
+        }
+        int i = (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+        return Math.min(i, BUCKETS - 1);
+    }
+
+    /** How far off a quantile may be, as a fraction of its value. */
+    static final double ERROR = 0.01;
+
+    /** Number of buckets, enough for numbers up to about 10^8. */
+    static final int BUCKETS = 1024;
+
+    /** Ratio of each bucket to the one before. */
+    private static final double GAMMA = (1 + ERROR) / (1 - ERROR);
+
+    /** Log of GAMMA. */
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    /** Numbers in each bucket: bucket i holds numbers over GAMMA^(i-1)
+     * and up to GAMMA^i. */
+    private final long[] _counts = new long[BUCKETS];
+
+    /** Number of zeroes. */
+    private long _zeroes;
+
+    /** Number of numbers. */
+    private long _count;
+
+    /** Sum of the numbers. */
+    private double _sum;
+
+    /** Smallest and largest numbers. */
+    private double _min, _max;
+
+}
@@ -0,0 +1,50 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** Set of tests for quantile sketches.
+ * @author John Angeles
+ */
+public class QuantileSketchTest {
+
+    @Test
+    public void quantileTest() {
+        QuantileSketch sketch = new QuantileSketch();
+        Random random = new Random(3);
+        double[] values = new double[20000];
+        for (int i = 0; i < values.length; i += 1) {
+            values[i] = Math.exp(random.nextGaussian() * 2 + 5);
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+        for (double q : new double[] {0.01, 0.25, 0.5, 0.9, 0.99}) {
+            double exact = values[(int) (q * (values.length - 1))];
+            assertEquals(exact, sketch.quantile(q),
+                    exact * QuantileSketch.ERROR * 1.01);
+        }
+        assertEquals(values[0], sketch.min(), 0);
+        assertEquals(values[values.length - 1], sketch.quantile(1), 0);
+        assertEquals(20000, sketch.count());
+    }
+
+    @Test
+    public void mergeTest() {
+        QuantileSketch whole = new QuantileSketch();
+        QuantileSketch even = new QuantileSketch();
+        QuantileSketch odd = new QuantileSketch();
+        for (int i = 0; i < 1000; i += 1) {
+            whole.add(i % 37);
+            ((i % 2 == 0) ? even : odd).add(i % 37);
+        }
+        even.merge(odd);
+        for (double q = 0; q <= 1; q += 0.05) {
+            assertEquals(whole.quantile(q), even.quantile(q), 0);
+        }
+        assertEquals(whole.mean(), even.mean(), 1e-9);
+        assertEquals(0, even.quantile(0), 0);
+        assertTrue(Double.isNaN(new QuantileSketch().quantile(0.5)));
+    }
+
+}
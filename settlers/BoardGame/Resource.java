@@ -34,6 +34,23 @@ class Resource {
         return RESOURCES[5];
     }
 
+    /** Returns the resource at INDEX, where 0 = wood, 1 = brick,
+     * 2 = wheat, 3 = ore, 4 = sheep and 5 = desert. */
+    static Resource get(int index) {
+        return RESOURCES[index];
+    }
+
+    /** Returns my index into the order wood, brick, wheat, ore,
+     * sheep, desert. (See get) */
+    int index() {
+        for (int i = 0; i < 6; i += 1) {
+            if (RESOURCES[i] == this) {
+                return i;
+            }
+        }
+        throw new AssertionError("Unknown resource!");
+    }
+
     /** Static array of all resources needed for the game. */
     private static Resource[] RESOURCES
             = new Resource[6];
@@ -9,11 +9,25 @@ abstract class ResourceCard extends Card {
         _resource = resource;
     }
 
+    /** Returns a card of RESOURCE. Cards never change, so every card
+     * of a resource is the same one, and making a card allocates
+     * nothing. */
+    static ResourceCard make(Resource resource) {
+        assert resource != Resource.desert() : "Invalid resource!";
+        return CARDS[resource.index()];
+    }
+
     /** Returns my resource. */
     Resource resource() {
         return _resource;
     }
 
-    /** My current resource. */
-    private Resource _resource;
+    /** My resource. */
+    private final Resource _resource;
+
+    /** The card of each resource, indexed like Resource.index. */
+    private static final ResourceCard[] CARDS = {
+        new WoodCard(), new BrickCard(), new WheatCard(), new OreCard(),
+        new SheepCard()
+    };
 }
@@ -0,0 +1,32 @@
+/** A class that you cannot instantiate. It contains static functions
+ * for turning seeds into random numbers, shared by everything that
+ * needs its own fast, repeatable stream of them.
+ *
+ * mix scrambles a seed (or any key) so that nearby seeds come out far
+ * apart, using the finishing step of MurmurHash3. step advances a
+ * linear congruential generator with the constants of PCG; take the
+ * high bits of its state, which are the most random.
+ * @author John Angeles
+ */
+final class Seeds {
+
+    /** You can't create one of these; use the static functions. */
+    private Seeds() { }
+
+    /** Returns a well mixed seed, or hash, from SEED. */
+    static long mix(long seed) {
+        seed = (seed ^ (seed >>> 33)) * 0xFF51AFD7ED558CCDL;
+        seed = (seed ^ (seed >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return seed ^ (seed >>> 33);
+    }
+
+    /** Returns the state of a generator after STATE. */
+    static long step(long state) {
+        return state * MULTIPLIER + INCREMENT;
+    }
+
+    /** Constants of the generator. */
+    static final long MULTIPLIER = 0x5851F42D4C957F2DL,
+            INCREMENT = 0x14057B7EF767814FL;
+
+}
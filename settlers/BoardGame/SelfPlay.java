@@ -0,0 +1,431 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/** Plays games between bots and writes every position, the move made
+ * from it and how the game turned out, for training models on.
+ *
+ * Producer threads each play whole games between greedy bots, game N
+ * being the game Tournament.play plays for seed N. Each game's records
+ * go into a block, and full blocks go through a bounded queue to a single
+ * writer thread, which gzips them into chunk files of about
+ * chunkRecords records each. Blocks are made once and passed back and
+ * forth, so memory stays flat: when the writer falls behind, the queue
+ * fills up and the producers wait for it.
+ *
+ * Each record is RECORD_SIZE bytes: the position (See FeatureEncoder),
+ * the move as a long (See Perft), the outcome as a byte (1 if the
+ * player who moved went on to win, -1 if someone else did, 0 if nobody
+ * won within Tournament.MAX_PLIES moves), the index of the player who
+ * moved, and padding.
+ *
+ * A chunk is written as chunk-N.gz.tmp and renamed once it is complete,
+ * and then the progress file is updated. Blocks only hold whole games,
+ * so completed chunks only hold whole games. A pipeline started on the
+ * same directory again carries on after the last completed chunk. The
+ * progress file records every game in a completed chunk, as the first
+ * game that isn't in one and the few games after it that are, so the
+ * games that were still in flight are played again and nothing is
+ * repeated.
+ *
+ * Games are played with CompactGame and the fast move generator, which
+ * follow the same rules as Player (See Perft and LegalityFuzzer) but
+ * never touch Board, so every producer plays its games without
+ * waiting on the others.
+ * @author John Angeles
+ */
+final class SelfPlay {
+
+    /** Creates a pipeline that writes into DIR, with PRODUCERS threads
+     * playing games, room for QUEUEBLOCKS full blocks between them and
+     * the writer, and about CHUNKRECORDS records per chunk. Picks up
+     * where a pipeline on DIR left off, if there was one. */
+    SelfPlay(Path dir, int producers, int queueBlocks, int chunkRecords)
+            throws IOException {
+        _dir = dir;
+        _producers = producers;
+        _chunkRecords = chunkRecords;
+        _full = new ArrayBlockingQueue<>(queueBlocks + 1);
+        _free = new ArrayBlockingQueue<>(queueBlocks + producers + 1);
+        for (int i = 0; i < queueBlocks + producers; i += 1) {
+            _free.add(new Block());
+        }
+        Files.createDirectories(dir);
+        try (DirectoryStream<Path> stale
+                = Files.newDirectoryStream(dir, "*.tmp")) {
+            for (Path path : stale) {
+                Files.delete(path);
+            }
+        }
+        Path progress = dir.resolve(PROGRESS);
+        if (Files.exists(progress)) {
+            String[] lines = Files.readString(progress).split("\n");
+            if (lines.length < 2 || !lines[0].equals(HEADER)) {
+                throw new IOException(progress + " is the progress of a"
+                        + " different format or bots, not " + HEADER);
+            }
+            String[] fields = lines[1].trim().split(" ");
+            _nextChunk = Integer.parseInt(fields[0]);
+            _doneSeed = Long.parseLong(fields[1]);
+            _nextSeed.set(_doneSeed);
+            _skip = new long[fields.length - 2];
+            for (int i = 2; i < fields.length; i += 1) {
+                _skip[i - 2] = Long.parseLong(fields[i]);
+                _done.add(_skip[i - 2]);
+            }
+            Arrays.sort(_skip);
+        } else {
+            _skip = new long[0];
+        }
+    }
+
+    /** Plays and writes every game up to game GAMES that hasn't been
+     * written yet, and returns when all of them are on disk. */
+    void run(long games) throws Exception {
+        _startNanos = System.nanoTime();
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < _producers; i += 1) {
+            Thread producer = new Thread(() -> produce(games),
+                    "SelfPlay producer " + i);
+            threads.add(producer);
+            producer.start();
+        }
+        Thread writer = new Thread(this::write, "SelfPlay writer");
+        writer.start();
+        for (Thread producer : threads) {
+            producer.join();
+        }
+        _full.put(POISON);
+        writer.join();
+        if (_failure != null) {
+            throw _failure;
+        }
+    }
+
+    /** Returns a line saying how fast each stage is going and how full
+     * the queue is. */
+    String stats() {
+        double seconds = Math.max(1e-9,
+                (System.nanoTime() - _startNanos) / 1e9);
+        return String.format("played %d games (%.0f records/s), wrote %d"
+                + " records (%.0f/s, %.1f MB gzipped), queue %d/%d",
+                _games.get(), _produced.get() / seconds, _written.get(),
+                _written.get() / seconds, _bytes.get() / 1e6,
+                _full.size(), _full.size() + _full.remainingCapacity());
+    }
+
+    /** Returns the number of games that have been played. */
+    long played() {
+        return _games.get();
+    }
+
+    /** Returns the number of records that have been written. */
+    long written() {
+        return _written.get();
+    }
+
+    /** Body of each producer: plays games until game GAMES. */
+    private void produce(long games) {
+        try {
+            ByteBuffer staging = ByteBuffer.allocate(
+                    Tournament.MAX_PLIES * RECORD_SIZE);
+            Block block = _free.take();
+            for (long seed = nextSeed(); seed < games && _failure == null;
+                 seed = nextSeed()) {
+                staging.clear();
+                play(seed, staging);
+                staging.flip();
+                if (block.buf.remaining() < staging.remaining()) {
+                    _full.put(block);
+                    block = _free.take();
+                }
+                block.buf.put(staging);
+                block.seeds[block.numSeeds] = seed;
+                block.numSeeds += 1;
+                _produced.addAndGet(staging.limit() / RECORD_SIZE);
+                _games.incrementAndGet();
+            }
+            _full.put(block);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            _failure = e;
+        }
+    }
+
+    /** Returns the seed of the next game to play, skipping games that
+     * are already in a completed chunk. */
+    private long nextSeed() {
+        long seed = _nextSeed.getAndIncrement();
+        while (Arrays.binarySearch(_skip, seed) >= 0) {
+            seed = _nextSeed.getAndIncrement();
+        }
+        return seed;
+    }
+
+    /** Plays the game for SEED between greedy bots (See
+     * Tournament.greedy),
+     * putting its records into STAGING. */
+    private static void play(long seed, ByteBuffer staging) {
+        int winner = Tournament.play(BOTS, seed, (game, mover, move) -> {
+            int start = staging.position();
+            FeatureEncoder.encode(game, staging);
+            staging.putLong(move);
+            staging.put((byte) 0);
+            staging.put((byte) mover);
+            staging.putShort((short) 0);
+            staging.putInt(0);
+            assert staging.position() == start + RECORD_SIZE;
+        });
+        for (int at = 0; at < staging.position(); at += RECORD_SIZE) {
+            int mover = staging.get(at + OUTCOME + 1);
+            staging.put(at + OUTCOME, (byte) ((winner < 0) ? 0
+                    : (mover == winner) ? 1 : -1));
+        }
+    }
+
+    /** Body of the writer: gzips blocks into chunks until POISON. If
+     * writing fails, keeps taking blocks, without writing them, so that
+     * the producers can stop. */
+    private void write() {
+        OutputStream out = null;
+        long records = 0;
+        ArrayList<Long> seeds = new ArrayList<>();
+        try {
+            while (true) {
+                Block block = _full.take();
+                if (block == POISON) {
+                    break;
+                }
+                try {
+                    if (_failure == null) {
+                        if (out == null) {
+                            out = new GZIPOutputStream(
+                                    new BufferedOutputStream(
+                                        new CountingStream(
+                                            Files.newOutputStream(
+                                                chunk(_nextChunk, true)))));
+                        }
+                        int size = block.buf.position();
+                        out.write(block.buf.array(), 0, size);
+                        records += size / RECORD_SIZE;
+                        _written.addAndGet(size / RECORD_SIZE);
+                        for (int i = 0; i < block.numSeeds; i += 1) {
+                            seeds.add(block.seeds[i]);
+                        }
+                        if (records >= _chunkRecords) {
+                            finishChunk(out, seeds);
+                            out = null;
+                            records = 0;
+                            seeds.clear();
+                        }
+                    }
+                } catch (IOException e) {
+                    _failure = new UncheckedIOException(e);
+                }
+                block.buf.clear();
+                block.numSeeds = 0;
+                _free.put(block);
+            }
+            if (out != null && _failure == null) {
+                finishChunk(out, seeds);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            _failure = new UncheckedIOException(e);
+        }
+    }
+
+    /** Closes OUT, the current chunk, which holds the games SEEDS,
+     * and makes it part of the output. */
+    private void finishChunk(OutputStream out, ArrayList<Long> seeds)
+            throws IOException {
+        out.close();
+        Files.move(chunk(_nextChunk, true), chunk(_nextChunk, false),
+                StandardCopyOption.ATOMIC_MOVE);
+        _nextChunk += 1;
+        _done.addAll(seeds);
+        while (_done.remove(_doneSeed)) {
+            _doneSeed += 1;
+        }
+        StringBuilder line = new StringBuilder(HEADER);
+        line.append('\n').append(_nextChunk).append(' ').append(_doneSeed);
+        for (long seed : _done) {
+            line.append(' ').append(seed);
+        }
+        Path tmp = _dir.resolve(PROGRESS + ".tmp");
+        Files.write(tmp, (line + "\n").getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, _dir.resolve(PROGRESS),
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Returns the file for chunk N, or the file it is written to
+     * before it is complete if TMP. */
+    Path chunk(int n, boolean tmp) {
+        return _dir.resolve(String.format("chunk-%06d.gz%s", n,
+                tmp ? ".tmp" : ""));
+    }
+
+    /** Plays games into a directory, printing progress every second.
+     * Usage: java SelfPlay DIR GAMES [PRODUCERS] */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: java SelfPlay DIR GAMES [PRODUCERS]");
+            System.exit(1);
+        }
+        int producers = (args.length > 2) ? Integer.parseInt(args[2])
+                : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        SelfPlay pipeline = new SelfPlay(Path.of(args[0]), producers, 16,
+                1 << 20);
+        Thread reporter = new Thread(() -> {
+            try {
+                while (true) {
+                    Thread.sleep(1000);
+                    System.out.println(pipeline.stats());
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        });
+        reporter.setDaemon(true);
+        reporter.start();
+        pipeline.run(Long.parseLong(args[1]));
+        reporter.interrupt();
+        System.out.println(pipeline.stats());
+    }
+
+    /** A reusable batch of whole games' records. */
+    private static final class Block {
+        /** The records. */
+        private final ByteBuffer buf = ByteBuffer.allocate(
+                BLOCK_RECORDS * RECORD_SIZE);
+
+        /** Seeds of the games in buf, the first numSeeds of them. Every
+         * game has at least one record. */
+        private final long[] seeds = new long[BLOCK_RECORDS];
+
+        /** Number of games in buf. */
+        private int numSeeds;
+    }
+
+    /** Counts the bytes going through it into _bytes. */
+    private final class CountingStream extends OutputStream {
+        /** Counts the bytes written to OUT. */
+        CountingStream(OutputStream out) {
+            _out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            _out.write(b);
+            _bytes.incrementAndGet();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            _out.write(b, off, len);
+            _bytes.addAndGet(len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            _out.close();
+        }
+
+        /** Where bytes go. */
+        private final OutputStream _out;
+    }
+
+    /** Offset of the outcome in a record. */
+    static final int OUTCOME = FeatureEncoder.RECORD_SIZE + 8;
+
+    /** Bytes in each record. */
+    static final int RECORD_SIZE = OUTCOME + 8;
+
+    /** Name of the file that says where to carry on from. Its first
+     * line is HEADER. Its second is the next chunk number, the first
+     * game that isn't in a completed chunk, and every later game that
+     * is. */
+    static final String PROGRESS = "progress";
+
+    /** The bots in every seat, as a config (See Coordinator). */
+    static final String CONFIG = "greedy,greedy,greedy,greedy";
+
+    /** Version of the games and records written. I bump it whenever a
+     * seed starts giving a different game or records change shape, so
+     * that a directory is never resumed with games of two kinds. */
+    static final int VERSION = 2;
+
+    /** First line of the progress file, naming everything a resumed
+     * pipeline has to agree on. */
+    static final String HEADER = "selfplay " + VERSION + " " + CONFIG
+        + " " + RECORD_SIZE;
+
+    /** Records per block, enough for the longest game. */
+    private static final int BLOCK_RECORDS = 2 * Tournament.MAX_PLIES;
+
+    /** The bots in every seat. */
+    private static final Tournament.Bot[] BOTS = Coordinator.bots(CONFIG);
+
+    /** Put on the queue after the last block. */
+    private static final Block POISON = new Block();
+
+    /** Directory the chunks go in. */
+    private final Path _dir;
+
+    /** Number of producer threads. */
+    private final int _producers;
+
+    /** Records in a chunk before it is finished. */
+    private final int _chunkRecords;
+
+    /** Blocks waiting for the writer. */
+    private final ArrayBlockingQueue<Block> _full;
+
+    /** Blocks waiting for a producer. */
+    private final ArrayBlockingQueue<Block> _free;
+
+    /** Seed of the next game to play. */
+    private final AtomicLong _nextSeed = new AtomicLong();
+
+    /** Number of the next chunk. */
+    private int _nextChunk;
+
+    /** The first seed that isn't in a completed chunk. */
+    private long _doneSeed;
+
+    /** Seeds above _doneSeed that are in a completed chunk. Only the
+     * writer touches this. */
+    private final TreeSet<Long> _done = new TreeSet<>();
+
+    /** Seeds above _doneSeed that were in a completed chunk when I was
+     * created, in order, for producers to skip. */
+    private final long[] _skip;
+
+    /** Games played, records played and written, and gzipped bytes
+     * written, since run started. */
+    private final AtomicLong _games = new AtomicLong(),
+            _produced = new AtomicLong(), _written = new AtomicLong(),
+            _bytes = new AtomicLong();
+
+    /** When run started. */
+    private long _startNanos = System.nanoTime();
+
+    /** What went wrong in a producer or the writer, if anything. */
+    private volatile RuntimeException _failure;
+
+}
@@ -0,0 +1,114 @@
+import org.junit.Test;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/** Set of tests for the self-play pipeline.
+ * @author John Angeles
+ */
+public class SelfPlayTest {
+
+    /** Returns every record in the completed chunks in DIR, in chunk
+     * order. */
+    private static byte[] records(Path dir) throws IOException {
+        byte[] all = new byte[0];
+        try (Stream<Path> files = Files.list(dir)) {
+            Path[] chunks = files.filter(
+                (p) -> p.getFileName().toString().endsWith(".gz"))
+                .sorted(Comparator.naturalOrder()).toArray(Path[]::new);
+            for (Path chunk : chunks) {
+                try (InputStream in = new GZIPInputStream(
+                        Files.newInputStream(chunk))) {
+                    byte[] bytes = in.readAllBytes();
+                    byte[] more = new byte[all.length + bytes.length];
+                    System.arraycopy(all, 0, more, 0, all.length);
+                    System.arraycopy(bytes, 0, more, all.length,
+                            bytes.length);
+                    all = more;
+                }
+            }
+        }
+        return all;
+    }
+
+    /** Deletes DIR and everything in it. */
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toArray(Path[]::new)) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void pipelineTest() throws Exception {
+        Path dir = Files.createTempDirectory("selfplay");
+        SelfPlay pipeline = new SelfPlay(dir, 3, 2, 500);
+        pipeline.run(12);
+        byte[] records = records(dir);
+        assertEquals(0, records.length % SelfPlay.RECORD_SIZE);
+        assertEquals(pipeline.written() * SelfPlay.RECORD_SIZE,
+                records.length);
+        assertTrue(Files.exists(pipeline.chunk(1, false)));
+        String[] lines = Files.readString(dir.resolve(SelfPlay.PROGRESS))
+                .split("\n");
+        assertEquals(SelfPlay.HEADER, lines[0]);
+        assertEquals("12", lines[1].split(" ")[1]);
+        for (int at = 0; at < records.length; at += SelfPlay.RECORD_SIZE) {
+            int outcome = records[at + SelfPlay.OUTCOME];
+            assertTrue(-1 <= outcome && outcome <= 1);
+        }
+        delete(dir);
+    }
+
+    @Test
+    public void restartTest() throws Exception {
+        Path once = Files.createTempDirectory("selfplay");
+        new SelfPlay(once, 2, 2, 300).run(10);
+        Path twice = Files.createTempDirectory("selfplay");
+        new SelfPlay(twice, 2, 2, 300).run(6);
+        Files.write(twice.resolve("chunk-000099.gz.tmp"), new byte[3]);
+        SelfPlay resumed = new SelfPlay(twice, 2, 2, 300);
+        assertFalse(Files.exists(twice.resolve("chunk-000099.gz.tmp")));
+        resumed.run(10);
+        assertEquals(records(once).length, records(twice).length);
+        delete(once);
+        delete(twice);
+    }
+
+    @Test
+    public void inFlightTest() throws Exception {
+        Path dir = Files.createTempDirectory("selfplay");
+        Files.writeString(dir.resolve(SelfPlay.PROGRESS),
+                SelfPlay.HEADER + "\n1 3 5 6\n");
+        SelfPlay resumed = new SelfPlay(dir, 2, 2, 300);
+        resumed.run(9);
+        assertEquals(4, resumed.played());
+        String[] progress = Files.readString(dir.resolve(
+                SelfPlay.PROGRESS)).split("\n")[1].split(" ");
+        assertEquals(2, progress.length);
+        assertEquals("9", progress[1]);
+        delete(dir);
+    }
+
+    @Test
+    public void headerTest() throws Exception {
+        Path dir = Files.createTempDirectory("selfplay");
+        Files.writeString(dir.resolve(SelfPlay.PROGRESS), "1 3 5 6\n");
+        try {
+            new SelfPlay(dir, 2, 2, 300);
+            fail("Resumed progress without a header");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains(SelfPlay.HEADER));
+        }
+        delete(dir);
+    }
+
+}
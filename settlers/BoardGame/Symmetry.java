@@ -0,0 +1,158 @@
+/** A class that you cannot instantiate. It lists the 12 ways the
+ * board can be turned over onto itself, and puts positions into one
+ * standard orientation.
+ *
+ * The board looks the same after turning it a sixth of the way around
+ * its center, any number of times, and after flipping it left to right,
+ * so every layout or position has up to 12 copies that are really the
+ * same game. Transform T, from 0 to COUNT - 1, flips the board if T is
+ * 6 or more, and then turns it T % 6 sixths clockwise. For each
+ * transform I keep where it sends every hex, vertex and edge (See
+ * Topology), worked out once from the axial coordinates on Board.
+ *
+ * The canonical form of a position is the one of its 12 copies whose
+ * board compares least (See CompactGame.compareBoard). Two positions
+ * that are the same game turned around have the same canonical form,
+ * so anything that stores results for layouts or positions can store
+ * them for canonical forms only, and keep up to 12 times fewer.
+ *
+ * Hexes are indexed from 0 to 18 in these tables. Do not modify them.
+ * @author John Angeles
+ */
+final class Symmetry {
+
+    /** You can't create a symmetry; use the static methods instead. */
+    private Symmetry() { }
+
+    /** Returns where transform T sends HEX. */
+    static int hex(int t, int hex) {
+        return HEXES[t][hex];
+    }
+
+    /** Returns where transform T sends VERTEX. */
+    static int vertex(int t, int vertex) {
+        return VERTICES[t][vertex];
+    }
+
+    /** Returns where transform T sends EDGE. */
+    static int edge(int t, int edge) {
+        return EDGES[t][edge];
+    }
+
+    /** Returns the transform that undoes T. Turns are undone by turning
+     * the other way, and every flip undoes itself. */
+    static int inverse(int t) {
+        return (t < 6) ? (6 - t) % 6 : t;
+    }
+
+    /** Returns a copy of GAME moved by transform T. */
+    static CompactGame apply(int t, CompactGame game) {
+        CompactGame answer = new CompactGame();
+        apply(t, game, answer);
+        return answer;
+    }
+
+    /** Makes OUT a copy of GAME moved by transform T. OUT must not be
+     * GAME. */
+    static void apply(int t, CompactGame game, CompactGame out) {
+        game.permuteInto(out, HEXES[t], VERTICES[t], EDGES[t]);
+    }
+
+    /** Returns the transform that takes GAME to its canonical form. If
+     * several do, as when GAME is symmetric, returns the smallest. */
+    static int canonical(CompactGame game) {
+        CompactGame best = game.copy(), image = new CompactGame();
+        int answer = IDENTITY;
+        for (int t = 1; t < COUNT; t += 1) {
+            apply(t, game, image);
+            if (image.compareBoard(best) < 0) {
+                CompactGame swap = best;
+                best = image;
+                image = swap;
+                answer = t;
+            }
+        }
+        return answer;
+    }
+
+    /** Returns the canonical form of GAME. Hands, unplaced pieces and
+     * the turn are kept. */
+    static CompactGame canonicalize(CompactGame game) {
+        return apply(canonical(game), game);
+    }
+
+    /** Number of transforms. */
+    static final int COUNT = 12;
+
+    /** The transform that leaves everything where it is. */
+    static final int IDENTITY = 0;
+
+    /** Where each transform sends each hex, vertex and edge. */
+    private static final int[][] HEXES = new int[COUNT][19],
+            VERTICES = new int[COUNT][Topology.NUM_VERTICES],
+            EDGES = new int[COUNT][Topology.NUM_EDGES];
+
+    /** Sets up HEXES, VERTICES and EDGES.
+     *
+     * Any axial coordinate is a sum of steps toward the northeast and
+     * the east neighbors of the center. A clockwise turn makes those
+     * steps east and southeast, and a flip makes them northwest and
+     * west, so a coordinate is moved by moving its steps. On a hex, a
+     * turn moves point or side i to i + 1, and a flip moves point i to
+     * 6 - i and side i to 5 - i. (See Hex.hasBuilding and Hex.hasRoad)
+     */
+    static {
+        Hex center = Board.get(0, 0);
+        int[][] steps = new int[6][];
+        for (int side = 0; side < 6; side += 1) {
+            steps[side] = axial(center.adjHex(side));
+        }
+        int[] ne = steps[0], e = steps[1];
+        int det = ne[0] * e[1] - ne[1] * e[0];
+
+        for (int t = 0; t < COUNT; t += 1) {
+            boolean flip = t >= 6;
+            int turns = t % 6;
+            int[] first = flip ? steps[(5 + turns) % 6] : steps[turns];
+            int[] second = flip ? steps[(4 + turns) % 6]
+                    : steps[(1 + turns) % 6];
+            for (int q = -2; q <= 2; q += 1) {
+                for (int r = -2; r <= 2; r += 1) {
+                    Hex from = Board.get(q, r);
+                    if (from == null) {
+                        continue;
+                    }
+                    int a = (q * e[1] - r * e[0]) / det;
+                    int b = (ne[0] * r - ne[1] * q) / det;
+                    Hex to = Board.get(a * first[0] + b * second[0],
+                            a * first[1] + b * second[1]);
+                    HEXES[t][from.id() - 1] = to.id() - 1;
+                }
+            }
+            for (int hex = 0; hex < 19; hex += 1) {
+                int image = HEXES[t][hex];
+                for (int i = 0; i < 6; i += 1) {
+                    int posn = ((flip ? 6 - i : i) + turns) % 6;
+                    int side = ((flip ? 5 - i : i) + turns) % 6;
+                    VERTICES[t][Topology.vertex(hex, i)]
+                            = Topology.vertex(image, posn);
+                    EDGES[t][Topology.edge(hex, i)]
+                            = Topology.edge(image, side);
+                }
+            }
+        }
+    }
+
+    /** Returns the axial coordinates {q, r} of HEX on Board. */
+    private static int[] axial(Hex hex) {
+        for (int q = -2; q <= 2; q += 1) {
+            for (int r = -2; r <= 2; r += 1) {
+                if (Board.get(q, r) == hex) {
+                    return new int[] {q, r};
+                }
+            }
+        }
+        throw new IllegalArgumentException("Hex is not on the board!");
+    }
+
+}
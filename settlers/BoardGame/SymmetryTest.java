@@ -0,0 +1,110 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Set of tests for the symmetries of the board.
+ * @author John Angeles
+ */
+public class SymmetryTest {
+
+    @Test
+    public void permutationTest() {
+        for (int t = 0; t < Symmetry.COUNT; t += 1) {
+            boolean[] hexes = new boolean[19];
+            for (int hex = 0; hex < 19; hex += 1) {
+                hexes[Symmetry.hex(t, hex)] = true;
+            }
+            for (boolean seen : hexes) {
+                assertTrue(seen);
+            }
+            assertEquals(9, Symmetry.hex(t, 9));
+            boolean[] vertices = new boolean[Topology.NUM_VERTICES];
+            for (int v = 0; v < Topology.NUM_VERTICES; v += 1) {
+                vertices[Symmetry.vertex(t, v)] = true;
+            }
+            for (boolean seen : vertices) {
+                assertTrue(seen);
+            }
+        }
+    }
+
+    @Test
+    public void adjacencyTest() {
+        for (int t = 0; t < Symmetry.COUNT; t += 1) {
+            for (int e = 0; e < Topology.NUM_EDGES; e += 1) {
+                int[] ends = Topology.EDGE_VERTICES[e];
+                int[] images = Topology.EDGE_VERTICES[Symmetry.edge(t, e)];
+                int a = Symmetry.vertex(t, ends[0]);
+                int b = Symmetry.vertex(t, ends[1]);
+                assertTrue(a == images[0] && b == images[1]
+                        || a == images[1] && b == images[0]);
+            }
+            for (int hex = 0; hex < 19; hex += 1) {
+                int count = 0;
+                for (int side = 0; side < 6; side += 1) {
+                    int other = Topology.neighbor(hex, side);
+                    if (other >= 0) {
+                        count += 1;
+                        assertTrue(isNeighbor(Symmetry.hex(t, hex),
+                                Symmetry.hex(t, other)));
+                    }
+                }
+                int image = Symmetry.hex(t, hex);
+                int imageCount = 0;
+                for (int side = 0; side < 6; side += 1) {
+                    imageCount += (Topology.neighbor(image, side) >= 0)
+                            ? 1 : 0;
+                }
+                assertEquals(count, imageCount);
+            }
+        }
+    }
+
+    @Test
+    public void inverseTest() {
+        CompactGame game = Perft.opening(4);
+        for (int t = 0; t < Symmetry.COUNT; t += 1) {
+            CompactGame back = Symmetry.apply(Symmetry.inverse(t),
+                    Symmetry.apply(t, game));
+            assertEquals(0, back.compareBoard(game));
+            assertEquals(game.hand(2), back.hand(2));
+        }
+        assertTrue(Symmetry.apply(1, game).compareBoard(game) != 0);
+        assertTrue(Symmetry.apply(6, game).compareBoard(game) != 0);
+    }
+
+    @Test
+    public void canonicalTest() {
+        CompactGame game = Perft.opening(9);
+        CompactGame canonical = Symmetry.canonicalize(game);
+        for (int t = 0; t < Symmetry.COUNT; t += 1) {
+            CompactGame image = Symmetry.apply(t, game);
+            assertEquals(0, Symmetry.canonicalize(image)
+                    .compareBoard(canonical));
+            assertTrue(canonical.compareBoard(image) <= 0);
+        }
+        assertEquals(0, Symmetry.apply(Symmetry.canonical(game), game)
+                .compareBoard(canonical));
+    }
+
+    @Test
+    public void legalityTest() {
+        CompactGame game = Perft.opening(6);
+        game.give(0, Hand.pack(3, 3, 2, 3, 1));
+        long count = new Perft().count(game, 2);
+        for (int t = 0; t < Symmetry.COUNT; t += 1) {
+            assertEquals(count,
+                    new Perft().count(Symmetry.apply(t, game), 2));
+        }
+    }
+
+    /** Returns true if hexes A and B are next to each other. */
+    private static boolean isNeighbor(int a, int b) {
+        for (int side = 0; side < 6; side += 1) {
+            if (Topology.neighbor(a, side) == b) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,329 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** A class that you cannot instantiate. It holds every way the number
+ * tokens can be laid out on the board.
+ *
+ * Board lays the tokens in a spiral: the center hex first, then the
+ * ring around it from one of its 6 hexes going one of 2 ways, then the
+ * outer ring going the same way, skipping the desert. So where the
+ * tokens go depends only on where the desert is, which way the spiral
+ * turns and where it starts: at most 19 * 2 * 6 = 228 layouts. I work
+ * them all out once, and a layout is then just a row of this table.
+ *
+ * A whole board is a token layout plus an arrangement of the other 18
+ * resources on the hexes that aren't the desert. histogram walks those
+ * boards, one token layout per task, so that the whole space can be
+ * scored for fairness on as many threads as there are.
+ *
+ * Hexes are indexed from 0 to 18 in these tables. Do not modify them.
+ * @author John Angeles
+ */
+final class TokenLayouts {
+
+    /** You can't create a table; use the static methods instead. */
+    private TokenLayouts() { }
+
+    /** Scores a board for histogram. */
+    interface Fairness {
+        /** Returns the score, from 0 up to the number of buckets, of
+         * the board with token layout LAYOUT and RESOURCES[hex] as the
+         * resource index of each hex. */
+        int score(int layout, byte[] resources);
+    }
+
+    /** Returns the layout with the desert on DESERT, where the spiral
+     * turns CLOCKWISE or not, starting from the hex START steps
+     * clockwise from the north of the middle ring. */
+    static int index(int desert, boolean clockwise, int start) {
+        return (desert * 2 + (clockwise ? 1 : 0)) * 6 + start;
+    }
+
+    /** Returns the hex of the desert in LAYOUT. */
+    static int desert(int layout) {
+        return layout / 12;
+    }
+
+    /** Returns the number on HEX in LAYOUT, or 0 for the desert. */
+    static int number(int layout, int hex) {
+        return NUMBERS[layout * 19 + hex];
+    }
+
+    /** Returns the number of layouts that differ from all the others. */
+    static int distinct() {
+        return DISTINCT.length;
+    }
+
+    /** Returns the Ith layout that differs from all the others. */
+    static int distinct(int i) {
+        return DISTINCT[i];
+    }
+
+    /** Puts the first arrangement of resources for LAYOUT in
+     * RESOURCES: the desert on its hex, and the others in order of
+     * their indices. */
+    static void firstArrangement(int layout, byte[] resources) {
+        int desert = desert(layout);
+        for (int hex = 0, i = 0; hex < 19; hex += 1) {
+            if (hex == desert) {
+                resources[hex] = DESERT;
+            } else {
+                resources[hex] = SORTED[i];
+                i += 1;
+            }
+        }
+    }
+
+    /** Rearranges RESOURCES into the next arrangement after it, in
+     * order, leaving the desert where it is. Returns false, leaving
+     * RESOURCES as the first arrangement, if it was the last one. */
+    static boolean nextArrangement(byte[] resources) {
+        int i = previous(resources, 19);
+        int j = previous(resources, i);
+        while (j >= 0 && resources[j] >= resources[i]) {
+            i = j;
+            j = previous(resources, j);
+        }
+        if (j < 0) {
+            reverse(resources, 0);
+            return false;
+        }
+        int k = previous(resources, 19);
+        while (resources[k] <= resources[j]) {
+            k = previous(resources, k);
+        }
+        byte swap = resources[j];
+        resources[j] = resources[k];
+        resources[k] = swap;
+        reverse(resources, j + 1);
+        return true;
+    }
+
+    /** Returns the last hex before HEX that isn't the desert in
+     * RESOURCES, or -1. */
+    private static int previous(byte[] resources, int hex) {
+        do {
+            hex -= 1;
+        } while (hex >= 0 && resources[hex] == DESERT);
+        return hex;
+    }
+
+    /** Reverses the resources from hex FROM on, leaving the desert
+     * where it is. */
+    private static void reverse(byte[] resources, int from) {
+        int i = from - 1, j = 19;
+        while (true) {
+            do {
+                i += 1;
+            } while (i < 19 && resources[i] == DESERT);
+            j = previous(resources, j);
+            if (i >= j) {
+                return;
+            }
+            byte swap = resources[i];
+            resources[i] = resources[j];
+            resources[j] = swap;
+        }
+    }
+
+    /** Returns how many boards FAIRNESS gives each score, from 0 up to
+     * BUCKETS, over every distinct token layout and its first
+     * PERLAYOUT arrangements of resources (Long.MAX_VALUE for all of
+     * them), using THREADS threads. The answer doesn't depend on
+     * THREADS. */
+    static long[] histogram(Fairness fairness, int buckets, long perLayout,
+                            int threads) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            ArrayList<Future<long[]>> parts = new ArrayList<>();
+            for (int i = 0; i < DISTINCT.length; i += 1) {
+                int layout = DISTINCT[i];
+                parts.add(pool.submit(() -> {
+                    long[] counts = new long[buckets];
+                    byte[] resources = new byte[19];
+                    firstArrangement(layout, resources);
+                    long n = 0;
+                    do {
+                        counts[fairness.score(layout, resources)] += 1;
+                        n += 1;
+                    } while (n < perLayout && nextArrangement(resources));
+                    return counts;
+                }));
+            }
+            long[] total = new long[buckets];
+            for (Future<long[]> part : parts) {
+                long[] counts = part.get();
+                for (int b = 0; b < buckets; b += 1) {
+                    total[b] += counts[b];
+                }
+            }
+            return total;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Returns how many more pips (See FeatureEncoder.pips) the richest
+     * resource has than the poorest on the board with token layout
+     * LAYOUT and RESOURCES. A fair board scores low. */
+    static int pipSpread(int layout, byte[] resources) {
+        int[] pips = new int[Hand.NUM_RESOURCES];
+        for (int hex = 0; hex < 19; hex += 1) {
+            if (resources[hex] != DESERT) {
+                pips[resources[hex]] +=
+                        FeatureEncoder.pips(number(layout, hex));
+            }
+        }
+        int most = 0, least = Integer.MAX_VALUE;
+        for (int p : pips) {
+            most = Math.max(most, p);
+            least = Math.min(least, p);
+        }
+        return most - least;
+    }
+
+    /** Prints how often each pip spread (See pipSpread) comes up over
+     * the first PERLAYOUT arrangements of every token layout.
+     * Usage: java TokenLayouts [PERLAYOUT [THREADS]] */
+    public static void main(String[] args) throws Exception {
+        long perLayout = (args.length > 0) ? Long.parseLong(args[0])
+                : 1_000_000;
+        int threads = (args.length > 1) ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        long start = System.nanoTime();
+        long[] counts = histogram(TokenLayouts::pipSpread, 64, perLayout,
+                threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long total = 0;
+        for (int spread = 0; spread < counts.length; spread += 1) {
+            if (counts[spread] > 0) {
+                System.out.printf("%2d pips: %d%n", spread, counts[spread]);
+                total += counts[spread];
+            }
+        }
+        System.out.printf("%d distinct token layouts, %d boards in %.2f s"
+                + " (%.0f boards/s)%n", DISTINCT.length, total, seconds,
+                total / seconds);
+    }
+
+    /** Number of layouts in the table. */
+    static final int COUNT = 19 * 2 * 6;
+
+    /** The tokens. There are 18 tokens listed alphabetically
+     * in increasing order. For example, index 0 gives
+     * the token A.
+     * By indexing you return the unique probability number
+     * associated with the token.
+     * In the following list, I have the index to the
+     * very left column, followed by the proper probability
+     * numbers in the very right.
+     *
+     * Credit: https://boardgames.stackexchange.com/questions
+     * /2740/distribution-of-tokens-in-standard-4-player-catan
+     *
+     * 00, A = 5
+     * 01, B = 2
+     * 02, C = 6
+     * 03, D = 3
+     * 04, E = 8
+     * 05, F = 10
+     * 06, G = 9
+     * 07, H = 12
+     * 08, I = 11
+     * 09, J = 4
+     * 10, K = 8
+     * 11, L = 10
+     * 12, M = 9
+     * 13, N = 4
+     * 14, O = 5
+     * 15, P = 6
+     * 16, Q = 3
+     * 17, R = 11.
+     * They are laid from the last to the first. */
+    private static final int[] TOKENS = {5, 2, 6, 3, 8, 10, 9, 12, 11,
+        4, 8, 10, 9, 4, 5, 6, 3, 11};
+
+    /** Resource index of the desert. */
+    private static final byte DESERT = (byte) Resource.desert().index();
+
+    /** Resource indices of every hex but the desert, in order. */
+    private static final byte[] SORTED = new byte[18];
+
+    /** The number on each hex of each layout, at layout * 19 + hex. */
+    private static final byte[] NUMBERS = new byte[COUNT * 19];
+
+    /** Layouts that differ from all the layouts before them. */
+    private static final int[] DISTINCT;
+
+    /** Sets up SORTED, NUMBERS and DISTINCT, laying the tokens the way
+     * Board always has. The middle ring starts north of the center and
+     * the outer ring north of that, and both go clockwise. */
+    static {
+        Resource[] resources = {Resource.wood(), Resource.wood(),
+            Resource.wood(), Resource.wood(), Resource.brick(),
+            Resource.brick(), Resource.brick(), Resource.wheat(),
+            Resource.wheat(), Resource.wheat(), Resource.wheat(),
+            Resource.ore(), Resource.ore(), Resource.ore(),
+            Resource.sheep(), Resource.sheep(), Resource.sheep(),
+            Resource.sheep()};
+        for (int i = 0; i < 18; i += 1) {
+            SORTED[i] = (byte) resources[i].index();
+        }
+        Arrays.sort(SORTED);
+
+        int[][] middle = {{0, -1}, {1, -1}, {1, 0}, {0, 1}, {-1, 1},
+            {-1, 0}};
+        int[][] outer = {{0, -2}, {1, -2}, {2, -2}, {2, -1}, {2, 0},
+            {1, 1}, {0, 2}, {-1, 2}, {-2, 2}, {-2, 1}, {-2, 0}, {-1, -1}};
+        int[] ring = new int[19];
+        ring[0] = Board.get(0, 0).id() - 1;
+        for (int i = 0; i < 6; i += 1) {
+            ring[1 + i] = Board.get(middle[i][0], middle[i][1]).id() - 1;
+        }
+        for (int i = 0; i < 12; i += 1) {
+            ring[7 + i] = Board.get(outer[i][0], outer[i][1]).id() - 1;
+        }
+
+        int[] distinct = new int[COUNT];
+        int found = 0;
+        for (int layout = 0; layout < COUNT; layout += 1) {
+            int desert = desert(layout);
+            boolean clockwise = layout / 6 % 2 == 1;
+            int start = layout % 6;
+            int step = clockwise ? 1 : -1;
+            int outerStart = clockwise ? (2 * start + 11) % 12
+                    : (2 * start + 1) % 12;
+            int token = TOKENS.length - 1;
+            for (int i = 0; i < 19; i += 1) {
+                int hex;
+                if (i == 0) {
+                    hex = ring[0];
+                } else if (i < 7) {
+                    hex = ring[1 + Math.floorMod(start + step * (i - 1), 6)];
+                } else {
+                    hex = ring[7 + Math.floorMod(outerStart
+                            + step * (i - 7), 12)];
+                }
+                if (hex != desert) {
+                    NUMBERS[layout * 19 + hex] = (byte) TOKENS[token];
+                    token -= 1;
+                }
+            }
+            boolean seen = false;
+            for (int j = 0; j < found && !seen; j += 1) {
+                seen = Arrays.equals(NUMBERS, layout * 19,
+                        layout * 19 + 19, NUMBERS, distinct[j] * 19,
+                        distinct[j] * 19 + 19);
+            }
+            if (!seen) {
+                distinct[found] = layout;
+                found += 1;
+            }
+        }
+        DISTINCT = Arrays.copyOf(distinct, found);
+    }
+
+}
@@ -0,0 +1,102 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+/** Set of tests for the table of token layouts.
+ * @author John Angeles
+ */
+public class TokenLayoutsTest {
+
+    @Test
+    public void tokensTest() {
+        int[] expected = {2, 3, 3, 4, 4, 5, 5, 6, 6, 8, 8, 9, 9, 10, 10,
+            11, 11, 12};
+        for (int layout = 0; layout < TokenLayouts.COUNT; layout += 1) {
+            int desert = TokenLayouts.desert(layout);
+            assertEquals(0, TokenLayouts.number(layout, desert));
+            int[] numbers = new int[18];
+            for (int hex = 0, i = 0; hex < 19; hex += 1) {
+                if (hex != desert) {
+                    numbers[i] = TokenLayouts.number(layout, hex);
+                    i += 1;
+                }
+            }
+            Arrays.sort(numbers);
+            assertArrayEquals(expected, numbers);
+        }
+        assertTrue(TokenLayouts.distinct() <= TokenLayouts.COUNT);
+    }
+
+    @Test
+    public void boardTest() {
+        for (long seed = 0; seed < 20; seed += 1) {
+            Board.reset(seed);
+            int desert = -1;
+            for (int hex = 0; hex < 19; hex += 1) {
+                if (Board.get(hex + 1).resource() == Resource.desert()) {
+                    desert = hex;
+                }
+            }
+            boolean found = false;
+            for (int layout = desert * 12; layout < desert * 12 + 12;
+                 layout += 1) {
+                boolean same = true;
+                for (int hex = 0; hex < 19; hex += 1) {
+                    same &= Board.get(hex + 1).number()
+                            == TokenLayouts.number(layout, hex);
+                }
+                found |= same;
+            }
+            assertTrue(found);
+        }
+        Board.reset();
+    }
+
+    @Test
+    public void arrangementTest() {
+        byte[] resources = new byte[19];
+        int layout = TokenLayouts.index(4, true, 2);
+        TokenLayouts.firstArrangement(layout, resources);
+        byte[] first = resources.clone();
+        byte[] last = resources.clone();
+        for (int i = 0; i < 1000; i += 1) {
+            assertTrue(TokenLayouts.nextArrangement(resources));
+            assertTrue(Arrays.compare(last, resources) < 0);
+            assertEquals(Resource.desert().index(), resources[4]);
+            byte[] sorted = resources.clone();
+            Arrays.sort(sorted);
+            byte[] sortedFirst = first.clone();
+            Arrays.sort(sortedFirst);
+            assertArrayEquals(sortedFirst, sorted);
+            last = resources.clone();
+        }
+
+        for (int hex = 0, i = 18; hex < 19; hex += 1) {
+            if (hex != 4) {
+                while (first[i] == Resource.desert().index()) {
+                    i -= 1;
+                }
+                resources[hex] = first[i];
+                i -= 1;
+            }
+        }
+        assertFalse(TokenLayouts.nextArrangement(resources));
+        assertArrayEquals(first, resources);
+    }
+
+    @Test
+    public void histogramTest() throws Exception {
+        long[] one = TokenLayouts.histogram(TokenLayouts::pipSpread, 64,
+                50, 1);
+        long[] many = TokenLayouts.histogram(TokenLayouts::pipSpread, 64,
+                50, 4);
+        assertArrayEquals(one, many);
+        long total = 0;
+        for (long count : one) {
+            total += count;
+        }
+        assertEquals(50L * TokenLayouts.distinct(), total);
+    }
+
+}
@@ -0,0 +1,139 @@
+import java.util.Arrays;
+
+/** A class that you cannot instantiate. It numbers every point and
+ * every side on the board once, and says how they connect.
+ *
+ * On the board, a point is shared by up to three hexes and a side by
+ * up to two, so each hex has its own position for the same point.
+ * Here, each of the 54 points is a vertex and each of the 72 sides is
+ * an edge, with one id each. The tables are worked out once from the
+ * hexes' neighbors on Board, and every compact game shares them.
+ * Do not modify them.
+ *
+ * Hexes are indexed from 0 to 18 in these tables.
+ * @author John Angeles
+ */
+final class Topology {
+
+    /** You can't create a topology; use the static tables instead. */
+    private Topology() { }
+
+    /** Returns the vertex at POSN on HEX.
+     * @param hex From 0-18
+     * @param posn (See Hex.hasBuilding)
+     */
+    static int vertex(int hex, int posn) {
+        return VERTEX[hex * 6 + posn];
+    }
+
+    /** Returns the edge at SIDE on HEX.
+     * @param hex From 0-18
+     * @param side (See Hex.hasRoad)
+     */
+    static int edge(int hex, int side) {
+        return EDGE[hex * 6 + side];
+    }
+
+    /** Returns the hex next to SIDE of HEX, or -1 if there is none. */
+    static int neighbor(int hex, int side) {
+        return NEIGHBOR[hex * 6 + side];
+    }
+
+    /** Number of vertices. */
+    static final int NUM_VERTICES = 54;
+
+    /** Number of edges. */
+    static final int NUM_EDGES = 72;
+
+    /** Vertex of each point, indexed by hex * 6 + posn. */
+    static final int[] VERTEX = new int[19 * 6];
+
+    /** Edge of each side, indexed by hex * 6 + side. */
+    static final int[] EDGE = new int[19 * 6];
+
+    /** Hex next to each side, indexed by hex * 6 + side, or -1. */
+    static final int[] NEIGHBOR = new int[19 * 6];
+
+    /** Hexes that touch each vertex. */
+    static final int[][] VERTEX_HEXES = new int[NUM_VERTICES][];
+
+    /** Edges that touch each vertex. */
+    static final int[][] VERTEX_EDGES = new int[NUM_VERTICES][];
+
+    /** Vertices one edge away from each vertex. */
+    static final int[][] VERTEX_NEIGHBORS = new int[NUM_VERTICES][];
+
+    /** The two vertices at the ends of each edge. */
+    static final int[][] EDGE_VERTICES = new int[NUM_EDGES][2];
+
+    /** Sets up the tables from the hexes on Board. */
+    static {
+        Hex[] hexes = Board.hexList();
+        for (int i = 0; i < 19 * 6; i += 1) {
+            VERTEX[i] = -1;
+            EDGE[i] = -1;
+            Hex adj = hexes[i / 6].adjHex(i % 6);
+            NEIGHBOR[i] = (adj == null) ? -1 : adj.id() - 1;
+        }
+
+        int vertices = 0, edges = 0;
+        for (int hex = 0; hex < 19; hex += 1) {
+            for (int posn = 0; posn < 6; posn += 1) {
+                if (VERTEX[hex * 6 + posn] < 0) {
+                    VERTEX[hex * 6 + posn] = vertices;
+                    for (int k = 0; k < 2; k += 1) {
+                        int other = NEIGHBOR[hex * 6
+                                + Hex.ADJACENT_HEXES[posn][k]];
+                        if (other >= 0) {
+                            VERTEX[other * 6
+                                    + Hex.POINTS_ON_OTHER_ADJ_HEXES[posn][k]]
+                                    = vertices;
+                        }
+                    }
+                    vertices += 1;
+                }
+                if (EDGE[hex * 6 + posn] < 0) {
+                    EDGE[hex * 6 + posn] = edges;
+                    int other = NEIGHBOR[hex * 6 + posn];
+                    if (other >= 0) {
+                        EDGE[other * 6 + (posn + 3) % 6] = edges;
+                    }
+                    edges += 1;
+                }
+            }
+        }
+        assert vertices == NUM_VERTICES && edges == NUM_EDGES
+                : "Board has the wrong shape!";
+
+        int[] numHexes = new int[NUM_VERTICES];
+        int[][] hexesOf = new int[NUM_VERTICES][3];
+        for (int i = 0; i < 19 * 6; i += 1) {
+            int v = VERTEX[i];
+            hexesOf[v][numHexes[v]] = i / 6;
+            numHexes[v] += 1;
+            int e = EDGE[i];
+            EDGE_VERTICES[e][0] = v;
+            EDGE_VERTICES[e][1] = VERTEX[(i / 6) * 6 + (i % 6 + 1) % 6];
+        }
+
+        int[] numEdges = new int[NUM_VERTICES];
+        int[][] edgesOf = new int[NUM_VERTICES][3];
+        int[][] neighborsOf = new int[NUM_VERTICES][3];
+        for (int e = 0; e < NUM_EDGES; e += 1) {
+            for (int k = 0; k < 2; k += 1) {
+                int v = EDGE_VERTICES[e][k];
+                edgesOf[v][numEdges[v]] = e;
+                neighborsOf[v][numEdges[v]] = EDGE_VERTICES[e][1 - k];
+                numEdges[v] += 1;
+            }
+        }
+
+        for (int v = 0; v < NUM_VERTICES; v += 1) {
+            VERTEX_HEXES[v] = Arrays.copyOf(hexesOf[v], numHexes[v]);
+            VERTEX_EDGES[v] = Arrays.copyOf(edgesOf[v], numEdges[v]);
+            VERTEX_NEIGHBORS[v]
+                    = Arrays.copyOf(neighborsOf[v], numEdges[v]);
+        }
+    }
+
+}
@@ -0,0 +1,423 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Plays bots against each other and rates them.
+ *
+ * Games are played at tables of four bots. Every table is played four
+ * times on the same board and dice, with the bots moved one seat over
+ * each time, so each bot sits in every seat and plays every color
+ * (player i has Color.get(i)), and no bot gains from moving first. A
+ * round robin plays every table of four different bots, or one table
+ * with bots repeated if there are fewer than four. A Swiss round seats
+ * bots with others of about the same rating.
+ *
+ * Games go onto a work-stealing pool and are played in parallel, but I
+ * take the results in the order the games were scheduled, so the
+ * ratings come out the same no matter how many threads there are.
+ * Ratings are Elo ratings, updated after every game: each pair of
+ * different bots at the table counts as one match, won by whichever
+ * of the two won the game, or drawn if neither did. Once every bot has
+ * played enough and no two bots' confidence intervals overlap, the
+ * order is settled, and I stop early.
+ *
+ * Games are played with CompactGame and the fast move generator (See
+ * Perft), starting from Perft.opening. None of these touch Board or
+ * take Game.BOARD_LOCK, so games on different threads never wait on
+ * each other.
+ * @author John Angeles
+ */
+final class Tournament {
+
+    /** A player. */
+    interface Bot {
+        /** Returns the move to make in GAME, out of the first N of
+         * MOVES (See Perft.moves). Any roll ends the turn, and the dice
+         * are then rolled for me, so every bot gets the same dice.
+         * RANDOM is mine to use. A bot is called from many threads at
+         * once, so it must keep nothing between calls. */
+        long choose(CompactGame game, long[] moves, int n, Random random);
+    }
+
+    /** Watches the moves of a game as play plays it. */
+    interface Watcher {
+        /** Called just before MOVER makes MOVE in GAME. The dice of a
+         * roll are already in MOVE. */
+        void before(CompactGame game, int mover, long move);
+
+        /** Called just after MOVER made MOVE in GAME. */
+        default void after(CompactGame game, int mover, long move) {
+        }
+    }
+
+    /** A bot that builds whatever it can (See greedy). */
+    static final Bot GREEDY = (game, moves, n, random)
+        -> greedy(moves, n, random);
+
+    /** A bot that makes any legal move, all equally likely. */
+    static final Bot RANDOM = (game, moves, n, random)
+        -> moves[random.nextInt(n)];
+
+    /** A bot that never builds or trades. */
+    static final Bot PASSIVE = (game, moves, n, random) -> Perft.ROLL;
+
+    /** Returns the move that a simple greedy bot picks out of the
+     * first N of MOVES: a city if it can, else a settlement, else a
+     * road or a swap half of the time, else it ends its turn. Ties are
+     * broken using RANDOM, which also rolls the dice. */
+    static long greedy(long[] moves, int n, Random random) {
+        for (int kind : PREFERENCES) {
+            if ((kind == Perft.ROAD || kind == Perft.TRADE)
+                    && random.nextBoolean()) {
+                continue;
+            }
+            int count = 0;
+            for (int i = 0; i < n; i += 1) {
+                count += ((moves[i] & 15) == kind) ? 1 : 0;
+            }
+            if (count > 0) {
+                int pick = random.nextInt(count);
+                for (int i = 0; i < n; i += 1) {
+                    if ((moves[i] & 15) == kind && pick-- == 0) {
+                        return moves[i];
+                    }
+                }
+            }
+        }
+        int sum = random.nextInt(6) + random.nextInt(6) + 2;
+        return Perft.ROLL | sum << 4;
+    }
+
+    /** Returns the built in bot called NAME: "greedy", "random" or
+     * "passive". */
+    static Bot named(String name) {
+        switch (name) {
+        case "greedy":
+            return GREEDY;
+        case "random":
+            return RANDOM;
+        case "passive":
+            return PASSIVE;
+        default:
+            throw new IllegalArgumentException("No bot named " + name);
+        }
+    }
+
+    /** Creates a tournament between BOTS, called NAMES, that plays on
+     * THREADS threads. */
+    Tournament(String[] names, Bot[] bots, int threads) {
+        assert names.length == bots.length && bots.length >= 2
+            : "Need two or more bots!";
+        _names = names;
+        _bots = bots;
+        _threads = threads;
+        _ratings = new double[bots.length];
+        Arrays.fill(_ratings, START_RATING);
+        _matches = new long[bots.length];
+        _points = new double[bots.length];
+    }
+
+    /** Plays ROUNDS round robins, where the Nth table played uses
+     * boards and dice from seed SEED + N. Prints a report to PROGRESS,
+     * if it isn't null, every REPORT_EVERY games. Returns true if the
+     * ratings settled and I stopped early. */
+    boolean roundRobin(int rounds, long seed, PrintStream progress)
+            throws Exception {
+        ArrayList<int[]> tables = new ArrayList<>();
+        int n = _bots.length;
+        for (int round = 0; round < rounds; round += 1) {
+            if (n < 4) {
+                tables.add(new int[] {0, 1, 2 % n, 3 % n});
+                continue;
+            }
+            for (int a = 0; a < n; a += 1) {
+                for (int b = a + 1; b < n; b += 1) {
+                    for (int c = b + 1; c < n; c += 1) {
+                        for (int d = c + 1; d < n; d += 1) {
+                            tables.add(new int[] {a, b, c, d});
+                        }
+                    }
+                }
+            }
+        }
+        return play(tables, seed, progress);
+    }
+
+    /** Plays ROUNDS Swiss rounds. In each, the bots are ordered by
+     * rating and seated four at a time down that order, filling the
+     * last table from the top. Otherwise the same as roundRobin. */
+    boolean swiss(int rounds, long seed, PrintStream progress)
+            throws Exception {
+        int n = _bots.length;
+        for (int round = 0; round < rounds; round += 1) {
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i += 1) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingDouble(
+                    (Integer i) -> -_ratings[i]));
+            ArrayList<int[]> tables = new ArrayList<>();
+            for (int first = 0; first < n; first += 4) {
+                int[] table = new int[4];
+                for (int s = 0; s < 4; s += 1) {
+                    table[s] = order[(first + s) % n];
+                }
+                tables.add(table);
+            }
+            if (play(tables, seed + _tables, progress)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Plays every seating of each of TABLES, the Nth table using
+     * seed SEED + N, and rates the bots. Returns true if I stopped
+     * early. */
+    private boolean play(ArrayList<int[]> tables, long seed,
+                         PrintStream progress) throws Exception {
+        if (_startNanos == 0) {
+            _startNanos = System.nanoTime();
+        }
+        ExecutorService pool = Executors.newWorkStealingPool(_threads);
+        try {
+            ArrayList<Future<Integer>> games = new ArrayList<>();
+            ArrayList<int[]> seatings = new ArrayList<>();
+            for (int t = 0; t < tables.size(); t += 1) {
+                long tableSeed = seed + t;
+                for (int shift = 0; shift < 4; shift += 1) {
+                    int[] seats = new int[4];
+                    Bot[] bots = new Bot[4];
+                    for (int s = 0; s < 4; s += 1) {
+                        seats[s] = tables.get(t)[(s + shift) % 4];
+                        bots[s] = _bots[seats[s]];
+                    }
+                    seatings.add(seats);
+                    games.add(pool.submit(() -> play(bots, tableSeed)));
+                }
+            }
+            for (int g = 0; g < games.size(); g += 1) {
+                rate(seatings.get(g), games.get(g).get());
+                if (g % 4 == 3) {
+                    _tables += 1;
+                }
+                if (progress != null && _played % REPORT_EVERY == 0) {
+                    progress.print(report());
+                }
+                if (settled()) {
+                    for (Future<Integer> game : games) {
+                        game.cancel(false);
+                    }
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Plays one game from Perft.opening(SEED), where BOTS[i] plays
+     * player i, and returns the player who won, or -1 if nobody
+     * reached WINNING_POINTS within MAX_PLIES moves. */
+    static int play(Bot[] bots, long seed) {
+        return play(bots, seed, null);
+    }
+
+    /** Same as play(BOTS, SEED), but tells WATCHER about every move,
+     * unless it is null. This is the one game loop that everything
+     * playing bots against each other goes through, so every game of
+     * a seed plays out the same. */
+    static int play(Bot[] bots, long seed, Watcher watcher) {
+        CompactGame game = Perft.opening(seed);
+        Perft generator = new Perft();
+        Random dice = new Random(seed);
+        Random choices = new Random(~seed);
+        long[] moves = new long[1024];
+        for (int ply = 0; ply < MAX_PLIES; ply += 1) {
+            int mover = game.turn();
+            int n = generator.moves(game, moves);
+            long move = bots[mover].choose(game, moves, n, choices);
+            if ((move & 15) == Perft.ROLL) {
+                move = Perft.ROLL
+                        | (dice.nextInt(6) + dice.nextInt(6) + 2) << 4;
+            }
+            if (watcher != null) {
+                watcher.before(game, mover, move);
+            }
+            Perft.apply(game, move);
+            if (watcher != null) {
+                watcher.after(game, mover, move);
+            }
+            if (game.victoryPoints(mover) >= WINNING_POINTS) {
+                return mover;
+            }
+        }
+        return -1;
+    }
+
+    /** Updates the ratings after a game where SEATS[i] played player
+     * i and WINNER won, or nobody did if -1. */
+    private void rate(int[] seats, int winner) {
+        double[] change = new double[_bots.length];
+        for (int i = 0; i < 4; i += 1) {
+            for (int j = i + 1; j < 4; j += 1) {
+                int a = seats[i], b = seats[j];
+                if (a == b) {
+                    continue;
+                }
+                double score = (winner == i) ? 1 : (winner == j) ? 0 : 0.5;
+                double expected = 1 / (1 + Math.pow(10,
+                        (_ratings[b] - _ratings[a]) / 400));
+                change[a] += K * (score - expected);
+                change[b] -= K * (score - expected);
+                _matches[a] += 1;
+                _matches[b] += 1;
+                _points[a] += score;
+                _points[b] += 1 - score;
+            }
+        }
+        for (int i = 0; i < _bots.length; i += 1) {
+            _ratings[i] += change[i];
+        }
+        _played += 1;
+    }
+
+    /** Returns true if every bot has played MIN_MATCHES matches and no
+     * two bots' confidence intervals overlap. */
+    boolean settled() {
+        Integer[] order = new Integer[_bots.length];
+        for (int i = 0; i < order.length; i += 1) {
+            if (_matches[i] < MIN_MATCHES) {
+                return false;
+            }
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(
+                (Integer i) -> _ratings[i]));
+        for (int i = 1; i < order.length; i += 1) {
+            int low = order[i - 1], high = order[i];
+            if (_ratings[high] - interval(high)
+                    <= _ratings[low] + interval(low)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the rating of bot I. */
+    double rating(int i) {
+        return _ratings[i];
+    }
+
+    /** Returns how far from its rating bot I's true rating may be, at
+     * about 95% confidence. This is the usual normal approximation,
+     * from the share of its matches that bot I has won, with the share
+     * kept away from 0 and 1 so that a bot that always wins or always
+     * loses still gets a finite interval. */
+    double interval(int i) {
+        if (_matches[i] == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double share = _points[i] / _matches[i];
+        share = Math.min(Math.max(share, 0.02), 0.98);
+        double variance = share * (1 - share) / _matches[i];
+        return 1.96 * Math.sqrt(variance) * 400
+                / (Math.log(10) * share * (1 - share));
+    }
+
+    /** Returns the number of games whose results I have taken. */
+    long played() {
+        return _played;
+    }
+
+    /** Returns a report of how many games have been played, how fast,
+     * and every bot's rating, best first. */
+    String report() {
+        double seconds = Math.max(1e-9,
+                (System.nanoTime() - _startNanos) / 1e9);
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%d games (%.0f games/s)%n", _played,
+                _played / seconds));
+        Integer[] order = new Integer[_bots.length];
+        for (int i = 0; i < order.length; i += 1) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(
+                (Integer i) -> -_ratings[i]));
+        for (int i : order) {
+            out.append(String.format("  %-10s %6.0f +/- %-5.0f"
+                    + " %5.1f%% of %d matches%n", _names[i], _ratings[i],
+                    interval(i), 100 * _points[i] / Math.max(1,
+                            _matches[i]), _matches[i]));
+        }
+        return out.toString();
+    }
+
+    /** Plays a round robin between the built in bots and prints the
+     * ratings. Usage: java Tournament [ROUNDS [THREADS]] */
+    public static void main(String[] args) throws Exception {
+        int rounds = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+        int threads = (args.length > 1) ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        Tournament tournament = new Tournament(
+                new String[] {"greedy", "random", "passive"},
+                new Bot[] {GREEDY, RANDOM, PASSIVE}, threads);
+        boolean settled = tournament.roundRobin(rounds, 0, System.out);
+        System.out.print(tournament.report());
+        System.out.println(settled ? "Stopped early: the ratings settled."
+                : "Played every round.");
+    }
+
+    /** Most moves in one game. */
+    static final int MAX_PLIES = 1000;
+
+    /** Victory points that win a game. */
+    static final int WINNING_POINTS = 10;
+
+    /** Move kinds that the greedy bot looks for, best first. */
+    private static final int[] PREFERENCES = {Perft.CITY, Perft.SETTLEMENT,
+        Perft.ROAD, Perft.TRADE};
+
+    /** Rating every bot starts with. */
+    static final double START_RATING = 1500;
+
+    /** Most a rating moves for one match. */
+    static final double K = 16;
+
+    /** Matches every bot must play before I may stop early. */
+    static final int MIN_MATCHES = 200;
+
+    /** Games between reports. */
+    static final int REPORT_EVERY = 1000;
+
+    /** Names of the bots. */
+    private final String[] _names;
+
+    /** The bots. */
+    private final Bot[] _bots;
+
+    /** Threads to play on. */
+    private final int _threads;
+
+    /** Each bot's rating. */
+    private final double[] _ratings;
+
+    /** Matches each bot has played. */
+    private final long[] _matches;
+
+    /** Matches each bot has won, with draws counting half. */
+    private final double[] _points;
+
+    /** Games and tables whose results I have taken. */
+    private long _played, _tables;
+
+    /** When I started playing. */
+    private long _startNanos;
+
+}
@@ -0,0 +1,61 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+/** Set of tests for tournaments between bots.
+ * @author John Angeles
+ */
+public class TournamentTest {
+
+    @Test
+    public void playTest() {
+        Tournament.Bot[] bots = {Tournament.GREEDY, Tournament.PASSIVE,
+            Tournament.GREEDY, Tournament.PASSIVE};
+        int winner = Tournament.play(bots, 4);
+        assertEquals(winner, Tournament.play(bots, 4));
+        assertTrue(winner == 0 || winner == 2);
+    }
+
+    @Test
+    public void threadsTest() throws Exception {
+        String[] names = {"greedy", "random", "passive", "greedy2", "x"};
+        Tournament.Bot[] bots = {Tournament.GREEDY, Tournament.RANDOM,
+            Tournament.PASSIVE, Tournament.GREEDY, Tournament.RANDOM};
+        Tournament one = new Tournament(names, bots, 1);
+        Tournament four = new Tournament(names, bots, 4);
+        assertFalse(one.roundRobin(1, 5, null));
+        assertFalse(four.roundRobin(1, 5, null));
+        assertEquals(20, one.played());
+        for (int i = 0; i < names.length; i += 1) {
+            assertEquals(one.rating(i), four.rating(i), 0);
+        }
+        one.swiss(2, 9, null);
+        assertEquals(36, one.played());
+    }
+
+    @Test
+    public void earlyStopTest() throws Exception {
+        Tournament tournament = new Tournament(
+                new String[] {"greedy", "passive"},
+                new Tournament.Bot[] {Tournament.GREEDY,
+                    Tournament.PASSIVE}, 4);
+        assertTrue(tournament.roundRobin(100, 0, null));
+        assertTrue(tournament.settled());
+        assertTrue(tournament.played() < 400);
+        assertTrue(tournament.rating(0) > tournament.rating(1));
+        assertTrue(tournament.rating(0) - tournament.interval(0)
+                > tournament.rating(1) + tournament.interval(1));
+    }
+
+    @Test
+    public void greedyTest() {
+        long[] moves = {Perft.ROLL | 7 << 4, Perft.ROAD | 3 << 4,
+            Perft.CITY | 5 << 4};
+        assertEquals(Perft.CITY | 5 << 4,
+                Tournament.greedy(moves, 3, new Random(1)));
+        long roll = Tournament.greedy(moves, 1, new Random(1));
+        assertEquals(Perft.ROLL, roll & 15);
+    }
+
+}
@@ -0,0 +1,66 @@
+/** A trade of resource cards between two players.
+ * The proposer gives away the cards in its give hand and receives the
+ * cards in its want hand. A trade that has been posted for anyone to
+ * accept has no partner. (See Hand for how hands are packed.)
+ * @author John Angeles
+ */
+final class Trade {
+
+    /** Constructs a trade where PROPOSER offers GIVE to PARTNER
+     * in exchange for WANT.
+     *
+     * @param proposer The player that proposes the trade.
+     * @param partner The player that would accept the trade, or null
+     *                if anyone may accept it.
+     * @param give Packed hand of cards the proposer gives away.
+     * @param want Packed hand of cards the proposer receives.
+     */
+    Trade(Player proposer, Player partner, long give, long want) {
+        assert proposer != partner : "Can't trade with yourself!";
+        _proposer = proposer;
+        _partner = partner;
+        _give = give;
+        _want = want;
+    }
+
+    /** Returns the player that proposed me. */
+    Player proposer() {
+        return _proposer;
+    }
+
+    /** Returns the player that would accept me, or null if I am open
+     * to anyone. */
+    Player partner() {
+        return _partner;
+    }
+
+    /** Returns the packed hand that my proposer gives away. */
+    long give() {
+        return _give;
+    }
+
+    /** Returns the packed hand that my proposer receives. */
+    long want() {
+        return _want;
+    }
+
+    @Override
+    public String toString() {
+        String partner = (_partner == null) ? "anyone" : _partner.getName();
+        return _proposer.getName() + " gives " + Hand.toString(_give)
+                + " to " + partner + " for " + Hand.toString(_want);
+    }
+
+    /** The player that proposed me. */
+    private final Player _proposer;
+
+    /** The player that would accept me, or null. */
+    private final Player _partner;
+
+    /** Cards my proposer gives away. */
+    private final long _give;
+
+    /** Cards my proposer receives. */
+    private final long _want;
+
+}
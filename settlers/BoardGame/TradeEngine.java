@@ -0,0 +1,205 @@
+import java.util.ArrayList;
+
+/** Matches and resolves trades between players.
+ *
+ * Players post offers to me, and I can find every player who has the
+ * cards to accept an offer. All of the checks work on packed hands
+ * (See Hand), so finding counterparties does not look at any cards.
+ *
+ * Bots may also ask me for every 1-for-1 and 2-for-1 swap between two
+ * players that leaves both of them closer to building something.
+ * @author John Angeles
+ */
+final class TradeEngine {
+
+    /** Posts an offer where PROPOSER gives GIVE for WANT to anyone.
+     * Throws an IllegalArgumentException if either doesn't hold five
+     * counts from 0 to Hand.MAX_COUNT.
+     *
+     * @param give Five counts, indexed like Resource.index.
+     * @param want Five counts, indexed like Resource.index.
+     * @return The trade that was posted.
+     */
+    Trade post(Player proposer, int[] give, int[] want) {
+        check(give);
+        check(want);
+        Trade trade = new Trade(proposer, null,
+                Hand.pack(give), Hand.pack(want));
+        _offers.add(trade);
+        return trade;
+    }
+
+    /** Throws an IllegalArgumentException unless COUNTS holds five
+     * counts from 0 to Hand.MAX_COUNT, which is what Hand.pack needs
+     * to keep each count in its own byte. */
+    private static void check(int[] counts) {
+        if (counts.length != Hand.NUM_RESOURCES) {
+            throw new IllegalArgumentException("Need "
+                    + Hand.NUM_RESOURCES + " counts, not " + counts.length);
+        }
+        for (int count : counts) {
+            if (count < 0 || count > Hand.MAX_COUNT) {
+                throw new IllegalArgumentException("Count " + count
+                        + " is not from 0 to " + Hand.MAX_COUNT);
+            }
+        }
+    }
+
+    /** Returns the offers that have been posted but not resolved. */
+    ArrayList<Trade> offers() {
+        return _offers;
+    }
+
+    /** Withdraws TRADE, if it was posted. */
+    void withdraw(Trade trade) {
+        _offers.remove(trade);
+    }
+
+    /** Returns every player in PLAYERS, other than the proposer, that
+     * could accept TRADE right now. If the proposer can no longer pay
+     * for TRADE, nobody can accept it.
+     */
+    ArrayList<Player> counterparties(Trade trade, Player... players) {
+        ArrayList<Player> answer = new ArrayList<>();
+        if (!Hand.covers(trade.proposer().packedHand(), trade.give())) {
+            return answer;
+        }
+        for (Player curr : players) {
+            if (curr != null && curr != trade.proposer()
+                    && (trade.partner() == null || trade.partner() == curr)
+                    && Hand.covers(curr.packedHand(), trade.want())) {
+                answer.add(curr);
+            }
+        }
+        return answer;
+    }
+
+    /** Resolves TRADE with PARTNER accepting it. Either both players
+     * hand over all of their cards, or nothing happens at all.
+     * Returns true iff the trade went through.
+     */
+    boolean resolve(Trade trade, Player partner) {
+        GameEvents.Trade event = GameEvents.trade();
+        Player proposer = trade.proposer();
+        if (partner == null || partner == proposer
+                || (trade.partner() != null && trade.partner() != partner)
+                || !Hand.covers(proposer.packedHand(), trade.give())
+                || !Hand.covers(partner.packedHand(), trade.want())) {
+            commit(event, trade, partner, false);
+            return false;
+        }
+        transfer(proposer, partner, trade.give());
+        transfer(partner, proposer, trade.want());
+        _offers.remove(trade);
+        commit(event, trade, partner, true);
+        return true;
+    }
+
+    /** Fills in EVENT, if it isn't null, for TRADE with PARTNER, which
+     * was RESOLVED or not, and commits it. (See GameEvents) */
+    private static void commit(GameEvents.Trade event, Trade trade,
+                               Player partner, boolean resolved) {
+        if (event != null && event.shouldCommit()) {
+            event.gameId = GameEvents.game();
+            event.proposer = trade.proposer().color().toString();
+            event.partner = (partner == null) ? null
+                    : partner.color().toString();
+            event.give = trade.give();
+            event.want = trade.want();
+            event.resolved = resolved;
+            event.commit();
+        }
+    }
+
+    /** Returns every 1-for-1 and 2-for-1 swap between A and B, in
+     * either direction, that lowers both players' Hand.need. The
+     * proposer of each swap is the player giving away more cards.
+     */
+    static ArrayList<Trade> improvingSwaps(Player a, Player b) {
+        ArrayList<Trade> answer = new ArrayList<>();
+        improvingSwaps(a.packedHand(), b.packedHand(),
+            (aGives, give, want) -> answer.add(aGives
+                    ? new Trade(a, b, give, want)
+                    : new Trade(b, a, give, want)));
+        return answer;
+    }
+
+    /** Something that is told about swaps, one at a time. */
+    interface SwapVisitor {
+        /** Visits a swap where the first player gives GIVE for WANT if
+         * FIRSTGIVES, or else the second player does. GIVE and WANT
+         * are packed hands. */
+        void visit(boolean firstGives, long give, long want);
+    }
+
+    /** Same as improvingSwaps(Player, Player), but for the packed
+     * hands HANDA and HANDB, and tells VISITOR about each swap instead
+     * of making a Trade. Swaps come in the same order. */
+    static void improvingSwaps(long handA, long handB, SwapVisitor visitor) {
+        int needA = Hand.need(handA), needB = Hand.need(handB);
+
+        for (int give = 0; give < Hand.NUM_RESOURCES; give += 1) {
+            for (int want = 0; want < Hand.NUM_RESOURCES; want += 1) {
+                if (give == want) {
+                    continue;
+                }
+                long one = Hand.unit(give), other = Hand.unit(want);
+                if (Hand.covers(handA, one) && Hand.covers(handB, other)
+                        && Hand.need(Hand.swap(handA, one, other)) < needA
+                        && Hand.need(Hand.swap(handB, other, one))
+                        < needB) {
+                    visitor.visit(true, one, other);
+                }
+            }
+        }
+
+        addTwoForOne(true, handA, needA, handB, needB, visitor);
+        addTwoForOne(false, handB, needB, handA, needA, visitor);
+    }
+
+    /** Tells VISITOR about every swap where the giver, holding
+     * GIVERHAND with need GIVERNEED, gives two cards for one card of
+     * the taker, holding TAKERHAND with need TAKERNEED, and both needs
+     * go down. The giver is the first player iff FIRSTGIVES. */
+    private static void addTwoForOne(boolean firstGives, long giverHand,
+                                     int giverNeed, long takerHand,
+                                     int takerNeed, SwapVisitor visitor) {
+        for (int first = 0; first < Hand.NUM_RESOURCES; first += 1) {
+            for (int second = first; second < Hand.NUM_RESOURCES;
+                 second += 1) {
+                long two = Hand.unit(first) + Hand.unit(second);
+                if (!Hand.covers(giverHand, two)) {
+                    continue;
+                }
+                for (int want = 0; want < Hand.NUM_RESOURCES; want += 1) {
+                    if (want == first || want == second) {
+                        continue;
+                    }
+                    long one = Hand.unit(want);
+                    if (Hand.covers(takerHand, one)
+                            && Hand.need(Hand.swap(giverHand, two, one))
+                            < giverNeed
+                            && Hand.need(Hand.swap(takerHand, one, two))
+                            < takerNeed) {
+                        visitor.visit(firstGives, two, one);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Moves the cards in HAND from FROM to TO. Assumes that FROM
+     * has all of them. */
+    private static void transfer(Player from, Player to, long hand) {
+        for (int i = 0; i < Hand.NUM_RESOURCES; i += 1) {
+            Resource resource = Resource.get(i);
+            for (int n = Hand.count(hand, i); n > 0; n -= 1) {
+                to.giveResource(from.takeResource(resource));
+            }
+        }
+    }
+
+    /** Offers that have been posted but not resolved. */
+    private ArrayList<Trade> _offers = new ArrayList<>();
+
+}
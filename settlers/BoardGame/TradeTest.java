@@ -0,0 +1,154 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/** Set of tests for trades, the trade engine and packed hands.
+ * @author John Angeles
+ */
+public class TradeTest {
+
+    @Test
+    public void packTest() {
+        long hand = Hand.pack(1, 2, 3, 4, 5);
+        assertEquals(1, Hand.count(hand, 0));
+        assertEquals(5, Hand.count(hand, 4));
+        assertEquals(15, Hand.size(hand));
+        assertTrue(Hand.covers(hand, Hand.CITY));
+        assertFalse(Hand.covers(Hand.pack(0, 0, 2, 2, 0), Hand.CITY));
+        assertEquals(1, Hand.shortfall(Hand.pack(0, 0, 2, 2, 0), Hand.CITY));
+        assertEquals(4, Hand.shortfall(0, Hand.SETTLEMENT));
+        assertEquals("[1 wood, 2 ore]", Hand.toString(Hand.pack(1, 0, 0, 2, 0)));
+    }
+
+    @Test
+    public void fullHandTest() {
+        int most = Hand.MAX_COUNT;
+        long full = Hand.pack(most, most, most, most, most);
+        assertEquals(5 * most, Hand.size(full));
+        assertEquals(Hand.pack(0, most, 0, 0, 0),
+                Hand.swap(Hand.pack(1, most, 0, 0, 0), Hand.unit(0),
+                        Hand.unit(1)));
+        CompactGame game = new CompactGame();
+        game.give(0, Hand.pack(1, most, 0, 0, 0));
+        game.give(1, Hand.pack(0, 1, 0, 0, 0));
+        assertTrue(game.trade(0, 1, Hand.unit(0), Hand.unit(1)));
+        assertEquals(Hand.pack(0, most, 0, 0, 0), game.hand(0));
+        assertEquals(Hand.pack(1, 0, 0, 0, 0), game.hand(1));
+    }
+
+    @Test
+    public void packedHandTest() {
+        Player alice = new Player(Color.white(), "Alice");
+        alice.giveResource(new WoodCard());
+        alice.giveResource(new WoodCard());
+        alice.giveResource(new OreCard());
+        assertEquals(Hand.pack(2, 0, 0, 1, 0), alice.packedHand());
+        assertEquals(2, alice.numResource(Resource.wood()));
+    }
+
+    @Test
+    public void bigHandTest() {
+        Player alice = new Player(Color.white(), "Alice");
+        for (int i = 0; i < 300; i += 1) {
+            alice.giveResource(new WoodCard());
+        }
+        alice.giveResource(new OreCard());
+        assertEquals(Hand.pack(Hand.MAX_COUNT, 0, 0, 1, 0),
+                alice.packedHand());
+        assertTrue(Hand.covers(alice.packedHand(),
+                Hand.pack(Hand.MAX_COUNT, 0, 0, 1, 0)));
+        assertFalse(Hand.covers(alice.packedHand(), Hand.unit(1)));
+
+        Player bob = new Player(Color.red(), "Bob");
+        bob.giveResource(new BrickCard());
+        TradeEngine engine = new TradeEngine();
+        Trade trade = engine.post(bob, new int[] {0, 1, 0, 0, 0},
+                new int[] {1, 0, 0, 0, 0});
+        assertEquals(1, engine.counterparties(trade, alice, bob).size());
+    }
+
+    @Test
+    public void badCountsTest() {
+        Player alice = new Player(Color.white(), "Alice");
+        TradeEngine engine = new TradeEngine();
+        int[] none = new int[5];
+        int[][] bad = {{-1, 0, 0, 0, 0}, {0, 0, Hand.MAX_COUNT + 1, 0, 0},
+            {0, 0, 0, 0}};
+        for (int[] counts : bad) {
+            try {
+                engine.post(alice, counts, none);
+                fail("Posted " + Arrays.toString(counts));
+            } catch (IllegalArgumentException e) {
+                assertTrue(engine.offers().isEmpty());
+            }
+            try {
+                engine.post(alice, none, counts);
+                fail("Posted " + Arrays.toString(counts));
+            } catch (IllegalArgumentException e) {
+                assertTrue(engine.offers().isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void counterpartiesTest() {
+        Player alice = new Player(Color.white(), "Alice");
+        Player bob = new Player(Color.red(), "Bob");
+        Player carol = new Player(Color.black(), "Carol");
+        alice.giveResource(new WoodCard());
+        bob.giveResource(new OreCard());
+        TradeEngine engine = new TradeEngine();
+        Trade trade = engine.post(alice, new int[] {1, 0, 0, 0, 0},
+                new int[] {0, 0, 0, 1, 0});
+        ArrayList<Player> answer
+                = engine.counterparties(trade, alice, bob, carol);
+        assertEquals(1, answer.size());
+        assertSame(bob, answer.get(0));
+    }
+
+    @Test
+    public void resolveTest() {
+        Player alice = new Player(Color.white(), "Alice");
+        Player bob = new Player(Color.red(), "Bob");
+        alice.giveResource(new WoodCard());
+        alice.giveResource(new WoodCard());
+        bob.giveResource(new SheepCard());
+        TradeEngine engine = new TradeEngine();
+        Trade trade = engine.post(alice, new int[] {2, 0, 0, 0, 0},
+                new int[] {0, 0, 0, 0, 2});
+        assertFalse("Bob only has one sheep.", engine.resolve(trade, bob));
+        assertEquals(Hand.pack(2, 0, 0, 0, 0), alice.packedHand());
+        assertEquals(Hand.pack(0, 0, 0, 0, 1), bob.packedHand());
+        bob.giveResource(new SheepCard());
+        assertTrue(engine.resolve(trade, bob));
+        assertEquals(Hand.pack(0, 0, 0, 0, 2), alice.packedHand());
+        assertEquals(Hand.pack(2, 0, 0, 0, 0), bob.packedHand());
+        assertTrue(engine.offers().isEmpty());
+    }
+
+    @Test
+    public void improvingSwapsTest() {
+        Player alice = new Player(Color.white(), "Alice");
+        Player bob = new Player(Color.red(), "Bob");
+        alice.giveResource(new WoodCard());
+        alice.giveResource(new WoodCard());
+        bob.giveResource(new BrickCard());
+        bob.giveResource(new BrickCard());
+        ArrayList<Trade> swaps = TradeEngine.improvingSwaps(alice, bob);
+        boolean found = false;
+        for (Trade trade : swaps) {
+            assertTrue(Hand.covers(trade.proposer().packedHand(),
+                    trade.give()));
+            assertTrue(Hand.covers(trade.partner().packedHand(),
+                    trade.want()));
+            if (trade.give() == Hand.unit(0) && trade.want() == Hand.unit(1)) {
+                found = true;
+            }
+        }
+        assertTrue("Wood for brick helps both of them build a road.", found);
+    }
+
+}
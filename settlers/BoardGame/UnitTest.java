@@ -9,11 +9,38 @@ public class UnitTest {
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
         textui.runClasses(
+                AllocationsTest.class,
+                BatchRunTest.class,
                 BoardTest.class,
+                BoardViewTest.class,
                 BuildingTest.class,
                 ColorTest.class,
+                CompactGameTest.class,
+                CoordinatorTest.class,
+                CountMinSketchTest.class,
                 EdgeTest.class,
+                EngineMetricsTest.class,
+                EventBusTest.class,
+                FeatureEncoderTest.class,
+                GameEventsTest.class,
+                GameLogTest.class,
+                GameRegistryTest.class,
+                GameServerTest.class,
+                GameStatsTest.class,
+                GameTest.class,
                 HexTest.class,
-                PlayerTest.class);
+                HyperLogLogTest.class,
+                IncomeDistributionTest.class,
+                LegalityFuzzerTest.class,
+                LockstepGamesTest.class,
+                NioServerTest.class,
+                PerftTest.class,
+                PlayerTest.class,
+                QuantileSketchTest.class,
+                SelfPlayTest.class,
+                SymmetryTest.class,
+                TokenLayoutsTest.class,
+                TournamentTest.class,
+                TradeTest.class);
     }
 }